@@ -1452,7 +1452,7 @@ public class ZclProtocolCodeGenerator {
                         out.println(
                                 "            long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;");
                         out.println("            if(attributes.get(" + attribute.enumName
-                                + ").getLastReportTime().getTimeInMillis() < refreshTime) {");
+                                + ").getLastReportTime().getTimeInMillis() > refreshTime) {");
                         out.println("                return (" + attribute.dataTypeClass + ") attributes.get("
                                 + attribute.enumName + ").getLastValue();");
                         out.println("            }");
@@ -18,6 +18,7 @@ import com.zsmartsystems.zigbee.ZigBeeNetworkStateSerializer;
 import com.zsmartsystems.zigbee.dongle.cc2531.ZigBeeDongleTiCc2531;
 import com.zsmartsystems.zigbee.dongle.ember.ZigBeeDongleEzsp;
 import com.zsmartsystems.zigbee.serial.SerialPortImpl;
+import com.zsmartsystems.zigbee.serial.TcpPortImpl;
 import com.zsmartsystems.zigbee.serialization.DefaultDeserializer;
 import com.zsmartsystems.zigbee.serialization.DefaultSerializer;
 import com.zsmartsystems.zigbee.transport.ZigBeePort;
@@ -39,6 +40,11 @@ public class ZigBeeConsoleMain {
      */
     public static final String USAGE = "Syntax: java -jar zigbee4java-serialPort.jar [EMBER|CC2531] SERIALPORT SERIALBAUD CHANNEL PAN EPAN NETWORK_KEY RESET";
 
+    /**
+     * Prefix of a SERIALPORT argument that specifies a TCP port rather than a local serial port
+     */
+    private static final String TCP_PREFIX = "tcp://";
+
     /**
      * Private constructor to disable constructing main class.
      */
@@ -93,7 +99,26 @@ public class ZigBeeConsoleMain {
             return;
         }
 
-        final ZigBeePort serialPort = new SerialPortImpl(serialPortName, serialBaud);
+        final ZigBeePort serialPort;
+        if (serialPortName.startsWith(TCP_PREFIX)) {
+            // Remote port - eg ser2net - specified as tcp://host:port
+            final String address = serialPortName.substring(TCP_PREFIX.length());
+            final int separator = address.lastIndexOf(':');
+            final int tcpPort;
+            try {
+                tcpPort = separator > 0 ? Integer.parseInt(address.substring(separator + 1)) : -1;
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid TCP port in " + serialPortName);
+                return;
+            }
+            if (tcpPort < 1 || tcpPort > 65535) {
+                System.out.println("TCP port must be specified as " + TCP_PREFIX + "host:port");
+                return;
+            }
+            serialPort = new TcpPortImpl(address.substring(0, separator), tcpPort);
+        } else {
+            serialPort = new SerialPortImpl(serialPortName, serialBaud);
+        }
 
         System.out.println("Initialising console...");
 
@@ -31,11 +31,13 @@ import com.zsmartsystems.zigbee.ZigBeeNetworkManager;
 import com.zsmartsystems.zigbee.ZigBeeNetworkStateSerializer;
 import com.zsmartsystems.zigbee.ZigBeeNode;
 import com.zsmartsystems.zigbee.dao.ZigBeeDeviceDao;
+import com.zsmartsystems.zigbee.dao.ZigBeeDiscoveryDao;
 import com.zsmartsystems.zigbee.dao.ZigBeeNodeDao;
 import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor.FrequencyBandType;
 import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor.MacCapabilitiesType;
 import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor.ServerCapabilitiesType;
 import com.zsmartsystems.zigbee.zdo.descriptors.PowerDescriptor.PowerSourceType;
+import com.zsmartsystems.zigbee.zdo.descriptors.SimpleDescriptor;
 
 /**
  * Serializes and deserializes the ZigBee network state.
@@ -57,6 +59,8 @@ public class ZigBeeNetworkStateSerializerImpl implements ZigBeeNetworkStateSeria
         XStream stream = new XStream(new StaxDriver());
         stream.alias("ZigBeeNode", ZigBeeNodeDao.class);
         stream.alias("ZigBeeDevice", ZigBeeDeviceDao.class);
+        stream.alias("ZigBeeDiscovery", ZigBeeDiscoveryDao.class);
+        stream.alias("SimpleDescriptor", SimpleDescriptor.class);
         stream.alias("MacCapabilitiesType", MacCapabilitiesType.class);
         stream.alias("ServerCapabilitiesType", ServerCapabilitiesType.class);
         stream.alias("PowerSourceType", PowerSourceType.class);
@@ -84,6 +88,7 @@ public class ZigBeeNetworkStateSerializerImpl implements ZigBeeNetworkStateSeria
             ZigBeeDeviceDao deviceDao = ZigBeeDeviceDao.createFromZigBeeDevice(device);
             destinations.add(deviceDao);
         }
+        destinations.addAll(networkState.getDiscoveryCache());
 
         final File file = new File(networkStateFilePath);
 
@@ -120,13 +125,17 @@ public class ZigBeeNetworkStateSerializerImpl implements ZigBeeNetworkStateSeria
             BufferedReader reader;
             reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
             final List<Object> objects = (List<Object>) stream.fromXML(reader);
+            final List<ZigBeeDiscoveryDao> discoveryCache = new ArrayList<ZigBeeDiscoveryDao>();
             for (final Object object : objects) {
                 if (object instanceof ZigBeeNodeDao) {
                     networkState.addNode(ZigBeeNodeDao.createFromZigBeeDao(networkState, (ZigBeeNodeDao) object));
+                } else if (object instanceof ZigBeeDiscoveryDao) {
+                    discoveryCache.add((ZigBeeDiscoveryDao) object);
                 } else {
                     networkState.addDevice(ZigBeeDeviceDao.createFromZigBeeDao(networkState, (ZigBeeDeviceDao) object));
                 }
             }
+            networkState.setDiscoveryCache(discoveryCache);
         } catch (UnsupportedEncodingException | FileNotFoundException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
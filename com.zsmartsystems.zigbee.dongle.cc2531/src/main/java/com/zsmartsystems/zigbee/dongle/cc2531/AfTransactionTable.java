@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the AF data requests that have been sent to the ZNP and are waiting for their <i>AF_DATA_CONFIRM</i>.
+ * <p>
+ * The ZNP only has buffers for a small number of outstanding AF data requests, so the number of transactions that may
+ * be in flight at once is limited by a credit window. A credit is taken when a transaction is started, and returned
+ * when the confirm is received, the request is rejected, or the confirm is not received within the confirm timeout.
+ * <p>
+ * Starting a transaction never blocks. If no credit is available the transaction is queued, and it is started and
+ * its request is sent from the sender thread of the table when a credit is returned.
+ * <p>
+ * Transactions are identified by the AF transaction ID, which is the sequence number of the APS frame.
+ *
+ * @author Chris Jackson
+ */
+public class AfTransactionTable {
+    /**
+     * The {@link Logger}.
+     */
+    private final Logger logger = LoggerFactory.getLogger(AfTransactionTable.class);
+
+    /**
+     * The time to wait for the AF_DATA_CONFIRM in milliseconds before the credit is returned
+     */
+    private static final int CONFIRM_TIMEOUT = 8000;
+
+    /**
+     * The number of credits available
+     */
+    private int credits;
+
+    /**
+     * Map of outstanding transaction IDs to the confirm timer
+     */
+    private final Map<Integer, ScheduledFuture<?>> transactions = new HashMap<Integer, ScheduledFuture<?>>();
+
+    /**
+     * Transactions waiting for a credit, in the order they were started
+     */
+    private final Deque<PendingTransaction> pendingTransactions = new ArrayDeque<PendingTransaction>();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Executor used to send the requests of queued transactions. The sender may wait for the response from the ZNP, so
+     * this is kept separate from the timer, and from the thread that receives the confirm.
+     */
+    private final ExecutorService sender = Executors.newSingleThreadExecutor();
+
+    /**
+     * @param window the maximum number of AF transactions that may be outstanding at once
+     */
+    public AfTransactionTable(int window) {
+        credits = window;
+    }
+
+    /**
+     * Starts a transaction if a credit is available. Otherwise the transaction is queued until a credit is returned,
+     * and the request is then sent by running the request sender in the sender thread of the table. This does not
+     * block.
+     *
+     * @param transactionId the AF transaction ID
+     * @param requestSender the {@link Runnable} used to send the request if the transaction is queued
+     * @return true if the transaction was started and the caller should send the request, or false if it was queued
+     */
+    public boolean startTransaction(final int transactionId, final Runnable requestSender) {
+        synchronized (transactions) {
+            // Complete any previous transaction with the same ID - its confirm will never be matched
+            completeTransaction(transactionId);
+
+            if (credits == 0) {
+                logger.debug("No AF credit available - transaction {} queued", transactionId);
+                pendingTransactions.addLast(new PendingTransaction(transactionId, requestSender));
+                return false;
+            }
+
+            credits--;
+            addTransaction(transactionId);
+        }
+        return true;
+    }
+
+    /**
+     * Completes a transaction and returns its credit. This should be called when the AF_DATA_CONFIRM is received or
+     * the request is rejected by the ZNP. If a transaction is queued, the credit is passed to it and its request is
+     * sent.
+     *
+     * @param transactionId the AF transaction ID
+     * @return true if the transaction was outstanding
+     */
+    public boolean completeTransaction(final int transactionId) {
+        final PendingTransaction pendingTransaction;
+        synchronized (transactions) {
+            final ScheduledFuture<?> confirmTimer = transactions.remove(transactionId);
+            if (confirmTimer == null) {
+                return false;
+            }
+            confirmTimer.cancel(false);
+
+            pendingTransaction = pendingTransactions.pollFirst();
+            if (pendingTransaction == null) {
+                credits++;
+                return true;
+            }
+            addTransaction(pendingTransaction.transactionId);
+        }
+
+        try {
+            sender.execute(pendingTransaction.requestSender);
+        } catch (RejectedExecutionException e) {
+            // The table has been shut down
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of outstanding transactions
+     *
+     * @return the number of transactions waiting for confirmation
+     */
+    public int getOutstandingTransactions() {
+        synchronized (transactions) {
+            return transactions.size();
+        }
+    }
+
+    /**
+     * Gets the number of transactions waiting for a credit
+     *
+     * @return the number of queued transactions
+     */
+    public int getQueuedTransactions() {
+        synchronized (transactions) {
+            return pendingTransactions.size();
+        }
+    }
+
+    /**
+     * Stops the confirm timer and the sender. Outstanding and queued transactions are discarded.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    /**
+     * Adds an outstanding transaction and starts its confirm timer. Must be called with the {@link #transactions} lock
+     * held.
+     *
+     * @param transactionId the AF transaction ID
+     */
+    private void addTransaction(final int transactionId) {
+        try {
+            transactions.put(transactionId, timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (completeTransaction(transactionId)) {
+                        logger.debug("AF transaction {} not confirmed", transactionId);
+                    }
+                }
+            }, CONFIRM_TIMEOUT, TimeUnit.MILLISECONDS));
+        } catch (RejectedExecutionException e) {
+            // The table has been shut down
+        }
+    }
+
+    /**
+     * A transaction waiting for a credit
+     */
+    private static class PendingTransaction {
+        private final int transactionId;
+        private final Runnable requestSender;
+
+        PendingTransaction(final int transactionId, final Runnable requestSender) {
+            this.transactionId = transactionId;
+            this.requestSender = requestSender;
+        }
+    }
+}
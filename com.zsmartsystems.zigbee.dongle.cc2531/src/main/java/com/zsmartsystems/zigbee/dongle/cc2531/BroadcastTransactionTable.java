@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the rate of broadcast and group transmissions to what the network broadcast transaction table can hold.
+ * <p>
+ * Every router records each broadcast it relays in its broadcast transaction table for the broadcast delivery time.
+ * Group commands are also delivered as network broadcasts. If more broadcasts are sent than the table can hold, routers
+ * drop them, so an entry is taken for each broadcast and only returned once the delivery time has passed.
+ *
+ * @author Chris Jackson
+ */
+public class BroadcastTransactionTable {
+    /**
+     * The {@link Logger}.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BroadcastTransactionTable.class);
+
+    /**
+     * The default time in milliseconds a broadcast is held in the broadcast transaction table
+     */
+    private static final int BROADCAST_DELIVERY_TIME = 9000;
+
+    /**
+     * The time to wait for a table entry in milliseconds before the broadcast is rejected
+     */
+    private static final int ENTRY_TIMEOUT = 10000;
+
+    private final Semaphore entries;
+
+    private final long deliveryTime;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * @param size the number of entries in the broadcast transaction table
+     */
+    public BroadcastTransactionTable(int size) {
+        this(size, BROADCAST_DELIVERY_TIME);
+    }
+
+    /**
+     * @param size the number of entries in the broadcast transaction table
+     * @param deliveryTime the time in milliseconds a broadcast is held in the table
+     */
+    public BroadcastTransactionTable(int size, long deliveryTime) {
+        entries = new Semaphore(size, true);
+        this.deliveryTime = deliveryTime;
+    }
+
+    /**
+     * Starts a broadcast. This will block until a table entry is available, or the entry timeout expires. The entry is
+     * returned automatically once the delivery time has passed.
+     *
+     * @return true if the broadcast may be sent
+     * @throws InterruptedException if interrupted while waiting for an entry
+     */
+    public boolean startBroadcast() throws InterruptedException {
+        if (!entries.tryAcquire(ENTRY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            logger.debug("No broadcast transaction table entry available");
+            return false;
+        }
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                entries.release();
+            }
+        }, deliveryTime, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Gets the number of broadcasts that may be sent immediately
+     *
+     * @return the number of free table entries
+     */
+    public int getAvailableEntries() {
+        return entries.availablePermits();
+    }
+
+    /**
+     * Stops the delivery timer. Outstanding entries are discarded.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
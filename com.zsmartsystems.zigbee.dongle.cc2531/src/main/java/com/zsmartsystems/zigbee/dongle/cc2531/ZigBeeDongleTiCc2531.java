@@ -17,7 +17,9 @@ import com.zsmartsystems.zigbee.ExtendedPanId;
 import com.zsmartsystems.zigbee.ZigBeeApsFrame;
 import com.zsmartsystems.zigbee.ZigBeeException;
 import com.zsmartsystems.zigbee.ZigBeeKey;
+import com.zsmartsystems.zigbee.ZigBeeNwkAddressMode;
 import com.zsmartsystems.zigbee.ZigBeeNetworkManager.ZigBeeInitializeResponse;
+import com.zsmartsystems.zigbee.dongle.cc2531.frame.AfIncomingMessage;
 import com.zsmartsystems.zigbee.dongle.cc2531.frame.ZdoActiveEndpoint;
 import com.zsmartsystems.zigbee.dongle.cc2531.frame.ZdoCallbackIncoming;
 import com.zsmartsystems.zigbee.dongle.cc2531.frame.ZdoEndDeviceAnnounce;
@@ -30,18 +32,22 @@ import com.zsmartsystems.zigbee.dongle.cc2531.frame.ZdoPowerDescriptor;
 import com.zsmartsystems.zigbee.dongle.cc2531.frame.ZdoSimpleDescriptor;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.ApplicationFrameworkMessageListener;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.AsynchronousCommandListener;
-import com.zsmartsystems.zigbee.dongle.cc2531.network.DriverStatus;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.NetworkMode;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.ZigBeeNetworkManager;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.impl.CommandInterfaceImpl;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ResponseStatus;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolCMD;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_CONFIRM;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_REQUEST;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_REQUEST_EXT;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_SRSP;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_SRSP_EXT;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_INCOMING_MSG;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_REGISTER;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_REGISTER_SRSP;
 import com.zsmartsystems.zigbee.transport.ZigBeePort;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportDeliveryListener;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportReceive;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportState;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportTransmit;
@@ -76,6 +82,32 @@ public class ZigBeeDongleTiCc2531
      */
     private ZigBeeTransportReceive zigbeeNetworkReceive;
 
+    /**
+     * The maximum number of AF data requests that may be waiting for confirmation from the ZNP
+     */
+    private static final int AF_TRANSACTION_WINDOW = 4;
+
+    /**
+     * The {@link AfTransactionTable} tracking AF data requests waiting for confirmation
+     */
+    private final AfTransactionTable afTransactions = new AfTransactionTable(AF_TRANSACTION_WINDOW);
+
+    /**
+     * The number of broadcasts that may be in the network at once
+     */
+    private static final int BROADCAST_TABLE_SIZE = 9;
+
+    /**
+     * The lowest broadcast network address
+     */
+    private static final int BROADCAST_ADDRESS_MIN = 0xFFF8;
+
+    /**
+     * The {@link BroadcastTransactionTable} limiting the rate of broadcast and group commands
+     */
+    private final BroadcastTransactionTable broadcastTransactions = new BroadcastTransactionTable(
+            BROADCAST_TABLE_SIZE);
+
     private final HashMap<Integer, Integer> sender2EndPoint = new HashMap<Integer, Integer>();
     private final HashMap<Integer, Integer> endpoint2Profile = new HashMap<Integer, Integer>();
 
@@ -182,20 +214,10 @@ public class ZigBeeDongleTiCc2531
             return false;
         }
 
-        while (true) {
-            if (networkManager.getDriverStatus() == DriverStatus.NETWORK_READY) {
-                break;
-            }
-            if (networkManager.getDriverStatus() == DriverStatus.CLOSED) {
-                zigbeeNetworkReceive.setNetworkState(ZigBeeTransportState.UNINITIALISED);
-                return false;
-            }
-            try {
-                Thread.sleep(50);
-            } catch (final InterruptedException e) {
-                zigbeeNetworkReceive.setNetworkState(ZigBeeTransportState.UNINITIALISED);
-                return false;
-            }
+        // Wait for the dongle to report that the network has started
+        if (!networkManager.waitForNetwork()) {
+            zigbeeNetworkReceive.setNetworkState(ZigBeeTransportState.UNINITIALISED);
+            return false;
         }
 
         createEndPoint(1, 0x104);
@@ -208,6 +230,8 @@ public class ZigBeeDongleTiCc2531
     @Override
     public void shutdown() {
         networkManager.shutdown();
+        afTransactions.shutdown();
+        broadcastTransactions.shutdown();
     }
 
     @Override
@@ -217,38 +241,78 @@ public class ZigBeeDongleTiCc2531
 
     @Override
     public void sendCommand(final ZigBeeApsFrame apsFrame) throws ZigBeeException {
-        synchronized (networkManager) {
-            final short sender;
-            if (apsFrame.getProfile() == 0) {
-                sender = 0;
-            } else {
-                sender = (short) getSendingEndpoint(apsFrame.getProfile());
+        final short sender;
+        if (apsFrame.getProfile() == 0) {
+            sender = 0;
+        } else {
+            sender = (short) getSendingEndpoint(apsFrame.getProfile());
+        }
+
+        final int transactionId = apsFrame.getSequence();
+        final ZToolPacket request;
+        if (apsFrame.getAddressMode() == ZigBeeNwkAddressMode.GROUP) {
+            request = new AF_DATA_REQUEST_EXT(AF_DATA_REQUEST_EXT.ADDRESS_MODE_GROUP, apsFrame.getGroupAddress(), 0,
+                    sender, apsFrame.getCluster(), transactionId, (byte) 0, (byte) apsFrame.getRadius(),
+                    apsFrame.getPayload());
+        } else if (apsFrame.getDestinationAddress() >= BROADCAST_ADDRESS_MIN) {
+            request = new AF_DATA_REQUEST_EXT(AF_DATA_REQUEST_EXT.ADDRESS_MODE_BROADCAST,
+                    apsFrame.getDestinationAddress(), apsFrame.getDestinationEndpoint(), sender, apsFrame.getCluster(),
+                    transactionId, (byte) 0, (byte) apsFrame.getRadius(), apsFrame.getPayload());
+        } else {
+            request = new AF_DATA_REQUEST(apsFrame.getDestinationAddress(), (short) apsFrame.getDestinationEndpoint(),
+                    sender, apsFrame.getCluster(), transactionId, (byte) 0x30, (byte) apsFrame.getRadius(),
+                    apsFrame.getPayload());
+        }
+
+        try {
+            if (request instanceof AF_DATA_REQUEST_EXT && !broadcastTransactions.startBroadcast()) {
+                throw new ZigBeeException("Unable to send command - too many broadcasts in the network.");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ZigBeeException("Interrupted waiting to send command.");
+        }
 
-            // TODO: How to differentiate group and device addressing?????
-            boolean groupCommand = false;
-            if (!groupCommand) {
-                // final AF_DATA_CONFIRM response =
-                networkManager.sendCommand(new AF_DATA_REQUEST(apsFrame.getDestinationAddress(),
-                        (short) apsFrame.getDestinationEndpoint(), sender, apsFrame.getCluster(),
-                        apsFrame.getSequence(), (byte) 0x30, (byte) apsFrame.getRadius(), apsFrame.getPayload()));
-                // if (response == null) {
-                // throw new ZigBeeException("Unable to send cluster on the ZigBee network due to general error.");
-                // }
-                // if (response.getStatus() != 0) {
-                // throw new ZigBeeException("Unable to send cluster on the ZigBee network due to: "
-                // + ResponseStatus.getStatus(response.getStatus()) + " "
-                // + (response.getErrorMsg() != null ? " - " + response.getErrorMsg() : "") + ")");
-                // }
-            } else {
-                // final AF_DATA_SRSP_EXT response =
-                networkManager.sendCommand(new AF_DATA_REQUEST_EXT(apsFrame.getDestinationAddress(), sender,
-                        apsFrame.getCluster(), apsFrame.getSequence(), (byte) (0), (byte) 0, apsFrame.getPayload()));
-                // if (response.getStatus() != 0) {
-                // throw new ZigBeeException("Unable to send cluster on the ZigBee network due to: "
-                // + ResponseStatus.getStatus(response.getStatus()));
-                // }
+        // If the ZNP has no free buffer, the request is queued rather than blocking the caller
+        final boolean started = afTransactions.startTransaction(transactionId, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sendDataRequest(transactionId, request);
+                } catch (ZigBeeException e) {
+                    logger.debug("Error sending queued AF transaction {}: {}", transactionId, e.getMessage());
+                    notifyDeliveryStatus(transactionId, false);
+                }
             }
+        });
+        if (started) {
+            sendDataRequest(transactionId, request);
+        }
+    }
+
+    /**
+     * Sends an AF data request to the ZNP for a transaction that has been started, and checks the synchronous
+     * response. The transaction is completed if the ZNP rejects the request.
+     *
+     * @param transactionId the AF transaction ID
+     * @param request the {@link AF_DATA_REQUEST} or {@link AF_DATA_REQUEST_EXT}
+     * @throws ZigBeeException if the request is rejected
+     */
+    private void sendDataRequest(final int transactionId, final ZToolPacket request) throws ZigBeeException {
+        final ZToolPacket response = networkManager.sendCommand(request);
+        final int status;
+        if (response instanceof AF_DATA_SRSP) {
+            status = ((AF_DATA_SRSP) response).Status;
+        } else if (response instanceof AF_DATA_SRSP_EXT) {
+            status = ((AF_DATA_SRSP_EXT) response).getStatus();
+        } else {
+            afTransactions.completeTransaction(transactionId);
+            throw new ZigBeeException("Unable to send command on the ZigBee network due to: no response");
+        }
+        if (status != 0) {
+            afTransactions.completeTransaction(transactionId);
+            throw new ZigBeeException(
+                    "Unable to send command on the ZigBee network due to: " + ResponseStatus.getStatus(status));
         }
     }
 
@@ -259,17 +323,8 @@ public class ZigBeeDongleTiCc2531
 
     @Override
     public boolean notify(final AF_INCOMING_MSG clusterMessage) {
-        ZigBeeApsFrame apsFrame = new ZigBeeApsFrame();
-        apsFrame.setCluster(clusterMessage.getClusterId());
-        apsFrame.setDestinationEndpoint(clusterMessage.getDstEndpoint());
-        apsFrame.setSourceEndpoint(clusterMessage.getSrcEndpoint());
-        apsFrame.setProfile(getEndpointProfile(clusterMessage.getDstEndpoint()));
-
-        // nwkHeader.setDestinationAddress(clusterMessage.geta);
-        apsFrame.setSourceAddress(clusterMessage.getSrcAddr());
-        apsFrame.setSequence(clusterMessage.getTransId());
-
-        apsFrame.setPayload(clusterMessage.getData());
+        ZigBeeApsFrame apsFrame = AfIncomingMessage.create(clusterMessage);
+        apsFrame.setProfile(getEndpointProfile(apsFrame.getDestinationEndpoint()));
 
         zigbeeNetworkReceive.receiveCommand(apsFrame);
 
@@ -282,6 +337,11 @@ public class ZigBeeDongleTiCc2531
             return;
         }
 
+        if (packet.getCMD().get16BitValue() == ZToolCMD.AF_DATA_CONFIRM) {
+            handleDataConfirm((AF_DATA_CONFIRM) packet);
+            return;
+        }
+
         switch (packet.getCommandSubsystem()) {
             case AF:
                 return;
@@ -353,6 +413,36 @@ public class ZigBeeDongleTiCc2531
         }
     }
 
+    /**
+     * Completes the AF transaction and notifies the framework of the delivery status
+     *
+     * @param confirm the received {@link AF_DATA_CONFIRM}
+     */
+    private void handleDataConfirm(final AF_DATA_CONFIRM confirm) {
+        if (!afTransactions.completeTransaction(confirm.TransID)) {
+            logger.debug("AF_DATA_CONFIRM for unknown transaction {}", confirm.TransID);
+            return;
+        }
+
+        if (confirm.Status != 0) {
+            logger.debug("AF transaction {} delivery failed: {}", confirm.TransID,
+                    ResponseStatus.getStatus(confirm.Status));
+        }
+        notifyDeliveryStatus(confirm.TransID, confirm.Status == 0);
+    }
+
+    /**
+     * Notifies the framework of the delivery status of a transaction, if it wants to be notified
+     *
+     * @param transactionId the AF transaction ID
+     * @param delivered true if the command was delivered
+     */
+    private void notifyDeliveryStatus(final int transactionId, final boolean delivered) {
+        if (zigbeeNetworkReceive instanceof ZigBeeTransportDeliveryListener) {
+            ((ZigBeeTransportDeliveryListener) zigbeeNetworkReceive).commandDeliveryStatus(transactionId, delivered);
+        }
+    }
+
     @Override
     public void receivedUnclaimedSynchronousCommandResponse(ZToolPacket packet) {
         if (packet.getClass().getSimpleName().endsWith("SRSP")) {
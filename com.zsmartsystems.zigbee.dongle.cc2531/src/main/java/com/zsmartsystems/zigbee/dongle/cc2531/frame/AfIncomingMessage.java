@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531.frame;
+
+import java.util.Arrays;
+
+import com.zsmartsystems.zigbee.ZigBeeApsFrame;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
+
+/**
+ * Creates the {@link ZigBeeApsFrame} for an <i>AF_INCOMING_MSG</i> directly from the received packet data.
+ * <p>
+ * The profile is not included in the message and must be set by the caller from the destination endpoint.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class AfIncomingMessage extends TiDongleReceivePacket {
+    private static final int CLUSTER_ID = ZToolPacket.PAYLOAD_START_INDEX + 2;
+    private static final int SRC_ADDR = ZToolPacket.PAYLOAD_START_INDEX + 4;
+    private static final int SRC_ENDPOINT = ZToolPacket.PAYLOAD_START_INDEX + 6;
+    private static final int DST_ENDPOINT = ZToolPacket.PAYLOAD_START_INDEX + 7;
+    private static final int TRANS_SEQ_NUMBER = ZToolPacket.PAYLOAD_START_INDEX + 15;
+    private static final int LEN = ZToolPacket.PAYLOAD_START_INDEX + 16;
+    private static final int DATA = ZToolPacket.PAYLOAD_START_INDEX + 17;
+
+    public static ZigBeeApsFrame create(ZToolPacket packet) {
+        final int[] data = packet.getPacket();
+
+        ZigBeeApsFrame apsFrame = new ZigBeeApsFrame();
+        apsFrame.setCluster(data[CLUSTER_ID] + (data[CLUSTER_ID + 1] << 8));
+        apsFrame.setDestinationEndpoint(data[DST_ENDPOINT]);
+        apsFrame.setSourceAddress(data[SRC_ADDR] + (data[SRC_ADDR + 1] << 8));
+        apsFrame.setSourceEndpoint(data[SRC_ENDPOINT]);
+        apsFrame.setSequence(data[TRANS_SEQ_NUMBER]);
+        apsFrame.setPayload(Arrays.copyOfRange(data, DATA, DATA + data[LEN]));
+
+        return apsFrame;
+    }
+}
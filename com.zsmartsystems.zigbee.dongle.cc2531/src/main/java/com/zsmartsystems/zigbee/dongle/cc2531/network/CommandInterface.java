@@ -8,6 +8,7 @@
 package com.zsmartsystems.zigbee.dongle.cc2531.network;
 
 import java.io.IOException;
+import java.util.concurrent.Future;
 
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
 
@@ -41,6 +42,15 @@ public interface CommandInterface {
      */
     void sendSynchronousCommand(ZToolPacket packet, SynchronousCommandListener listener, long timeoutMillis)
             throws IOException;
+    /**
+     * Queues a synchronous command packet and returns immediately.
+     * The returned {@link Future} completes with the SRSP, or exceptionally if the command could not be sent or the
+     * SRSP was not received within the timeout.
+     * @param packet the command packet
+     * @param timeoutMillis the timeout in milliseconds, measured from when the command is sent.
+     * @return the {@link Future} response
+     */
+    Future<ZToolPacket> sendSynchronousCommandAsync(ZToolPacket packet, long timeoutMillis);
     /**
      * Sends asynchronous command packet.
      * @param packet the command packet
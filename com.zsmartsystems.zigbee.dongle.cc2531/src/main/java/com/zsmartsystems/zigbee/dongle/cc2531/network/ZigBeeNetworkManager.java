@@ -31,13 +31,18 @@ package com.zsmartsystems.zigbee.dongle.cc2531.network;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.zsmartsystems.zigbee.ExtendedPanId;
 import com.zsmartsystems.zigbee.ZigBeeException;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.impl.AsynchronousResponseCorrelator;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.impl.BlockingCommandReceiver;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ResponseStatus;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolCMD;
@@ -45,7 +50,6 @@ import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_CONFIRM;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_REQUEST;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_REQUEST_EXT;
-import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_SRSP;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_SRSP_EXT;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_INCOMING_MSG;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_REGISTER;
@@ -129,7 +133,7 @@ public class ZigBeeNetworkManager {
     private final short AUTO_PANID = (short) 0xffff;
 
     private CommandInterface commandInterface;
-    private DriverStatus state;
+    private volatile DriverStatus state;
     private NetworkMode mode;
     private int pan = AUTO_PANID;
     private int channel = ZNP_DEFAULT_CHANNEL;
@@ -159,7 +163,10 @@ public class ZigBeeNetworkManager {
      */
     private int currentPanId = -1;
 
-    private final HashMap<Class<?>, Thread> conversation3Way = new HashMap<Class<?>, Thread>();
+    /**
+     * Correlates asynchronous responses with remote requests
+     */
+    private final AsynchronousResponseCorrelator responseCorrelator = new AsynchronousResponseCorrelator();
 
     public ZigBeeNetworkManager(CommandInterface commandInterface, NetworkMode mode, long timeout) {
         this.mode = mode;
@@ -472,6 +479,7 @@ public class ZigBeeNetworkManager {
         // if (!announceListeners.contains(announceListenerFilter)) {
         commandInterface.addAsynchronousCommandListener(announceListenerFilter);
         // }
+        commandInterface.addAsynchronousCommandListener(responseCorrelator);
     }
 
     private boolean waitForHardware() {
@@ -480,30 +488,37 @@ public class ZigBeeNetworkManager {
                 logger.debug("Waiting for hardware to become ready");
                 try {
                     wait();
-                } catch (InterruptedException ignored) {
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
             return isHardwareReady();
         }
     }
 
-    private boolean waitForNetwork() {
-        long before = System.currentTimeMillis();
-        boolean timedOut = false;
+    /**
+     * Waits for the network to become ready. This returns as soon as the dongle reports that the network has started
+     * ({@link DriverStatus#NETWORK_READY}), the driver is closed, or the startup timeout expires.
+     *
+     * @return true if the network is ready
+     */
+    public boolean waitForNetwork() {
+        final long timeoutTime = System.currentTimeMillis() + STARTUP_TIMEOUT;
         synchronized (this) {
-            while (state != DriverStatus.NETWORK_READY && state != DriverStatus.CLOSED && !timedOut) {
+            while (state != DriverStatus.NETWORK_READY && state != DriverStatus.CLOSED) {
+                final long timeout = timeoutTime - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    logger.debug("Timeout waiting for network to become ready");
+                    break;
+                }
                 logger.debug("Waiting for network to become ready");
                 try {
-                    long now = System.currentTimeMillis();
-                    long timeout = STARTUP_TIMEOUT - (now - before);
-                    if (timeout > 0) {
-                        wait(timeout);
-                    } else {
-                        timedOut = true;
-                    }
-                } catch (InterruptedException ignored) {
+                    wait(timeout);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
-
             }
             return isNetworkReady();
         }
@@ -568,77 +583,64 @@ public class ZigBeeNetworkManager {
         return result;
     }
 
+    /**
+     * Sends a request to a remote node and waits for the asynchronous response from that node.
+     * <p>
+     * The response is correlated with the request by the response command and the address of the remote node, so
+     * requests to different nodes may be outstanding at the same time.
+     *
+     * @param request the ZDO request {@link ZToolPacket}
+     * @return the asynchronous response, or null if no response was received
+     */
     public <REQUEST extends ZToolPacket, RESPONSE extends ZToolPacket> RESPONSE sendRemoteRequest(REQUEST request) {
         if (!waitForNetwork()) {
             return null;
         }
-        RESPONSE result;
 
-        waitAndLock3WayConversation(request);
-        final BlockingCommandReceiver waiter = new BlockingCommandReceiver(ZToolCMD.ZDO_MGMT_PERMIT_JOIN_RSP,
-                commandInterface);
-
-        logger.trace("Sending {}", request);
-        ZToolPacket response = sendSynchronous(request);
-        if (response == null) {
-            logger.error("{} timed out waiting for synchronous local response.", request.getClass().getSimpleName());
-            waiter.cleanup();
+        final Future<ZToolPacket> responseFuture = responseCorrelator.expectZdoResponse(request);
+        if (responseFuture == null) {
+            logger.warn("{} has no asynchronous remote response.", request.getClass().getSimpleName());
             return null;
-        } else {
-            logger.error("{} timed out waiting for asynchronous remote response.", request.getClass().getSimpleName());
-            result = (RESPONSE) waiter.getCommand(TIMEOUT);
-            unLock3WayConversation(request);
-            return result;
         }
-    }
 
-    /**
-     * @param request
-     */
-    private void waitAndLock3WayConversation(ZToolPacket request) {
-        synchronized (conversation3Way) {
-            Class<?> clz = request.getClass();
-            Thread requestor;
-            while ((requestor = conversation3Way.get(clz)) != null) {
-                if (!requestor.isAlive()) {
-                    logger.error("Thread {} whom requested {} DIED before unlocking the conversation");
-                    logger.debug(
-                            "The thread {} who was waiting for {} to complete DIED, so we have to remove the lock");
-                    conversation3Way.put(clz, null);
-                    break;
-                }
-                logger.trace("{} is waiting for {} to complete which was issued by {} to complete",
-                        new Object[] { Thread.currentThread(), clz, requestor });
-                try {
-                    conversation3Way.wait();
-                } catch (InterruptedException ex) {
-                } catch (IllegalMonitorStateException ex) {
-                    logger.error("Error in 3 way conversation.", ex);
-                }
-            }
-            conversation3Way.put(clz, Thread.currentThread());
-        }
+        return (RESPONSE) waitForRemoteResponse(request, responseFuture);
     }
 
     /**
-     * Release the lock held for the 3-way communication
+     * Sends a request and waits for the correlated asynchronous response
      *
-     * @param request
+     * @param request the request {@link ZToolPacket}
+     * @param responseFuture the {@link Future} asynchronous response registered with the
+     *            {@link AsynchronousResponseCorrelator}
+     * @return the asynchronous response, or null if the request failed or no response was received
      */
-    private void unLock3WayConversation(ZToolPacket request) {
-        Class<?> clz = request.getClass();
-        Thread requestor;
-        synchronized (conversation3Way) {
-            requestor = conversation3Way.get(clz);
-            conversation3Way.put(clz, null);
-            conversation3Way.notify();
-        }
-        if (requestor == null) {
-            logger.error("LOCKING BROKEN - SOMEONE RELEASE THE LOCK WITHOUT LOCKING IN ADVANCE for {}", clz);
-        } else if (requestor != Thread.currentThread()) {
-            logger.error("Thread {} stolen the answer of {} waited by {}",
-                    new Object[] { Thread.currentThread(), clz, requestor });
+    private ZToolPacket waitForRemoteResponse(final ZToolPacket request, final Future<ZToolPacket> responseFuture) {
+        logger.trace("Sending {}", request);
+        ZToolPacket response = sendSynchronous(request);
+        if (response == null) {
+            logger.error("{} timed out waiting for synchronous local response.", request.getClass().getSimpleName());
+            responseFuture.cancel(false);
+            return null;
+        }
+        if (response.getPacket()[ZToolPacket.PAYLOAD_START_INDEX] != 0) {
+            logger.debug("{} rejected: {}", request.getClass().getSimpleName(),
+                    ResponseStatus.getStatus(response.getPacket()[ZToolPacket.PAYLOAD_START_INDEX]));
+            responseFuture.cancel(false);
+            return null;
         }
+
+        try {
+            return responseFuture.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("{} timed out waiting for asynchronous remote response.",
+                    request.getClass().getSimpleName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("{} failed waiting for asynchronous remote response.", request.getClass().getSimpleName());
+        }
+        responseFuture.cancel(false);
+        return null;
     }
 
     private boolean bootloaderGetOut(int magicByte) {
@@ -823,13 +825,14 @@ public class ZigBeeNetworkManager {
     }
 
     /**
-     * Sends a command without waiting for the response
+     * Sends a command and waits for the synchronous response. Any asynchronous response is not waited for.
      *
      * @param request {@link ZToolPacket}
+     * @return the synchronous response {@link ZToolPacket}, or null if no response was received
      * @throws ZigBeeException
      */
-    public void sendCommand(final ZToolPacket request) throws ZigBeeException {
-        sendSynchronous(request);
+    public ZToolPacket sendCommand(final ZToolPacket request) throws ZigBeeException {
+        return sendSynchronous(request);
     }
 
     private ZToolPacket sendSynchronous(final ZToolPacket request) {
@@ -837,72 +840,43 @@ public class ZigBeeNetworkManager {
     }
 
     private ZToolPacket sendSynchronous(final ZToolPacket request, int timeout) {
-        final ZToolPacket[] response = new ZToolPacket[] { null };
-        // final int RESEND_MAX_RETRY = 3;
-        int sending = 1;
-
         logger.trace("{} sending as synchronous command.", request.getClass().getSimpleName());
 
-        SynchronousCommandListener listener = new SynchronousCommandListener() {
-            @Override
-            public void receivedCommandResponse(ZToolPacket packet) {
-                logger.trace(" {} received as synchronous command.", packet.getClass().getSimpleName());
-                synchronized (response) {
-                    // Do not set response[0] again.
-                    response[0] = packet;
-                    response.notify();
-                }
-            }
-        };
-
-        while (sending <= RESEND_MAX_RETRY) {
+        for (int sending = 1; sending <= RESEND_MAX_RETRY; sending++) {
+            final Future<ZToolPacket> future = commandInterface.sendSynchronousCommandAsync(request, timeout);
             try {
-                try {
-                    commandInterface.sendSynchronousCommand(request, listener, timeout);
-                } catch (IOException e) {
-                    logger.error("Synchronous command send failed due to IO exception. ", e);
-                    break;
-                } catch (Exception ex) {
-                    logger.error("Synchronous command send failed due to unexpected exception.", ex);
+                // The command interface expires the request once the timeout elapses after it is sent
+                final ZToolPacket response = future.get();
+                if (response != null) {
+                    logger.trace("{} -> {}", request.getClass().getSimpleName(), response.getClass().getSimpleName());
                 }
-                logger.trace("{} sent (synchronous command, attempt {}).", request.getClass().getSimpleName(), sending);
-                synchronized (response) {
-                    long wakeUpTime = System.currentTimeMillis() + timeout;
-                    while (response[0] == null && wakeUpTime > System.currentTimeMillis()) {
-                        final long sleeping = wakeUpTime - System.currentTimeMillis();
-                        logger.trace("Waiting for synchronous command up to {}ms till {} Unixtime", sleeping,
-                                wakeUpTime);
-                        if (sleeping <= 0) {
-                            break;
-                        }
-                        try {
-                            response.wait(sleeping);
-                        } catch (InterruptedException ignored) {
-                        }
-                    }
+                return response;
+            } catch (InterruptedException e) {
+                future.cancel(false);
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (CancellationException e) {
+                logger.debug("{} cancelled.", request.getClass().getSimpleName());
+                return null;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    logger.error("Synchronous command send failed due to IO exception. ", e.getCause());
+                    return null;
                 }
-                if (response[0] != null) {
-                    logger.trace("{} -> {}", request.getClass().getSimpleName(),
-                            response[0].getClass().getSimpleName());
-                    break; // Break out as we have response.
-                } else {
+                if (e.getCause() instanceof TimeoutException) {
                     logger.debug("{} executed and timed out while waiting for response.",
                             request.getClass().getSimpleName());
-                }
-                if (RESEND_ONLY_EXCEPTION) {
-                    break;
+                    if (RESEND_ONLY_EXCEPTION) {
+                        return null;
+                    }
                 } else {
-                    logger.debug("Failed to send {} [attempt {}]", request.getClass().getSimpleName(), sending);
-                    sending++;
+                    logger.error("Synchronous command send failed due to unexpected exception.", e.getCause());
                 }
-            } catch (Exception ignored) {
-                logger.debug("Failed to send {} [attempt {}]", request.getClass().getSimpleName(), sending);
-                logger.trace("Sending operation failed due to ", ignored);
-                sending++;
             }
+            logger.debug("Failed to send {} [attempt {}]", request.getClass().getSimpleName(), sending);
         }
 
-        return response[0];
+        return null;
     }
 
     public AF_REGISTER_SRSP sendAFRegister(AF_REGISTER request) {
@@ -918,20 +892,11 @@ public class ZigBeeNetworkManager {
         if (!waitForNetwork()) {
             return null;
         }
-        AF_DATA_CONFIRM result = null;
-
-        waitAndLock3WayConversation(request);
-        final BlockingCommandReceiver waiter = new BlockingCommandReceiver(ZToolCMD.AF_DATA_CONFIRM, commandInterface);
 
-        AF_DATA_SRSP response = (AF_DATA_SRSP) sendSynchronous(request);
-        if (response == null || response.Status != 0) {
-            waiter.cleanup();
-        } else {
-            result = (AF_DATA_CONFIRM) waiter.getCommand(TIMEOUT);
-        }
-        unLock3WayConversation(request);
-
-        return result;
+        // The confirm is correlated on the transaction ID
+        final int transactionId = request.getPacket()[ZToolPacket.PAYLOAD_START_INDEX + 6];
+        return (AF_DATA_CONFIRM) waitForRemoteResponse(request,
+                responseCorrelator.expectResponse(ZToolCMD.AF_DATA_CONFIRM, transactionId));
     }
 
     /**
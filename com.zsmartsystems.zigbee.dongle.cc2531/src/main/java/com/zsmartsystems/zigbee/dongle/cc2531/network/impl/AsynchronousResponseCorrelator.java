@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531.network.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.dongle.cc2531.network.AsynchronousCommandListener;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolCMD;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
+
+/**
+ * Correlates asynchronous responses (AREQ) with the requests that caused them.
+ * <p>
+ * A caller registers the response it expects before sending the request, and receives a {@link Future} that is
+ * completed when the response arrives. Responses are matched on the command ID and a correlation key - for ZDO
+ * responses this is the network address of the remote node, unless the request was broadcast, and for
+ * <i>AF_DATA_CONFIRM</i> it is the transaction ID. This allows requests of the same type to different nodes to be outstanding at the same time. Where more than one
+ * caller waits for the same response, they are completed in the order they were registered.
+ * <p>
+ * Callers should cancel the future if they stop waiting so the expectation is removed.
+ *
+ * @author Chris Jackson
+ */
+public class AsynchronousResponseCorrelator implements AsynchronousCommandListener {
+    /**
+     * The {@link Logger}.
+     */
+    private final Logger logger = LoggerFactory.getLogger(AsynchronousResponseCorrelator.class);
+
+    /**
+     * The address mode of a request sent to a single node
+     */
+    private static final int ADDRESS_MODE_16BIT = 0x02;
+
+    /**
+     * The lowest network address used for broadcasts
+     */
+    private static final int BROADCAST_ADDRESS_MIN = 0xFFF8;
+
+    /**
+     * Map of ZDO request command IDs to the asynchronous response command ID
+     */
+    private static final Map<Integer, Integer> zdoResponses = new HashMap<Integer, Integer>();
+
+    static {
+        zdoResponses.put(ZToolCMD.ZDO_NWK_ADDR_REQ, ZToolCMD.ZDO_NWK_ADDR_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_IEEE_ADDR_REQ, ZToolCMD.ZDO_IEEE_ADDR_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_NODE_DESC_REQ, ZToolCMD.ZDO_NODE_DESC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_POWER_DESC_REQ, ZToolCMD.ZDO_POWER_DESC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_SIMPLE_DESC_REQ, ZToolCMD.ZDO_SIMPLE_DESC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_ACTIVE_EP_REQ, ZToolCMD.ZDO_ACTIVE_EP_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MATCH_DESC_REQ, ZToolCMD.ZDO_MATCH_DESC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_COMPLEX_DESC_REQ, ZToolCMD.ZDO_COMPLEX_DESC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_USER_DESC_REQ, ZToolCMD.ZDO_USER_DESC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_SERVER_DISC_REQ, ZToolCMD.ZDO_SERVER_DISC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_END_DEVICE_BIND_REQ, ZToolCMD.ZDO_END_DEVICE_BIND_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_BIND_REQ, ZToolCMD.ZDO_BIND_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_UNBIND_REQ, ZToolCMD.ZDO_UNBIND_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MGMT_NWK_DISC_REQ, ZToolCMD.ZDO_MGMT_NWK_DISC_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MGMT_LQI_REQ, ZToolCMD.ZDO_MGMT_LQI_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MGMT_RTG_REQ, ZToolCMD.ZDO_MGMT_RTG_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MGMT_BIND_REQ, ZToolCMD.ZDO_MGMT_BIND_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MGMT_LEAVE_REQ, ZToolCMD.ZDO_MGMT_LEAVE_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MGMT_DIRECT_JOIN_REQ, ZToolCMD.ZDO_MGMT_DIRECT_JOIN_RSP);
+        zdoResponses.put(ZToolCMD.ZDO_MGMT_PERMIT_JOIN_REQ, ZToolCMD.ZDO_MGMT_PERMIT_JOIN_RSP);
+    }
+
+    /**
+     * The expected responses in the order they were registered
+     */
+    private final LinkedList<ExpectedResponse> expectedResponses = new LinkedList<ExpectedResponse>();
+
+    /**
+     * Registers the response expected for a remote ZDO request. The response is matched on the response command ID
+     * and the destination address of the request.
+     *
+     * @param request the ZDO request {@link ZToolPacket}
+     * @return the {@link Future} response, or null if the request has no asynchronous response
+     */
+    public Future<ZToolPacket> expectZdoResponse(final ZToolPacket request) {
+        final int requestId = request.getCMD().get16BitValue();
+        final Integer responseId = zdoResponses.get(requestId);
+        if (responseId == null) {
+            return null;
+        }
+
+        return expectResponse(responseId, getRequestKey(request));
+    }
+
+    /**
+     * Registers an expected response.
+     *
+     * @param commandId the command ID of the response
+     * @param key the correlation key of the response, or null to accept any response with the command ID
+     * @return the {@link Future} response
+     */
+    public Future<ZToolPacket> expectResponse(final int commandId, final Integer key) {
+        final ExpectedResponse expectedResponse = new ExpectedResponse(commandId, key);
+        synchronized (expectedResponses) {
+            expectedResponses.add(expectedResponse);
+        }
+        return expectedResponse;
+    }
+
+    /**
+     * Gets the number of responses being waited for
+     *
+     * @return the number of outstanding expected responses
+     */
+    public int getExpectedResponseCount() {
+        synchronized (expectedResponses) {
+            removeCompleted();
+            return expectedResponses.size();
+        }
+    }
+
+    @Override
+    public void receivedAsynchronousCommand(final ZToolPacket packet) {
+        if (packet.isError()) {
+            return;
+        }
+
+        final int commandId = packet.getCMD().get16BitValue();
+        final Integer key = getKey(packet);
+        ExpectedResponse matched = null;
+        synchronized (expectedResponses) {
+            removeCompleted();
+            final Iterator<ExpectedResponse> iterator = expectedResponses.iterator();
+            while (iterator.hasNext()) {
+                final ExpectedResponse expectedResponse = iterator.next();
+                if (expectedResponse.commandId == commandId
+                        && (expectedResponse.key == null || expectedResponse.key.equals(key))) {
+                    iterator.remove();
+                    matched = expectedResponse;
+                    break;
+                }
+            }
+        }
+
+        if (matched != null) {
+            logger.trace("Correlated response {} with key {}", packet.getClass().getSimpleName(), key);
+            matched.setResponse(packet);
+        }
+    }
+
+    @Override
+    public void receivedUnclaimedSynchronousCommandResponse(final ZToolPacket packet) {
+        // Only asynchronous responses are correlated
+    }
+
+    /**
+     * Removes expected responses that have been cancelled. Must be called with the {@link #expectedResponses} lock
+     * held.
+     */
+    private void removeCompleted() {
+        final Iterator<ExpectedResponse> iterator = expectedResponses.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the correlation key from a received packet
+     *
+     * @param packet the received {@link ZToolPacket}
+     * @return the correlation key, or null if the packet has no key
+     */
+    private Integer getKey(final ZToolPacket packet) {
+        switch (packet.getCMD().get16BitValue()) {
+            case ZToolCMD.AF_DATA_CONFIRM:
+                // Status, Endpoint, TransID
+                return getByte(packet, 2);
+            case ZToolCMD.ZDO_NWK_ADDR_RSP:
+            case ZToolCMD.ZDO_IEEE_ADDR_RSP:
+                // Status, IEEEAddr, NwkAddr
+                return getShort(packet, 9);
+            default:
+                if (packet.getCommandSubsystem() == ZToolPacket.CommandSubsystem.ZDO) {
+                    // ZDO responses start with the address of the node that sent the response
+                    return getShort(packet, 0);
+                }
+                return null;
+        }
+    }
+
+    /**
+     * Gets the correlation key for the response to a ZDO request. This is the destination address of the request.
+     *
+     * @param request the ZDO request {@link ZToolPacket}
+     * @return the correlation key, or null if any node may respond
+     */
+    private Integer getRequestKey(final ZToolPacket request) {
+        switch (request.getCMD().get16BitValue()) {
+            case ZToolCMD.ZDO_NWK_ADDR_REQ:
+                // The network address request is broadcast, so the responding node isn't known
+                return null;
+            case ZToolCMD.ZDO_MGMT_PERMIT_JOIN_REQ:
+                // AddrMode, DstAddr, Duration, TCSignificance
+                final Integer addrMode = getByte(request, 0);
+                if (addrMode == null || addrMode != ADDRESS_MODE_16BIT) {
+                    return null;
+                }
+                final Integer address = getShort(request, 1);
+                if (address == null || address >= BROADCAST_ADDRESS_MIN) {
+                    return null;
+                }
+                return address;
+            default:
+                return getShort(request, 0);
+        }
+    }
+
+    private Integer getByte(final ZToolPacket packet, final int offset) {
+        final int[] data = packet.getPacket();
+        final int index = ZToolPacket.PAYLOAD_START_INDEX + offset;
+        if (data.length <= index) {
+            return null;
+        }
+        return data[index];
+    }
+
+    private Integer getShort(final ZToolPacket packet, final int offset) {
+        final int[] data = packet.getPacket();
+        final int index = ZToolPacket.PAYLOAD_START_INDEX + offset;
+        if (data.length <= index + 1) {
+            return null;
+        }
+        return data[index] + (data[index + 1] << 8);
+    }
+
+    /**
+     * An expected response. The {@link Future} completes when the response is received.
+     */
+    private static class ExpectedResponse extends FutureTask<ZToolPacket> {
+        private final int commandId;
+        private final Integer key;
+
+        ExpectedResponse(int commandId, Integer key) {
+            super(new Runnable() {
+                @Override
+                public void run() {
+                    // The future is completed by the response - it is never run
+                }
+            }, null);
+            this.commandId = commandId;
+            this.key = key;
+        }
+
+        void setResponse(ZToolPacket response) {
+            set(response);
+        }
+    }
+}
@@ -7,6 +7,9 @@
  */
 package com.zsmartsystems.zigbee.dongle.cc2531.network.impl;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,7 +37,11 @@ public class BlockingCommandReceiver implements AsynchronousCommandListener {
     /**
      * The command packet.
      */
-    private ZToolPacket commandPacket = null;
+    private volatile ZToolPacket commandPacket = null;
+    /**
+     * Latch released when the command packet is received.
+     */
+    private final CountDownLatch commandReceived = new CountDownLatch(1);
 
     /**
      * The constructor for setting expected command ID and command interface.
@@ -57,18 +64,13 @@ public class BlockingCommandReceiver implements AsynchronousCommandListener {
      * @return the command packet or null if time out occurs.
      */
     public ZToolPacket getCommand(final long timeoutMillis) {
-        synchronized (this) {
-            final long wakeUpTime = System.currentTimeMillis() + timeoutMillis;
-            while (commandPacket == null && wakeUpTime > System.currentTimeMillis()) {
-                try {
-                    this.wait(wakeUpTime - System.currentTimeMillis());
-                } catch (InterruptedException e) {
-                    logger.trace("Blocking command receive timed out.", e);
-                }
+        try {
+            if (!commandReceived.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.trace("Timeout {} expired and no packet with {} received", timeoutMillis, commandId);
             }
-        }
-        if (commandPacket == null) {
-            logger.trace("Timeout {} expired and no packet with {} received", timeoutMillis, commandId);
+        } catch (InterruptedException e) {
+            logger.trace("Blocking command receive interrupted.");
+            Thread.currentThread().interrupt();
         }
         cleanup();
         return commandPacket;
@@ -78,10 +80,7 @@ public class BlockingCommandReceiver implements AsynchronousCommandListener {
      * Clean up asynchronous command listener from command interface.
      */
     public void cleanup() {
-        synchronized (this) {
-            commandInterface.removeAsynchronousCommandListener(this);
-            this.notify();
-        }
+        commandInterface.removeAsynchronousCommandListener(this);
     }
 
     @Override
@@ -95,11 +94,10 @@ public class BlockingCommandReceiver implements AsynchronousCommandListener {
             logger.trace("Received unexpected packet: " + packet.getClass().getSimpleName());
             return;
         }
-        synchronized (this) {
-            commandPacket = packet;
-            logger.trace("Received expected response: {}", packet.getClass().getSimpleName());
-            cleanup();
-        }
+        commandPacket = packet;
+        logger.trace("Received expected response: {}", packet.getClass().getSimpleName());
+        commandReceived.countDown();
+        cleanup();
     }
 
     @Override
@@ -33,9 +33,18 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,17 +86,22 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
      */
     private final boolean supportMultipleSynchrounsCommand = false;
     /**
-     * Synchronous command listeners.
+     * Synchronous commands waiting to be sent, in the order they were queued.
      */
-    private final Hashtable<Short, SynchronousCommandListener> synchronousCommandListeners = new Hashtable<Short, SynchronousCommandListener>();
+    private final LinkedList<SynchronousCommandRequest> synchronousCommandQueue = new LinkedList<SynchronousCommandRequest>();
+    /**
+     * Synchronous commands that have been sent and are waiting for the SRSP, keyed by command ID.
+     */
+    private final Map<Short, SynchronousCommandRequest> synchronousCommandsPending = new HashMap<Short, SynchronousCommandRequest>();
     /**
      * Asynchronous command listeners.
      */
     private final HashSet<AsynchronousCommandListener> asynchrounsCommandListeners = new HashSet<AsynchronousCommandListener>();
     /**
-     * Timeout times for synchronous command listeners.
+     * Single thread executor used to write synchronous commands to the port and to expire commands that don't receive
+     * a response. Using a single thread ensures commands are written in the order they are released from the queue.
      */
-    private final HashMap<SynchronousCommandListener, Long> synchronousCommandListenerTimeouts = new HashMap<SynchronousCommandListener, Long>();
+    private ScheduledExecutorService executor;
 
     /**
      * Constructor for configuring the ZigBee Network connection parameters.
@@ -117,6 +131,21 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
      */
     @Override
     public void close() {
+        final List<SynchronousCommandRequest> requests = new ArrayList<SynchronousCommandRequest>();
+        synchronized (synchronousCommandQueue) {
+            requests.addAll(synchronousCommandQueue);
+            requests.addAll(synchronousCommandsPending.values());
+            synchronousCommandQueue.clear();
+            synchronousCommandsPending.clear();
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        for (SynchronousCommandRequest request : requests) {
+            request.cancel(false);
+        }
+
         synchronized (port) {
             if (parser != null) {
                 parser.setClosing();
@@ -157,13 +186,19 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
         switch (cmdId.getMsb() & 0xE0) {
             // Received incoming message which can be either message from dongle or remote device.
             case 0x40:
-                logger.debug("<-- {} ({})", packet.getClass().getSimpleName(), ByteUtils.toBase16(packet.getPacket()));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("<-- {} ({})", packet.getClass().getSimpleName(),
+                            ByteUtils.toBase16(packet.getPacket()));
+                }
                 notifyAsynchronousCommand(packet);
                 break;
 
             // Received synchronous command response.
             case 0x60:
-                logger.debug("<-  {} ({})", packet.getClass().getSimpleName(), ByteUtils.toBase16(packet.getPacket()));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("<-  {} ({})", packet.getClass().getSimpleName(),
+                            ByteUtils.toBase16(packet.getPacket()));
+                }
                 notifySynchronousCommand(packet);
                 break;
 
@@ -186,33 +221,10 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
         sendRaw(pck);
     }
 
-    /**
-     * Cleans expired synchronous command listeners.
-     */
-    private void cleanExpiredSynchronousCommandListeners() {
-        final long now = System.currentTimeMillis();
-        final ArrayList<Short> expired = new ArrayList<Short>();
-        synchronized (synchronousCommandListeners) {
-            final Iterator<Map.Entry<Short, SynchronousCommandListener>> i = synchronousCommandListeners.entrySet()
-                    .iterator();
-            while (i.hasNext()) {
-                Map.Entry<Short, SynchronousCommandListener> entry = i.next();
-
-                final long expiration = synchronousCommandListenerTimeouts.get(entry.getValue());
-                if (expiration != -1L && expiration < now) {
-                    expired.add(entry.getKey());
-                }
-            }
-
-            for (Short key : expired) {
-                synchronousCommandListeners.remove(key);
-            }
-            synchronousCommandListeners.notifyAll();
-        }
-    }
-
     /**
      * Sends synchronous command and adds listener.
+     * <p>
+     * The command is queued and this method returns immediately. The listener is called when the SRSP is received.
      *
      * @param packet the command packet
      * @param listener the synchronous command response listener
@@ -222,13 +234,23 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
     @Override
     public void sendSynchronousCommand(final ZToolPacket packet, final SynchronousCommandListener listener,
             final long timeoutMillis) throws IOException {
-        if (timeoutMillis == -1L) {
-            synchronousCommandListenerTimeouts.put(listener, -1L);
-        } else {
-            final long expirationTime = System.currentTimeMillis() + timeoutMillis;
-            synchronousCommandListenerTimeouts.put(listener, expirationTime);
-        }
+        queueSynchronousCommand(packet, listener, timeoutMillis);
+    }
+
+    /**
+     * Queues a synchronous command.
+     *
+     * @param packet the command packet
+     * @param timeoutMillis the timeout, or -1 to wait indefinitely
+     * @return the {@link Future} response
+     */
+    @Override
+    public Future<ZToolPacket> sendSynchronousCommandAsync(final ZToolPacket packet, final long timeoutMillis) {
+        return queueSynchronousCommand(packet, null, timeoutMillis);
+    }
 
+    private SynchronousCommandRequest queueSynchronousCommand(final ZToolPacket packet,
+            final SynchronousCommandListener listener, final long timeoutMillis) {
         final DoubleByte cmdId = packet.getCMD();
         final int value = (cmdId.getMsb() & 0xE0);
         if (value != 0x20) {
@@ -237,38 +259,123 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
                             + " instead of " + 0x20 + "\nPacket " + packet.getClass().getName() + "\n" + packet);
         }
 
-        cleanExpiredSynchronousCommandListeners();
+        final SynchronousCommandRequest request = new SynchronousCommandRequest(packet, listener, timeoutMillis);
+        synchronized (synchronousCommandQueue) {
+            logger.trace("Queueing synchronous command {}", packet);
+            synchronousCommandQueue.add(request);
+        }
+        sendNextSynchronousCommands();
+
+        return request;
+    }
+
+    /**
+     * Releases queued synchronous commands to the writer. A command is only sent once there is no other command
+     * with the same ID waiting for its response, or, if {@link #supportMultipleSynchrounsCommand} is false, once
+     * there is no command outstanding at all.
+     */
+    private void sendNextSynchronousCommands() {
+        synchronized (synchronousCommandQueue) {
+            final Iterator<SynchronousCommandRequest> iterator = synchronousCommandQueue.iterator();
+            while (iterator.hasNext()) {
+                if (!supportMultipleSynchrounsCommand && !synchronousCommandsPending.isEmpty()) {
+                    return;
+                }
+
+                final SynchronousCommandRequest request = iterator.next();
+                if (request.isDone()) {
+                    // Cancelled while queued
+                    iterator.remove();
+                    continue;
+                }
+                if (synchronousCommandsPending.containsKey(request.id)) {
+                    continue;
+                }
+
+                iterator.remove();
+                synchronousCommandsPending.put(request.id, request);
+                startSynchronousCommand(request);
+            }
+        }
+    }
+
+    /**
+     * Passes the command to the writer and starts the response timer. Must be called with the
+     * {@link #synchronousCommandQueue} lock held.
+     *
+     * @param request the {@link SynchronousCommandRequest} to send
+     */
+    private void startSynchronousCommand(final SynchronousCommandRequest request) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor();
+        }
 
-        if (supportMultipleSynchrounsCommand) {
-            synchronized (synchronousCommandListeners) {
-                final short id = (short) (cmdId.get16BitValue() & 0x1FFF);
-                while (synchronousCommandListeners.get(cmdId) != null) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
                     try {
-                        logger.trace("Waiting for other request {} to complete", id);
-                        synchronousCommandListeners.wait(500);
-                        cleanExpiredSynchronousCommandListeners();
-                    } catch (InterruptedException ignored) {
+                        logger.trace("Sending SynchronousCommand {} ", request.packet);
+                        sendPacket(request.packet);
+                    } catch (IOException e) {
+                        logger.debug("Synchronous command {} send failed: ", request.packet.getClass().getSimpleName(),
+                                e);
+                        completeSynchronousCommand(request, null, e);
                     }
                 }
-                synchronousCommandListeners.put(id, listener);
+            });
+
+            if (request.timeout != -1L) {
+                request.timer = executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        logger.debug("Synchronous command {} timed out", request.packet.getClass().getSimpleName());
+                        completeSynchronousCommand(request, null, new TimeoutException(
+                                "No response to " + request.packet.getClass().getSimpleName()));
+                    }
+                }, request.timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            synchronousCommandsPending.remove(request.id);
+            request.setFailed(new IOException("Command interface is closed"));
+        }
+    }
+
+    /**
+     * Completes an outstanding synchronous command and releases the next queued commands.
+     *
+     * @param request the {@link SynchronousCommandRequest} to complete
+     * @param response the received response, or null if the command failed
+     * @param failure the reason the command failed if response is null
+     * @return true if the request was outstanding
+     */
+    private boolean completeSynchronousCommand(final SynchronousCommandRequest request, final ZToolPacket response,
+            final Throwable failure) {
+        synchronized (synchronousCommandQueue) {
+            if (synchronousCommandsPending.get(request.id) != request) {
+                return false;
+            }
+            synchronousCommandsPending.remove(request.id);
+            if (request.timer != null) {
+                request.timer.cancel(false);
             }
+        }
+
+        if (response == null) {
+            request.setFailed(failure);
         } else {
-            synchronized (synchronousCommandListeners) {
-                final short id = (short) (cmdId.get16BitValue() & 0x1FFF);
-                while (!synchronousCommandListeners.isEmpty()) {
-                    try {
-                        logger.trace("Waiting for other request to complete");
-                        synchronousCommandListeners.wait(500);
-                        cleanExpiredSynchronousCommandListeners();
-                    } catch (InterruptedException ignored) {
-                    }
+            request.setResponse(response);
+            if (request.listener != null) {
+                try {
+                    request.listener.receivedCommandResponse(response);
+                } catch (Exception e) {
+                    logger.error("Error in synchronous command response processing: ", e);
                 }
-                logger.trace("Put synchronousCommandListeners listener for {} command", id);
-                synchronousCommandListeners.put(id, listener);
             }
         }
-        logger.trace("Sending SynchronousCommand {} ", packet);
-        sendPacket(packet);
+
+        sendNextSynchronousCommands();
+        return true;
     }
 
     /**
@@ -301,9 +408,11 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
                 // Socket has not been opened or is already closed.
                 return;
             }
+            final byte[] data = new byte[packet.length];
             for (int i = 0; i < packet.length; i++) {
-                out.write(packet[i]);
+                data[i] = (byte) packet[i];
             }
+            out.write(data);
             out.flush();
         }
     }
@@ -314,29 +423,26 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
      * @param packet the received packet
      */
     private void notifySynchronousCommand(final ZToolPacket packet) {
-        final DoubleByte cmdId = packet.getCMD();
-        synchronized (synchronousCommandListeners) {
-            final short id = (short) (cmdId.get16BitValue() & 0x1FFF);
-            final SynchronousCommandListener listener = synchronousCommandListeners.get(id);
-            if (listener != null) {
-                listener.receivedCommandResponse(packet);
-                synchronousCommandListeners.remove(id);
-                synchronousCommandListeners.notifyAll();
-            } else {
-                // Notify asynchronous command listeners of unclaimed asynchronous command responses.
-                final AsynchronousCommandListener[] listeners;
-                synchronized (asynchrounsCommandListeners) {
-                    listeners = asynchrounsCommandListeners.toArray(new AsynchronousCommandListener[] {});
-                }
-                for (final AsynchronousCommandListener asynchronousCommandListener : listeners) {
-                    try {
-                        asynchronousCommandListener.receivedUnclaimedSynchronousCommandResponse(packet);
-                    } catch (Throwable e) {
-                        logger.error("Error in incoming asynchronous message processing: ", e);
-                    }
-                }
-            }
+        final short id = (short) (packet.getCMD().get16BitValue() & 0x1FFF);
+        final SynchronousCommandRequest request;
+        synchronized (synchronousCommandQueue) {
+            request = synchronousCommandsPending.get(id);
+        }
+        if (request != null && completeSynchronousCommand(request, packet, null)) {
+            return;
+        }
 
+        // Notify asynchronous command listeners of unclaimed asynchronous command responses.
+        final AsynchronousCommandListener[] listeners;
+        synchronized (asynchrounsCommandListeners) {
+            listeners = asynchrounsCommandListeners.toArray(new AsynchronousCommandListener[] {});
+        }
+        for (final AsynchronousCommandListener asynchronousCommandListener : listeners) {
+            try {
+                asynchronousCommandListener.receivedUnclaimedSynchronousCommandResponse(packet);
+            } catch (Throwable e) {
+                logger.error("Error in incoming asynchronous message processing: ", e);
+            }
         }
     }
 
@@ -392,4 +498,37 @@ public class CommandInterfaceImpl implements ZToolPacketHandler, CommandInterfac
             }
         }
     }
+
+    /**
+     * A queued synchronous command. The {@link Future} completes when the SRSP is received, or fails if the command
+     * can't be sent or times out.
+     */
+    private static class SynchronousCommandRequest extends FutureTask<ZToolPacket> {
+        private final ZToolPacket packet;
+        private final short id;
+        private final SynchronousCommandListener listener;
+        private final long timeout;
+        private ScheduledFuture<?> timer;
+
+        SynchronousCommandRequest(ZToolPacket packet, SynchronousCommandListener listener, long timeout) {
+            super(new Runnable() {
+                @Override
+                public void run() {
+                    // The request is completed by the response - it is never run
+                }
+            }, null);
+            this.packet = packet;
+            this.id = (short) (packet.getCMD().get16BitValue() & 0x1FFF);
+            this.listener = listener;
+            this.timeout = timeout;
+        }
+
+        void setResponse(ZToolPacket response) {
+            set(response);
+        }
+
+        void setFailed(Throwable failure) {
+            setException(failure);
+        }
+    }
 }
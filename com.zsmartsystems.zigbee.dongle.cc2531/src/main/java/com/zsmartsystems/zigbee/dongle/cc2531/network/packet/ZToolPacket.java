@@ -124,6 +124,36 @@ public class ZToolPacket {
         packet[packet.length - 1] = this.FCS;
     }
 
+    /**
+     * Builds the packet directly from the frame data received into a byte buffer, so that no intermediate array is
+     * needed.
+     *
+     * @param ApiId the command ID
+     * @param frameData the buffer holding the frame data
+     * @param length the number of bytes of frame data in the buffer
+     */
+    protected void buildPacket(DoubleByte ApiId, byte[] frameData, int length) {
+        packet = new int[length + 5];
+        packet[0] = START_BYTE;
+
+        Checksum checksum = new Checksum();
+        this.LEN = length;
+        packet[1] = this.LEN;
+        checksum.addByte(packet[1]);
+        packet[2] = ApiId.getMsb();
+        checksum.addByte(packet[2]);
+        packet[3] = ApiId.getLsb();
+        checksum.addByte(packet[3]);
+        this.CMD = ApiId;
+        for (int i = 0; i < length; i++) {
+            packet[PAYLOAD_START_INDEX + i] = frameData[i] & 0xFF;
+            checksum.addByte(packet[PAYLOAD_START_INDEX + i]);
+        }
+        checksum.compute();
+        this.FCS = checksum.getChecksum();
+        packet[packet.length - 1] = this.FCS;
+    }
+
     public CommandType getCommandType() {
         if (type != null) {
             return type;
@@ -66,6 +66,10 @@ public class ZToolPacketParser implements Runnable {
      * The input stream.
      */
     private final InputStream inputStream;
+    /**
+     * The packet stream used to read each packet from the input stream.
+     */
+    private final ZToolPacketStream packetStream;
     /**
      * The parser parserThread.
      */
@@ -92,6 +96,7 @@ public class ZToolPacketParser implements Runnable {
             this.inputStream = new MarkableInputStream(inputStream);
         }
         this.packetHandler = packetHandler;
+        this.packetStream = new ZToolPacketStream(this.inputStream);
 
         parserThread = new Thread(this, "ZToolPacketParser");
         parserThread.setDaemon(true);
@@ -109,7 +114,6 @@ public class ZToolPacketParser implements Runnable {
                 int val = inputStream.read();
                 if (val == ZToolPacket.START_BYTE) {
                     inputStream.mark(256);
-                    final ZToolPacketStream packetStream = new ZToolPacketStream(inputStream);
                     final ZToolPacket response = packetStream.parsePacket();
 
                     logger.trace("Response is {} -> {}", response.getClass().getSimpleName(), response);
@@ -93,10 +93,13 @@ public class ZToolPacketStream implements IIntArrayInputStream {
 
     private Checksum checksum = new Checksum();
 
-    private boolean generic = false;
-
     private final InputStream in;
 
+    /**
+     * Buffer used to read the frame data. This is reused for every packet read from the stream.
+     */
+    private final byte[] buffer = new byte[256];
+
     public ZToolPacketStream(InputStream in) {
         this.in = in;
     }
@@ -106,31 +109,21 @@ public class ZToolPacketStream implements IIntArrayInputStream {
         Exception exception;
         done = false;
         bytesRead = 0;
+        checksum = new Checksum();
         try {
             final ZToolPacket response;
             // int byteLength = this.read("Length");
             this.length = read("Length");
             // log.debug("data length is " + ByteUtils.formatByte(length.getLength()));
-            final int[] frameData;
             final int apiIdMSB = this.read("API PROFILE_ID_HOME_AUTOMATION MSB");
             final int apiIdLSB = this.read("API PROFILE_ID_HOME_AUTOMATION LSB");
             final DoubleByte apiId = new DoubleByte(apiIdMSB, apiIdLSB);
-            // TODO Remove generic never used
-            // generic = true;
-            if (generic) {
-                // log.info("Parsing data as generic");
-                int i = 0;
-                frameData = new int[length];
-                // Read all data bytes without parsing
-                while (i < frameData.length) {
-                    frameData[i] = this.read("Data " + i + "-th");
-                    i++;
-                }
-
-                response = new ZToolPacket(apiId, frameData);
+            final int frameLength = this.readRemainingBytes();
+            if (apiId.get16BitValue() == ZToolCMD.AF_INCOMING_MSG) {
+                // Fast path for the most frequent frame - decoded straight from the stream buffer
+                response = new AF_INCOMING_MSG(buffer, frameLength);
             } else {
-                frameData = this.readRemainingBytes();
-                response = parsePayload(apiId, frameData);
+                response = parsePayload(apiId, getFrameData(frameLength));
             }
             // response.setFCS(this.read("Checksum"));
             int fcs = this.read("Checksum");
@@ -176,8 +169,6 @@ public class ZToolPacketStream implements IIntArrayInputStream {
                 return new AF_DATA_SRSP(payload);
             case ZToolCMD.AF_DATA_SRSP_EXT:
                 return new AF_DATA_SRSP_EXT(payload);
-            case ZToolCMD.AF_INCOMING_MSG:
-                return new AF_INCOMING_MSG(payload);
             case ZToolCMD.AF_REGISTER_SRSP:
                 return new AF_REGISTER_SRSP(payload);
             case ZToolCMD.ZB_ALLOW_BIND_CONFIRM:
@@ -308,7 +299,9 @@ public class ZToolPacketStream implements IIntArrayInputStream {
     @Override
     public int read(final String context) throws IOException {
         int b = read();
-        logger.trace("Read {}  byte, val is {}", context, ByteUtils.formatByte(b));
+        if (logger.isTraceEnabled()) {
+            logger.trace("Read {}  byte, val is {}", context, ByteUtils.formatByte(b));
+        }
         return b;
     }
 
@@ -350,15 +343,43 @@ public class ZToolPacketStream implements IIntArrayInputStream {
         return b;
     }
 
-    // TODO remove it seems useless, we can replace with a reading of all the bytes of the payload
-    private int[] readRemainingBytes() throws IOException {
-        int[] value = new int[length - this.getFrameDataBytesRead()];
+    /**
+     * Reads the remaining frame data, excluding the checksum, in a single block read into the stream buffer.
+     *
+     * @return the number of bytes of frame data in the buffer
+     * @throws IOException if the stream ends before the frame is complete
+     */
+    private int readRemainingBytes() throws IOException {
+        final int frameLength = length - this.getFrameDataBytesRead();
+
+        int offset = 0;
+        while (offset < frameLength) {
+            final int count = in.read(buffer, offset, frameLength - offset);
+            if (count == -1) {
+                throw new ZToolParseException("Read -1 from input stream while reading packet!");
+            }
+            offset += count;
+        }
 
-        for (int i = 0; i < value.length; i++) {
-            value[i] = this.read("Remaining bytes " + (value.length - i));
-            // log.debug("byte " + i + " is " + value[i]);
+        for (int i = 0; i < frameLength; i++) {
+            checksum.addByte(buffer[i] & 0xFF);
         }
+        bytesRead += frameLength;
+
+        return frameLength;
+    }
 
+    /**
+     * Copies the frame data from the stream buffer for the packet classes that are created from an array
+     *
+     * @param frameLength the number of bytes of frame data in the buffer
+     * @return the frame data
+     */
+    private int[] getFrameData(final int frameLength) {
+        final int[] value = new int[frameLength];
+        for (int i = 0; i < frameLength; i++) {
+            value[i] = buffer[i] & 0xFF;
+        }
         return value;
     }
 
@@ -16,31 +16,62 @@ import com.zsmartsystems.zigbee.dongle.cc2531.zigbee.util.Integers;
  * AF_DATA_REQUEST_EXT message implementation according to Texas Instruments CC2530-ZNP specification.
  */
 public class AF_DATA_REQUEST_EXT extends ZToolPacket {
+    /**
+     * Destination address mode for a 16 bit group address
+     */
+    public static final int ADDRESS_MODE_GROUP = 0x01;
+    /**
+     * Destination address mode for a 16 bit network address
+     */
+    public static final int ADDRESS_MODE_16BIT = 0x02;
+    /**
+     * Destination address mode for a 16 bit broadcast address
+     */
+    public static final int ADDRESS_MODE_BROADCAST = 0x0F;
 
     public AF_DATA_REQUEST_EXT(int groupdId, short srcEndPoint, int j, int k, byte bitmapOpt, byte radius,
             int[] payload) {
+        this(ADDRESS_MODE_GROUP, groupdId, 0, srcEndPoint, j, k, bitmapOpt, radius, payload);
+    }
+
+    /**
+     * Creates an AF_DATA_REQUEST_EXT
+     *
+     * @param addressMode the destination address mode - {@link #ADDRESS_MODE_GROUP}, {@link #ADDRESS_MODE_16BIT} or
+     *            {@link #ADDRESS_MODE_BROADCAST}
+     * @param destinationAddress the group, network or broadcast address
+     * @param destinationEndpoint the destination endpoint. This is ignored for group addressing.
+     * @param srcEndPoint the source endpoint
+     * @param clusterId the cluster ID
+     * @param transId the transaction ID
+     * @param bitmapOpt the transmit options
+     * @param radius the maximum number of hops
+     * @param payload the payload
+     */
+    public AF_DATA_REQUEST_EXT(int addressMode, int destinationAddress, int destinationEndpoint, short srcEndPoint,
+            int clusterId, int transId, byte bitmapOpt, byte radius, int[] payload) {
 
         if (payload.length > 230) {
             throw new IllegalArgumentException("Payload is too big, maxium is 230");
         }
 
         int[] framedata = new int[payload.length + 20];
-        framedata[0] = 0x01; // Destination address mode 1 (group addressing)
-        framedata[1] = Integers.getByteAsInteger(groupdId, 0); // Source address
-        framedata[2] = Integers.getByteAsInteger(groupdId, 1); // Source address
-        framedata[3] = 0x00; // Source address
-        framedata[4] = 0x00; // Source address
-        framedata[5] = 0x00; // Source address
-        framedata[6] = 0x00; // Source address
-        framedata[7] = 0x00; // Source address
-        framedata[8] = 0x00; // Source address
-        framedata[9] = 0x00; // Destination Endpoint
+        framedata[0] = addressMode & 0xFF; // Destination address mode
+        framedata[1] = Integers.getByteAsInteger(destinationAddress, 0); // Destination address
+        framedata[2] = Integers.getByteAsInteger(destinationAddress, 1); // Destination address
+        framedata[3] = 0x00; // Destination address
+        framedata[4] = 0x00; // Destination address
+        framedata[5] = 0x00; // Destination address
+        framedata[6] = 0x00; // Destination address
+        framedata[7] = 0x00; // Destination address
+        framedata[8] = 0x00; // Destination address
+        framedata[9] = destinationEndpoint & 0xFF; // Destination Endpoint
         framedata[10] = 0x00; // Destination PAN ID
         framedata[11] = 0x00; // Destination PAN ID
         framedata[12] = srcEndPoint & 0xFF;
-        framedata[13] = Integers.getByteAsInteger(j, 0);
-        framedata[14] = Integers.getByteAsInteger(j, 1);
-        framedata[15] = k & 0xFF;
+        framedata[13] = Integers.getByteAsInteger(clusterId, 0);
+        framedata[14] = Integers.getByteAsInteger(clusterId, 1);
+        framedata[15] = transId & 0xFF;
         framedata[16] = bitmapOpt & 0xFF;
         framedata[17] = radius & 0xFF;
         framedata[18] = Integers.getByteAsInteger(payload.length, 0);
@@ -30,12 +30,10 @@
 
 package com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Arrays;
 
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolCMD;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
-import com.zsmartsystems.zigbee.dongle.cc2531.zigbee.util.ByteUtils;
 import com.zsmartsystems.zigbee.dongle.cc2531.zigbee.util.DoubleByte;
 import com.zsmartsystems.zigbee.dongle.cc2531.zigbee.util.ZToolAddress16;
 
@@ -47,8 +45,6 @@ import com.zsmartsystems.zigbee.dongle.cc2531.zigbee.util.ZToolAddress16;
  */
 public class AF_INCOMING_MSG extends ZToolPacket /* implements IINDICATION,IAF */ {
 
-    private final static Logger profiler = LoggerFactory.getLogger("profiling." + AF_INCOMING_MSG.class.getName());
-
     /// <name>TI.ZPI2.AF_INCOMING_MSG.ClusterID</name>
     /// <summary>specifies the cluster PROFILE_ID_HOME_AUTOMATION</summary>
     public DoubleByte ClusterID;
@@ -94,29 +90,40 @@ public class AF_INCOMING_MSG extends ZToolPacket /* implements IINDICATION,IAF *
     }
 
     public AF_INCOMING_MSG(int[] framedata) {
-        profiler.debug("AF_INCOMING_MSG: creating object");
-        this.GroupID = new DoubleByte(framedata[1], framedata[0]);
-        this.ClusterID = new DoubleByte(framedata[3], framedata[2]);
-        this.SrcAddr = new ZToolAddress16(framedata[5], framedata[4]);
-        this.SrcEndpoint = framedata[6];
-        this.DstEndpoint = framedata[7];
-        this.WasBroadcast = framedata[8];
-        this.LinkQuality = framedata[9];
-        this.SecurityUse = framedata[10];
-        byte[] bytes = new byte[4];
-        bytes[3] = (byte) framedata[11];
-        bytes[2] = (byte) framedata[12];
-        bytes[1] = (byte) framedata[13];
-        bytes[0] = (byte) framedata[14];
-        this.Timestamp = ByteUtils.convertMultiByteToLong(bytes);
-        this.TransSeqNumber = framedata[15];
-        this.Len = framedata[16];
-        this.Data = new int[this.Len];
-        for (int i = 0; i < this.Data.length; i++) {
-            this.Data[i] = framedata[17 + i];
-        }
         super.buildPacket(new DoubleByte(ZToolCMD.AF_INCOMING_MSG), framedata);
-        profiler.debug("AF_INCOMING_MSG: object created");
+        parseFields();
+    }
+
+    /**
+     * Creates the message directly from the frame data received into the packet stream buffer
+     *
+     * @param buffer the buffer holding the frame data
+     * @param length the number of bytes of frame data in the buffer
+     */
+    public AF_INCOMING_MSG(byte[] buffer, int length) {
+        super.buildPacket(new DoubleByte(ZToolCMD.AF_INCOMING_MSG), buffer, length);
+        parseFields();
+    }
+
+    /**
+     * Sets the fields from the packet. The data is only copied from the packet if it is requested with
+     * {@link #getData()}.
+     */
+    private void parseFields() {
+        final int[] framedata = super.packet;
+        final int start = ZToolPacket.PAYLOAD_START_INDEX;
+        this.GroupID = new DoubleByte(framedata[start + 1], framedata[start]);
+        this.ClusterID = new DoubleByte(framedata[start + 3], framedata[start + 2]);
+        this.SrcAddr = new ZToolAddress16(framedata[start + 5], framedata[start + 4]);
+        this.SrcEndpoint = framedata[start + 6];
+        this.DstEndpoint = framedata[start + 7];
+        this.WasBroadcast = framedata[start + 8];
+        this.LinkQuality = framedata[start + 9];
+        this.SecurityUse = framedata[start + 10];
+        this.Timestamp = framedata[start + 11] + (framedata[start + 12] << 8) + (framedata[start + 13] << 16)
+                + ((long) framedata[start + 14] << 24);
+        this.TransSeqNumber = framedata[start + 15];
+        this.Len = framedata[start + 16];
     }
 
     /// <name>TI.ZPI2.AF_INCOMING_MSG.SECURITY_STATUS</name>
@@ -158,6 +165,10 @@ public class AF_INCOMING_MSG extends ZToolPacket /* implements IINDICATION,IAF *
     }
 
     public int[] getData() {
+        if (Data == null) {
+            final int start = ZToolPacket.PAYLOAD_START_INDEX + 17;
+            Data = Arrays.copyOfRange(super.packet, start, start + Len);
+        }
         return Data;
     }
 
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.ZigBeeApsFrame;
+import com.zsmartsystems.zigbee.dongle.cc2531.frame.AfIncomingMessage;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_INCOMING_MSG;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class AF_INCOMING_MSG_Test extends Cc2351TestPacket {
+
+    @Test
+    public void testReceive() {
+        String packetString = "FE 14 44 81 00 00 06 00 34 12 01 01 00 50 00 01 02 03 04 85 03 18 85 0B B5";
+        ZToolPacket data = getPacket(packetString);
+        assertEquals(packetString, data.getPacketString());
+        assertTrue(data instanceof AF_INCOMING_MSG);
+
+        AF_INCOMING_MSG message = (AF_INCOMING_MSG) data;
+        assertEquals(0x04030201L, message.Timestamp);
+        assertTrue(Arrays.equals(getPacketData("18 85 0B"), message.getData()));
+
+        ZigBeeApsFrame apsFrame = AfIncomingMessage.create(data);
+
+        assertEquals(0x0006, apsFrame.getCluster());
+        assertEquals(0x1234, apsFrame.getSourceAddress());
+        assertEquals(1, apsFrame.getSourceEndpoint());
+        assertEquals(1, apsFrame.getDestinationEndpoint());
+        assertEquals(0x85, apsFrame.getSequence());
+        assertTrue(Arrays.equals(getPacketData("18 85 0B"), apsFrame.getPayload()));
+    }
+
+}
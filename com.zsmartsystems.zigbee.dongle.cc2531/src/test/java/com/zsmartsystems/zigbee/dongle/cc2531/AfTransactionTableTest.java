@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class AfTransactionTableTest {
+    @Test
+    public void creditWindow() {
+        AfTransactionTable table = new AfTransactionTable(2);
+        Runnable sender = Mockito.mock(Runnable.class);
+
+        assertTrue(table.startTransaction(1, sender));
+        assertTrue(table.startTransaction(2, sender));
+        assertEquals(2, table.getOutstandingTransactions());
+
+        assertTrue(table.completeTransaction(1));
+        assertFalse(table.completeTransaction(1));
+        assertFalse(table.completeTransaction(3));
+        assertEquals(1, table.getOutstandingTransactions());
+
+        // The returned credit allows another transaction to start
+        assertTrue(table.startTransaction(3, sender));
+        assertEquals(2, table.getOutstandingTransactions());
+        Mockito.verifyZeroInteractions(sender);
+
+        table.shutdown();
+    }
+
+    @Test
+    public void reusedTransactionId() {
+        AfTransactionTable table = new AfTransactionTable(2);
+        Runnable sender = Mockito.mock(Runnable.class);
+
+        assertTrue(table.startTransaction(1, sender));
+        assertTrue(table.startTransaction(1, sender));
+        assertEquals(1, table.getOutstandingTransactions());
+
+        // Both credits are available again
+        assertTrue(table.completeTransaction(1));
+        assertTrue(table.startTransaction(2, sender));
+        assertTrue(table.startTransaction(3, sender));
+        assertEquals(2, table.getOutstandingTransactions());
+
+        table.shutdown();
+    }
+
+    @Test
+    public void queuedTransaction() throws InterruptedException {
+        AfTransactionTable table = new AfTransactionTable(1);
+        Runnable sender = Mockito.mock(Runnable.class);
+        final CountDownLatch sent = new CountDownLatch(1);
+
+        assertTrue(table.startTransaction(1, sender));
+
+        // Without a credit the transaction is queued rather than blocking
+        assertFalse(table.startTransaction(2, new Runnable() {
+            @Override
+            public void run() {
+                sent.countDown();
+            }
+        }));
+        assertEquals(1, table.getOutstandingTransactions());
+        assertEquals(1, table.getQueuedTransactions());
+
+        // The returned credit passes to the queued transaction, which is then sent
+        assertTrue(table.completeTransaction(1));
+        assertTrue(sent.await(1, TimeUnit.SECONDS));
+        assertEquals(1, table.getOutstandingTransactions());
+        assertEquals(0, table.getQueuedTransactions());
+        assertTrue(table.completeTransaction(2));
+        assertEquals(0, table.getOutstandingTransactions());
+        Mockito.verifyZeroInteractions(sender);
+
+        table.shutdown();
+    }
+}
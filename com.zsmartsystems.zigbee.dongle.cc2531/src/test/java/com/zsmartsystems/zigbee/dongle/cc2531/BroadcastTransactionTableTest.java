@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BroadcastTransactionTableTest {
+    @Test
+    public void deliveryTime() throws InterruptedException {
+        BroadcastTransactionTable table = new BroadcastTransactionTable(2, 200);
+
+        assertEquals(2, table.getAvailableEntries());
+        assertTrue(table.startBroadcast());
+        assertTrue(table.startBroadcast());
+        assertEquals(0, table.getAvailableEntries());
+
+        // Entries are returned once the delivery time has passed
+        long start = System.currentTimeMillis();
+        assertTrue(table.startBroadcast());
+        assertTrue(System.currentTimeMillis() - start >= 150);
+
+        table.shutdown();
+    }
+}
@@ -9,17 +9,21 @@ package com.zsmartsystems.zigbee.dongle.cc2531.network;
 
 import static org.junit.Assert.assertTrue;
 
-import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.zsmartsystems.zigbee.dongle.cc2531.network.CommandInterface;
-import com.zsmartsystems.zigbee.dongle.cc2531.network.SynchronousCommandListener;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.ZigBeeNetworkManager;
 import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
 
@@ -30,21 +34,27 @@ import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
  */
 public class ZigBeeNetworkManagerTest {
     protected ArgumentCaptor<ZToolPacket> argumentPacket;
-    protected ArgumentCaptor<SynchronousCommandListener> argumentListener;
     protected ArgumentCaptor<Long> argumentTimeout;
 
     private CommandInterface getCommandInterface() {
         CommandInterface commandInterface = Mockito.mock(CommandInterface.class);
         argumentPacket = ArgumentCaptor.forClass(ZToolPacket.class);
-        argumentListener = ArgumentCaptor.forClass(SynchronousCommandListener.class);
         argumentTimeout = ArgumentCaptor.forClass(Long.class);
-        try {
-            Mockito.doNothing().when(commandInterface).sendSynchronousCommand(argumentPacket.capture(),
-                    argumentListener.capture(), argumentTimeout.capture());
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
+        Mockito.when(commandInterface.sendSynchronousCommandAsync(argumentPacket.capture(), argumentTimeout.capture()))
+                .thenAnswer(new Answer<Future<ZToolPacket>>() {
+                    @Override
+                    public Future<ZToolPacket> answer(InvocationOnMock invocation) {
+                        // Complete without a response
+                        FutureTask<ZToolPacket> future = new FutureTask<ZToolPacket>(new Callable<ZToolPacket>() {
+                            @Override
+                            public ZToolPacket call() throws Exception {
+                                throw new TimeoutException();
+                            }
+                        });
+                        future.run();
+                        return future;
+                    }
+                });
 
         return commandInterface;
     }
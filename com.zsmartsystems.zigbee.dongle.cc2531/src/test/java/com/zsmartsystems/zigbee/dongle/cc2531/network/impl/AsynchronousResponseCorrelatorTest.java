@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531.network.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolCMD;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_CONFIRM;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.zdo.ZDO_MGMT_LEAVE_REQ;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.zdo.ZDO_MGMT_LEAVE_RSP;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.zdo.ZDO_MGMT_NWK_UPDATE_REQ;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.zdo.ZDO_MGMT_PERMIT_JOIN_REQ;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.zdo.ZDO_MGMT_PERMIT_JOIN_RSP;
+import com.zsmartsystems.zigbee.dongle.cc2531.zigbee.util.ZToolAddress16;
+import com.zsmartsystems.zigbee.dongle.cc2531.zigbee.util.ZToolAddress64;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class AsynchronousResponseCorrelatorTest {
+    private ZToolPacket getLeaveRequest(int address) {
+        return new ZDO_MGMT_LEAVE_REQ(new ZToolAddress16(address >> 8, address & 0xff), new ZToolAddress64(0), 0);
+    }
+
+    private ZToolPacket getLeaveResponse(int address) {
+        return new ZDO_MGMT_LEAVE_RSP(new int[] { address & 0xff, address >> 8, 0 });
+    }
+
+    @Test
+    public void correlateByAddress() throws Exception {
+        AsynchronousResponseCorrelator correlator = new AsynchronousResponseCorrelator();
+
+        Future<ZToolPacket> future1 = correlator.expectZdoResponse(getLeaveRequest(0x1234));
+        Future<ZToolPacket> future2 = correlator.expectZdoResponse(getLeaveRequest(0x5678));
+        assertEquals(2, correlator.getExpectedResponseCount());
+
+        // Responses from different nodes complete the matching request, regardless of order
+        ZToolPacket response2 = getLeaveResponse(0x5678);
+        correlator.receivedAsynchronousCommand(response2);
+        assertFalse(future1.isDone());
+        assertTrue(future2.isDone());
+        assertEquals(response2, future2.get());
+
+        // Unexpected node
+        correlator.receivedAsynchronousCommand(getLeaveResponse(0x9999));
+        assertFalse(future1.isDone());
+
+        ZToolPacket response1 = getLeaveResponse(0x1234);
+        correlator.receivedAsynchronousCommand(response1);
+        assertEquals(response1, future1.get());
+        assertEquals(0, correlator.getExpectedResponseCount());
+    }
+
+    @Test
+    public void cancelled() {
+        AsynchronousResponseCorrelator correlator = new AsynchronousResponseCorrelator();
+
+        Future<ZToolPacket> future1 = correlator.expectZdoResponse(getLeaveRequest(0x1234));
+        Future<ZToolPacket> future2 = correlator.expectZdoResponse(getLeaveRequest(0x1234));
+        future1.cancel(false);
+        assertEquals(1, correlator.getExpectedResponseCount());
+
+        correlator.receivedAsynchronousCommand(getLeaveResponse(0x1234));
+        assertTrue(future2.isDone());
+        assertEquals(0, correlator.getExpectedResponseCount());
+    }
+
+    @Test
+    public void dataConfirm() throws Exception {
+        AsynchronousResponseCorrelator correlator = new AsynchronousResponseCorrelator();
+
+        Future<ZToolPacket> future1 = correlator.expectResponse(ZToolCMD.AF_DATA_CONFIRM, 12);
+        Future<ZToolPacket> future2 = correlator.expectResponse(ZToolCMD.AF_DATA_CONFIRM, 13);
+
+        ZToolPacket confirm = new AF_DATA_CONFIRM(0, 1, 13);
+        correlator.receivedAsynchronousCommand(confirm);
+        assertFalse(future1.isDone());
+        assertEquals(confirm, future2.get());
+    }
+
+    @Test
+    public void noResponse() {
+        AsynchronousResponseCorrelator correlator = new AsynchronousResponseCorrelator();
+
+        assertNull(correlator.expectZdoResponse(new ZDO_MGMT_NWK_UPDATE_REQ(0xFFFD, 0x0F, 0x800, 0xFE, 0, 0)));
+    }
+
+    @Test
+    public void permitJoin() throws Exception {
+        AsynchronousResponseCorrelator correlator = new AsynchronousResponseCorrelator();
+
+        // The destination address follows the address mode
+        Future<ZToolPacket> future1 = correlator.expectZdoResponse(
+                new ZDO_MGMT_PERMIT_JOIN_REQ((byte) 0x02, new ZToolAddress16(0x12, 0x34), 60, true));
+        correlator.receivedAsynchronousCommand(new ZDO_MGMT_PERMIT_JOIN_RSP(new int[] { 0x02, 0x00, 0 }));
+        assertFalse(future1.isDone());
+        ZToolPacket response1 = new ZDO_MGMT_PERMIT_JOIN_RSP(new int[] { 0x34, 0x12, 0 });
+        correlator.receivedAsynchronousCommand(response1);
+        assertEquals(response1, future1.get());
+
+        // A broadcast is completed by the response from any node
+        Future<ZToolPacket> future2 = correlator.expectZdoResponse(
+                new ZDO_MGMT_PERMIT_JOIN_REQ((byte) 0x0F, new ZToolAddress16(0xFF, 0xFC), 60, true));
+        ZToolPacket response2 = new ZDO_MGMT_PERMIT_JOIN_RSP(new int[] { 0x78, 0x56, 0 });
+        correlator.receivedAsynchronousCommand(response2);
+        assertEquals(response2, future2.get());
+        assertEquals(0, correlator.getExpectedResponseCount());
+    }
+}
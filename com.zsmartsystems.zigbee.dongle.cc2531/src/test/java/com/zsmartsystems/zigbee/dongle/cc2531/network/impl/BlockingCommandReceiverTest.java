@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531.network.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.zsmartsystems.zigbee.dongle.cc2531.network.CommandInterface;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolCMD;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.af.AF_DATA_CONFIRM;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.system.SYS_RESET_RESPONSE;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlockingCommandReceiverTest {
+    @Test
+    public void receive() {
+        CommandInterface commandInterface = Mockito.mock(CommandInterface.class);
+        final BlockingCommandReceiver receiver = new BlockingCommandReceiver(ZToolCMD.SYS_RESET_RESPONSE,
+                commandInterface);
+        Mockito.verify(commandInterface, Mockito.times(1)).addAsynchronousCommandListener(receiver);
+
+        final ZToolPacket response = new SYS_RESET_RESPONSE(new int[] { 0, 0, 0, 0, 0, 0 });
+        new Thread() {
+            @Override
+            public void run() {
+                receiver.receivedAsynchronousCommand(new AF_DATA_CONFIRM(0, 1, 2));
+                receiver.receivedAsynchronousCommand(response);
+            }
+        }.start();
+
+        assertEquals(response, receiver.getCommand(5000));
+        Mockito.verify(commandInterface, Mockito.atLeastOnce()).removeAsynchronousCommandListener(receiver);
+    }
+
+    @Test
+    public void timeout() {
+        CommandInterface commandInterface = Mockito.mock(CommandInterface.class);
+        BlockingCommandReceiver receiver = new BlockingCommandReceiver(ZToolCMD.SYS_RESET_RESPONSE,
+                commandInterface);
+
+        assertNull(receiver.getCommand(50));
+        Mockito.verify(commandInterface, Mockito.times(1)).removeAsynchronousCommandListener(receiver);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.cc2531.network.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.zsmartsystems.zigbee.dongle.cc2531.network.SynchronousCommandListener;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.ZToolPacket;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.simple.ZB_GET_DEVICE_INFO;
+import com.zsmartsystems.zigbee.dongle.cc2531.network.packet.simple.ZB_GET_DEVICE_INFO_RSP;
+import com.zsmartsystems.zigbee.transport.ZigBeePort;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class CommandInterfaceImplTest {
+    private ZigBeePort getPort(OutputStream out) {
+        ZigBeePort port = Mockito.mock(ZigBeePort.class);
+        Mockito.when(port.getOutputStream()).thenReturn(out);
+        return port;
+    }
+
+    private ZToolPacket getResponse() {
+        return new ZB_GET_DEVICE_INFO_RSP(new int[] { 1, 0, 0, 0, 0, 0, 0, 0, 0 });
+    }
+
+    @Test
+    public void queuedUntilResponse() throws Exception {
+        OutputStream out = Mockito.mock(OutputStream.class);
+        CommandInterfaceImpl commandInterface = new CommandInterfaceImpl(getPort(out));
+
+        SynchronousCommandListener listener = Mockito.mock(SynchronousCommandListener.class);
+        commandInterface.sendSynchronousCommand(new ZB_GET_DEVICE_INFO(1), listener, 5000);
+        Future<ZToolPacket> future = commandInterface.sendSynchronousCommandAsync(new ZB_GET_DEVICE_INFO(1), 5000);
+
+        // Only the first command is sent until its response is received
+        Mockito.verify(out, Mockito.timeout(1000).times(1)).flush();
+        Thread.sleep(100);
+        Mockito.verify(out, Mockito.times(1)).flush();
+        assertFalse(future.isDone());
+
+        ZToolPacket response = getResponse();
+        commandInterface.handlePacket(response);
+        Mockito.verify(listener, Mockito.times(1)).receivedCommandResponse(response);
+        Mockito.verify(out, Mockito.timeout(1000).times(2)).flush();
+        assertFalse(future.isDone());
+
+        response = getResponse();
+        commandInterface.handlePacket(response);
+        assertTrue(future.isDone());
+        assertEquals(response, future.get());
+
+        commandInterface.close();
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        OutputStream out = Mockito.mock(OutputStream.class);
+        CommandInterfaceImpl commandInterface = new CommandInterfaceImpl(getPort(out));
+
+        Future<ZToolPacket> future1 = commandInterface.sendSynchronousCommandAsync(new ZB_GET_DEVICE_INFO(1), 50);
+        Future<ZToolPacket> future2 = commandInterface.sendSynchronousCommandAsync(new ZB_GET_DEVICE_INFO(1), 5000);
+
+        try {
+            future1.get(1000, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // The expired command releases the next one
+        Mockito.verify(out, Mockito.timeout(1000).times(2)).flush();
+        commandInterface.handlePacket(getResponse());
+        assertTrue(future2.isDone());
+
+        commandInterface.close();
+    }
+
+    @Test
+    public void sendFailure() throws Exception {
+        OutputStream out = Mockito.mock(OutputStream.class);
+        Mockito.doThrow(new IOException()).when(out).flush();
+        CommandInterfaceImpl commandInterface = new CommandInterfaceImpl(getPort(out));
+
+        Future<ZToolPacket> future = commandInterface.sendSynchronousCommandAsync(new ZB_GET_DEVICE_INFO(1), 5000);
+        try {
+            future.get(1000, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        commandInterface.close();
+    }
+
+    @Test
+    public void close() {
+        OutputStream out = Mockito.mock(OutputStream.class);
+        CommandInterfaceImpl commandInterface = new CommandInterfaceImpl(getPort(out));
+
+        Future<ZToolPacket> future1 = commandInterface.sendSynchronousCommandAsync(new ZB_GET_DEVICE_INFO(1), 5000);
+        Future<ZToolPacket> future2 = commandInterface.sendSynchronousCommandAsync(new ZB_GET_DEVICE_INFO(1), 5000);
+        commandInterface.close();
+
+        assertTrue(future1.isCancelled());
+        assertTrue(future2.isCancelled());
+    }
+}
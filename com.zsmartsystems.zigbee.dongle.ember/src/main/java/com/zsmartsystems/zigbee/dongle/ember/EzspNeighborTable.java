@@ -7,14 +7,28 @@
  */
 package com.zsmartsystems.zigbee.dongle.ember;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrame;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetConfigurationValueRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetConfigurationValueResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetNeighborRequest;
@@ -23,14 +37,28 @@ import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetRouteTableEntry
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetRouteTableEntryResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNeighborCountRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNeighborCountResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberNeighborTableEntry;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberRouteTableEntry;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberStatus;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EzspConfigId;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EzspStatus;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspSingleResponseTransaction;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspTransaction;
-import com.zsmartsystems.zigbee.dongle.ember.internal.EmberNetworkInitialisation;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportTableListener;
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable.DiscoveryState;
 
 /**
- * Class uses the native Ember commands to retrieve the neighbor table
+ * Class uses the native Ember commands to periodically retrieve the neighbor and route tables from the NCP.
+ * <p>
+ * Requests are sent asynchronously and pipelined so that several requests are outstanding at once, but the number of
+ * outstanding requests is limited so that other traffic to the NCP is not delayed. Polls are scheduled with a fixed
+ * delay and a minimum period, so a slow poll can never cause polls to overlap or run back to back.
+ * <p>
+ * The results of the last successful poll are retained as a snapshot which can be read with {@link #getNeighbors()}
+ * and {@link #getRoutes()}. After each poll the snapshot is compared with the previous one and the
+ * {@link ZigBeeTransportTableListener} is notified of the entries that were added, updated or removed.
  *
  * @author Chris Jackson
  *
@@ -39,77 +67,376 @@ public class EzspNeighborTable {
     /**
      * The {@link Logger}.
      */
-    private final Logger logger = LoggerFactory.getLogger(EmberNetworkInitialisation.class);
+    private final Logger logger = LoggerFactory.getLogger(EzspNeighborTable.class);
+
+    /**
+     * The minimum period between polls in seconds
+     */
+    private static final int MIN_UPDATE_PERIOD = 10;
+
+    /**
+     * The maximum number of requests that will be outstanding with the NCP at any time
+     */
+    private static final int MAX_OUTSTANDING_REQUESTS = 4;
+
+    /**
+     * The time to wait for a response from the NCP in milliseconds
+     */
+    private static final int TRANSACTION_TIMEOUT = 5000;
+
+    /**
+     * Route table entry status value for an unused entry
+     */
+    private static final int ROUTE_STATUS_UNUSED = 3;
 
     /**
      * Scheduler to run the service
      */
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private ScheduledExecutorService scheduler;
 
-    private AshFrameHandler ashHandler;
+    private final AshFrameHandler ashHandler;
 
-    private int routingEntries;
+    private final ZigBeeTransportTableListener tableListener;
+
+    /**
+     * The size of the route table in the NCP. This is read on the first poll.
+     */
+    private Integer routeTableSize;
+
+    /**
+     * The neighbors from the last successful poll, keyed by the short ID
+     */
+    private Map<Integer, EmberNeighborTableEntry> neighbors = Collections.emptyMap();
+
+    /**
+     * The active routes from the last successful poll, keyed by the destination
+     */
+    private Map<Integer, EmberRouteTableEntry> routes = Collections.emptyMap();
 
     /**
      * @param ashHandler the {@link AshFrameHandler} used to communicate with the NCP
+     * @param tableListener the {@link ZigBeeTransportTableListener} to notify of changes to the tables, or null
      */
-    public EzspNeighborTable(AshFrameHandler ashHandler, int updatePeriod) {
+    public EzspNeighborTable(AshFrameHandler ashHandler, ZigBeeTransportTableListener tableListener) {
         this.ashHandler = ashHandler;
+        this.tableListener = tableListener;
+    }
 
-        Runnable neighborUpdateThread = new Runnable() {
+    /**
+     * Starts polling the neighbor and route tables
+     *
+     * @param updatePeriod the period between polls in seconds. Periods below 10 seconds will be limited to 10 seconds.
+     */
+    public synchronized void start(int updatePeriod) {
+        if (scheduler != null) {
+            return;
+        }
+
+        int period = Math.max(updatePeriod, MIN_UPDATE_PERIOD);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
             @Override
             public void run() {
-                updateNeighbors();
+                try {
+                    updateTables();
+                } catch (Exception e) {
+                    logger.debug("Exception updating neighbor table: ", e);
+                }
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops polling the neighbor and route tables
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Gets the neighbors from the last successful poll of the NCP
+     *
+     * @return unmodifiable {@link Collection} of {@link EmberNeighborTableEntry}
+     */
+    public synchronized Collection<EmberNeighborTableEntry> getNeighbors() {
+        return Collections.unmodifiableCollection(neighbors.values());
+    }
+
+    /**
+     * Gets the active routes from the last successful poll of the NCP
+     *
+     * @return unmodifiable {@link Collection} of {@link EmberRouteTableEntry}
+     */
+    public synchronized Collection<EmberRouteTableEntry> getRoutes() {
+        return Collections.unmodifiableCollection(routes.values());
+    }
+
+    /**
+     * Polls the neighbor and route tables, updates the snapshot, and notifies the transport if anything changed.
+     *
+     * @return true if the poll completed successfully
+     */
+    boolean updateTables() {
+        if (routeTableSize == null) {
+            routeTableSize = getConfiguration(EzspConfigId.EZSP_CONFIG_ROUTE_TABLE_SIZE);
+            if (routeTableSize == null) {
+                return false;
+            }
+        }
+
+        EzspNeighborCountResponse neighborCountResponse = (EzspNeighborCountResponse) sendRequest(
+                new EzspNeighborCountRequest(), EzspNeighborCountResponse.class);
+        if (neighborCountResponse == null) {
+            return false;
+        }
+
+        List<EzspFrameRequest> requests = new ArrayList<EzspFrameRequest>();
+        for (int index = 0; index < neighborCountResponse.getValue(); index++) {
+            EzspGetNeighborRequest neighborRequest = new EzspGetNeighborRequest();
+            neighborRequest.setIndex(index);
+            requests.add(neighborRequest);
+        }
+        List<EzspFrameResponse> neighborResponses = sendRequests(requests, EzspGetNeighborResponse.class);
+        if (neighborResponses == null) {
+            return false;
+        }
+
+        requests.clear();
+        for (int index = 0; index < routeTableSize; index++) {
+            EzspGetRouteTableEntryRequest routeRequest = new EzspGetRouteTableEntryRequest();
+            routeRequest.setIndex(index);
+            requests.add(routeRequest);
+        }
+        List<EzspFrameResponse> routeResponses = sendRequests(requests, EzspGetRouteTableEntryResponse.class);
+        if (routeResponses == null) {
+            return false;
+        }
+
+        Map<Integer, EmberNeighborTableEntry> newNeighbors = new TreeMap<Integer, EmberNeighborTableEntry>();
+        for (EzspFrameResponse response : neighborResponses) {
+            EzspGetNeighborResponse neighborResponse = (EzspGetNeighborResponse) response;
+            if (neighborResponse.getStatus() == EmberStatus.EMBER_SUCCESS) {
+                newNeighbors.put(neighborResponse.getValue().getShortId(), neighborResponse.getValue());
+            }
+        }
+
+        Map<Integer, EmberRouteTableEntry> newRoutes = new TreeMap<Integer, EmberRouteTableEntry>();
+        for (EzspFrameResponse response : routeResponses) {
+            EzspGetRouteTableEntryResponse routeResponse = (EzspGetRouteTableEntryResponse) response;
+            if (routeResponse.getStatus() == EmberStatus.EMBER_SUCCESS
+                    && routeResponse.getValue().getStatus() != ROUTE_STATUS_UNUSED
+                    && routeResponse.getValue().getDestination() != 0xFFFF) {
+                newRoutes.put(routeResponse.getValue().getDestination(), routeResponse.getValue());
             }
-        };
+        }
 
-        routingEntries = getConfiguration(EzspConfigId.EZSP_CONFIG_SOURCE_ROUTE_TABLE_SIZE);
+        final List<EmberNeighborTableEntry> addedNeighbors = new ArrayList<EmberNeighborTableEntry>();
+        final List<EmberNeighborTableEntry> updatedNeighbors = new ArrayList<EmberNeighborTableEntry>();
+        final List<EmberNeighborTableEntry> removedNeighbors = new ArrayList<EmberNeighborTableEntry>();
+        final List<EmberRouteTableEntry> addedRoutes = new ArrayList<EmberRouteTableEntry>();
+        final List<EmberRouteTableEntry> updatedRoutes = new ArrayList<EmberRouteTableEntry>();
+        final List<EmberRouteTableEntry> removedRoutes = new ArrayList<EmberRouteTableEntry>();
+        synchronized (this) {
+            updateNeighbors(newNeighbors, addedNeighbors, updatedNeighbors, removedNeighbors);
+            updateRoutes(newRoutes, addedRoutes, updatedRoutes, removedRoutes);
+        }
 
-        scheduler.scheduleAtFixedRate(neighborUpdateThread, updatePeriod, updatePeriod, TimeUnit.SECONDS);
+        if (tableListener == null) {
+            return true;
+        }
+        if (!addedNeighbors.isEmpty() || !updatedNeighbors.isEmpty() || !removedNeighbors.isEmpty()) {
+            tableListener.localNeighborsUpdated(getNeighborTable(addedNeighbors), getNeighborTable(updatedNeighbors),
+                    getNeighborTable(removedNeighbors));
+        }
+        if (!addedRoutes.isEmpty() || !updatedRoutes.isEmpty() || !removedRoutes.isEmpty()) {
+            tableListener.localRoutesUpdated(getRoutingTable(addedRoutes), getRoutingTable(updatedRoutes),
+                    getRoutingTable(removedRoutes));
+        }
+
+        return true;
     }
 
-    private void updateNeighbors() {
-        for (int neighbor = 0; neighbor < getNeighborCount(); neighbor++) {
-            getNeighbor(neighbor);
+    /**
+     * Updates the neighbor snapshot and logs the differences from the previous poll.
+     * <p>
+     * A neighbor is considered changed if it is added or removed, or its address or link costs change. The LQI and age
+     * change on almost every poll, so are updated in the snapshot but not considered a change.
+     *
+     * @param newNeighbors the neighbors from the latest poll
+     * @param added list to which the added neighbors are added
+     * @param updated list to which the changed neighbors are added
+     * @param removed list to which the removed neighbors are added
+     */
+    private void updateNeighbors(Map<Integer, EmberNeighborTableEntry> newNeighbors,
+            List<EmberNeighborTableEntry> added, List<EmberNeighborTableEntry> updated,
+            List<EmberNeighborTableEntry> removed) {
+        for (EmberNeighborTableEntry neighbor : newNeighbors.values()) {
+            EmberNeighborTableEntry oldNeighbor = neighbors.get(neighbor.getShortId());
+            if (oldNeighbor == null) {
+                logger.debug("Neighbor added: {}", neighbor);
+                added.add(neighbor);
+            } else if (!neighbor.getLongId().equals(oldNeighbor.getLongId())
+                    || neighbor.getInCost() != oldNeighbor.getInCost()
+                    || neighbor.getOutCost() != oldNeighbor.getOutCost()) {
+                logger.debug("Neighbor updated: {}", neighbor);
+                updated.add(neighbor);
+            }
         }
+        for (EmberNeighborTableEntry neighbor : neighbors.values()) {
+            if (!newNeighbors.containsKey(neighbor.getShortId())) {
+                logger.debug("Neighbor removed: {}", neighbor);
+                removed.add(neighbor);
+            }
+        }
+
+        neighbors = newNeighbors;
+    }
 
-        for (int route = 0; route < routingEntries; route++) {
-            getRoute(route);
+    /**
+     * Updates the route snapshot and logs the differences from the previous poll.
+     * <p>
+     * A route is considered changed if it is added or removed, or its next hop or status changes.
+     *
+     * @param newRoutes the active routes from the latest poll
+     * @param added list to which the added routes are added
+     * @param updated list to which the changed routes are added
+     * @param removed list to which the removed routes are added
+     */
+    private void updateRoutes(Map<Integer, EmberRouteTableEntry> newRoutes, List<EmberRouteTableEntry> added,
+            List<EmberRouteTableEntry> updated, List<EmberRouteTableEntry> removed) {
+        for (EmberRouteTableEntry route : newRoutes.values()) {
+            EmberRouteTableEntry oldRoute = routes.get(route.getDestination());
+            if (oldRoute == null) {
+                logger.debug("Route added: {}", route);
+                added.add(route);
+            } else if (route.getNextHop() != oldRoute.getNextHop() || route.getStatus() != oldRoute.getStatus()) {
+                logger.debug("Route updated: {}", route);
+                updated.add(route);
+            }
+        }
+        for (EmberRouteTableEntry route : routes.values()) {
+            if (!newRoutes.containsKey(route.getDestination())) {
+                logger.debug("Route removed: {}", route);
+                removed.add(route);
+            }
         }
+
+        routes = newRoutes;
     }
 
-    private int getNeighborCount() {
-        // Check if the network is initialised
-        EzspNeighborCountRequest neighborCountRequest = new EzspNeighborCountRequest();
-        EzspTransaction neighborCountTransaction = ashHandler.sendEzspTransaction(
-                new EzspSingleResponseTransaction(neighborCountRequest, EzspNeighborCountResponse.class));
-        EzspNeighborCountResponse neighborCountResponse = (EzspNeighborCountResponse) neighborCountTransaction
-                .getResponse();
-        logger.debug(neighborCountResponse.toString());
-        logger.debug("EZSP neighborCountResponse {}", neighborCountResponse);
-
-        return neighborCountResponse.getValue();
+    private List<NeighborTable> getNeighborTable(List<EmberNeighborTableEntry> entries) {
+        List<NeighborTable> neighborTable = new ArrayList<NeighborTable>();
+        for (EmberNeighborTableEntry entry : entries) {
+            NeighborTable neighbor = new NeighborTable();
+            neighbor.setNetworkAddress(entry.getShortId());
+            neighbor.setExtendedAddress(entry.getLongId());
+            neighbor.setLqi(entry.getAverageLqi());
+            neighborTable.add(neighbor);
+        }
+        return neighborTable;
     }
 
-    private void getNeighbor(int neighbor) {
-        EzspGetNeighborRequest neighborRequest = new EzspGetNeighborRequest();
-        neighborRequest.setIndex(neighbor);
-        EzspTransaction neighborTransaction = ashHandler
-                .sendEzspTransaction(new EzspSingleResponseTransaction(neighborRequest, EzspGetNeighborResponse.class));
-        EzspGetNeighborResponse neighborResponse = (EzspGetNeighborResponse) neighborTransaction.getResponse();
-        logger.debug(neighborResponse.toString());
-        logger.debug("EZSP getNetworkResponse {}", neighborResponse);
+    private List<RoutingTable> getRoutingTable(List<EmberRouteTableEntry> entries) {
+        List<RoutingTable> routingTable = new ArrayList<RoutingTable>();
+        for (EmberRouteTableEntry entry : entries) {
+            RoutingTable route = new RoutingTable();
+            route.setDestinationAddress(entry.getDestination());
+            route.setNextHopAddress(entry.getNextHop());
+            switch (entry.getStatus()) {
+                case 0:
+                    route.setStatus(DiscoveryState.ACTIVE);
+                    break;
+                case 1:
+                    route.setStatus(DiscoveryState.DISCOVERY_UNDERWAY);
+                    break;
+                case 4:
+                    route.setStatus(DiscoveryState.VALIDATION_UNDERWAY);
+                    break;
+                default:
+                    route.setStatus(DiscoveryState.UNKNOWN);
+                    break;
+            }
+            route.setManyToOne(entry.getConcentratorType() != 0);
+            route.setRouteRecordRequired(entry.getRouteRecordState() == 2);
+            routingTable.add(route);
+        }
+        return routingTable;
     }
 
-    private void getRoute(int route) {
-        EzspGetRouteTableEntryRequest routeRequest = new EzspGetRouteTableEntryRequest();
-        routeRequest.setIndex(route);
-        EzspTransaction neighborTransaction = ashHandler.sendEzspTransaction(
-                new EzspSingleResponseTransaction(routeRequest, EzspGetRouteTableEntryResponse.class));
-        EzspGetRouteTableEntryResponse routeResponse = (EzspGetRouteTableEntryResponse) neighborTransaction
-                .getResponse();
-        logger.debug(routeResponse.toString());
-        logger.debug("EZSP getRouteTableEntry {}", routeResponse);
+    /**
+     * Sends a single request and waits for the response
+     *
+     * @param request the {@link EzspFrameRequest} to send
+     * @param responseClass the required response class
+     * @return the {@link EzspFrameResponse} or null on error
+     */
+    private EzspFrameResponse sendRequest(EzspFrameRequest request, Class<?> responseClass) {
+        List<EzspFrameResponse> responses = sendRequests(Collections.singletonList(request), responseClass);
+        if (responses == null) {
+            return null;
+        }
+        return responses.get(0);
+    }
+
+    /**
+     * Sends a list of requests to the NCP without waiting for each response before sending the next request. The
+     * number of outstanding requests is limited to {@link #MAX_OUTSTANDING_REQUESTS}.
+     *
+     * @param requests the {@link EzspFrameRequest}s to send
+     * @param responseClass the required response class
+     * @return the {@link EzspFrameResponse}s in the same order as the requests, or null if any request failed
+     */
+    private List<EzspFrameResponse> sendRequests(List<EzspFrameRequest> requests, Class<?> responseClass) {
+        List<EzspFrameResponse> responses = new ArrayList<EzspFrameResponse>(requests.size());
+        Queue<EzspTransaction> transactions = new LinkedList<EzspTransaction>();
+        Queue<Future<EzspFrame>> futures = new LinkedList<Future<EzspFrame>>();
+
+        for (EzspFrameRequest request : requests) {
+            if (futures.size() >= MAX_OUTSTANDING_REQUESTS
+                    && !waitForResponse(transactions.poll(), futures.poll(), responses)) {
+                cancelRequests(futures);
+                return null;
+            }
+
+            EzspTransaction transaction = new EzspSingleResponseTransaction(request, responseClass);
+            transactions.add(transaction);
+            futures.add(ashHandler.sendEzspRequestAsync(transaction));
+        }
+
+        while (!futures.isEmpty()) {
+            if (!waitForResponse(transactions.poll(), futures.poll(), responses)) {
+                cancelRequests(futures);
+                return null;
+            }
+        }
+
+        return responses;
+    }
+
+    private boolean waitForResponse(EzspTransaction transaction, Future<EzspFrame> future,
+            List<EzspFrameResponse> responses) {
+        try {
+            future.get(TRANSACTION_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            logger.debug("No response from NCP to {}", transaction.getRequest());
+            future.cancel(true);
+            return false;
+        }
+
+        if (transaction.getResponse() == null) {
+            return false;
+        }
+        responses.add(transaction.getResponse());
+        return true;
+    }
+
+    private void cancelRequests(Queue<Future<EzspFrame>> futures) {
+        for (Future<EzspFrame> future : futures) {
+            future.cancel(true);
+        }
     }
 
     /**
@@ -122,10 +449,11 @@ public class EzspNeighborTable {
         EzspGetConfigurationValueRequest configValue = new EzspGetConfigurationValueRequest();
         configValue.setConfigId(configId);
 
-        EzspTransaction configTransaction = ashHandler.sendEzspTransaction(
-                new EzspSingleResponseTransaction(configValue, EzspGetConfigurationValueResponse.class));
-        EzspGetConfigurationValueResponse configResponse = (EzspGetConfigurationValueResponse) configTransaction
-                .getResponse();
+        EzspGetConfigurationValueResponse configResponse = (EzspGetConfigurationValueResponse) sendRequest(
+                configValue, EzspGetConfigurationValueResponse.class);
+        if (configResponse == null) {
+            return null;
+        }
         logger.debug(configResponse.toString());
 
         if (configResponse.getStatus() != EzspStatus.EZSP_SUCCESS) {
@@ -8,14 +8,20 @@
 package com.zsmartsystems.zigbee.dongle.ember;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.zsmartsystems.zigbee.ExtendedPanId;
+import com.zsmartsystems.zigbee.IeeeAddress;
 import com.zsmartsystems.zigbee.ZigBeeApsFrame;
 import com.zsmartsystems.zigbee.ZigBeeDeviceStatus;
 import com.zsmartsystems.zigbee.ZigBeeException;
@@ -28,24 +34,35 @@ import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspAddEndpointRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspAddEndpointResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspChildJoinHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspCounterRolloverHandler;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetCurrentSecurityStateRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetCurrentSecurityStateResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetNetworkParametersRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetNetworkParametersResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspIdConflictHandler;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspIncomingMessageHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspIncomingRouteErrorHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspIncomingRouteRecordHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspMessageSentHandler;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkInitRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkInitResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkStateRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkStateResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendBroadcastRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendManyToOneRouteRequestRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendManyToOneRouteRequestResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendMulticastRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendUnicastRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSetSourceRouteRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSetSourceRouteResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspStackStatusHandler;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspTrustCenterJoinHandler;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspVersionRequest;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspVersionResponse;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberApsFrame;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberApsOption;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberConcentratorType;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberCounterType;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberCurrentSecurityState;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberKeyData;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberNetworkParameters;
@@ -57,10 +74,17 @@ import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EzspDecisionId;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EzspPolicyId;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspSingleResponseTransaction;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspTransaction;
+import com.zsmartsystems.zigbee.dongle.ember.internal.EmberAddressCache;
+import com.zsmartsystems.zigbee.dongle.ember.internal.EmberCounterSampler;
 import com.zsmartsystems.zigbee.dongle.ember.internal.EmberNetworkInitialisation;
+import com.zsmartsystems.zigbee.dongle.ember.internal.EmberSourceRouteTable;
 import com.zsmartsystems.zigbee.dongle.ember.internal.EmberStackConfiguration;
 import com.zsmartsystems.zigbee.transport.ZigBeePort;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportAddressResolver;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportDeliveryListener;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportMetrics;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportReceive;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportTableListener;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportState;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportTransmit;
 import com.zsmartsystems.zigbee.zcl.protocol.ZclClusterType;
@@ -72,7 +96,8 @@ import com.zsmartsystems.zigbee.zcl.protocol.ZclProfileType;
  * @author Chris Jackson
  *
  */
-public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandler {
+public class ZigBeeDongleEzsp
+        implements ZigBeeTransportTransmit, ZigBeeTransportAddressResolver, ZigBeeTransportMetrics, EzspFrameHandler {
     /**
      * The {@link Logger}.
      */
@@ -123,6 +148,74 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
      */
     private String versionString = "Unknown";
 
+    /**
+     * The host side cache of source routes learned from route records. Routes are supplied to the NCP before sending a
+     * unicast so that the NCP doesn't need to perform a route discovery.
+     */
+    private final EmberSourceRouteTable sourceRouteTable = new EmberSourceRouteTable();
+
+    /**
+     * The host side cache of EUI64 to node ID mappings. This is updated from join notifications and incoming messages
+     * so that addresses can be resolved without requests to the NCP.
+     */
+    private final EmberAddressCache addressCache = new EmberAddressCache();
+
+    /**
+     * The poller used to read the neighbor and route tables from the NCP
+     */
+    private EzspNeighborTable neighborTable;
+
+    /**
+     * The period between polls of the neighbor and route tables - in seconds. Set to 0 to disable polling.
+     */
+    private int neighborTablePeriod = 60;
+
+    /**
+     * The sampler used to read the NCP counters
+     */
+    private EmberCounterSampler counterSampler;
+
+    /**
+     * The period between samples of the NCP counters - in seconds. Set to 0 to disable sampling.
+     */
+    private int counterPeriod = 60;
+
+    /**
+     * ZDO cluster for the Device Announce message
+     */
+    private static final int ZDO_DEVICE_ANNOUNCE = 0x0013;
+
+    /**
+     * ZDO cluster for the Network Address Response message
+     */
+    private static final int ZDO_NWK_ADDR_RSP = 0x8000;
+
+    /**
+     * ZDO cluster for the IEEE Address Response message
+     */
+    private static final int ZDO_IEEE_ADDR_RSP = 0x8001;
+
+    /**
+     * The period between sending many-to-one route requests - in seconds. Set to 0 to disable periodic route requests.
+     */
+    private int concentratorPeriod = 60;
+
+    /**
+     * The minimum time between many-to-one route requests - in milliseconds. This is used to avoid flooding the
+     * network with route requests if we receive multiple route errors.
+     */
+    private static final long CONCENTRATOR_MIN_PERIOD = 10000;
+
+    /**
+     * The time the last many-to-one route request was sent
+     */
+    private long lastManyToOneRequest = 0;
+
+    /**
+     * Scheduler used to run the periodic many-to-one route requests
+     */
+    private ScheduledExecutorService scheduler;
+
     public ZigBeeDongleEzsp(final ZigBeePort serialPort) {
         this.serialPort = serialPort;
 
@@ -270,6 +363,25 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
         logger.debug("EZSP networkStateResponse {}", networkStateResponse.getStatus());
         if (networkStateResponse.getStatus() == EmberNetworkStatus.EMBER_JOINED_NETWORK) {
             zigbeeTransportReceive.setNetworkState(ZigBeeTransportState.ONLINE);
+
+            // We are a concentrator, so periodically send a many-to-one route request to allow the network to
+            // provide us with route records for the source route table
+            startConcentrator();
+
+            // Periodically read the neighbor and route tables so the framework has a view of the local node
+            if (neighborTablePeriod != 0) {
+                neighborTable = new EzspNeighborTable(ashHandler,
+                        zigbeeTransportReceive instanceof ZigBeeTransportTableListener
+                                ? (ZigBeeTransportTableListener) zigbeeTransportReceive
+                                : null);
+                neighborTable.start(neighborTablePeriod);
+            }
+
+            // Periodically sample the NCP counters so the statistics are available to the application
+            if (counterPeriod != 0) {
+                counterSampler = new EmberCounterSampler(ashHandler);
+                counterSampler.start(counterPeriod);
+            }
         }
 
         // Get the security state - mainly for debug
@@ -278,17 +390,95 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
 
         logger.debug("EZSP dongle startup done.");
 
-        // Mainly for debug we run a task to periodically download the neighbor table
-        // new EzspNeighborTable(ashHandler, 31);
-
         return true;
     }
 
     @Override
     public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (neighborTable != null) {
+            neighborTable.shutdown();
+            neighborTable = null;
+        }
+        if (counterSampler != null) {
+            counterSampler.shutdown();
+            counterSampler = null;
+        }
         serialPort.close();
     }
 
+    /**
+     * Sets the period between many-to-one route requests. The NCP operates as a high RAM concentrator - this requests
+     * that all nodes in the network create a route back to the concentrator, and provide their route records so that
+     * outgoing messages can be source routed. This must be called before {@link #startup}.
+     *
+     * @param concentratorPeriod the period in seconds. Set to 0 to disable periodic route requests.
+     */
+    public void setConcentratorPeriod(int concentratorPeriod) {
+        this.concentratorPeriod = concentratorPeriod;
+    }
+
+    /**
+     * Sets the period between polls of the neighbor and route tables in the NCP. Changes to the tables are passed to
+     * the framework if it implements {@link ZigBeeTransportTableListener}. This must be called before
+     * {@link #startup}.
+     *
+     * @param neighborTablePeriod the period in seconds. Set to 0 to disable polling.
+     */
+    public void setNeighborTablePeriod(int neighborTablePeriod) {
+        this.neighborTablePeriod = neighborTablePeriod;
+    }
+
+    /**
+     * Sets the period between samples of the NCP counters. The counters are available through
+     * {@link #getCounters()} and {@link #getCounterRates()}. This must be called before {@link #startup}.
+     *
+     * @param counterPeriod the period in seconds. Set to 0 to disable sampling.
+     */
+    public void setCounterPeriod(int counterPeriod) {
+        this.counterPeriod = counterPeriod;
+    }
+
+    /**
+     * Starts the task that periodically sends the many-to-one route request
+     */
+    private void startConcentrator() {
+        if (concentratorPeriod == 0 || scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newScheduledThreadPool(1);
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sendManyToOneRouteRequest();
+            }
+        }, 0, concentratorPeriod, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends a many-to-one route request. Requests are rate limited so that multiple route errors don't flood the
+     * network with route requests.
+     */
+    private void sendManyToOneRouteRequest() {
+        synchronized (sourceRouteTable) {
+            if (System.currentTimeMillis() - lastManyToOneRequest < CONCENTRATOR_MIN_PERIOD) {
+                logger.debug("Many-to-one route request not sent - last request too recent");
+                return;
+            }
+            lastManyToOneRequest = System.currentTimeMillis();
+        }
+
+        EzspSendManyToOneRouteRequestRequest routeRequest = new EzspSendManyToOneRouteRequestRequest();
+        routeRequest.setConcentratorType(EmberConcentratorType.EMBER_HIGH_RAM_CONCENTRATOR.getKey());
+        routeRequest.setRadius(0);
+        logger.debug(routeRequest.toString());
+        ashHandler.queueFrame(routeRequest);
+    }
+
     /**
      * Gets the current network parameters, or an empty parameters class if there's an error
      *
@@ -405,6 +595,7 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
     @Override
     public void sendCommand(final ZigBeeApsFrame apsFrame) throws ZigBeeException {
         EzspFrameRequest emberCommand;
+        EzspSetSourceRouteRequest sourceRoute = null;
 
         EmberApsFrame emberApsFrame = new EmberApsFrame();
         emberApsFrame.setClusterId(apsFrame.getCluster());
@@ -417,6 +608,13 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
         emberApsFrame.addOptions(EmberApsOption.EMBER_APS_OPTION_ENABLE_ADDRESS_DISCOVERY);
 
         if (apsFrame.getAddressMode() == ZigBeeNwkAddressMode.DEVICE && apsFrame.getDestinationAddress() < 0xfff8) {
+            int[] relayList = sourceRouteTable.getRoute(apsFrame.getDestinationAddress());
+            if (relayList != null) {
+                sourceRoute = new EzspSetSourceRouteRequest();
+                sourceRoute.setDestination(apsFrame.getDestinationAddress());
+                sourceRoute.setRelayList(relayList);
+            }
+
             EzspSendUnicastRequest emberUnicast = new EzspSendUnicastRequest();
             emberUnicast.setIndexOrDestination(apsFrame.getDestinationAddress());
             emberUnicast.setMessageTag(apsFrame.getSequence());
@@ -456,12 +654,86 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
             return;
         }
 
-        logger.debug(emberCommand.toString());
-        ashHandler.queueFrame(emberCommand);
+        // The source route only applies to the next message, so make sure nothing else is queued in between
+        synchronized (ashHandler) {
+            if (sourceRoute != null) {
+                logger.debug(sourceRoute.toString());
+                ashHandler.queueFrame(sourceRoute);
+            }
+
+            logger.debug(emberCommand.toString());
+            ashHandler.queueFrame(emberCommand);
+        }
 
         // emberUnicast = (EzspSendUnicast) ashHandler.sendEzspRequestAsync(emberUnicast);
     }
 
+    @Override
+    public IeeeAddress getIeeeAddress(int networkAddress) {
+        return addressCache.getEui64(networkAddress);
+    }
+
+    @Override
+    public Integer getNetworkAddress(IeeeAddress ieeeAddress) {
+        return addressCache.getNodeId(ieeeAddress);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        EmberCounterSampler sampler = counterSampler;
+        if (sampler == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> counters = new HashMap<String, Long>();
+        for (Entry<EmberCounterType, Long> counter : sampler.getCounters().entrySet()) {
+            counters.put(counter.getKey().toString(), counter.getValue());
+        }
+        return counters;
+    }
+
+    @Override
+    public Map<String, Double> getCounterRates() {
+        EmberCounterSampler sampler = counterSampler;
+        if (sampler == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Double> rates = new HashMap<String, Double>();
+        for (Entry<EmberCounterType, Double> rate : sampler.getRates().entrySet()) {
+            rates.put(rate.getKey().toString(), rate.getValue());
+        }
+        return rates;
+    }
+
+    /**
+     * Updates the address cache from ZDO messages that contain both the node ID and EUI64 of a device.
+     *
+     * @param clusterId the ZDO cluster ID
+     * @param payload the ZDO message payload, starting with the transaction sequence number
+     */
+    private void updateAddressCache(int clusterId, int[] payload) {
+        switch (clusterId) {
+            case ZDO_DEVICE_ANNOUNCE:
+                // Sequence, NWK address, IEEE address, capabilities
+                if (payload.length >= 11) {
+                    addressCache.setAddress(payload[1] + (payload[2] << 8),
+                            new IeeeAddress(Arrays.copyOfRange(payload, 3, 11)));
+                }
+                break;
+            case ZDO_NWK_ADDR_RSP:
+            case ZDO_IEEE_ADDR_RSP:
+                // Sequence, status, IEEE address, NWK address
+                if (payload.length >= 12 && payload[1] == 0) {
+                    addressCache.setAddress(payload[10] + (payload[11] << 8),
+                            new IeeeAddress(Arrays.copyOfRange(payload, 2, 10)));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
     @Override
     public void setZigBeeTransportReceive(ZigBeeTransportReceive zigbeeTransportReceive) {
         this.zigbeeTransportReceive = zigbeeTransportReceive;
@@ -469,7 +741,7 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
 
     @Override
     public void handlePacket(EzspFrame response) {
-        logger.debug("RX: " + response.toString());
+        logger.debug("RX: {}", response);
 
         if (response instanceof EzspIncomingMessageHandler) {
             EzspIncomingMessageHandler incomingMessage = (EzspIncomingMessageHandler) response;
@@ -485,17 +757,92 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
             apsFrame.setSequence(incomingMessage.getSequenceNumber());
             apsFrame.setSourceAddress(incomingMessage.getSender());
             apsFrame.setPayload(incomingMessage.getMessageContents());
+
+            if (emberApsFrame.getProfileId() == 0) {
+                updateAddressCache(emberApsFrame.getClusterId(), incomingMessage.getMessageContents());
+            }
+
             zigbeeTransportReceive.receiveCommand(apsFrame);
 
             return;
         }
 
+        if (response instanceof EzspMessageSentHandler) {
+            // The message tag is set to the APS sequence when the message is sent
+            EzspMessageSentHandler messageSent = (EzspMessageSentHandler) response;
+            if (zigbeeTransportReceive instanceof ZigBeeTransportDeliveryListener) {
+                ((ZigBeeTransportDeliveryListener) zigbeeTransportReceive).commandDeliveryStatus(
+                        messageSent.getMessageTag(), messageSent.getStatus() == EmberStatus.EMBER_SUCCESS);
+            }
+            return;
+        }
+
+        if (response instanceof EzspIncomingRouteRecordHandler) {
+            EzspIncomingRouteRecordHandler routeRecord = (EzspIncomingRouteRecordHandler) response;
+            sourceRouteTable.addRoute(routeRecord.getSource(), routeRecord.getRelayList());
+            addressCache.setAddress(routeRecord.getSource(), routeRecord.getSourceEui());
+            return;
+        }
+
+        if (response instanceof EzspIdConflictHandler) {
+            // Both devices using the conflicting ID will change address so the mapping is no longer valid
+            int nodeId = ((EzspIdConflictHandler) response).getId();
+            logger.debug("Address conflict reported for node {}", String.format("%04X", nodeId));
+            addressCache.removeNodeId(nodeId);
+            sourceRouteTable.removeRoute(nodeId);
+            return;
+        }
+
+        if (response instanceof EzspIncomingRouteErrorHandler) {
+            EzspIncomingRouteErrorHandler routeError = (EzspIncomingRouteErrorHandler) response;
+            switch (routeError.getStatus()) {
+                case EMBER_SOURCE_ROUTE_FAILURE:
+                    // The source route is broken - remove it so the NCP can rediscover the route
+                    sourceRouteTable.removeRoute(routeError.getTarget());
+                    break;
+                case EMBER_MANY_TO_ONE_ROUTE_FAILURE:
+                    // The many-to-one route to the concentrator is broken - request the network to rebuild it
+                    sourceRouteTable.removeRoute(routeError.getTarget());
+                    sendManyToOneRouteRequest();
+                    break;
+                default:
+                    logger.debug("Unknown route error {} for node {}", routeError.getStatus(), routeError.getTarget());
+                    break;
+            }
+            return;
+        }
+
+        if (response instanceof EzspCounterRolloverHandler) {
+            EmberCounterSampler sampler = counterSampler;
+            if (sampler != null) {
+                sampler.counterRollover(
+                        EmberCounterType.getEmberCounterType(((EzspCounterRolloverHandler) response).getType()));
+            }
+            return;
+        }
+
+        if (response instanceof EzspSetSourceRouteResponse) {
+            if (((EzspSetSourceRouteResponse) response).getStatus() != EmberStatus.EMBER_SUCCESS) {
+                logger.debug("Error setting source route: {}", response);
+            }
+            return;
+        }
+
+        if (response instanceof EzspSendManyToOneRouteRequestResponse) {
+            if (((EzspSendManyToOneRouteRequestResponse) response).getStatus() != EmberStatus.EMBER_SUCCESS) {
+                logger.debug("Error sending many-to-one route request: {}", response);
+            }
+            return;
+        }
+
         // TODO: Check if this should be done only after initialisation is complete?
         if (response instanceof EzspStackStatusHandler) {
             switch (((EzspStackStatusHandler) response).getStatus()) {
                 case EMBER_NETWORK_BUSY:
                     break;
                 case EMBER_NETWORK_DOWN:
+                    sourceRouteTable.clear();
+                    addressCache.clear();
                     zigbeeTransportReceive.setNetworkState(ZigBeeTransportState.OFFLINE);
                     break;
                 case EMBER_NETWORK_UP:
@@ -524,12 +871,18 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
                     break;
                 case EMBER_DEVICE_LEFT:
                     status = ZigBeeDeviceStatus.DEVICE_LEFT;
+                    sourceRouteTable.removeRoute(joinHandler.getNewNodeId());
+                    addressCache.removeEui64(joinHandler.getNewNodeEui64());
                     break;
                 default:
                     logger.debug("Unknown state in trust centre join handler {}", joinHandler.getStatus());
                     return;
             }
 
+            if (status != ZigBeeDeviceStatus.DEVICE_LEFT) {
+                addressCache.setAddress(joinHandler.getNewNodeId(), joinHandler.getNewNodeEui64());
+            }
+
             zigbeeTransportReceive.deviceStatusUpdate(status, joinHandler.getNewNodeId(),
                     joinHandler.getNewNodeEui64());
 
@@ -537,6 +890,9 @@ public class ZigBeeDongleEzsp implements ZigBeeTransportTransmit, EzspFrameHandl
 
         if (response instanceof EzspChildJoinHandler) {
             EzspChildJoinHandler joinHandler = (EzspChildJoinHandler) response;
+            if (joinHandler.getJoining()) {
+                addressCache.setAddress(joinHandler.getChildId(), joinHandler.getChildEui64());
+            }
             zigbeeTransportReceive.deviceStatusUpdate(ZigBeeDeviceStatus.UNSECURED_JOIN, joinHandler.getChildId(),
                     joinHandler.getChildEui64());
 
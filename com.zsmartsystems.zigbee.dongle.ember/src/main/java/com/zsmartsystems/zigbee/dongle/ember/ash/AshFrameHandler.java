@@ -194,17 +194,13 @@ public class AshFrameHandler {
                                                 // Get the EZSP frame
                                                 EzspFrameResponse response = EzspFrame
                                                         .createHandler((AshFrameData) packet);
-                                                logger.debug("RX EZSP: " + response);
+                                                logger.debug("RX EZSP: {}", response);
                                                 if (response == null) {
                                                     logger.debug("No frame handler created for {}", packet);
-                                                } else if (response != null && !notifyTransactionComplete(response)) {
+                                                } else if (!notifyTransactionComplete(response)) {
                                                     // No transactions owned this response, so we pass it to
                                                     // our unhandled response handler
-                                                    EzspFrame ezspFrame = EzspFrame
-                                                            .createHandler(((AshFrameData) packet));
-                                                    if (ezspFrame != null) {
-                                                        frameHandler.handlePacket(ezspFrame);
-                                                    }
+                                                    frameHandler.handlePacket(response);
                                                 }
 
                                                 // Update our next expected data frame
@@ -375,14 +371,14 @@ public class AshFrameHandler {
         ashFrame.setAckNum(ackNum);
         logger.debug("--> TX ASH frame: {}", ashFrame);
 
-        // Send the data
+        // Send the frame in a single write
+        final int[] outputBuffer = ashFrame.getOutputBuffer();
+        final byte[] data = new byte[outputBuffer.length];
+        for (int i = 0; i < outputBuffer.length; i++) {
+            data[i] = (byte) outputBuffer[i];
+        }
         try {
-            for (int b : ashFrame.getOutputBuffer()) {
-                // result.append(" ");
-                // result.append(String.format("%02X", b));
-                // logger.debug("ASH TX: " + String.format("%02X", b));
-                outputStream.write(b);
-            }
+            outputStream.write(data);
         } catch (IOException e) {
             logger.debug(e.getMessage());
         }
@@ -400,11 +396,14 @@ public class AshFrameHandler {
      * Add an EZSP frame to the send queue. The sendQueue is a FIFO queue.
      * This method queues a {@link EzspFrameRequest} frame without waiting for a response and
      * no transaction management is performed.
+     * <p>
+     * Callers may synchronize on the {@link AshFrameHandler} to ensure that a sequence of frames is queued without any
+     * other frames being inserted between them.
      *
      * @param transaction
      *            {@link EzspFrameRequest}
      */
-    public void queueFrame(EzspFrameRequest request) {
+    public synchronized void queueFrame(EzspFrameRequest request) {
         sendQueue.add(request);
 
         logger.debug("TX EZSP queue: {}", sendQueue.size());
@@ -570,7 +569,9 @@ public class AshFrameHandler {
                         try {
                             wait();
                         } catch (InterruptedException e) {
-                            logger.debug(e.getMessage());
+                            // The transaction has been cancelled
+                            logger.debug("EZSP transaction cancelled: {}", ezspTransaction.getRequest());
+                            break;
                         }
                     }
                 }
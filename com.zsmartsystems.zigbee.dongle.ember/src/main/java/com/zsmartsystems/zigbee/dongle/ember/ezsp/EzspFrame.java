@@ -7,11 +7,6 @@
  */
 package com.zsmartsystems.zigbee.dongle.ember.ezsp;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -184,80 +179,6 @@ public abstract class EzspFrame {
     protected int frameId = 0;
     protected boolean isResponse = false;
 
-    private static Map<Integer, Class<?>> ezspHandlerMap = new HashMap<Integer, Class<?>>();
-    static {
-        ezspHandlerMap.put(FRAME_ID_ADD_ENDPOINT, EzspAddEndpointResponse.class);
-        ezspHandlerMap.put(FRAME_ID_BECOME_TRUST_CENTER, EzspBecomeTrustCenterResponse.class);
-        ezspHandlerMap.put(FRAME_ID_BINDING_IS_ACTIVE, EzspBindingIsActiveResponse.class);
-        ezspHandlerMap.put(FRAME_ID_CALLBACK, EzspCallbackResponse.class);
-        ezspHandlerMap.put(FRAME_ID_CHILD_JOIN_HANDLER, EzspChildJoinHandler.class);
-        ezspHandlerMap.put(FRAME_ID_CLEAR_BINDING_TABLE, EzspClearBindingTableResponse.class);
-        ezspHandlerMap.put(FRAME_ID_COUNTER_ROLLOVER_HANDLER, EzspCounterRolloverHandler.class);
-        ezspHandlerMap.put(FRAME_ID_DELETE_BINDING, EzspDeleteBindingResponse.class);
-        ezspHandlerMap.put(FRAME_ID_ENERGY_SCAN_REQUEST, EzspEnergyScanRequestResponse.class);
-        ezspHandlerMap.put(FRAME_ID_ENERGY_SCAN_RESULT_HANDLER, EzspEnergyScanResultHandler.class);
-        ezspHandlerMap.put(FRAME_ID_FORM_NETWORK, EzspFormNetworkResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_ADDRESS_TABLE_REMOTE_EUI64, EzspGetAddressTableRemoteEui64Response.class);
-        ezspHandlerMap.put(FRAME_ID_GET_BINDING, EzspGetBindingResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_BINDING_REMOTE_NODE_ID, EzspGetBindingRemoteNodeIdResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_CHILD_DATA, EzspGetChildDataResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_CONFIGURATION_VALUE, EzspGetConfigurationValueResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_CURRENT_SECURITY_STATE, EzspGetCurrentSecurityStateResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_EUI64, EzspGetEui64Response.class);
-        ezspHandlerMap.put(FRAME_ID_GET_EXTENDED_TIMEOUT, EzspGetExtendedTimeoutResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_NEIGHBOR, EzspGetNeighborResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_NETWORK_PARAMETERS, EzspGetNetworkParametersResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_NODE_ID, EzspGetNodeIdResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_PARENT_CHILD_PARAMETERS, EzspGetParentChildParametersResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_POLICY, EzspGetPolicyResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_ROUTE_TABLE_ENTRY, EzspGetRouteTableEntryResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_VALUE, EzspGetValueResponse.class);
-        ezspHandlerMap.put(FRAME_ID_GET_XNCP_INFO, EzspGetXncpInfoResponse.class);
-        ezspHandlerMap.put(FRAME_ID_ID_CONFLICT_HANDLER, EzspIdConflictHandler.class);
-        ezspHandlerMap.put(FRAME_ID_INCOMING_MESSAGE_HANDLER, EzspIncomingMessageHandler.class);
-        ezspHandlerMap.put(FRAME_ID_INCOMING_ROUTE_ERROR_HANDLER, EzspIncomingRouteErrorHandler.class);
-        ezspHandlerMap.put(FRAME_ID_INCOMING_ROUTE_RECORD_HANDLER, EzspIncomingRouteRecordHandler.class);
-        ezspHandlerMap.put(FRAME_ID_INVALID_COMMAND, EzspInvalidCommandResponse.class);
-        ezspHandlerMap.put(FRAME_ID_JOIN_NETWORK, EzspJoinNetworkResponse.class);
-        ezspHandlerMap.put(FRAME_ID_LEAVE_NETWORK, EzspLeaveNetworkResponse.class);
-        ezspHandlerMap.put(FRAME_ID_LOOKUP_EUI64_BY_NODE_ID, EzspLookupEui64ByNodeIdResponse.class);
-        ezspHandlerMap.put(FRAME_ID_LOOKUP_NODE_ID_BY_EUI64, EzspLookupNodeIdByEui64Response.class);
-        ezspHandlerMap.put(FRAME_ID_MAC_FILTER_MATCH_MESSAGE_HANDLER, EzspMacFilterMatchMessageHandler.class);
-        ezspHandlerMap.put(FRAME_ID_MESSAGE_SENT_HANDLER, EzspMessageSentHandler.class);
-        ezspHandlerMap.put(FRAME_ID_NEIGHBOR_COUNT, EzspNeighborCountResponse.class);
-        ezspHandlerMap.put(FRAME_ID_NETWORK_FOUND_HANDLER, EzspNetworkFoundHandler.class);
-        ezspHandlerMap.put(FRAME_ID_NETWORK_INIT, EzspNetworkInitResponse.class);
-        ezspHandlerMap.put(FRAME_ID_NETWORK_STATE, EzspNetworkStateResponse.class);
-        ezspHandlerMap.put(FRAME_ID_NO_CALLBACKS, EzspNoCallbacksResponse.class);
-        ezspHandlerMap.put(FRAME_ID_PERMIT_JOINING, EzspPermitJoiningResponse.class);
-        ezspHandlerMap.put(FRAME_ID_POLL_HANDLER, EzspPollHandler.class);
-        ezspHandlerMap.put(FRAME_ID_READ_AND_CLEAR_COUNTERS, EzspReadAndClearCountersResponse.class);
-        ezspHandlerMap.put(FRAME_ID_READ_COUNTERS, EzspReadCountersResponse.class);
-        ezspHandlerMap.put(FRAME_ID_REMOTE_DELETE_BINDING_HANDLER, EzspRemoteDeleteBindingHandler.class);
-        ezspHandlerMap.put(FRAME_ID_REMOTE_SET_BINDING_HANDLER, EzspRemoteSetBindingHandler.class);
-        ezspHandlerMap.put(FRAME_ID_REMOVE_DEVICE, EzspRemoveDeviceResponse.class);
-        ezspHandlerMap.put(FRAME_ID_RESET_TO_FACTORY_DEFAULTS, EzspResetToFactoryDefaultsResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SCAN_COMPLETE_HANDLER, EzspScanCompleteHandler.class);
-        ezspHandlerMap.put(FRAME_ID_SEND_BROADCAST, EzspSendBroadcastResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SEND_MANY_TO_ONE_ROUTE_REQUEST, EzspSendManyToOneRouteRequestResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SEND_MULTICAST, EzspSendMulticastResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SEND_REPLY, EzspSendReplyResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SEND_UNICAST, EzspSendUnicastResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_BINDING, EzspSetBindingResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_BINDING_REMOTE_NODE_ID, EzspSetBindingRemoteNodeIdResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_CONFIGURATION_VALUE, EzspSetConfigurationValueResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_EXTENDED_TIMEOUT, EzspSetExtendedTimeoutResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_INITIAL_SECURITY_STATE, EzspSetInitialSecurityStateResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_POLICY, EzspSetPolicyResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_RADIO_CHANNEL, EzspSetRadioChannelResponse.class);
-        ezspHandlerMap.put(FRAME_ID_SET_SOURCE_ROUTE, EzspSetSourceRouteResponse.class);
-        ezspHandlerMap.put(FRAME_ID_STACK_STATUS_HANDLER, EzspStackStatusHandler.class);
-        ezspHandlerMap.put(FRAME_ID_START_SCAN, EzspStartScanResponse.class);
-        ezspHandlerMap.put(FRAME_ID_STOP_SCAN, EzspStopScanResponse.class);
-        ezspHandlerMap.put(FRAME_ID_TRUST_CENTER_JOIN_HANDLER, EzspTrustCenterJoinHandler.class);
-        ezspHandlerMap.put(FRAME_ID_VERSION, EzspVersionResponse.class);
-    }
-
     /**
      * Sets the 8 bit transaction sequence number
      *
@@ -295,23 +216,159 @@ public abstract class EzspFrame {
     }
 
     /**
-     * Creates and {@link EzspFrameResponse} from the {@link AshFrameData}.
+     * Creates an {@link EzspFrameResponse} from the {@link AshFrameData}. The frame is decoded once, and the returned
+     * instance should be used for both transaction matching and callback handling.
      *
      * @return the {@link EzspFrameResponse} or null if the response can't be created.
      */
     public static EzspFrameResponse createHandler(AshFrameData data) {
-        Class<?> ezspClass = ezspHandlerMap.get(data.getDataBuffer()[2]);
-        if (ezspClass == null) {
-            return null;
-        }
-
-        Constructor<?> ctor;
+        int[] buffer = data.getDataBuffer();
         try {
-            ctor = ezspClass.getConstructor(int[].class);
-            EzspFrameResponse ezspFrame = (EzspFrameResponse) ctor.newInstance(data.getDataBuffer());
-            return ezspFrame;
-        } catch (SecurityException | NoSuchMethodException | IllegalArgumentException | InstantiationException
-                | IllegalAccessException | InvocationTargetException e) {
+            switch (buffer[2]) {
+                case FRAME_ID_ADD_ENDPOINT:
+                    return new EzspAddEndpointResponse(buffer);
+                case FRAME_ID_BECOME_TRUST_CENTER:
+                    return new EzspBecomeTrustCenterResponse(buffer);
+                case FRAME_ID_BINDING_IS_ACTIVE:
+                    return new EzspBindingIsActiveResponse(buffer);
+                case FRAME_ID_CALLBACK:
+                    return new EzspCallbackResponse(buffer);
+                case FRAME_ID_CHILD_JOIN_HANDLER:
+                    return new EzspChildJoinHandler(buffer);
+                case FRAME_ID_CLEAR_BINDING_TABLE:
+                    return new EzspClearBindingTableResponse(buffer);
+                case FRAME_ID_COUNTER_ROLLOVER_HANDLER:
+                    return new EzspCounterRolloverHandler(buffer);
+                case FRAME_ID_DELETE_BINDING:
+                    return new EzspDeleteBindingResponse(buffer);
+                case FRAME_ID_ENERGY_SCAN_REQUEST:
+                    return new EzspEnergyScanRequestResponse(buffer);
+                case FRAME_ID_ENERGY_SCAN_RESULT_HANDLER:
+                    return new EzspEnergyScanResultHandler(buffer);
+                case FRAME_ID_FORM_NETWORK:
+                    return new EzspFormNetworkResponse(buffer);
+                case FRAME_ID_GET_ADDRESS_TABLE_REMOTE_EUI64:
+                    return new EzspGetAddressTableRemoteEui64Response(buffer);
+                case FRAME_ID_GET_BINDING:
+                    return new EzspGetBindingResponse(buffer);
+                case FRAME_ID_GET_BINDING_REMOTE_NODE_ID:
+                    return new EzspGetBindingRemoteNodeIdResponse(buffer);
+                case FRAME_ID_GET_CHILD_DATA:
+                    return new EzspGetChildDataResponse(buffer);
+                case FRAME_ID_GET_CONFIGURATION_VALUE:
+                    return new EzspGetConfigurationValueResponse(buffer);
+                case FRAME_ID_GET_CURRENT_SECURITY_STATE:
+                    return new EzspGetCurrentSecurityStateResponse(buffer);
+                case FRAME_ID_GET_EUI64:
+                    return new EzspGetEui64Response(buffer);
+                case FRAME_ID_GET_EXTENDED_TIMEOUT:
+                    return new EzspGetExtendedTimeoutResponse(buffer);
+                case FRAME_ID_GET_NEIGHBOR:
+                    return new EzspGetNeighborResponse(buffer);
+                case FRAME_ID_GET_NETWORK_PARAMETERS:
+                    return new EzspGetNetworkParametersResponse(buffer);
+                case FRAME_ID_GET_NODE_ID:
+                    return new EzspGetNodeIdResponse(buffer);
+                case FRAME_ID_GET_PARENT_CHILD_PARAMETERS:
+                    return new EzspGetParentChildParametersResponse(buffer);
+                case FRAME_ID_GET_POLICY:
+                    return new EzspGetPolicyResponse(buffer);
+                case FRAME_ID_GET_ROUTE_TABLE_ENTRY:
+                    return new EzspGetRouteTableEntryResponse(buffer);
+                case FRAME_ID_GET_VALUE:
+                    return new EzspGetValueResponse(buffer);
+                case FRAME_ID_GET_XNCP_INFO:
+                    return new EzspGetXncpInfoResponse(buffer);
+                case FRAME_ID_ID_CONFLICT_HANDLER:
+                    return new EzspIdConflictHandler(buffer);
+                case FRAME_ID_INCOMING_MESSAGE_HANDLER:
+                    return new EzspIncomingMessageHandler(buffer);
+                case FRAME_ID_INCOMING_ROUTE_ERROR_HANDLER:
+                    return new EzspIncomingRouteErrorHandler(buffer);
+                case FRAME_ID_INCOMING_ROUTE_RECORD_HANDLER:
+                    return new EzspIncomingRouteRecordHandler(buffer);
+                case FRAME_ID_INVALID_COMMAND:
+                    return new EzspInvalidCommandResponse(buffer);
+                case FRAME_ID_JOIN_NETWORK:
+                    return new EzspJoinNetworkResponse(buffer);
+                case FRAME_ID_LEAVE_NETWORK:
+                    return new EzspLeaveNetworkResponse(buffer);
+                case FRAME_ID_LOOKUP_EUI64_BY_NODE_ID:
+                    return new EzspLookupEui64ByNodeIdResponse(buffer);
+                case FRAME_ID_LOOKUP_NODE_ID_BY_EUI64:
+                    return new EzspLookupNodeIdByEui64Response(buffer);
+                case FRAME_ID_MAC_FILTER_MATCH_MESSAGE_HANDLER:
+                    return new EzspMacFilterMatchMessageHandler(buffer);
+                case FRAME_ID_MESSAGE_SENT_HANDLER:
+                    return new EzspMessageSentHandler(buffer);
+                case FRAME_ID_NEIGHBOR_COUNT:
+                    return new EzspNeighborCountResponse(buffer);
+                case FRAME_ID_NETWORK_FOUND_HANDLER:
+                    return new EzspNetworkFoundHandler(buffer);
+                case FRAME_ID_NETWORK_INIT:
+                    return new EzspNetworkInitResponse(buffer);
+                case FRAME_ID_NETWORK_STATE:
+                    return new EzspNetworkStateResponse(buffer);
+                case FRAME_ID_NO_CALLBACKS:
+                    return new EzspNoCallbacksResponse(buffer);
+                case FRAME_ID_PERMIT_JOINING:
+                    return new EzspPermitJoiningResponse(buffer);
+                case FRAME_ID_POLL_HANDLER:
+                    return new EzspPollHandler(buffer);
+                case FRAME_ID_READ_AND_CLEAR_COUNTERS:
+                    return new EzspReadAndClearCountersResponse(buffer);
+                case FRAME_ID_READ_COUNTERS:
+                    return new EzspReadCountersResponse(buffer);
+                case FRAME_ID_REMOTE_DELETE_BINDING_HANDLER:
+                    return new EzspRemoteDeleteBindingHandler(buffer);
+                case FRAME_ID_REMOTE_SET_BINDING_HANDLER:
+                    return new EzspRemoteSetBindingHandler(buffer);
+                case FRAME_ID_REMOVE_DEVICE:
+                    return new EzspRemoveDeviceResponse(buffer);
+                case FRAME_ID_RESET_TO_FACTORY_DEFAULTS:
+                    return new EzspResetToFactoryDefaultsResponse(buffer);
+                case FRAME_ID_SCAN_COMPLETE_HANDLER:
+                    return new EzspScanCompleteHandler(buffer);
+                case FRAME_ID_SEND_BROADCAST:
+                    return new EzspSendBroadcastResponse(buffer);
+                case FRAME_ID_SEND_MANY_TO_ONE_ROUTE_REQUEST:
+                    return new EzspSendManyToOneRouteRequestResponse(buffer);
+                case FRAME_ID_SEND_MULTICAST:
+                    return new EzspSendMulticastResponse(buffer);
+                case FRAME_ID_SEND_REPLY:
+                    return new EzspSendReplyResponse(buffer);
+                case FRAME_ID_SEND_UNICAST:
+                    return new EzspSendUnicastResponse(buffer);
+                case FRAME_ID_SET_BINDING:
+                    return new EzspSetBindingResponse(buffer);
+                case FRAME_ID_SET_BINDING_REMOTE_NODE_ID:
+                    return new EzspSetBindingRemoteNodeIdResponse(buffer);
+                case FRAME_ID_SET_CONFIGURATION_VALUE:
+                    return new EzspSetConfigurationValueResponse(buffer);
+                case FRAME_ID_SET_EXTENDED_TIMEOUT:
+                    return new EzspSetExtendedTimeoutResponse(buffer);
+                case FRAME_ID_SET_INITIAL_SECURITY_STATE:
+                    return new EzspSetInitialSecurityStateResponse(buffer);
+                case FRAME_ID_SET_POLICY:
+                    return new EzspSetPolicyResponse(buffer);
+                case FRAME_ID_SET_RADIO_CHANNEL:
+                    return new EzspSetRadioChannelResponse(buffer);
+                case FRAME_ID_SET_SOURCE_ROUTE:
+                    return new EzspSetSourceRouteResponse(buffer);
+                case FRAME_ID_STACK_STATUS_HANDLER:
+                    return new EzspStackStatusHandler(buffer);
+                case FRAME_ID_START_SCAN:
+                    return new EzspStartScanResponse(buffer);
+                case FRAME_ID_STOP_SCAN:
+                    return new EzspStopScanResponse(buffer);
+                case FRAME_ID_TRUST_CENTER_JOIN_HANDLER:
+                    return new EzspTrustCenterJoinHandler(buffer);
+                case FRAME_ID_VERSION:
+                    return new EzspVersionResponse(buffer);
+                default:
+                    return null;
+            }
+        } catch (RuntimeException e) {
             logger.debug("Error creating instance of EzspFrame", e);
         }
 
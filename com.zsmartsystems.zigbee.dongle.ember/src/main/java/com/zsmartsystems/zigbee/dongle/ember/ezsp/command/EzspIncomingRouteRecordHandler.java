@@ -56,7 +56,7 @@ public class EzspIncomingRouteRecordHandler extends EzspFrameResponse {
      * The route record. Each relay in the list is an uint16_t node ID. The list is passed as uint8_t *
      * to avoid alignment problems.
      * <p>
-     * EZSP type is <i>uint8_t[]</i> - Java type is {@link int[]}
+     * EZSP type is <i>uint16_t[]</i> - Java type is {@link int[]}
      */
     private int[] relayList;
 
@@ -73,7 +73,7 @@ public class EzspIncomingRouteRecordHandler extends EzspFrameResponse {
         lastHopLqi = deserializer.deserializeUInt8();
         lastHopRssi = deserializer.deserializeInt8S();
         int relayCount = deserializer.deserializeUInt8();
-        relayList= deserializer.deserializeUInt8Array(relayCount);
+        relayList = deserializer.deserializeUInt16Array(relayCount);
     }
 
     /**
@@ -160,7 +160,7 @@ public class EzspIncomingRouteRecordHandler extends EzspFrameResponse {
      * The route record. Each relay in the list is an uint16_t node ID. The list is passed as uint8_t *
      * to avoid alignment problems.
      * <p>
-     * EZSP type is <i>uint8_t[]</i> - Java type is {@link int[]}
+     * EZSP type is <i>uint16_t[]</i> - Java type is {@link int[]}
      *
      * @return the current relayList as {@link int[]}
      */
@@ -194,7 +194,7 @@ public class EzspIncomingRouteRecordHandler extends EzspFrameResponse {
             if (c > 0) {
                 builder.append(" ");
             }
-            builder.append(String.format("%02X", relayList[c]));
+            builder.append(String.format("%04X", relayList[c]));
         }
         builder.append(']');
         return builder.toString();
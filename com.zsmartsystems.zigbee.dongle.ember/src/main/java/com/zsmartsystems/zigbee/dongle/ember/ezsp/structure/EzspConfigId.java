@@ -47,6 +47,12 @@ public enum EzspConfigId {
      */
     EZSP_CONFIG_ADDRESS_TABLE_SIZE(0x0005),
 
+    /**
+     * The maximum number of destinations to which a node can route messages. This includes both
+     * messages originating at this node and those relayed for others.
+     */
+    EZSP_CONFIG_ROUTE_TABLE_SIZE(0x0007),
+
     /**
      * Specifies the stack profile.
      */
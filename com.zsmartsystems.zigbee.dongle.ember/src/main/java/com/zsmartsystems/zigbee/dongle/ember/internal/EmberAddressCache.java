@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.IeeeAddress;
+
+/**
+ * Host side bidirectional cache of EUI64 to node ID mappings.
+ * <p>
+ * The cache is updated from the callbacks received from the NCP (joins, route records, ZDO address responses etc) so
+ * that addresses can be resolved without sending <i>lookupEui64ByNodeId</i> or <i>lookupNodeIdByEui64</i> requests to
+ * the NCP.
+ * <p>
+ * A node ID may only be associated with a single EUI64, and vice versa. Adding a new mapping will remove any previous
+ * mapping for either address.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Chris Jackson
+ */
+public class EmberAddressCache {
+    /**
+     * The {@link Logger}.
+     */
+    private final Logger logger = LoggerFactory.getLogger(EmberAddressCache.class);
+
+    /**
+     * Map of node ID to EUI64
+     */
+    private final Map<Integer, IeeeAddress> nodeIdMap = new HashMap<Integer, IeeeAddress>();
+
+    /**
+     * Map of EUI64 to node ID
+     */
+    private final Map<IeeeAddress, Integer> euiMap = new HashMap<IeeeAddress, Integer>();
+
+    /**
+     * Adds, or updates, the mapping between a node ID and an EUI64
+     *
+     * @param nodeId the 16 bit node ID
+     * @param eui64 the {@link IeeeAddress}
+     */
+    public void setAddress(final int nodeId, final IeeeAddress eui64) {
+        if (eui64 == null || nodeId < 0 || nodeId >= 0xfff8) {
+            return;
+        }
+
+        synchronized (this) {
+            IeeeAddress oldEui64 = nodeIdMap.put(nodeId, eui64);
+            if (eui64.equals(oldEui64)) {
+                return;
+            }
+            if (oldEui64 != null) {
+                euiMap.remove(oldEui64);
+            }
+
+            Integer oldNodeId = euiMap.put(eui64, nodeId);
+            if (oldNodeId != null && oldNodeId != nodeId) {
+                nodeIdMap.remove(oldNodeId);
+            }
+        }
+
+        logger.debug("{}: Address cache updated with node ID {}", eui64, String.format("%04X", nodeId));
+    }
+
+    /**
+     * Gets the EUI64 associated with a node ID
+     *
+     * @param nodeId the 16 bit node ID
+     * @return the {@link IeeeAddress} or null if not known
+     */
+    public synchronized IeeeAddress getEui64(final int nodeId) {
+        return nodeIdMap.get(nodeId);
+    }
+
+    /**
+     * Gets the node ID associated with an EUI64
+     *
+     * @param eui64 the {@link IeeeAddress}
+     * @return the node ID or null if not known
+     */
+    public synchronized Integer getNodeId(final IeeeAddress eui64) {
+        return euiMap.get(eui64);
+    }
+
+    /**
+     * Removes the mapping for a node ID. This should be used when the node ID is no longer valid - eg following an ID
+     * conflict.
+     *
+     * @param nodeId the 16 bit node ID
+     */
+    public synchronized void removeNodeId(final int nodeId) {
+        IeeeAddress eui64 = nodeIdMap.remove(nodeId);
+        if (eui64 != null) {
+            euiMap.remove(eui64);
+        }
+    }
+
+    /**
+     * Removes the mapping for an EUI64. This should be used when the device has left the network.
+     *
+     * @param eui64 the {@link IeeeAddress}
+     */
+    public synchronized void removeEui64(final IeeeAddress eui64) {
+        Integer nodeId = euiMap.remove(eui64);
+        if (nodeId != null) {
+            nodeIdMap.remove(nodeId);
+        }
+    }
+
+    /**
+     * Removes all mappings from the cache
+     */
+    public synchronized void clear() {
+        nodeIdMap.clear();
+        euiMap.clear();
+    }
+
+    /**
+     * Gets the number of addresses in the cache
+     *
+     * @return the number of addresses in the cache
+     */
+    public synchronized int size() {
+        return nodeIdMap.size();
+    }
+}
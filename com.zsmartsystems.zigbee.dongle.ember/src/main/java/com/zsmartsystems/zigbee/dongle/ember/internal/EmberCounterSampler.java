@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.internal;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrame;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspReadAndClearCountersRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspReadAndClearCountersResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberCounterType;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspSingleResponseTransaction;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspTransaction;
+
+/**
+ * Periodically samples the NCP counters, and maintains the total counts and the rate of each counter over the last
+ * sample interval.
+ * <p>
+ * The counters are read with <i>readAndClearCounters</i> so each sample contains only the events since the previous
+ * sample. The NCP counters are 16 bit - if a counter wraps between samples the NCP sends a <i>counterRolloverHandler</i>
+ * callback which must be passed to {@link #counterRollover(EmberCounterType)} so that the wrapped count is included in
+ * the next sample.
+ *
+ * @author Chris Jackson
+ */
+public class EmberCounterSampler {
+    /**
+     * The {@link Logger}.
+     */
+    private final Logger logger = LoggerFactory.getLogger(EmberCounterSampler.class);
+
+    /**
+     * The time to wait for a response from the NCP in milliseconds
+     */
+    private static final int TRANSACTION_TIMEOUT = 5000;
+
+    /**
+     * The minimum period between samples in seconds
+     */
+    private static final int MIN_SAMPLE_PERIOD = 5;
+
+    /**
+     * The number of counts represented by a single rollover
+     */
+    private static final long ROLLOVER_COUNT = 0x10000;
+
+    private final AshFrameHandler ashHandler;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Number of rollovers received for each counter since the last sample
+     */
+    private final Map<EmberCounterType, Integer> rollovers = new EnumMap<EmberCounterType, Integer>(
+            EmberCounterType.class);
+
+    /**
+     * Total counts since the sampler was started
+     */
+    private final Map<EmberCounterType, Long> counters = new EnumMap<EmberCounterType, Long>(EmberCounterType.class);
+
+    /**
+     * Rates in counts per second over the last sample interval
+     */
+    private Map<EmberCounterType, Double> rates = Collections.emptyMap();
+
+    /**
+     * The time of the last sample in nanoseconds, or null if no sample has been taken
+     */
+    private Long lastSampleTime;
+
+    /**
+     * @param ashHandler the {@link AshFrameHandler} used to communicate with the NCP
+     */
+    public EmberCounterSampler(AshFrameHandler ashHandler) {
+        this.ashHandler = ashHandler;
+    }
+
+    /**
+     * Starts sampling the counters. The counters are cleared immediately so that the first interval starts now.
+     *
+     * @param samplePeriod the period between samples in seconds. Periods below 5 seconds will be limited to 5 seconds.
+     */
+    public synchronized void start(int samplePeriod) {
+        if (scheduler != null) {
+            return;
+        }
+
+        int period = Math.max(samplePeriod, MIN_SAMPLE_PERIOD);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sample();
+                } catch (Exception e) {
+                    logger.debug("Exception sampling NCP counters: ", e);
+                }
+            }
+        }, 0, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops sampling the counters
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Records that a counter has rolled over in the NCP. This should be called when the
+     * <i>counterRolloverHandler</i> callback is received.
+     *
+     * @param counter the {@link EmberCounterType} that rolled over
+     */
+    public synchronized void counterRollover(EmberCounterType counter) {
+        Integer count = rollovers.get(counter);
+        rollovers.put(counter, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Gets the total count of each counter since the sampler was started
+     *
+     * @return unmodifiable {@link Map} of {@link EmberCounterType} to total count
+     */
+    public synchronized Map<EmberCounterType, Long> getCounters() {
+        return Collections.unmodifiableMap(new EnumMap<EmberCounterType, Long>(counters));
+    }
+
+    /**
+     * Gets the rate of each counter over the last sample interval
+     *
+     * @return unmodifiable {@link Map} of {@link EmberCounterType} to rate in counts per second
+     */
+    public synchronized Map<EmberCounterType, Double> getRates() {
+        return rates;
+    }
+
+    /**
+     * Reads and clears the counters in the NCP, and updates the totals and rates
+     *
+     * @return true if the counters were read successfully
+     */
+    public boolean sample() {
+        EzspTransaction transaction = new EzspSingleResponseTransaction(new EzspReadAndClearCountersRequest(),
+                EzspReadAndClearCountersResponse.class);
+        Future<EzspFrame> future = ashHandler.sendEzspRequestAsync(transaction);
+        try {
+            future.get(TRANSACTION_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            logger.debug("No response from NCP reading counters");
+            future.cancel(true);
+            return false;
+        }
+
+        EzspReadAndClearCountersResponse response = (EzspReadAndClearCountersResponse) transaction.getResponse();
+        if (response == null) {
+            return false;
+        }
+        updateCounters(response.getValues(), System.nanoTime());
+        return true;
+    }
+
+    /**
+     * Updates the totals and rates with the counts from a sample
+     *
+     * @param values the counter values read from the NCP, indexed by {@link EmberCounterType}
+     * @param sampleTime the time the sample was taken in nanoseconds
+     */
+    synchronized void updateCounters(int[] values, long sampleTime) {
+        Map<EmberCounterType, Double> newRates = new EnumMap<EmberCounterType, Double>(EmberCounterType.class);
+        double interval = lastSampleTime == null ? 0 : (sampleTime - lastSampleTime) / 1000000000.0;
+
+        for (int index = 0; index < values.length; index++) {
+            EmberCounterType counter = EmberCounterType.getEmberCounterType(index);
+            if (counter == EmberCounterType.UNKNOWN) {
+                continue;
+            }
+
+            long count = values[index];
+            Integer rolloverCount = rollovers.get(counter);
+            if (rolloverCount != null) {
+                count += rolloverCount * ROLLOVER_COUNT;
+            }
+
+            Long total = counters.get(counter);
+            counters.put(counter, total == null ? count : total + count);
+
+            if (interval > 0) {
+                newRates.put(counter, count / interval);
+            }
+        }
+
+        rollovers.clear();
+        lastSampleTime = sampleTime;
+        rates = Collections.unmodifiableMap(newRates);
+
+        logger.debug("NCP counter rates: {}", rates);
+    }
+}
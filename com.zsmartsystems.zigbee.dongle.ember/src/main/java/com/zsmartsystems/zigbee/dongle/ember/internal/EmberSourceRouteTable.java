@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.internal;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Host side cache of source routes used when the NCP is operating as a high RAM concentrator.
+ * <p>
+ * Routes are learned from the route records reported by the NCP through the <i>incomingRouteRecordHandler</i>
+ * callback, and are supplied back to the NCP with <i>setSourceRoute</i> before a unicast is sent so that the NCP
+ * does not need to perform a route discovery.
+ * <p>
+ * The table holds a limited number of routes - when full, the least recently used route is evicted. Routes are also
+ * discarded once they are older than the configured maximum age, or when they are invalidated following a route
+ * error.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Chris Jackson
+ */
+public class EmberSourceRouteTable {
+    /**
+     * The {@link Logger}.
+     */
+    private final Logger logger = LoggerFactory.getLogger(EmberSourceRouteTable.class);
+
+    /**
+     * The default maximum number of routes to hold in the table
+     */
+    private static final int DEFAULT_MAX_ROUTES = 256;
+
+    /**
+     * The default maximum age of a route before it is discarded - in milliseconds
+     */
+    private static final long DEFAULT_MAX_AGE = 600000;
+
+    /**
+     * The maximum number of relays that can be placed in a source route
+     */
+    private static final int MAX_RELAYS = 11;
+
+    /**
+     * The maximum age of a route before it is discarded - in milliseconds
+     */
+    private final long maxAge;
+
+    /**
+     * Map of the routes, keyed by the destination node ID. The map is kept in access order so that the least
+     * recently used route is removed when the table is full.
+     */
+    private final Map<Integer, SourceRoute> routes;
+
+    /**
+     * Creates a source route table with the default size and route age
+     */
+    public EmberSourceRouteTable() {
+        this(DEFAULT_MAX_ROUTES, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Creates a source route table
+     *
+     * @param maxRoutes the maximum number of routes to hold in the table
+     * @param maxAge the maximum age of a route in milliseconds before it is discarded
+     */
+    public EmberSourceRouteTable(final int maxRoutes, final long maxAge) {
+        this.maxAge = maxAge;
+
+        routes = new LinkedHashMap<Integer, SourceRoute>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, SourceRoute> eldest) {
+                return size() > maxRoutes;
+            }
+        };
+    }
+
+    /**
+     * Adds, or updates, the route to a destination.
+     *
+     * @param destination the node ID of the destination
+     * @param relayList the list of relays from the route record. The first relay is the one closest to the
+     *            destination.
+     * @return true if the route was added to the table
+     */
+    public boolean addRoute(final int destination, final int[] relayList) {
+        if (relayList == null || relayList.length > MAX_RELAYS) {
+            logger.debug("{}: Source route not stored - invalid relay list {}", destination,
+                    relayList == null ? null : Arrays.toString(relayList));
+            return false;
+        }
+
+        synchronized (routes) {
+            routes.put(destination, new SourceRoute(relayList.clone(), System.currentTimeMillis()));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the route to a destination.
+     *
+     * @param destination the node ID of the destination
+     * @return the list of relays for the route, or null if no valid route is known
+     */
+    public int[] getRoute(final int destination) {
+        synchronized (routes) {
+            SourceRoute route = routes.get(destination);
+            if (route == null) {
+                return null;
+            }
+
+            if (System.currentTimeMillis() - route.timestamp > maxAge) {
+                logger.debug("{}: Source route expired", destination);
+                routes.remove(destination);
+                return null;
+            }
+
+            return route.relays.clone();
+        }
+    }
+
+    /**
+     * Removes the route to a destination. This should be called when the route is known to be broken.
+     *
+     * @param destination the node ID of the destination
+     * @return true if a route was removed
+     */
+    public boolean removeRoute(final int destination) {
+        synchronized (routes) {
+            return routes.remove(destination) != null;
+        }
+    }
+
+    /**
+     * Removes all routes from the table
+     */
+    public void clear() {
+        synchronized (routes) {
+            routes.clear();
+        }
+    }
+
+    /**
+     * Gets the number of routes currently held in the table. This may include routes that have expired, but have not
+     * yet been accessed.
+     *
+     * @return the number of routes in the table
+     */
+    public int size() {
+        synchronized (routes) {
+            return routes.size();
+        }
+    }
+
+    private class SourceRoute {
+        private final int[] relays;
+        private final long timestamp;
+
+        SourceRoute(int[] relays, long timestamp) {
+            this.relays = relays;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.zsmartsystems.zigbee.IeeeAddress;
+import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrame;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameTest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetConfigurationValueRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetConfigurationValueResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetNeighborRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetNeighborResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetRouteTableEntryRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetRouteTableEntryResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNeighborCountResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspTransaction;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportTableListener;
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class EzspNeighborTableTest extends EzspFrameTest {
+    private int neighborCost = 1;
+
+    private AshFrameHandler getAshHandler() {
+        AshFrameHandler ashHandler = Mockito.mock(AshFrameHandler.class);
+        Mockito.when(ashHandler.sendEzspRequestAsync(Matchers.any(EzspTransaction.class)))
+                .thenAnswer(new Answer<FutureTask<EzspFrame>>() {
+                    @Override
+                    public FutureTask<EzspFrame> answer(InvocationOnMock invocation) {
+                        EzspTransaction transaction = (EzspTransaction) invocation.getArguments()[0];
+                        transaction.isMatch(getResponse(transaction.getRequest()));
+
+                        FutureTask<EzspFrame> future = new FutureTask<EzspFrame>(new Callable<EzspFrame>() {
+                            @Override
+                            public EzspFrame call() {
+                                return null;
+                            }
+                        });
+                        future.run();
+                        return future;
+                    }
+                });
+        return ashHandler;
+    }
+
+    private EzspFrameResponse getResponse(EzspFrameRequest request) {
+        String sequence = String.format("%02X", request.getSequenceNumber());
+        if (request instanceof EzspGetConfigurationValueRequest) {
+            // Route table size of 3
+            return new EzspGetConfigurationValueResponse(getPacketData(sequence + " 80 52 00 03 00"));
+        }
+        if (request instanceof EzspGetNeighborRequest) {
+            int index = ((EzspGetNeighborRequest) request).getIndex();
+            return new EzspGetNeighborResponse(getPacketData(sequence + " 80 79 00 0" + index + " 72 FF 0"
+                    + neighborCost + " 01 03 CC 43 6B 05 00 6F 0D 0" + index));
+        }
+        if (request instanceof EzspGetRouteTableEntryRequest) {
+            int index = ((EzspGetRouteTableEntryRequest) request).getIndex();
+            if (index == 2) {
+                // Unused entry
+                return new EzspGetRouteTableEntryResponse(
+                        getPacketData(sequence + " 80 7B 00 FF FF 00 00 03 00 00 00"));
+            }
+            return new EzspGetRouteTableEntryResponse(
+                    getPacketData(sequence + " 80 7B 00 0" + index + " 12 01 72 00 00 00 00"));
+        }
+        // Neighbor count of 2
+        return new EzspNeighborCountResponse(getPacketData(sequence + " 80 7A 02"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void updateTables() {
+        ZigBeeTransportTableListener tableListener = Mockito.mock(ZigBeeTransportTableListener.class);
+        EzspNeighborTable neighborTable = new EzspNeighborTable(getAshHandler(), tableListener);
+
+        assertTrue(neighborTable.updateTables());
+        assertEquals(2, neighborTable.getNeighbors().size());
+        assertEquals(2, neighborTable.getRoutes().size());
+
+        ArgumentCaptor<List> addedCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List> updatedCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List> removedCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(tableListener, Mockito.times(1)).localNeighborsUpdated(addedCaptor.capture(),
+                updatedCaptor.capture(), removedCaptor.capture());
+
+        List<NeighborTable> neighbors = addedCaptor.getValue();
+        assertEquals(2, neighbors.size());
+        assertEquals(Integer.valueOf(0x7201), neighbors.get(1).getNetworkAddress());
+        assertEquals(new IeeeAddress("010D6F00056B43CC"), neighbors.get(1).getExtendedAddress());
+        assertEquals(Integer.valueOf(255), neighbors.get(1).getLqi());
+        assertTrue(updatedCaptor.getValue().isEmpty());
+        assertTrue(removedCaptor.getValue().isEmpty());
+
+        Mockito.verify(tableListener, Mockito.times(1)).localRoutesUpdated(addedCaptor.capture(),
+                updatedCaptor.capture(), removedCaptor.capture());
+        List<RoutingTable> routes = addedCaptor.getValue();
+        assertEquals(2, routes.size());
+        assertEquals(Integer.valueOf(0x1200), routes.get(0).getDestinationAddress());
+        assertEquals(Integer.valueOf(0x7201), routes.get(0).getNextHopAddress());
+        assertEquals(RoutingTable.DiscoveryState.ACTIVE, routes.get(0).getStatus());
+
+        // No changes - no notification
+        assertTrue(neighborTable.updateTables());
+        Mockito.verify(tableListener, Mockito.times(1)).localNeighborsUpdated(Matchers.anyList(),
+                Matchers.anyList(), Matchers.anyList());
+        Mockito.verify(tableListener, Mockito.times(1)).localRoutesUpdated(Matchers.anyList(),
+                Matchers.anyList(), Matchers.anyList());
+
+        // Neighbor cost changes - only the changed neighbors are notified
+        neighborCost = 3;
+        assertTrue(neighborTable.updateTables());
+        Mockito.verify(tableListener, Mockito.times(2)).localNeighborsUpdated(addedCaptor.capture(),
+                updatedCaptor.capture(), removedCaptor.capture());
+        assertTrue(addedCaptor.getValue().isEmpty());
+        assertEquals(2, updatedCaptor.getValue().size());
+        assertTrue(removedCaptor.getValue().isEmpty());
+        Mockito.verify(tableListener, Mockito.times(1)).localRoutesUpdated(Matchers.anyList(),
+                Matchers.anyList(), Matchers.anyList());
+    }
+
+    @Test
+    public void noResponse() {
+        AshFrameHandler ashHandler = Mockito.mock(AshFrameHandler.class);
+        Mockito.when(ashHandler.sendEzspRequestAsync(Matchers.any(EzspTransaction.class)))
+                .thenReturn(new FutureTask<EzspFrame>(new Callable<EzspFrame>() {
+                    @Override
+                    public EzspFrame call() {
+                        return null;
+                    }
+                }) {
+                    {
+                        // Complete the future without a response being received
+                        run();
+                    }
+                });
+        ZigBeeTransportTableListener tableListener = Mockito.mock(ZigBeeTransportTableListener.class);
+        EzspNeighborTable neighborTable = new EzspNeighborTable(ashHandler, tableListener);
+
+        assertFalse(neighborTable.updateTables());
+        assertEquals(0, neighborTable.getNeighbors().size());
+        Mockito.verifyZeroInteractions(tableListener);
+    }
+}
@@ -10,9 +10,13 @@ package com.zsmartsystems.zigbee.dongle.ember;
 import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
+import org.mockito.Mockito;
 
 import com.zsmartsystems.zigbee.ExtendedPanId;
 import com.zsmartsystems.zigbee.dongle.ember.ZigBeeDongleEzsp;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspMessageSentHandler;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportDeliveryListener;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportReceive;
 
 /**
  *
@@ -35,4 +39,21 @@ public class ZigBeeDongleEzspTest {
         dongle.setZigBeePanId(0x1234);
         assertEquals(0x1234, dongle.getZigBeePanId());
     }
+
+    @Test
+    public void messageSent() {
+        ZigBeeDongleEzsp dongle = new ZigBeeDongleEzsp(null);
+        ZigBeeTransportReceive transport = Mockito.mock(ZigBeeTransportReceive.class,
+                Mockito.withSettings().extraInterfaces(ZigBeeTransportDeliveryListener.class));
+        dongle.setZigBeeTransportReceive(transport);
+        ZigBeeTransportDeliveryListener deliveryListener = (ZigBeeTransportDeliveryListener) transport;
+
+        dongle.handlePacket(new EzspMessageSentHandler(new int[] { 0x04, 0x90, 0x3F, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x04, 0x00, 0x00, 0x00, 0x40, 0x11, 0x00, 0x00, 0x78, 0x04, 0x00, 0x00 }));
+        Mockito.verify(deliveryListener, Mockito.times(1)).commandDeliveryStatus(4, true);
+
+        dongle.handlePacket(new EzspMessageSentHandler(new int[] { 0x04, 0x90, 0x3F, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x04, 0x00, 0x00, 0x00, 0x40, 0x11, 0x00, 0x00, 0x78, 0x05, 0x66, 0x00 }));
+        Mockito.verify(deliveryListener, Mockito.times(1)).commandDeliveryStatus(5, false);
+    }
 }
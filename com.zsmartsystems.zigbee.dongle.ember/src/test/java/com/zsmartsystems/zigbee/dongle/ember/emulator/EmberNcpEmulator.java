@@ -0,0 +1,670 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.emulator;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrame;
+import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameData;
+import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameRst;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspAddEndpointRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetConfigurationValueRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetCurrentSecurityStateRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetNetworkParametersRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetPolicyRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspIncomingMessageHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspInvalidCommandResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspMessageSentHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkInitRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkStateRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendBroadcastRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendManyToOneRouteRequestRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendMulticastRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendUnicastRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSetConfigurationValueRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSetPolicyRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspStackStatusHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspVersionRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.serializer.EzspDeserializer;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.serializer.EzspSerializer;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberApsFrame;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberIncomingMessageType;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberJoinMethod;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberNetworkParameters;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberNetworkStatus;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberNodeType;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberOutgoingMessageType;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberStatus;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EzspStatus;
+import com.zsmartsystems.zigbee.transport.ZigBeePort;
+import com.zsmartsystems.zigbee.zcl.ZclStatus;
+
+/**
+ * In-process emulation of an Ember network co-processor, used for load and latency testing of the host stack without
+ * hardware.
+ * <p>
+ * The emulator implements {@link ZigBeePort} so it can be connected to the
+ * {@link com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameHandler} in place of a serial port. It speaks ASH version 2
+ * framing - reset, acknowledgement and in-sequence DATA frames with randomisation, CRC and byte stuffing - and handles
+ * the following subset of EZSP:
+ * <ul>
+ * <li>version
+ * <li>getConfigurationValue, setConfigurationValue, getPolicy and setPolicy, which store the values in the emulator
+ * <li>addEndpoint, getNetworkParameters and getCurrentSecurityState
+ * <li>networkInit, which is followed by a stackStatus callback if the network is up, and networkState
+ * <li>sendUnicast, sendBroadcast and sendMulticast, which are followed by a messageSent callback
+ * <li>sendManyToOneRouteRequest
+ * <li>incomingMessage callbacks with a ZCL Default Response from the destination device
+ * </ul>
+ * This is enough for {@link com.zsmartsystems.zigbee.dongle.ember.ZigBeeDongleEzsp} to initialize and start up on an
+ * existing network, as long as neighbor table polling and counter sampling are disabled. Other EZSP frames are
+ * rejected with an invalidCommand response.
+ * <p>
+ * The radio network is simulated by a population of devices with network addresses 1 to {@link #setDeviceCount}.
+ * Each unicast to a device is delivered after a random link latency between the configured minimum and maximum, and
+ * is lost with the configured loss rate. Messages to addresses outside the population always fail. The ASH link itself
+ * is lossless, so retries in the host are only caused by the host.
+ *
+ * @author Chris Jackson
+ */
+public class EmberNcpEmulator implements ZigBeePort {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(EmberNcpEmulator.class);
+
+    private static final int ASH_CANCEL_BYTE = 0x1A;
+    private static final int ASH_FLAG_BYTE = 0x7E;
+    private static final int ASH_ESCAPE_BYTE = 0x7D;
+    private static final int ASH_MAX_LENGTH = 131;
+    private static final int ASH_VERSION = 2;
+    private static final int ASH_RESET_SOFTWARE = 0x0B;
+
+    private static final int EZSP_PROTOCOL_VERSION = 4;
+    private static final int EZSP_STACK_TYPE = 2;
+    private static final int EZSP_STACK_VERSION = 0x5A00;
+
+    /**
+     * EZSP frame control for responses, and for asynchronous callbacks
+     */
+    private static final int EZSP_FRAME_CONTROL_RESPONSE = 0x80;
+    private static final int EZSP_FRAME_CONTROL_CALLBACK = 0x90;
+
+    private static final int EMULATOR_PAN_ID = 0x2A1B;
+    private static final int EMULATOR_CHANNEL = 11;
+
+    private static final int ZCL_PROFILE_HA = 0x0104;
+    private static final int ZCL_MANUFACTURER_SPECIFIC = 0x04;
+    private static final int ZCL_FRAME_TYPE_MASK = 0x03;
+    private static final int ZCL_DEFAULT_RESPONSE = 0x0B;
+
+    /**
+     * Bytes waiting to be read by the host
+     */
+    private final LinkedBlockingQueue<Integer> hostQueue = new LinkedBlockingQueue<Integer>();
+
+    /**
+     * Scheduler used to deliver the simulated radio messages after the link latency
+     */
+    private ScheduledExecutorService scheduler;
+
+    private final Random random;
+
+    private final int[] inputBuffer = new int[ASH_MAX_LENGTH];
+    private int inputCount = 0;
+    private boolean inputError = false;
+
+    /**
+     * The next frame number expected from the host
+     */
+    private int ackNum = 0;
+
+    /**
+     * The frame number of the next DATA frame we send
+     */
+    private int frmNum = 0;
+
+    private int apsSequence = 0;
+
+    private int minLatency = 0;
+    private int maxLatency = 0;
+    private double lossRate = 0.0;
+    private int deviceCount = 0;
+    private EmberNetworkStatus networkState = EmberNetworkStatus.EMBER_JOINED_NETWORK;
+
+    /**
+     * The configuration and policy values set by the host, keyed by configuration or policy ID
+     */
+    private final Map<Integer, Integer> configuration = new HashMap<Integer, Integer>();
+    private final Map<Integer, Integer> policies = new HashMap<Integer, Integer>();
+
+    private final AtomicLong commandCount = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() {
+            try {
+                return hostQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        @Override
+        public int available() {
+            return hostQueue.size();
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+            receiveByte(b & 0xFF);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int cnt = off; cnt < off + len; cnt++) {
+                receiveByte(b[cnt] & 0xFF);
+            }
+        }
+    };
+
+    /**
+     * Creates an emulator with a fixed random seed so that the simulated losses and latencies are repeatable
+     *
+     * @param seed the seed for the link simulation
+     */
+    public EmberNcpEmulator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Sets the range of the simulated link latency between the NCP and the destination device
+     *
+     * @param minLatency the minimum latency in milliseconds
+     * @param maxLatency the maximum latency in milliseconds
+     */
+    public void setLinkLatency(int minLatency, int maxLatency) {
+        this.minLatency = minLatency;
+        this.maxLatency = Math.max(minLatency, maxLatency);
+    }
+
+    /**
+     * Sets the probability that a unicast is not delivered to the destination device
+     *
+     * @param lossRate the loss rate between 0.0 and 1.0
+     */
+    public void setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+    }
+
+    /**
+     * Sets the number of simulated devices in the network. The devices use network addresses 1 to deviceCount.
+     *
+     * @param deviceCount the number of devices
+     */
+    public void setDeviceCount(int deviceCount) {
+        this.deviceCount = deviceCount;
+    }
+
+    /**
+     * Sets the network state reported to networkInit and networkState requests
+     *
+     * @param networkState the {@link EmberNetworkStatus}
+     */
+    public void setNetworkState(EmberNetworkStatus networkState) {
+        this.networkState = networkState;
+    }
+
+    /**
+     * Gets the number of EZSP commands received from the host
+     *
+     * @return the number of commands
+     */
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    /**
+     * Gets the number of messages that were delivered to a simulated device
+     *
+     * @return the number of delivered messages
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Gets the number of messages that were not delivered
+     *
+     * @return the number of failed messages
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public boolean open() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int count = 0;
+        Integer value;
+        while (count < length && (value = hostQueue.poll()) != null) {
+            buffer[offset + count++] = value.byteValue();
+        }
+        return count;
+    }
+
+    private synchronized void receiveByte(int val) {
+        if (val == ASH_CANCEL_BYTE) {
+            inputCount = 0;
+            inputError = false;
+        } else if (val == ASH_FLAG_BYTE) {
+            if (!inputError && inputCount != 0) {
+                receiveFrame(AshFrame.createFromInput(inputBuffer, inputCount));
+            }
+            inputCount = 0;
+            inputError = false;
+        } else if (inputCount >= ASH_MAX_LENGTH) {
+            inputError = true;
+        } else {
+            inputBuffer[inputCount++] = val;
+        }
+    }
+
+    private void receiveFrame(AshFrame frame) {
+        if (frame == null) {
+            logger.debug("NCP emulator RX: BAD PACKET");
+            sendNak();
+            return;
+        }
+        logger.trace("NCP emulator RX: {}", frame);
+
+        if (frame instanceof AshFrameRst) {
+            ackNum = 0;
+            frmNum = 0;
+            outputFrame(new int[] { 0xC1, ASH_VERSION, ASH_RESET_SOFTWARE });
+        } else if (frame instanceof AshFrameData) {
+            if (frame.getFrmNum() != ackNum) {
+                // Retransmission of a frame we've already handled - just acknowledge it again
+                sendAck();
+                return;
+            }
+            ackNum = (ackNum + 1) & 0x07;
+
+            int[] response = handleEzspFrame(((AshFrameData) frame).getDataBuffer());
+            if (response == null) {
+                sendAck();
+            } else {
+                sendData(response);
+            }
+        }
+
+        // ACK and NAK frames are ignored since the emulator never needs to retransmit
+    }
+
+    private int[] handleEzspFrame(int[] request) {
+        commandCount.incrementAndGet();
+
+        EzspDeserializer deserializer = new EzspDeserializer(request);
+        int sequence = deserializer.deserializeUInt8();
+        deserializer.deserializeUInt8();
+        int frameId = deserializer.deserializeUInt8();
+
+        EzspSerializer serializer = new EzspSerializer();
+        serializer.serializeUInt8(sequence);
+        serializer.serializeUInt8(EZSP_FRAME_CONTROL_RESPONSE);
+
+        if (frameId == EzspVersionRequest.FRAME_ID) {
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(Math.min(deserializer.deserializeUInt8(), EZSP_PROTOCOL_VERSION));
+            serializer.serializeUInt8(EZSP_STACK_TYPE);
+            serializer.serializeUInt16(EZSP_STACK_VERSION);
+        } else if (frameId == EzspGetConfigurationValueRequest.FRAME_ID) {
+            Integer value = configuration.get(deserializer.deserializeUInt8());
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EzspStatus.EZSP_SUCCESS.getKey());
+            serializer.serializeUInt16(value == null ? 0 : value);
+        } else if (frameId == EzspSetConfigurationValueRequest.FRAME_ID) {
+            int configId = deserializer.deserializeUInt8();
+            configuration.put(configId, deserializer.deserializeUInt16());
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EzspStatus.EZSP_SUCCESS.getKey());
+        } else if (frameId == EzspGetPolicyRequest.FRAME_ID) {
+            Integer decision = policies.get(deserializer.deserializeUInt8());
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EzspStatus.EZSP_SUCCESS.getKey());
+            serializer.serializeUInt8(decision == null ? 0 : decision);
+        } else if (frameId == EzspSetPolicyRequest.FRAME_ID) {
+            int policyId = deserializer.deserializeUInt8();
+            policies.put(policyId, deserializer.deserializeUInt8());
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EzspStatus.EZSP_SUCCESS.getKey());
+        } else if (frameId == EzspAddEndpointRequest.FRAME_ID) {
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EzspStatus.EZSP_SUCCESS.getKey());
+        } else if (frameId == EzspGetNetworkParametersRequest.FRAME_ID) {
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(isJoined() ? EmberStatus.EMBER_SUCCESS.getKey()
+                    : EmberStatus.EMBER_NOT_JOINED.getKey());
+            serializer.serializeUInt8(EmberNodeType.EMBER_COORDINATOR.getKey());
+            serializer.serializeEmberNetworkParameters(getNetworkParameters());
+        } else if (frameId == EzspGetCurrentSecurityStateRequest.FRAME_ID) {
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EmberStatus.EMBER_SUCCESS.getKey());
+            // Security bitmask and trust centre EUI64
+            serializer.serializeUInt16(0);
+            serializer.serializeUInt8Array(new int[8]);
+        } else if (frameId == EzspNetworkInitRequest.FRAME_ID) {
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(isJoined() ? EmberStatus.EMBER_SUCCESS.getKey()
+                    : EmberStatus.EMBER_NOT_JOINED.getKey());
+            if (isJoined()) {
+                scheduleStackStatus(EmberStatus.EMBER_NETWORK_UP);
+            }
+        } else if (frameId == EzspNetworkStateRequest.FRAME_ID) {
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(networkState.getKey());
+        } else if (frameId == EzspSendUnicastRequest.FRAME_ID) {
+            int type = deserializer.deserializeUInt8();
+            int destination = deserializer.deserializeUInt16();
+            EmberApsFrame apsFrame = deserializer.deserializeEmberApsFrame();
+            int messageTag = deserializer.deserializeUInt8();
+            int[] contents = deserializer.deserializeUInt8Array(deserializer.deserializeUInt8());
+
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EmberStatus.EMBER_SUCCESS.getKey());
+            serializer.serializeUInt8(nextApsSequence(apsFrame));
+            scheduleUnicast(type, destination, apsFrame, messageTag, contents);
+        } else if (frameId == EzspSendBroadcastRequest.FRAME_ID) {
+            int destination = deserializer.deserializeUInt16();
+            EmberApsFrame apsFrame = deserializer.deserializeEmberApsFrame();
+            deserializer.deserializeUInt8();
+            int messageTag = deserializer.deserializeUInt8();
+
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EmberStatus.EMBER_SUCCESS.getKey());
+            serializer.serializeUInt8(nextApsSequence(apsFrame));
+            scheduleMessageSent(EmberOutgoingMessageType.EMBER_OUTGOING_BROADCAST.getKey(), destination, apsFrame,
+                    messageTag, EmberStatus.EMBER_SUCCESS);
+        } else if (frameId == EzspSendMulticastRequest.FRAME_ID) {
+            EmberApsFrame apsFrame = deserializer.deserializeEmberApsFrame();
+            deserializer.deserializeUInt8();
+            deserializer.deserializeUInt8();
+            int messageTag = deserializer.deserializeUInt8();
+
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EmberStatus.EMBER_SUCCESS.getKey());
+            serializer.serializeUInt8(nextApsSequence(apsFrame));
+            scheduleMessageSent(EmberOutgoingMessageType.EMBER_OUTGOING_MULTICAST.getKey(), apsFrame.getGroupId(),
+                    apsFrame, messageTag, EmberStatus.EMBER_SUCCESS);
+        } else if (frameId == EzspSendManyToOneRouteRequestRequest.FRAME_ID) {
+            serializer.serializeUInt8(frameId);
+            serializer.serializeUInt8(EmberStatus.EMBER_SUCCESS.getKey());
+        } else {
+            logger.debug("NCP emulator: Unsupported EZSP frame {}", String.format("%02X", frameId));
+            serializer.serializeUInt8(EzspInvalidCommandResponse.FRAME_ID);
+            serializer.serializeUInt8(EzspStatus.EZSP_ERROR_INVALID_FRAME_ID.getKey());
+        }
+
+        return serializer.getPayload();
+    }
+
+    private boolean isJoined() {
+        return networkState == EmberNetworkStatus.EMBER_JOINED_NETWORK;
+    }
+
+    private EmberNetworkParameters getNetworkParameters() {
+        EmberNetworkParameters parameters = new EmberNetworkParameters();
+        parameters.setExtendedPanId(new int[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        parameters.setPanId(EMULATOR_PAN_ID);
+        parameters.setRadioTxPower(8);
+        parameters.setRadioChannel(EMULATOR_CHANNEL);
+        parameters.setJoinMethod(EmberJoinMethod.EMBER_USE_MAC_ASSOCIATION);
+        parameters.setNwkManagerId(0);
+        parameters.setNwkUpdateId(0);
+        parameters.setChannels(1 << EMULATOR_CHANNEL);
+        return parameters;
+    }
+
+    private int nextApsSequence(EmberApsFrame apsFrame) {
+        apsSequence = (apsSequence + 1) & 0xFF;
+        apsFrame.setSequence(apsSequence);
+        return apsSequence;
+    }
+
+    private void scheduleUnicast(final int type, final int destination, final EmberApsFrame apsFrame,
+            final int messageTag, final int[] contents) {
+        final boolean delivered = destination >= 1 && destination <= deviceCount && random.nextDouble() >= lossRate;
+
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!delivered) {
+                    failedCount.incrementAndGet();
+                    sendMessageSent(type, destination, apsFrame, messageTag, EmberStatus.EMBER_DELIVERY_FAILED);
+                    return;
+                }
+
+                deliveredCount.incrementAndGet();
+                sendMessageSent(type, destination, apsFrame, messageTag, EmberStatus.EMBER_SUCCESS);
+
+                int[] response = getDeviceResponse(apsFrame, contents);
+                if (response != null) {
+                    sendIncomingMessage(destination, apsFrame, response);
+                }
+            }
+        });
+    }
+
+    private void scheduleMessageSent(final int type, final int destination, final EmberApsFrame apsFrame,
+            final int messageTag, final EmberStatus status) {
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                sendMessageSent(type, destination, apsFrame, messageTag, status);
+            }
+        });
+    }
+
+    private void scheduleStackStatus(final EmberStatus status) {
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                EzspSerializer serializer = new EzspSerializer();
+                serializer.serializeUInt8(0);
+                serializer.serializeUInt8(EZSP_FRAME_CONTROL_CALLBACK);
+                serializer.serializeUInt8(EzspStackStatusHandler.FRAME_ID);
+                serializer.serializeUInt8(status.getKey());
+                sendData(serializer.getPayload());
+            }
+        });
+    }
+
+    private void schedule(Runnable delivery) {
+        int latency = minLatency + random.nextInt(maxLatency - minLatency + 1);
+        ScheduledExecutorService currentScheduler = scheduler;
+        if (currentScheduler == null || currentScheduler.isShutdown()) {
+            return;
+        }
+        currentScheduler.schedule(delivery, latency, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the response of the simulated device. Devices reply to ZCL commands with a Default Response, and don't
+     * respond to anything else.
+     */
+    private int[] getDeviceResponse(EmberApsFrame apsFrame, int[] contents) {
+        if (apsFrame.getProfileId() != ZCL_PROFILE_HA) {
+            return null;
+        }
+        int headerLength = (contents.length > 0 && (contents[0] & ZCL_MANUFACTURER_SPECIFIC) != 0) ? 5 : 3;
+        if (contents.length < headerLength) {
+            return null;
+        }
+        int commandId = contents[headerLength - 1];
+        if ((contents[0] & ZCL_FRAME_TYPE_MASK) == 0 && commandId == ZCL_DEFAULT_RESPONSE) {
+            return null;
+        }
+
+        // Server to client, disable default response, with the transaction sequence number of the request
+        return new int[] { 0x18, contents[headerLength - 2], ZCL_DEFAULT_RESPONSE, commandId,
+                ZclStatus.SUCCESS.getId() };
+    }
+
+    private void sendMessageSent(int type, int destination, EmberApsFrame apsFrame, int messageTag,
+            EmberStatus status) {
+        EzspSerializer serializer = new EzspSerializer();
+        serializer.serializeUInt8(0);
+        serializer.serializeUInt8(EZSP_FRAME_CONTROL_CALLBACK);
+        serializer.serializeUInt8(EzspMessageSentHandler.FRAME_ID);
+        serializer.serializeUInt8(type);
+        serializer.serializeUInt16(destination);
+        serializer.serializeEmberApsFrame(apsFrame);
+        serializer.serializeUInt8(messageTag);
+        serializer.serializeUInt8(status.getKey());
+        // Message contents are not included in the callback
+        serializer.serializeUInt8(0);
+        sendData(serializer.getPayload());
+    }
+
+    private void sendIncomingMessage(int sender, EmberApsFrame request, int[] contents) {
+        EmberApsFrame apsFrame = new EmberApsFrame();
+        apsFrame.setProfileId(request.getProfileId());
+        apsFrame.setClusterId(request.getClusterId());
+        apsFrame.setSourceEndpoint(request.getDestinationEndpoint());
+        apsFrame.setDestinationEndpoint(request.getSourceEndpoint());
+        apsFrame.setSequence(request.getSequence());
+
+        EzspSerializer serializer = new EzspSerializer();
+        serializer.serializeUInt8(0);
+        serializer.serializeUInt8(EZSP_FRAME_CONTROL_CALLBACK);
+        serializer.serializeUInt8(EzspIncomingMessageHandler.FRAME_ID);
+        serializer.serializeUInt8(EmberIncomingMessageType.EMBER_INCOMING_UNICAST.getKey());
+        serializer.serializeEmberApsFrame(apsFrame);
+        // Last hop LQI and RSSI
+        serializer.serializeUInt8(0xFF);
+        serializer.serializeUInt8(-40 & 0xFF);
+        serializer.serializeUInt16(sender);
+        // Binding and address table indexes
+        serializer.serializeUInt8(0xFF);
+        serializer.serializeUInt8(0xFF);
+        serializer.serializeUInt8(contents.length);
+        serializer.serializeUInt8Array(contents);
+        sendData(serializer.getPayload());
+    }
+
+    private synchronized void sendData(int[] ezspFrame) {
+        int[] frame = new int[ezspFrame.length + 1];
+        frame[0] = (frmNum << 4) + ackNum;
+        System.arraycopy(ezspFrame, 0, frame, 1, ezspFrame.length);
+        randomise(frame);
+        frmNum = (frmNum + 1) & 0x07;
+        outputFrame(frame);
+    }
+
+    private synchronized void sendAck() {
+        outputFrame(new int[] { 0x80 + ackNum });
+    }
+
+    private synchronized void sendNak() {
+        outputFrame(new int[] { 0xA0 + ackNum });
+    }
+
+    /**
+     * Adds the CRC, byte stuffing and flag to a frame, and queues it for the host
+     */
+    private synchronized void outputFrame(int[] frame) {
+        int crc = getCrc(frame);
+        int[] unstuffed = Arrays.copyOf(frame, frame.length + 2);
+        unstuffed[frame.length] = (crc >> 8) & 0xFF;
+        unstuffed[frame.length + 1] = crc & 0xFF;
+
+        for (int val : unstuffed) {
+            switch (val) {
+                case ASH_FLAG_BYTE:
+                case ASH_ESCAPE_BYTE:
+                case 0x11:
+                case 0x13:
+                case 0x18:
+                case ASH_CANCEL_BYTE:
+                    hostQueue.add(ASH_ESCAPE_BYTE);
+                    hostQueue.add(val ^ 0x20);
+                    break;
+                default:
+                    hostQueue.add(val);
+                    break;
+            }
+        }
+        hostQueue.add(ASH_FLAG_BYTE);
+    }
+
+    /**
+     * Randomises the data field of a DATA frame with the ASH pseudo-random sequence
+     */
+    private static void randomise(int[] frame) {
+        int rand = 0x42;
+        for (int cnt = 1; cnt < frame.length; cnt++) {
+            frame[cnt] ^= rand;
+            rand = (rand & 0x01) == 0 ? rand >> 1 : (rand >> 1) ^ 0xB8;
+        }
+    }
+
+    /**
+     * Calculates the CRC-CCITT of the frame
+     */
+    private static int getCrc(int[] frame) {
+        int crc = 0xFFFF;
+        for (int val : frame) {
+            crc ^= val << 8;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+}
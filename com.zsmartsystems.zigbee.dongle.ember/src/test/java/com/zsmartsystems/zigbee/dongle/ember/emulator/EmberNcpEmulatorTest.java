@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.emulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.CommandResult;
+import com.zsmartsystems.zigbee.ZigBeeDeviceAddress;
+import com.zsmartsystems.zigbee.ZigBeeNetworkManager;
+import com.zsmartsystems.zigbee.ZigBeeNetworkManager.ZigBeeInitializeResponse;
+import com.zsmartsystems.zigbee.ZigBeeNetworkStateListener;
+import com.zsmartsystems.zigbee.dongle.ember.EzspFrameHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ZigBeeDongleEzsp;
+import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrame;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspIncomingMessageHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspMessageSentHandler;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkInitRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkInitResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkStateRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNetworkStateResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendBroadcastRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendBroadcastResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspSendUnicastRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspVersionRequest;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspVersionResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberApsFrame;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberNetworkStatus;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberOutgoingMessageType;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberStatus;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspSingleResponseTransaction;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.transaction.EzspTransaction;
+import com.zsmartsystems.zigbee.serialization.DefaultDeserializer;
+import com.zsmartsystems.zigbee.serialization.DefaultSerializer;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportState;
+import com.zsmartsystems.zigbee.zcl.ZclStatus;
+import com.zsmartsystems.zigbee.zcl.clusters.ZclOnOffCluster;
+import com.zsmartsystems.zigbee.zcl.clusters.general.DefaultResponse;
+
+/**
+ * Runs the {@link AshFrameHandler} against the {@link EmberNcpEmulator}. The load tests log the command rate and the
+ * latency percentiles from sending a unicast to receiving the messageSent callback so they can be compared between
+ * builds.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class EmberNcpEmulatorTest {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(EmberNcpEmulatorTest.class);
+
+    private static final int LOAD_COMMANDS = 200;
+    private static final int LOAD_WINDOW = 8;
+
+    private EmberNcpEmulator emulator;
+    private AshFrameHandler ashHandler;
+    private ZigBeeNetworkManager networkManager;
+
+    private final Map<Integer, Long> sendTimes = new ConcurrentHashMap<Integer, Long>();
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+    private final LinkedBlockingQueue<EzspMessageSentHandler> messageSent = new LinkedBlockingQueue<EzspMessageSentHandler>();
+    private final AtomicInteger incomingMessages = new AtomicInteger();
+    private final Semaphore window = new Semaphore(LOAD_WINDOW);
+
+    private final EzspFrameHandler frameHandler = new EzspFrameHandler() {
+        @Override
+        public void handlePacket(EzspFrame response) {
+            if (response instanceof EzspMessageSentHandler) {
+                EzspMessageSentHandler sent = (EzspMessageSentHandler) response;
+                Long sendTime = sendTimes.remove(sent.getMessageTag());
+                if (sendTime != null) {
+                    latencies.add(System.nanoTime() - sendTime);
+                }
+                messageSent.add(sent);
+                window.release();
+            } else if (response instanceof EzspIncomingMessageHandler) {
+                incomingMessages.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void handleLinkStateChange(boolean state) {
+        }
+    };
+
+    private void connect(EmberNcpEmulator emulator) {
+        this.emulator = emulator;
+        assertTrue(emulator.open());
+        ashHandler = new AshFrameHandler(emulator.getInputStream(), emulator.getOutputStream(), frameHandler);
+        ashHandler.connect();
+    }
+
+    @After
+    public void close() {
+        if (networkManager != null) {
+            networkManager.shutdown();
+        }
+        if (ashHandler != null) {
+            ashHandler.close();
+        }
+        if (emulator != null) {
+            emulator.close();
+        }
+    }
+
+    private EzspSendUnicastRequest getUnicast(int destination, int messageTag) {
+        EmberApsFrame apsFrame = new EmberApsFrame();
+        apsFrame.setProfileId(0x0104);
+        apsFrame.setClusterId(0x0006);
+        apsFrame.setSourceEndpoint(1);
+        apsFrame.setDestinationEndpoint(1);
+
+        EzspSendUnicastRequest request = new EzspSendUnicastRequest();
+        request.setType(EmberOutgoingMessageType.EMBER_OUTGOING_DIRECT);
+        request.setIndexOrDestination(destination);
+        request.setApsFrame(apsFrame);
+        request.setMessageTag(messageTag);
+        // ZCL On/Off Toggle
+        request.setMessageContents(new int[] { 0x01, messageTag, 0x02 });
+        return request;
+    }
+
+    /**
+     * Sends unicasts with up to {@link #LOAD_WINDOW} messages outstanding, and waits for all messageSent callbacks
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private long sendUnicasts(int count, int deviceCount) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int cnt = 0; cnt < count; cnt++) {
+            assertTrue(window.tryAcquire(5, TimeUnit.SECONDS));
+            int messageTag = cnt & 0xFF;
+            sendTimes.put(messageTag, System.nanoTime());
+            ashHandler.queueFrame(getUnicast((cnt % deviceCount) + 1, messageTag));
+        }
+        assertTrue(window.tryAcquire(LOAD_WINDOW, 5, TimeUnit.SECONDS));
+        return System.nanoTime() - start;
+    }
+
+    private long getPercentile(List<Long> values, double percentile) {
+        List<Long> sorted = new ArrayList<Long>(values);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    @Test
+    public void testStartup() {
+        connect(new EmberNcpEmulator(1));
+
+        EzspVersionRequest version = new EzspVersionRequest();
+        version.setDesiredProtocolVersion(4);
+        EzspTransaction transaction = ashHandler
+                .sendEzspTransaction(new EzspSingleResponseTransaction(version, EzspVersionResponse.class));
+        EzspVersionResponse versionResponse = (EzspVersionResponse) transaction.getResponse();
+        assertEquals(4, versionResponse.getProtocolVersion());
+        assertEquals(2, versionResponse.getStackType());
+
+        transaction = ashHandler.sendEzspTransaction(
+                new EzspSingleResponseTransaction(new EzspNetworkInitRequest(), EzspNetworkInitResponse.class));
+        assertEquals(EmberStatus.EMBER_SUCCESS, ((EzspNetworkInitResponse) transaction.getResponse()).getStatus());
+
+        transaction = ashHandler.sendEzspTransaction(
+                new EzspSingleResponseTransaction(new EzspNetworkStateRequest(), EzspNetworkStateResponse.class));
+        assertEquals(EmberNetworkStatus.EMBER_JOINED_NETWORK,
+                ((EzspNetworkStateResponse) transaction.getResponse()).getStatus());
+
+        emulator.setNetworkState(EmberNetworkStatus.EMBER_NO_NETWORK);
+        transaction = ashHandler.sendEzspTransaction(
+                new EzspSingleResponseTransaction(new EzspNetworkInitRequest(), EzspNetworkInitResponse.class));
+        assertEquals(EmberStatus.EMBER_NOT_JOINED, ((EzspNetworkInitResponse) transaction.getResponse()).getStatus());
+    }
+
+    @Test
+    public void testUnicastLoad() throws InterruptedException {
+        EmberNcpEmulator emulator = new EmberNcpEmulator(1);
+        emulator.setDeviceCount(20);
+        emulator.setLinkLatency(2, 10);
+        connect(emulator);
+
+        long elapsed = sendUnicasts(LOAD_COMMANDS, 20);
+
+        assertEquals(LOAD_COMMANDS, messageSent.size());
+        for (EzspMessageSentHandler sent : messageSent) {
+            assertEquals(EmberStatus.EMBER_SUCCESS, sent.getStatus());
+        }
+        assertEquals(LOAD_COMMANDS, emulator.getDeliveredCount());
+        assertEquals(LOAD_COMMANDS, latencies.size());
+
+        // The link latency is a lower bound for every message
+        long p50 = getPercentile(latencies, 0.50);
+        long p95 = getPercentile(latencies, 0.95);
+        long p99 = getPercentile(latencies, 0.99);
+        assertTrue(getPercentile(latencies, 0.0) >= TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue(p50 <= p95 && p95 <= p99);
+
+        logger.info("EZSP emulator unicast load: {} commands/s, latency p50={}ms p95={}ms p99={}ms",
+                String.format("%.1f", LOAD_COMMANDS * 1000000000.0 / elapsed), TimeUnit.NANOSECONDS.toMillis(p50),
+                TimeUnit.NANOSECONDS.toMillis(p95), TimeUnit.NANOSECONDS.toMillis(p99));
+
+        // Every device replies with a default response after the message is sent
+        for (int cnt = 0; cnt < 50 && incomingMessages.get() != LOAD_COMMANDS; cnt++) {
+            Thread.sleep(20);
+        }
+        assertEquals(LOAD_COMMANDS, incomingMessages.get());
+    }
+
+    @Test
+    public void testUnicastLoss() throws InterruptedException {
+        EmberNcpEmulator emulator = new EmberNcpEmulator(1);
+        emulator.setDeviceCount(5);
+        emulator.setLossRate(0.25);
+        connect(emulator);
+
+        // Devices 1 to 5 exist, device 6 is not in the network
+        sendUnicasts(120, 6);
+
+        int failures = 0;
+        for (EzspMessageSentHandler sent : messageSent) {
+            if (sent.getStatus() == EmberStatus.EMBER_DELIVERY_FAILED) {
+                failures++;
+            } else {
+                assertTrue(sent.getIndexOrDestination() != 6);
+            }
+        }
+        assertEquals(120, messageSent.size());
+        assertEquals(failures, emulator.getFailedCount());
+        assertEquals(120 - failures, emulator.getDeliveredCount());
+        assertTrue(failures > 20 && failures < 100);
+    }
+
+    @Test
+    public void testBroadcast() throws InterruptedException {
+        connect(new EmberNcpEmulator(1));
+
+        EmberApsFrame apsFrame = new EmberApsFrame();
+        apsFrame.setProfileId(0x0104);
+        apsFrame.setClusterId(0x0006);
+        apsFrame.setSourceEndpoint(1);
+        apsFrame.setDestinationEndpoint(0xFF);
+
+        EzspSendBroadcastRequest request = new EzspSendBroadcastRequest();
+        request.setDestination(0xFFFD);
+        request.setApsFrame(apsFrame);
+        request.setRadius(31);
+        request.setMessageTag(0x55);
+        request.setMessageContents(new int[] { 0x01, 0x00, 0x02 });
+        EzspTransaction transaction = ashHandler
+                .sendEzspTransaction(new EzspSingleResponseTransaction(request, EzspSendBroadcastResponse.class));
+        assertEquals(EmberStatus.EMBER_SUCCESS, ((EzspSendBroadcastResponse) transaction.getResponse()).getStatus());
+
+        EzspMessageSentHandler sent = messageSent.poll(5, TimeUnit.SECONDS);
+        assertNotNull(sent);
+        assertEquals(0x55, sent.getMessageTag());
+        assertEquals(0xFFFD, sent.getIndexOrDestination());
+        assertEquals(EmberOutgoingMessageType.EMBER_OUTGOING_BROADCAST, sent.getType());
+        assertEquals(1, emulator.getCommandCount());
+    }
+
+    @Test
+    public void testNetworkManager() throws Exception {
+        EmberNcpEmulator emulator = new EmberNcpEmulator(1);
+        emulator.setDeviceCount(5);
+        emulator.setLinkLatency(1, 5);
+        this.emulator = emulator;
+
+        // Neighbor table polling and counter sampling are not emulated
+        ZigBeeDongleEzsp dongle = new ZigBeeDongleEzsp(emulator);
+        dongle.setNeighborTablePeriod(0);
+        dongle.setCounterPeriod(0);
+
+        networkManager = new ZigBeeNetworkManager(dongle);
+        networkManager.setSerializer(DefaultSerializer.class, DefaultDeserializer.class);
+        final LinkedBlockingQueue<ZigBeeTransportState> states = new LinkedBlockingQueue<ZigBeeTransportState>();
+        networkManager.addNetworkStateListener(new ZigBeeNetworkStateListener() {
+            @Override
+            public void networkStateUpdated(ZigBeeTransportState state) {
+                states.add(state);
+            }
+        });
+
+        assertEquals(ZigBeeInitializeResponse.JOINED, networkManager.initialize());
+        assertEquals(11, networkManager.getZigBeeChannel());
+        assertEquals(0x2A1B, networkManager.getZigBeePanId());
+
+        assertTrue(networkManager.startup(false));
+        ZigBeeTransportState state;
+        do {
+            state = states.poll(5, TimeUnit.SECONDS);
+            assertNotNull(state);
+        } while (state != ZigBeeTransportState.ONLINE);
+
+        // A ZCL command through the framework is answered by the simulated device
+        ZclOnOffCluster cluster = new ZclOnOffCluster(networkManager, new ZigBeeDeviceAddress(1, 1));
+        Future<CommandResult> future = cluster.onCommand();
+        CommandResult result = future.get(5, TimeUnit.SECONDS);
+        assertTrue(result.isSuccess());
+        DefaultResponse response = result.getResponse();
+        assertEquals(ZclStatus.SUCCESS, response.getStatusCode());
+        assertEquals(Integer.valueOf(1), response.getCommandIdentifier());
+    }
+}
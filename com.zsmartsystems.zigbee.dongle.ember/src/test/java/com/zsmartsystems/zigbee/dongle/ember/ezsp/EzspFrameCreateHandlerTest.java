@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.ezsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.dongle.ember.ash.AshFrameData;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspGetNeighborResponse;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.command.EzspNeighborCountResponse;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class EzspFrameCreateHandlerTest extends EzspFrameTest {
+    @Test
+    public void createHandler() {
+        // ASH control byte, EZSP frame, CRC
+        EzspFrameResponse response = EzspFrame
+                .createHandler(new AshFrameData(getPacketData("00 29 80 7A 03 00 00")));
+        assertTrue(response instanceof EzspNeighborCountResponse);
+        assertEquals(0x29, response.getSequenceNumber());
+        assertEquals(3, ((EzspNeighborCountResponse) response).getValue());
+
+        response = EzspFrame.createHandler(
+                new AshFrameData(getPacketData("00 29 80 79 00 9E 72 FF 01 01 03 CC 43 6B 05 00 6F 0D 00 00 00")));
+        assertTrue(response instanceof EzspGetNeighborResponse);
+    }
+
+    @Test
+    public void createHandlerUnknown() {
+        assertNull(EzspFrame.createHandler(new AshFrameData(getPacketData("00 29 80 FE 00 00"))));
+    }
+
+    @Test
+    public void createHandlerShortFrame() {
+        assertNull(EzspFrame.createHandler(new AshFrameData(getPacketData("00 29 80 79 00 00"))));
+    }
+}
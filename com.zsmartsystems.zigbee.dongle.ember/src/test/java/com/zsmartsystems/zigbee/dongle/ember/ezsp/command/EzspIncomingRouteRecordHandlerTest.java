@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.ezsp.command;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.IeeeAddress;
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameTest;
+
+/**
+ * @author Chris Jackson
+ */
+public class EzspIncomingRouteRecordHandlerTest extends EzspFrameTest {
+
+    @Test
+    public void testReceive1() {
+        EzspIncomingRouteRecordHandler handler = new EzspIncomingRouteRecordHandler(
+                getPacketData("0C 90 59 95 87 F9 41 F6 02 00 4B 12 00 FF C4 02 34 12 78 56"));
+
+        assertTrue(handler.isResponse());
+        assertEquals(34709, handler.getSource());
+        assertEquals(new IeeeAddress("00124B0002F641F9"), handler.getSourceEui());
+        assertEquals(255, handler.getLastHopLqi());
+        assertEquals(-60, handler.getLastHopRssi());
+        assertArrayEquals(new int[] { 0x1234, 0x5678 }, handler.getRelayList());
+    }
+}
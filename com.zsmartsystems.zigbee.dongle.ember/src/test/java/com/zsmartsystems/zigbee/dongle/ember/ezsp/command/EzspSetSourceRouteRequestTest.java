@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.ezsp.command;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.EzspFrameTest;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class EzspSetSourceRouteRequestTest extends EzspFrameTest {
+    @Test
+    public void testRequest() {
+        EzspSetSourceRouteRequest request = new EzspSetSourceRouteRequest();
+        request.setDestination(0x1234);
+        request.setRelayList(new int[] { 0x5678, 0x9ABC });
+        request.setSequenceNumber(5);
+
+        assertTrue(Arrays.equals(getPacketData("05 00 5A 34 12 02 78 56 BC 9A"), request.serialize()));
+    }
+}
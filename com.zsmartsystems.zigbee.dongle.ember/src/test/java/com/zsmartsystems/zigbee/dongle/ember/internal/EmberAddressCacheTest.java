@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.IeeeAddress;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class EmberAddressCacheTest {
+    @Test
+    public void testSetGet() {
+        EmberAddressCache cache = new EmberAddressCache();
+        IeeeAddress eui64 = new IeeeAddress("1234567890ABCDEF");
+
+        assertNull(cache.getEui64(0x1234));
+        assertNull(cache.getNodeId(eui64));
+
+        cache.setAddress(0x1234, eui64);
+        assertEquals(eui64, cache.getEui64(0x1234));
+        assertEquals(Integer.valueOf(0x1234), cache.getNodeId(eui64));
+        assertEquals(1, cache.size());
+
+        // Broadcast addresses are ignored
+        cache.setAddress(0xFFFD, new IeeeAddress("1111111111111111"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testAddressChange() {
+        EmberAddressCache cache = new EmberAddressCache();
+        IeeeAddress eui64 = new IeeeAddress("1234567890ABCDEF");
+
+        // Device rejoins with a new node ID
+        cache.setAddress(0x1234, eui64);
+        cache.setAddress(0x5678, eui64);
+        assertNull(cache.getEui64(0x1234));
+        assertEquals(eui64, cache.getEui64(0x5678));
+        assertEquals(Integer.valueOf(0x5678), cache.getNodeId(eui64));
+        assertEquals(1, cache.size());
+
+        // Node ID reused by a different device
+        IeeeAddress newEui64 = new IeeeAddress("1111111111111111");
+        cache.setAddress(0x5678, newEui64);
+        assertNull(cache.getNodeId(eui64));
+        assertEquals(newEui64, cache.getEui64(0x5678));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        EmberAddressCache cache = new EmberAddressCache();
+        IeeeAddress eui64 = new IeeeAddress("1234567890ABCDEF");
+
+        cache.setAddress(0x1234, eui64);
+        cache.removeNodeId(0x1234);
+        assertNull(cache.getEui64(0x1234));
+        assertNull(cache.getNodeId(eui64));
+
+        cache.setAddress(0x1234, eui64);
+        cache.removeEui64(eui64);
+        assertNull(cache.getEui64(0x1234));
+        assertNull(cache.getNodeId(eui64));
+
+        cache.setAddress(0x1234, eui64);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
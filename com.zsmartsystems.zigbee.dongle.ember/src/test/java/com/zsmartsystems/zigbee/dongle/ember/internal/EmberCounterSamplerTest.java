@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberCounterType;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class EmberCounterSamplerTest {
+    private int[] getValues(int retries, int failures) {
+        int[] values = new int[EmberCounterType.EMBER_COUNTER_TYPE_COUNT.getKey()];
+        values[EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY.getKey()] = retries;
+        values[EmberCounterType.EMBER_COUNTER_APS_DATA_TX_UNICAST_FAILED.getKey()] = failures;
+        return values;
+    }
+
+    @Test
+    public void testCounters() {
+        EmberCounterSampler sampler = new EmberCounterSampler(null);
+        assertTrue(sampler.getRates().isEmpty());
+
+        // First sample has no interval, so only the totals are updated
+        sampler.updateCounters(getValues(10, 1), 0);
+        assertEquals(Long.valueOf(10), sampler.getCounters().get(EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY));
+        assertTrue(sampler.getRates().isEmpty());
+
+        // 20 retries in 10 seconds
+        sampler.updateCounters(getValues(20, 0), 10000000000L);
+        assertEquals(Long.valueOf(30), sampler.getCounters().get(EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY));
+        assertEquals(Long.valueOf(1),
+                sampler.getCounters().get(EmberCounterType.EMBER_COUNTER_APS_DATA_TX_UNICAST_FAILED));
+        assertEquals(2.0, sampler.getRates().get(EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY), 0.001);
+        assertEquals(0.0, sampler.getRates().get(EmberCounterType.EMBER_COUNTER_APS_DATA_TX_UNICAST_FAILED), 0.001);
+    }
+
+    @Test
+    public void testRollover() {
+        EmberCounterSampler sampler = new EmberCounterSampler(null);
+
+        sampler.updateCounters(getValues(0, 0), 0);
+        sampler.counterRollover(EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY);
+        sampler.updateCounters(getValues(4, 0), 2000000000L);
+        assertEquals(Long.valueOf(0x10004),
+                sampler.getCounters().get(EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY));
+        assertEquals(0x10004 / 2.0, sampler.getRates().get(EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY),
+                0.001);
+
+        // Rollover is only counted once
+        sampler.updateCounters(getValues(0, 0), 4000000000L);
+        assertEquals(Long.valueOf(0x10004),
+                sampler.getCounters().get(EmberCounterType.EMBER_COUNTER_MAC_TX_UNICAST_RETRY));
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dongle.ember.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class EmberSourceRouteTableTest {
+    @Test
+    public void testAddRemove() {
+        EmberSourceRouteTable table = new EmberSourceRouteTable();
+
+        assertNull(table.getRoute(0x1234));
+        assertTrue(table.addRoute(0x1234, new int[] { 0x1111, 0x2222 }));
+        assertArrayEquals(new int[] { 0x1111, 0x2222 }, table.getRoute(0x1234));
+
+        assertTrue(table.addRoute(0x1234, new int[] { 0x3333 }));
+        assertArrayEquals(new int[] { 0x3333 }, table.getRoute(0x1234));
+        assertEquals(1, table.size());
+
+        assertTrue(table.addRoute(0x4321, new int[] {}));
+        assertArrayEquals(new int[] {}, table.getRoute(0x4321));
+        assertEquals(2, table.size());
+
+        assertTrue(table.removeRoute(0x1234));
+        assertFalse(table.removeRoute(0x1234));
+        assertNull(table.getRoute(0x1234));
+
+        table.clear();
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testInvalidRoute() {
+        EmberSourceRouteTable table = new EmberSourceRouteTable();
+
+        assertFalse(table.addRoute(0x1234, null));
+        assertFalse(table.addRoute(0x1234, new int[12]));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testEviction() {
+        EmberSourceRouteTable table = new EmberSourceRouteTable(2, 60000);
+
+        table.addRoute(1, new int[] { 0x1111 });
+        table.addRoute(2, new int[] { 0x2222 });
+
+        // Access route 1 so that route 2 becomes the least recently used
+        table.getRoute(1);
+        table.addRoute(3, new int[] { 0x3333 });
+
+        assertEquals(2, table.size());
+        assertArrayEquals(new int[] { 0x1111 }, table.getRoute(1));
+        assertNull(table.getRoute(2));
+        assertArrayEquals(new int[] { 0x3333 }, table.getRoute(3));
+    }
+
+    @Test
+    public void testExpiry() {
+        EmberSourceRouteTable table = new EmberSourceRouteTable(2, -1);
+
+        table.addRoute(1, new int[] { 0x1111 });
+        assertNull(table.getRoute(1));
+        assertEquals(0, table.size());
+    }
+}
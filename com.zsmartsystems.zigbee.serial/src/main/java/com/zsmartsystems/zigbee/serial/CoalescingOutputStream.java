@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.serial;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link OutputStream} that queues written data and writes it to the underlying stream from a separate writer
+ * thread. Any data queued while the writer is busy is combined into the next write, so frames written back to back
+ * (eg an ACK followed by a DATA frame) go to the port in a single native write.
+ * <p>
+ * {@link #write(byte[], int, int)} returns as soon as the data is queued. {@link #flush()} blocks until all data queued
+ * before the call has been written, and throws any {@link IOException} raised by the writer.
+ * <p>
+ * The stream keeps statistics on the data written, and the time callers spend blocked waiting for the writer.
+ *
+ * @author Chris Jackson
+ */
+public class CoalescingOutputStream extends OutputStream {
+    /**
+     * The logger.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CoalescingOutputStream.class);
+
+    /**
+     * The amount of queued data in bytes above which writers will block until the queue is written
+     */
+    private static final int MAX_QUEUED = 4096;
+
+    /**
+     * The maximum time in milliseconds to wait for the writer to finish when closing
+     */
+    private static final int CLOSE_TIMEOUT = 1000;
+
+    private final OutputStream out;
+
+    private final Thread writerThread;
+
+    /**
+     * The data waiting to be written
+     */
+    private byte[] queue = new byte[256];
+    private int queueLength = 0;
+
+    /**
+     * The buffer being written by the writer thread
+     */
+    private byte[] writeBuffer = new byte[256];
+
+    private IOException writeError = null;
+    private boolean closed = false;
+
+    private long bytesQueued = 0;
+    private long bytesWritten = 0;
+    private long frameCount = 0;
+    private long writeCount = 0;
+    private long stallTime = 0;
+
+    /**
+     * Creates the stream and starts the writer thread.
+     *
+     * @param out the underlying {@link OutputStream}
+     */
+    public CoalescingOutputStream(final OutputStream out) {
+        this.out = out;
+
+        writerThread = new Thread("CoalescingOutputStream") {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        };
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int offset, int length) throws IOException {
+        checkState();
+
+        // Wait for the writer if the queue is full. A single large write is always accepted into an empty queue.
+        if (queueLength != 0 && queueLength + length > MAX_QUEUED) {
+            final long stallStart = System.nanoTime();
+            while (queueLength != 0 && queueLength + length > MAX_QUEUED && writeError == null && !closed) {
+                waitForWriter();
+            }
+            stallTime += System.nanoTime() - stallStart;
+            checkState();
+        }
+
+        if (queueLength + length > queue.length) {
+            byte[] newQueue = new byte[Math.max(queue.length * 2, queueLength + length)];
+            System.arraycopy(queue, 0, newQueue, 0, queueLength);
+            queue = newQueue;
+        }
+        System.arraycopy(data, offset, queue, queueLength, length);
+        queueLength += length;
+        bytesQueued += length;
+        frameCount++;
+
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        final long target = bytesQueued;
+        if (bytesWritten < target) {
+            final long stallStart = System.nanoTime();
+            while (bytesWritten < target && writeError == null && !closed) {
+                waitForWriter();
+            }
+            stallTime += System.nanoTime() - stallStart;
+        }
+        checkState();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writerThread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+
+    /**
+     * Gets the total number of bytes written to the underlying stream
+     *
+     * @return the number of bytes written
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the number of frames written to this stream. Each call to {@link #write(byte[], int, int)} is one frame.
+     *
+     * @return the number of frames queued for writing
+     */
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Gets the number of writes made to the underlying stream. When frames are combined, this is lower than the frame
+     * count.
+     *
+     * @return the number of writes to the underlying stream
+     */
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Gets the total time callers have been blocked waiting for the writer, either in {@link #flush()} or because the
+     * queue was full
+     *
+     * @return the stall time in milliseconds
+     */
+    public synchronized long getStallTime() {
+        return stallTime / 1000000;
+    }
+
+    private void checkState() throws IOException {
+        if (writeError != null) {
+            throw writeError;
+        }
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void waitForWriter() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for write", e);
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            final int length;
+            synchronized (this) {
+                while (queueLength == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (queueLength == 0 || writeError != null) {
+                    return;
+                }
+
+                // Swap the buffers so new data can be queued while this block is written
+                final byte[] buffer = writeBuffer;
+                writeBuffer = queue;
+                queue = buffer;
+                length = queueLength;
+                queueLength = 0;
+            }
+
+            try {
+                out.write(writeBuffer, 0, length);
+                out.flush();
+            } catch (IOException e) {
+                logger.debug("Error writing to output stream: {}", e.getMessage());
+                synchronized (this) {
+                    writeError = e;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                bytesWritten += length;
+                writeCount++;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.serial;
+
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link InputStream} backed by a fixed size ring buffer. Received data is written into the buffer by the
+ * serial port event handler with {@link #write(byte[], int)}, and read by the protocol handler.
+ * <p>
+ * {@link #read()} and {@link #read(byte[], int, int)} block until data is available or the stream is closed.
+ * {@link #readAvailable(byte[], int, int)} returns immediately with whatever data is in the buffer.
+ * <p>
+ * A writer that is able to stop receiving data can check {@link #getFree()} before writing, and register a drain
+ * listener to be told when data has been read from a full buffer, so that no data is discarded.
+ *
+ * @author Chris Jackson
+ */
+public class RingBufferInputStream extends InputStream {
+    /**
+     * The logger.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(RingBufferInputStream.class);
+
+    private final byte[] buffer;
+
+    /**
+     * The index of the next byte to read
+     */
+    private int start = 0;
+
+    /**
+     * The number of bytes in the buffer
+     */
+    private int count = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Called when data is read from a full buffer
+     */
+    private Runnable drainListener;
+
+    /**
+     * @param size the size of the buffer in bytes
+     */
+    public RingBufferInputStream(int size) {
+        buffer = new byte[size];
+    }
+
+    /**
+     * Writes received data into the buffer and wakes any blocked reader. If the buffer is full, the data that does not
+     * fit is discarded.
+     *
+     * @param data the received data
+     * @param length the number of bytes to write
+     */
+    public synchronized void write(byte[] data, int length) {
+        int free = buffer.length - count;
+        if (length > free) {
+            logger.warn("Receive buffer overflow - {} bytes discarded", length - free);
+            length = free;
+        }
+
+        int end = (start + count) % buffer.length;
+        int first = Math.min(length, buffer.length - end);
+        System.arraycopy(data, 0, buffer, end, first);
+        System.arraycopy(data, first, buffer, 0, length - first);
+        count += length;
+
+        notifyAll();
+    }
+
+    /**
+     * Sets the listener that is called when data is read from a full buffer. The listener is called while the stream
+     * is locked, so it must not block.
+     *
+     * @param drainListener the {@link Runnable} to call, or null to remove the listener
+     */
+    public synchronized void setDrainListener(Runnable drainListener) {
+        this.drainListener = drainListener;
+    }
+
+    /**
+     * Gets the space available in the buffer
+     *
+     * @return the number of bytes that can be written without discarding data
+     */
+    public synchronized int getFree() {
+        return buffer.length - count;
+    }
+
+    @Override
+    public synchronized int read() {
+        while (count == 0 && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+
+        int value = buffer[start] & 0xFF;
+        start = (start + 1) % buffer.length;
+        count--;
+        notifyDrained(1);
+        return value;
+    }
+
+    @Override
+    public synchronized int read(byte[] data, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        while (count == 0 && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        return readAvailable(data, offset, length);
+    }
+
+    /**
+     * Reads the data currently in the buffer without blocking.
+     *
+     * @param data the buffer to fill
+     * @param offset the offset in the buffer to start saving data
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read, which may be 0, or -1 if the stream is closed and no data remains
+     */
+    public synchronized int readAvailable(byte[] data, int offset, int length) {
+        if (count == 0) {
+            return closed ? -1 : 0;
+        }
+
+        length = Math.min(length, count);
+        int first = Math.min(length, buffer.length - start);
+        System.arraycopy(buffer, start, data, offset, first);
+        System.arraycopy(buffer, 0, data, offset + first, length - first);
+        start = (start + length) % buffer.length;
+        count -= length;
+        notifyDrained(length);
+        return length;
+    }
+
+    private void notifyDrained(int length) {
+        if (drainListener != null && count + length == buffer.length) {
+            drainListener.run();
+        }
+    }
+
+    @Override
+    public synchronized int available() {
+        return count;
+    }
+
+    /**
+     * Closes the stream. Blocked readers are released and will receive any remaining data, followed by -1.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
@@ -131,10 +131,13 @@ public class SerialInputStream extends InputStream {
         if (available > length) {
             available = length;
         }
+        if (available == 0) {
+            return 0;
+        }
 
         try {
             byte[] readBuf = serialPort.readBytes(available);
-            System.arraycopy(readBuf, 0, buf, offset, length);
+            System.arraycopy(readBuf, 0, buf, offset, readBuf.length);
             return readBuf.length;
         } catch (Exception e) {
             throw new IOException(e);
@@ -203,7 +206,7 @@ public class SerialInputStream extends InputStream {
 
         try {
             byte[] readBuf = serialPort.readBytes(length, timeout);
-            System.arraycopy(readBuf, 0, buf, offset, length);
+            System.arraycopy(readBuf, 0, buf, offset, readBuf.length);
             return readBuf.length;
         } catch (Exception e) {
             throw new IOException(e);
@@ -7,14 +7,21 @@
  */
 package com.zsmartsystems.zigbee.serial;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.zsmartsystems.zigbee.transport.ZigBeePort;
+import com.zsmartsystems.zigbee.transport.ZigBeeBufferedPort;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportMetrics;
 
 import jssc.SerialPortEvent;
 import jssc.SerialPortEventListener;
@@ -22,11 +29,15 @@ import jssc.SerialPortException;
 
 /**
  * The default Java SE serial port implementation.
+ * <p>
+ * Received data is read from the port when jssc reports it is available, and buffered until the protocol handler reads
+ * it. Transmitted data is written from a separate thread, combining frames queued while the port is busy into a single
+ * write. Transmit statistics are available through {@link ZigBeeTransportMetrics}.
  *
  * @author Tommi S.E. Laukkanen
  * @author Chris Jackson
  */
-public class SerialPortImpl implements ZigBeePort, SerialPortEventListener {
+public class SerialPortImpl implements ZigBeeBufferedPort, ZigBeeTransportMetrics, SerialPortEventListener {
     /**
      * The logger.
      */
@@ -38,11 +49,11 @@ public class SerialPortImpl implements ZigBeePort, SerialPortEventListener {
     /**
      * The portName portName input stream.
      */
-    private InputStream inputStream;
+    private RingBufferInputStream inputStream;
     /**
      * The portName portName output stream.
      */
-    private OutputStream outputStream;
+    private CoalescingOutputStream outputStream;
     /**
      * The port identifier.
      */
@@ -51,6 +62,34 @@ public class SerialPortImpl implements ZigBeePort, SerialPortEventListener {
      * The baud rate.
      */
     private final int baudRate;
+    /**
+     * The size of the receive buffer in bytes.
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+    /**
+     * The default period between samples of the transmit rate in seconds.
+     */
+    private static final int DEFAULT_COUNTER_PERIOD = 60;
+    /**
+     * The period between samples of the transmit rate in seconds.
+     */
+    private int counterPeriod = DEFAULT_COUNTER_PERIOD;
+    /**
+     * The scheduler sampling the transmit rate.
+     */
+    private ScheduledExecutorService rateSampler;
+    /**
+     * The time the transmit rate was last sampled.
+     */
+    private long rateTime;
+    /**
+     * The number of bytes written when the transmit rate was last sampled.
+     */
+    private long rateBytes;
+    /**
+     * The rates measured over the last completed sample interval.
+     */
+    private Map<String, Double> rates = Collections.emptyMap();
 
     /**
      * Constructor setting port name and baud rate.
@@ -63,6 +102,16 @@ public class SerialPortImpl implements ZigBeePort, SerialPortEventListener {
         this.baudRate = baudRate;
     }
 
+    /**
+     * Sets the period between samples of the transmit rate returned by {@link #getCounterRates()}. This must be
+     * called before the port is opened.
+     *
+     * @param counterPeriod the period in seconds. Set to 0 to disable sampling.
+     */
+    public void setCounterPeriod(int counterPeriod) {
+        this.counterPeriod = counterPeriod;
+    }
+
     @Override
     public boolean open() {
         try {
@@ -87,17 +136,79 @@ public class SerialPortImpl implements ZigBeePort, SerialPortEventListener {
         }
 
         serialPort = new jssc.SerialPort(portName);
+        inputStream = new RingBufferInputStream(RECEIVE_BUFFER_SIZE);
         try {
             serialPort.openPort();
             serialPort.setParams(baudRate, 8, 1, 0);
             serialPort.setFlowControlMode(jssc.SerialPort.FLOWCONTROL_RTSCTS_OUT); // FLOWCONTROL_NONE);
+            serialPort.addEventListener(this, jssc.SerialPort.MASK_RXCHAR);
         } catch (SerialPortException e) {
             logger.error("Error opening serial port.", e);
             throw new RuntimeException("Failed to open serial port: " + portName, e);
         }
 
-        inputStream = new UnsignedByteSerialInputStream(serialPort);
-        outputStream = new SerialOutputStream(serialPort);
+        outputStream = new CoalescingOutputStream(new SerialOutputStream(serialPort));
+        startRateSampler();
+    }
+
+    /**
+     * Starts sampling the transmit rate. The first interval starts now.
+     */
+    private synchronized void startRateSampler() {
+        rateTime = System.nanoTime();
+        rateBytes = 0;
+        rates = Collections.emptyMap();
+        if (counterPeriod == 0) {
+            return;
+        }
+
+        rateSampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SerialPortRates");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        rateSampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sampleRates();
+            }
+        }, counterPeriod, counterPeriod, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops sampling the transmit rate
+     */
+    private synchronized void stopRateSampler() {
+        if (rateSampler != null) {
+            rateSampler.shutdownNow();
+            rateSampler = null;
+        }
+    }
+
+    /**
+     * Calculates the transmit rate over the interval since the last sample
+     */
+    private synchronized void sampleRates() {
+        final CoalescingOutputStream stream = outputStream;
+        if (stream == null) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        final long bytes = stream.getBytesWritten();
+        final double period = (now - rateTime) / 1000000000.0;
+        if (period <= 0) {
+            return;
+        }
+
+        Map<String, Double> newRates = new HashMap<String, Double>();
+        newRates.put("TX_BYTES", (bytes - rateBytes) / period);
+        rates = Collections.unmodifiableMap(newRates);
+        rateTime = now;
+        rateBytes = bytes;
     }
 
     @Override
@@ -115,6 +226,8 @@ public class SerialPortImpl implements ZigBeePort, SerialPortEventListener {
                 } catch (Exception e) {
                     logger.trace("Exception in reading from serial port.", e);
                 }
+                stopRateSampler();
+                serialPort.removeEventListener();
                 inputStream.close();
                 outputStream.flush();
                 outputStream.close();
@@ -139,18 +252,59 @@ public class SerialPortImpl implements ZigBeePort, SerialPortEventListener {
         return inputStream;
     }
 
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        final RingBufferInputStream stream = inputStream;
+        if (stream == null) {
+            return -1;
+        }
+        return stream.readAvailable(buffer, offset, length);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        final CoalescingOutputStream stream = outputStream;
+        if (stream == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> counters = new HashMap<String, Long>();
+        counters.put("TX_BYTES", stream.getBytesWritten());
+        counters.put("TX_FRAMES", stream.getFrameCount());
+        counters.put("TX_WRITES", stream.getWriteCount());
+        counters.put("TX_STALL_TIME", stream.getStallTime());
+        return counters;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The rate is sampled with the period set by {@link #setCounterPeriod(int)}, so calling this method doesn't affect
+     * the measurement.
+     */
+    @Override
+    public synchronized Map<String, Double> getCounterRates() {
+        return rates;
+    }
+
     @Override
     public void serialEvent(SerialPortEvent event) {
-        if (event.isRXCHAR()) {
-            try {
-                if (inputStream.available() > 0) {
-                    synchronized (this) {
-                        this.notify();
-                    }
-                }
-            } catch (IOException e) {
-                logger.error("Error while handling serial event.", e);
+        if (!event.isRXCHAR() || event.getEventValue() <= 0) {
+            return;
+        }
+        final jssc.SerialPort port = serialPort;
+        final RingBufferInputStream stream = inputStream;
+        if (port == null || stream == null) {
+            return;
+        }
+        try {
+            // Read everything the driver has received in a single call
+            final byte[] data = port.readBytes();
+            if (data != null) {
+                stream.write(data, data.length);
             }
+        } catch (SerialPortException e) {
+            logger.error("Error while handling serial event.", e);
         }
     }
 }
@@ -0,0 +1,378 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.serial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.transport.ZigBeeBufferedPort;
+
+/**
+ * A {@link ZigBeeBufferedPort} that connects to a dongle over TCP - eg a serial port shared with ser2net, or a local
+ * NCP emulator.
+ * <p>
+ * The socket is serviced by a single thread using a non-blocking {@link SocketChannel}. Received data is buffered until
+ * the protocol handler reads it, and all data queued for transmission is written with a single gathering write. When
+ * the receive buffer is full the port stops reading from the socket until the protocol handler has read some data, so
+ * that TCP flow control slows down the sender rather than data being discarded. If the connection is lost, the port reconnects with an exponential backoff until it is closed. Data written while the
+ * connection is down is rejected with an {@link IOException}.
+ *
+ * @author Chris Jackson
+ */
+public class TcpPortImpl implements ZigBeeBufferedPort {
+    /**
+     * The logger.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(TcpPortImpl.class);
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int RECONNECT_DELAY_MIN = 1000;
+    private static final int RECONNECT_DELAY_MAX = 30000;
+
+    /**
+     * The host name or address of the remote port.
+     */
+    private final String host;
+    /**
+     * The TCP port number of the remote port.
+     */
+    private final int port;
+
+    private int receiveBufferSize = DEFAULT_BUFFER_SIZE;
+    private int sendBufferSize = DEFAULT_BUFFER_SIZE;
+
+    private RingBufferInputStream inputStream;
+    private TcpOutputStream outputStream;
+    private Selector selector;
+    private SocketChannel channel;
+    private Thread ioThread;
+    private volatile boolean closed = true;
+
+    /**
+     * Constructor setting the remote host and port.
+     *
+     * @param host the host name or address
+     * @param port the TCP port number
+     */
+    public TcpPortImpl(final String host, final int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Sets the size of the socket receive buffer, and the buffer holding received data until it is read. This must be
+     * called before the port is opened.
+     *
+     * @param receiveBufferSize the buffer size in bytes
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * Sets the size of the socket send buffer. This must be called before the port is opened.
+     *
+     * @param sendBufferSize the buffer size in bytes
+     */
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    @Override
+    public boolean open() {
+        if (!closed) {
+            logger.warn("TCP port {}:{} already open", host, port);
+            return false;
+        }
+
+        try {
+            final Selector newSelector = Selector.open();
+            selector = newSelector;
+            inputStream = new RingBufferInputStream(receiveBufferSize * 4);
+            inputStream.setDrainListener(new Runnable() {
+                @Override
+                public void run() {
+                    // Start reading from the socket again
+                    newSelector.wakeup();
+                }
+            });
+            outputStream = new TcpOutputStream();
+            connect();
+        } catch (IOException e) {
+            logger.warn("Unable to open TCP port {}:{}: {}", host, port, e.getMessage());
+            closeChannel();
+            closeSelector();
+            return false;
+        }
+
+        closed = false;
+        ioThread = new Thread("TcpPortImpl") {
+            @Override
+            public void run() {
+                runIo();
+            }
+        };
+        ioThread.setDaemon(true);
+        ioThread.start();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        // The IO thread owns the channel and selector, and closes them when it stops. Interrupting the thread also
+        // aborts a reconnect that is in progress.
+        selector.wakeup();
+        ioThread.interrupt();
+        try {
+            ioThread.join(CONNECT_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ioThread.isAlive()) {
+            logger.warn("TCP port {}:{} IO thread did not stop", host, port);
+        }
+
+        inputStream.close();
+        outputStream.disconnected();
+        logger.info("TCP port {}:{} closed.", host, port);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        final RingBufferInputStream stream = inputStream;
+        if (stream == null) {
+            return -1;
+        }
+        return stream.readAvailable(buffer, offset, length);
+    }
+
+    private void connect() throws IOException {
+        final SocketChannel newChannel = SocketChannel.open();
+        try {
+            newChannel.socket().setTcpNoDelay(true);
+            newChannel.socket().setReceiveBufferSize(receiveBufferSize);
+            newChannel.socket().setSendBufferSize(sendBufferSize);
+            newChannel.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            newChannel.configureBlocking(false);
+            newChannel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            newChannel.close();
+            throw e;
+        }
+
+        channel = newChannel;
+        outputStream.connected();
+        logger.debug("TCP port {}:{} connected", host, port);
+    }
+
+    private void runIo() {
+        try {
+            serviceChannel();
+        } catch (RuntimeException e) {
+            logger.error("TCP port {}:{} IO thread failed", host, port, e);
+        } finally {
+            // Make sure readers and writers don't wait for a port that is no longer serviced
+            closeChannel();
+            closeSelector();
+            inputStream.close();
+            outputStream.disconnected();
+        }
+    }
+
+    private void serviceChannel() {
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(receiveBufferSize);
+        final byte[] readData = new byte[receiveBufferSize];
+        int reconnectDelay = RECONNECT_DELAY_MIN;
+
+        while (!closed) {
+            if (channel == null) {
+                synchronized (this) {
+                    try {
+                        if (!closed) {
+                            wait(reconnectDelay);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    break;
+                }
+                try {
+                    connect();
+                    reconnectDelay = RECONNECT_DELAY_MIN;
+                } catch (IOException e) {
+                    logger.debug("TCP port {}:{} reconnect failed: {}", host, port, e.getMessage());
+                    reconnectDelay = Math.min(reconnectDelay * 2, RECONNECT_DELAY_MAX);
+                }
+                continue;
+            }
+
+            try {
+                // Stop reading while the receive buffer is full - the selector is woken once it has been drained
+                int interestOps = inputStream.getFree() > 0 ? SelectionKey.OP_READ : 0;
+                if (outputStream.hasPending()) {
+                    interestOps |= SelectionKey.OP_WRITE;
+                }
+                channel.keyFor(selector).interestOps(interestOps);
+                selector.select();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isReadable()) {
+                        // Cast to Buffer so the code runs on Java 8 when compiled with a later JDK
+                        ((Buffer) readBuffer).clear();
+                        ((Buffer) readBuffer).limit(Math.min(readBuffer.capacity(), inputStream.getFree()));
+                        final int length = channel.read(readBuffer);
+                        if (length < 0) {
+                            throw new IOException("Connection closed by remote host");
+                        }
+                        ((Buffer) readBuffer).flip();
+                        readBuffer.get(readData, 0, length);
+                        inputStream.write(readData, length);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        outputStream.writePending(channel);
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.warn("TCP port {}:{} disconnected: {}", host, port, e.getMessage());
+                }
+                outputStream.disconnected();
+                closeChannel();
+            }
+        }
+    }
+
+    private void closeChannel() {
+        final SocketChannel oldChannel = channel;
+        channel = null;
+        if (oldChannel == null) {
+            return;
+        }
+        try {
+            oldChannel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing TCP channel: {}", e.getMessage());
+        }
+    }
+
+    private void closeSelector() {
+        if (selector == null) {
+            return;
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.debug("Error closing selector: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Output stream queuing data for the IO thread. Data is only accepted while the socket is connected.
+     */
+    private class TcpOutputStream extends OutputStream {
+        private final LinkedList<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+        private boolean connected = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            synchronized (this) {
+                if (!connected) {
+                    throw new IOException("TCP port " + host + ":" + port + " not connected");
+                }
+                final byte[] copy = new byte[length];
+                System.arraycopy(data, offset, copy, 0, length);
+                queue.add(ByteBuffer.wrap(copy));
+            }
+            selector.wakeup();
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            while (!queue.isEmpty() && connected) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for write", e);
+                }
+            }
+            if (!connected) {
+                throw new IOException("TCP port " + host + ":" + port + " not connected");
+            }
+        }
+
+        synchronized boolean hasPending() {
+            return !queue.isEmpty();
+        }
+
+        /**
+         * Writes as much of the queued data as the socket will accept, in a single gathering write.
+         */
+        synchronized void writePending(SocketChannel socketChannel) throws IOException {
+            socketChannel.write(queue.toArray(new ByteBuffer[queue.size()]));
+            while (!queue.isEmpty() && !queue.peek().hasRemaining()) {
+                queue.remove();
+            }
+            if (queue.isEmpty()) {
+                notifyAll();
+            }
+        }
+
+        synchronized void connected() {
+            connected = true;
+        }
+
+        synchronized void disconnected() {
+            connected = false;
+            queue.clear();
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class CoalescingOutputStreamTest {
+    /**
+     * Output stream that blocks the first write until released
+     */
+    private class BlockingOutputStream extends ByteArrayOutputStream {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private int writes = 0;
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            if (writes++ == 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+            super.write(data, offset, length);
+        }
+    }
+
+    @Test
+    public void coalesce() throws IOException {
+        BlockingOutputStream out = new BlockingOutputStream();
+        CoalescingOutputStream stream = new CoalescingOutputStream(out);
+
+        // The first frame is held by the writer, so the next two are combined
+        stream.write(new byte[] { 1, 2 });
+        stream.write(new byte[] { 3, 4 });
+        stream.write(new byte[] { 5 });
+        out.release.countDown();
+        stream.flush();
+
+        assertTrue(Arrays.equals(new byte[] { 1, 2, 3, 4, 5 }, out.toByteArray()));
+        assertEquals(5, stream.getBytesWritten());
+        assertEquals(3, stream.getFrameCount());
+        assertTrue(stream.getWriteCount() <= 2);
+
+        stream.close();
+    }
+
+    @Test
+    public void writeError() throws IOException {
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Write failed");
+            }
+        };
+        CoalescingOutputStream stream = new CoalescingOutputStream(out);
+
+        stream.write(new byte[] { 1, 2 });
+        try {
+            stream.flush();
+            fail();
+        } catch (IOException e) {
+            assertEquals("Write failed", e.getMessage());
+        }
+
+        stream.close();
+    }
+}
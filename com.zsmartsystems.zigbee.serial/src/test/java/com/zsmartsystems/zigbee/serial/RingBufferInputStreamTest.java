@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class RingBufferInputStreamTest {
+    @Test
+    public void readWrite() {
+        RingBufferInputStream stream = new RingBufferInputStream(8);
+        byte[] data = new byte[8];
+
+        assertEquals(0, stream.readAvailable(data, 0, data.length));
+
+        stream.write(new byte[] { 1, 2, 3, 4, 5, (byte) 0xFF }, 6);
+        assertEquals(6, stream.available());
+        assertEquals(1, stream.read());
+        assertEquals(4, stream.readAvailable(data, 0, 4));
+        assertTrue(Arrays.equals(new byte[] { 2, 3, 4, 5 }, Arrays.copyOfRange(data, 0, 4)));
+        assertEquals(0xFF, stream.read());
+
+        // Wrap around the end of the buffer
+        stream.write(new byte[] { 6, 7, 8, 9, 10 }, 5);
+        assertEquals(5, stream.readAvailable(data, 2, 6));
+        assertTrue(Arrays.equals(new byte[] { 6, 7, 8, 9, 10 }, Arrays.copyOfRange(data, 2, 7)));
+    }
+
+    @Test
+    public void overflow() {
+        RingBufferInputStream stream = new RingBufferInputStream(4);
+
+        stream.write(new byte[] { 1, 2, 3, 4, 5, 6 }, 6);
+        assertEquals(4, stream.available());
+        assertEquals(1, stream.read());
+    }
+
+    @Test
+    public void drainListener() {
+        RingBufferInputStream stream = new RingBufferInputStream(4);
+        final AtomicInteger drained = new AtomicInteger();
+        stream.setDrainListener(new Runnable() {
+            @Override
+            public void run() {
+                drained.incrementAndGet();
+            }
+        });
+
+        // The listener is only called when space is made in a full buffer
+        stream.write(new byte[] { 1, 2, 3 }, 3);
+        assertEquals(1, stream.getFree());
+        assertEquals(1, stream.read());
+        assertEquals(0, drained.get());
+
+        stream.write(new byte[] { 4, 5 }, 2);
+        assertEquals(0, stream.getFree());
+        assertEquals(2, stream.readAvailable(new byte[2], 0, 2));
+        assertEquals(1, drained.get());
+        assertEquals(2, stream.getFree());
+    }
+
+    @Test
+    public void blockingRead() {
+        final RingBufferInputStream stream = new RingBufferInputStream(16);
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                stream.write(new byte[] { 0x12 }, 1);
+                stream.close();
+            }
+        }.start();
+
+        assertEquals(0x12, stream.read());
+        assertEquals(-1, stream.read());
+        assertEquals(-1, stream.readAvailable(new byte[4], 0, 4));
+    }
+}
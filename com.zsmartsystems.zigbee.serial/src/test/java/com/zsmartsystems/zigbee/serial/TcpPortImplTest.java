@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class TcpPortImplTest {
+    @Test(timeout = 10000)
+    public void transfer() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        TcpPortImpl port = new TcpPortImpl("localhost", server.getLocalPort());
+        assertTrue(port.open());
+        Socket socket = server.accept();
+
+        // Port to remote
+        port.getOutputStream().write(new byte[] { 0x1A, (byte) 0xC0, 0x38 });
+        port.getOutputStream().flush();
+        InputStream remoteIn = socket.getInputStream();
+        assertEquals(0x1A, remoteIn.read());
+        assertEquals(0xC0, remoteIn.read());
+        assertEquals(0x38, remoteIn.read());
+
+        // Remote to port
+        socket.getOutputStream().write(new byte[] { 0x7E, (byte) 0xFE });
+        socket.getOutputStream().flush();
+        assertEquals(0x7E, port.getInputStream().read());
+        assertEquals(0xFE, port.getInputStream().read());
+        assertEquals(0, port.read(new byte[4], 0, 4));
+
+        port.close();
+        assertEquals(-1, port.getInputStream().read());
+        socket.close();
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void receiveBackpressure() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        TcpPortImpl port = new TcpPortImpl("localhost", server.getLocalPort());
+        port.setReceiveBufferSize(16);
+        assertTrue(port.open());
+        Socket socket = server.accept();
+
+        // Send much more than the receive buffer holds before reading - nothing may be discarded
+        byte[] data = new byte[4096];
+        for (int cnt = 0; cnt < data.length; cnt++) {
+            data[cnt] = (byte) cnt;
+        }
+        socket.getOutputStream().write(data);
+        socket.getOutputStream().flush();
+        Thread.sleep(100);
+
+        for (int cnt = 0; cnt < data.length; cnt++) {
+            assertEquals(cnt & 0xFF, port.getInputStream().read());
+        }
+
+        port.close();
+        socket.close();
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void reconnect() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        TcpPortImpl port = new TcpPortImpl("localhost", server.getLocalPort());
+        assertTrue(port.open());
+        server.accept().close();
+
+        // The port reconnects once the connection is lost
+        Socket socket = server.accept();
+        socket.getOutputStream().write(0x55);
+        assertEquals(0x55, port.getInputStream().read());
+
+        port.close();
+        socket.close();
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void openFailure() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        int localPort = server.getLocalPort();
+        server.close();
+
+        TcpPortImpl port = new TcpPortImpl("localhost", localPort);
+        assertFalse(port.open());
+    }
+}
@@ -39,6 +39,11 @@ public class Command {
      */
     private Integer transactionId;
 
+    /**
+     * The priority class used when the network is busy
+     */
+    private ZigBeeCommandPriority priority = ZigBeeCommandPriority.INTERACTIVE;
+
     /**
      * Gets destination address.
      *
@@ -102,6 +107,25 @@ public class Command {
         this.transactionId = transactionId;
     }
 
+    /**
+     * Gets the priority class of the command.
+     *
+     * @return the {@link ZigBeeCommandPriority}
+     */
+    public ZigBeeCommandPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority class of the command. Commands default to {@link ZigBeeCommandPriority#INTERACTIVE}, and
+     * background tasks should set a lower priority.
+     *
+     * @param priority the {@link ZigBeeCommandPriority}
+     */
+    public void setPriority(final ZigBeeCommandPriority priority) {
+        this.priority = priority;
+    }
+
     /**
      * Serialize the command class to the format required by the transport layer.
      *
@@ -54,12 +54,13 @@ public class CommandResultFuture implements Future<CommandResult> {
     }
 
     /**
-     * Sets result.
+     * Sets result, and wakes all threads waiting for it.
      *
      * @param result the result
      */
-    public void set(final CommandResult result) {
+    public synchronized void set(final CommandResult result) {
         this.result = result;
+        notifyAll();
     }
 
     @Override
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+/**
+ * The priority class of a {@link Command}. When the network is busy, queued commands are sent in priority order, so
+ * background traffic never delays commands from the user. The values are declared from the highest to the lowest
+ * priority.
+ *
+ * @author Chris Jackson
+ *
+ */
+public enum ZigBeeCommandPriority {
+    /**
+     * Commands from the user or application, such as switching a light. This is the default.
+     */
+    INTERACTIVE,
+    /**
+     * Configuration of bindings and attribute reporting
+     */
+    REPORTING,
+    /**
+     * Discovery of new or rejoined nodes
+     */
+    DISCOVERY,
+    /**
+     * Periodic polling of the network mesh
+     */
+    POLLING
+}
@@ -10,6 +10,7 @@ package com.zsmartsystems.zigbee;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -23,12 +24,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.zsmartsystems.zigbee.dao.ZigBeeDiscoveryDao;
 import com.zsmartsystems.zigbee.internal.NotificationService;
+import com.zsmartsystems.zigbee.internal.ZigBeeCommandGovernor;
 import com.zsmartsystems.zigbee.internal.ZigBeeNetworkDiscoverer;
 import com.zsmartsystems.zigbee.serialization.ZigBeeDeserializer;
 import com.zsmartsystems.zigbee.serialization.ZigBeeSerializer;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportAddressResolver;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportDeliveryListener;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportReceive;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportState;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportTableListener;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportTransmit;
 import com.zsmartsystems.zigbee.zcl.ZclAttribute;
 import com.zsmartsystems.zigbee.zcl.ZclCluster;
@@ -48,6 +54,8 @@ import com.zsmartsystems.zigbee.zdo.ZdoCommand;
 import com.zsmartsystems.zigbee.zdo.ZdoCommandType;
 import com.zsmartsystems.zigbee.zdo.command.ManagementLeaveRequest;
 import com.zsmartsystems.zigbee.zdo.command.ManagementPermitJoiningRequest;
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
 
 /**
  * Implements functions for managing the ZigBee interfaces.
@@ -81,7 +89,8 @@ import com.zsmartsystems.zigbee.zdo.command.ManagementPermitJoiningRequest;
  *
  * @author Chris Jackson
  */
-public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportReceive {
+public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportReceive, ZigBeeTransportTableListener,
+        ZigBeeTransportDeliveryListener {
     /**
      * The logger.
      */
@@ -103,6 +112,16 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
      */
     private final Map<Integer, ZigBeeGroupAddress> networkGroups = new TreeMap<Integer, ZigBeeGroupAddress>();
 
+    /**
+     * The neighbors of the local node as reported by the transport layer, keyed by network address
+     */
+    private Map<Integer, NeighborTable> localNeighbors = null;
+
+    /**
+     * The routes of the local node as reported by the transport layer, keyed by destination address
+     */
+    private Map<Integer, RoutingTable> localRoutes = null;
+
     /**
      * The node listeners of the ZigBee network. Registered listeners will be
      * notified of additions, deletions and changes to {@link ZigBeeNode}s.
@@ -154,6 +173,11 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
      */
     private final ZigBeeNetworkDiscoverer networkDiscoverer;
 
+    /**
+     * The {@link ZigBeeCommandGovernor} used to limit the number of commands in flight in the network.
+     */
+    private final ZigBeeCommandGovernor commandGovernor;
+
     /**
      * The command listener creation times. Used to timeout queued commands.
      */
@@ -206,6 +230,7 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
     public ZigBeeNetworkManager(final ZigBeeTransportTransmit transport) {
         this.transport = transport;
         this.networkDiscoverer = new ZigBeeNetworkDiscoverer(this);
+        this.commandGovernor = new ZigBeeCommandGovernor(transport, this);
 
         transport.setZigBeeTransportReceive(this);
     }
@@ -234,6 +259,48 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
         this.deserializerClass = (Class<ZigBeeDeserializer>) deserializer;
     }
 
+    /**
+     * Sets the maximum number of ZDO requests the {@link ZigBeeNetworkDiscoverer} may have outstanding at the same
+     * time. This limits the load that network discovery places on the network, for example when many devices rejoin
+     * together.
+     *
+     * @param maxInFlightRequests the maximum number of outstanding discovery requests
+     */
+    public void setDiscoveryConcurrency(int maxInFlightRequests) {
+        networkDiscoverer.setMaxInFlightRequests(maxInFlightRequests);
+    }
+
+    /**
+     * Gets the results of node discoveries so they can be persisted by a {@link ZigBeeNetworkStateSerializer}
+     *
+     * @return a {@link Collection} of {@link ZigBeeDiscoveryDao} for each discovered node
+     */
+    public Collection<ZigBeeDiscoveryDao> getDiscoveryCache() {
+        return networkDiscoverer.getDiscoveryCache();
+    }
+
+    /**
+     * Restores the persisted results of node discoveries. Nodes in the cache that announce themselves are restored
+     * without being interrogated again. This should be called by the {@link ZigBeeNetworkStateSerializer} when the
+     * network state is deserialized.
+     *
+     * @param discoveryCache a {@link Collection} of {@link ZigBeeDiscoveryDao}
+     */
+    public void setDiscoveryCache(Collection<ZigBeeDiscoveryDao> discoveryCache) {
+        networkDiscoverer.setDiscoveryCache(discoveryCache);
+    }
+
+    /**
+     * Sets the limits on the number of commands in flight. Commands beyond these limits are queued and sent in
+     * order of their {@link ZigBeeCommandPriority} as earlier commands complete.
+     *
+     * @param maxInFlight the maximum number of commands in flight in the network
+     * @param maxPerDestination the maximum number of commands in flight to a single node or group
+     */
+    public void setCommandLimits(int maxInFlight, int maxPerDestination) {
+        commandGovernor.setLimits(maxInFlight, maxPerDestination);
+    }
+
     /**
      * Initializes ZigBee manager components and initializes the transport layer.
      * <p>
@@ -394,6 +461,7 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
         }
 
         networkDiscoverer.shutdown();
+        commandGovernor.shutdown();
         transport.shutdown();
 
     }
@@ -405,6 +473,12 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
         return transport.getVersionString();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Commands are passed to the transport through the command governor. If the governor queues the command, a later
+     * transport error is reported through {@link #commandDeliveryStatus(int, boolean)} instead of being thrown.
+     */
     @Override
     public int sendCommand(Command command) throws ZigBeeException {
         // Create the application frame
@@ -435,7 +509,9 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
             apsFrame.setDestinationEndpoint(((ZigBeeDeviceAddress) command.getDestinationAddress()).getEndpoint());
         } else {
             apsFrame.setAddressMode(ZigBeeNwkAddressMode.GROUP);
-            // TODO: Handle multicast
+            if (command.getDestinationAddress() instanceof ZigBeeGroupAddress) {
+                apsFrame.setGroupAddress(((ZigBeeGroupAddress) command.getDestinationAddress()).getGroupId());
+            }
         }
 
         final ZclFieldSerializer fieldSerializer;
@@ -486,7 +562,7 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
             apsFrame.setPayload(zclHeader.serialize(fieldSerializer, fieldSerializer.getPayload()));
         }
 
-        transport.sendCommand(apsFrame);
+        commandGovernor.sendCommand(command, apsFrame);
 
         return sequence;
     }
@@ -545,6 +621,9 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
 
         logger.debug("RX CMD: {}", command);
 
+        // Release the slot used by the request before the listeners send any follow up commands
+        commandGovernor.commandReceived(command);
+
         // Notify the listeners
         notifyCommandListeners(command);
     }
@@ -688,6 +767,77 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
         }
     }
 
+    @Override
+    public void localNeighborsUpdated(final List<NeighborTable> added, final List<NeighborTable> updated,
+            final List<NeighborTable> removed) {
+        synchronized (this) {
+            if (localNeighbors == null) {
+                localNeighbors = new TreeMap<Integer, NeighborTable>();
+            }
+            for (NeighborTable neighbor : removed) {
+                localNeighbors.remove(neighbor.getNetworkAddress());
+            }
+            for (NeighborTable neighbor : added) {
+                localNeighbors.put(neighbor.getNetworkAddress(), neighbor);
+            }
+            for (NeighborTable neighbor : updated) {
+                localNeighbors.put(neighbor.getNetworkAddress(), neighbor);
+            }
+        }
+    }
+
+    @Override
+    public void localRoutesUpdated(final List<RoutingTable> added, final List<RoutingTable> updated,
+            final List<RoutingTable> removed) {
+        synchronized (this) {
+            if (localRoutes == null) {
+                localRoutes = new TreeMap<Integer, RoutingTable>();
+            }
+            for (RoutingTable route : removed) {
+                localRoutes.remove(route.getDestinationAddress());
+            }
+            for (RoutingTable route : added) {
+                localRoutes.put(route.getDestinationAddress(), route);
+            }
+            for (RoutingTable route : updated) {
+                localRoutes.put(route.getDestinationAddress(), route);
+            }
+        }
+    }
+
+    /**
+     * Gets the neighbors of the local node as last reported by the transport layer. This does not communicate with the
+     * dongle.
+     * <p>
+     * The table only holds the fields that the transport provides, and is kept separate from the neighbors of the local
+     * {@link ZigBeeNode}, which are read with ZDO requests.
+     *
+     * @return unmodifiable {@link List} of {@link NeighborTable}, or null if the transport has not provided the table
+     */
+    public List<NeighborTable> getLocalNeighbors() {
+        synchronized (this) {
+            if (localNeighbors == null) {
+                return null;
+            }
+            return Collections.unmodifiableList(new ArrayList<NeighborTable>(localNeighbors.values()));
+        }
+    }
+
+    /**
+     * Gets the routes of the local node as last reported by the transport layer. This does not communicate with the
+     * dongle.
+     *
+     * @return unmodifiable {@link List} of {@link RoutingTable}, or null if the transport has not provided the table
+     */
+    public List<RoutingTable> getLocalRoutes() {
+        synchronized (this) {
+            if (localRoutes == null) {
+                return null;
+            }
+            return Collections.unmodifiableList(new ArrayList<RoutingTable>(localRoutes.values()));
+        }
+    }
+
     public void addNetworkStateListener(ZigBeeNetworkStateListener stateListener) {
         final List<ZigBeeNetworkStateListener> modifiedStateListeners = new ArrayList<ZigBeeNetworkStateListener>(
                 stateListeners);
@@ -795,9 +945,6 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
                         if (responseMatcher.isMatch(command, receivedCommand)) {
                             synchronized (future) {
                                 future.set(new CommandResult(receivedCommand));
-                                synchronized (future) {
-                                    future.notify();
-                                }
                                 removeCommandExecution(commandExecution);
                             }
                         }
@@ -821,6 +968,36 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
         }
     }
 
+    @Override
+    public void commandDeliveryStatus(final int transactionId, final boolean delivered) {
+        commandGovernor.commandDeliveryStatus(transactionId);
+
+        if (delivered) {
+            return;
+        }
+
+        final List<CommandExecution> failedCommandExecutions = new ArrayList<CommandExecution>();
+        synchronized (commandExecutions) {
+            for (final CommandExecution commandExecution : commandExecutions) {
+                final Integer commandTransactionId = commandExecution.getCommand().getTransactionId();
+                if (commandTransactionId != null && commandTransactionId == transactionId) {
+                    failedCommandExecutions.add(commandExecution);
+                }
+            }
+        }
+
+        for (final CommandExecution commandExecution : failedCommandExecutions) {
+            logger.debug("Delivery failed for transaction {}: {}", transactionId, commandExecution.getCommand());
+            final CommandResultFuture future = (CommandResultFuture) commandExecution.getFuture();
+            synchronized (future) {
+                if (!future.isDone()) {
+                    future.set(new CommandResult("Command delivery failed."));
+                }
+                removeCommandExecution(commandExecution);
+            }
+        }
+    }
+
     /**
      * Broadcasts command i.e. does not wait for response.
      *
@@ -876,7 +1053,7 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
         commandExecutions.remove(expiredCommandExecution);
         removeCommandListener(expiredCommandExecution.getCommandListener());
         synchronized (expiredCommandExecution.getFuture()) {
-            expiredCommandExecution.getFuture().notify();
+            expiredCommandExecution.getFuture().notifyAll();
         }
     }
 
@@ -1049,14 +1226,31 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
      * @return the command result future
      */
     public Future<CommandResult> write(final ZclCluster cluster, final ZclAttribute attribute, final Object value) {
+        return write(cluster, Collections.singletonMap(attribute, value));
+    }
+
+    /**
+     * Writes a number of attributes to the same cluster of a device in a single command. The caller is responsible
+     * for ensuring that the command fits in a single frame.
+     *
+     * @param cluster the {@link ZclCluster} to write to
+     * @param values map of the {@link ZclAttribute}s to write and the value to set for each. The records are sent in
+     *            the iteration order of the map.
+     * @return the command result future
+     */
+    public Future<CommandResult> write(final ZclCluster cluster, final Map<ZclAttribute, Object> values) {
         final WriteAttributesCommand command = new WriteAttributesCommand();
 
         command.setClusterId(cluster.getClusterId());
-        final WriteAttributeRecord attributeIdentifier = new WriteAttributeRecord();
-        attributeIdentifier.setAttributeIdentifier(attribute.getId());
-        attributeIdentifier.setAttributeDataType(attribute.getDataType());
-        attributeIdentifier.setAttributeValue(value);
-        command.setRecords(Collections.singletonList(attributeIdentifier));
+        final List<WriteAttributeRecord> records = new ArrayList<WriteAttributeRecord>();
+        for (Map.Entry<ZclAttribute, Object> value : values.entrySet()) {
+            final WriteAttributeRecord attributeIdentifier = new WriteAttributeRecord();
+            attributeIdentifier.setAttributeIdentifier(value.getKey().getId());
+            attributeIdentifier.setAttributeDataType(value.getKey().getDataType());
+            attributeIdentifier.setAttributeValue(value.getValue());
+            records.add(attributeIdentifier);
+        }
+        command.setRecords(records);
         command.setDestinationAddress(cluster.getZigBeeAddress());
 
         return unicast(command, new ZclCustomResponseMatcher());
@@ -1071,12 +1265,28 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
      * @return the command result future
      */
     public Future<CommandResult> read(final ZclCluster cluster, final ZclAttribute attribute) {
+        return read(cluster, Collections.singletonList(attribute));
+    }
+
+    /**
+     * Reads a number of attributes from the same cluster of a device in a single command. The caller is responsible
+     * for ensuring that the response will fit in a single frame.
+     *
+     * @param cluster the {@link ZclCluster} to read from
+     * @param attributes the list of {@link ZclAttribute}s to read
+     * @return the command result future
+     */
+    public Future<CommandResult> read(final ZclCluster cluster, final List<ZclAttribute> attributes) {
         final ReadAttributesCommand command = new ReadAttributesCommand();
 
         command.setClusterId(cluster.getClusterId());
-        final AttributeIdentifier attributeIdentifier = new AttributeIdentifier();
-        attributeIdentifier.setAttributeIdentifier(attribute.getId());
-        command.setIdentifiers(Collections.singletonList(attributeIdentifier));
+        final List<AttributeIdentifier> identifiers = new ArrayList<AttributeIdentifier>();
+        for (ZclAttribute attribute : attributes) {
+            final AttributeIdentifier attributeIdentifier = new AttributeIdentifier();
+            attributeIdentifier.setAttributeIdentifier(attribute.getId());
+            identifiers.add(attributeIdentifier);
+        }
+        command.setIdentifiers(identifiers);
         command.setDestinationAddress(cluster.getZigBeeAddress());
 
         return unicast(command, new ZclCustomResponseMatcher());
@@ -1277,6 +1487,17 @@ public class ZigBeeNetworkManager implements ZigBeeNetwork, ZigBeeTransportRecei
      */
     public ZigBeeNode getNode(final IeeeAddress ieeeAddress) {
         synchronized (networkNodes) {
+            // If the transport maintains an address table, use it to avoid searching all nodes
+            if (transport instanceof ZigBeeTransportAddressResolver) {
+                Integer networkAddress = ((ZigBeeTransportAddressResolver) transport).getNetworkAddress(ieeeAddress);
+                if (networkAddress != null) {
+                    ZigBeeNode node = networkNodes.get(networkAddress);
+                    if (node != null && ieeeAddress.equals(node.getIeeeAddress())) {
+                        return node;
+                    }
+                }
+            }
+
             for (ZigBeeNode node : networkNodes.values()) {
                 if (node.getIeeeAddress().equals(ieeeAddress)) {
                     return node;
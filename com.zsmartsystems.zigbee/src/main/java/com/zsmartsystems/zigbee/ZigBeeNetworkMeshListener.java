@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
+
+/**
+ * ZigBee mesh listener. Provides notifications of individual changes to the neighbor and routing tables of nodes,
+ * as they are found by the incremental mode of the {@link ZigBeeNetworkMeshMonitor}.
+ *
+ * @author Chris Jackson
+ */
+public interface ZigBeeNetworkMeshListener {
+
+    /**
+     * Neighbor was added to the neighbor table of a node
+     *
+     * @param node the {@link ZigBeeNode} reporting the neighbor
+     * @param neighbor the new {@link NeighborTable} entry
+     */
+    void neighborAdded(final ZigBeeNode node, final NeighborTable neighbor);
+
+    /**
+     * Neighbor in the neighbor table of a node was updated - eg the link quality has changed
+     *
+     * @param node the {@link ZigBeeNode} reporting the neighbor
+     * @param neighbor the updated {@link NeighborTable} entry
+     */
+    void neighborUpdated(final ZigBeeNode node, final NeighborTable neighbor);
+
+    /**
+     * Neighbor was removed from the neighbor table of a node
+     *
+     * @param node the {@link ZigBeeNode} reporting the neighbor
+     * @param neighbor the removed {@link NeighborTable} entry
+     */
+    void neighborRemoved(final ZigBeeNode node, final NeighborTable neighbor);
+
+    /**
+     * Route was added to the routing table of a node
+     *
+     * @param node the {@link ZigBeeNode} reporting the route
+     * @param route the new {@link RoutingTable} entry
+     */
+    void routeAdded(final ZigBeeNode node, final RoutingTable route);
+
+    /**
+     * Route in the routing table of a node was updated - eg the next hop has changed
+     *
+     * @param node the {@link ZigBeeNode} reporting the route
+     * @param route the updated {@link RoutingTable} entry
+     */
+    void routeUpdated(final ZigBeeNode node, final RoutingTable route);
+
+    /**
+     * Route was removed from the routing table of a node
+     *
+     * @param node the {@link ZigBeeNode} reporting the route
+     * @param route the removed {@link RoutingTable} entry
+     */
+    void routeRemoved(final ZigBeeNode node, final RoutingTable route);
+}
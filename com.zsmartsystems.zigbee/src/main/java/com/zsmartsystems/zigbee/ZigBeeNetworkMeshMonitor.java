@@ -9,13 +9,17 @@ package com.zsmartsystems.zigbee;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -23,6 +27,7 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.zsmartsystems.zigbee.internal.NotificationService;
 import com.zsmartsystems.zigbee.zdo.ZdoStatus;
 import com.zsmartsystems.zigbee.zdo.command.DeviceAnnounce;
 import com.zsmartsystems.zigbee.zdo.command.IeeeAddressRequest;
@@ -52,6 +57,14 @@ import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
  * table when a non existant node is requested. Nodes in the neighbour table should be reliable as they actually known
  * by the node.
  * <p>
+ * As an alternative to the periodic crawl, {@link #startupIncremental(int, int)} starts an incremental mode. Each
+ * node is refreshed on its own schedule. The period between refreshes of a node is halved when its neighbor or
+ * routing table changes, down to a minimum, and doubled when the tables are stable or the node doesn't respond, up to
+ * a maximum. The paged {@link ManagementLqiRequest} and {@link ManagementRoutingRequest} requests are sent without
+ * blocking, and the responses are received as a {@link CommandListener}. Rather than updating the whole node,
+ * each neighbor or route that is added, removed or changed is notified to the {@link ZigBeeNetworkMeshListener}s.
+ * Nodes found in neighbor tables are added to the refresh schedule.
+ * <p>
  * This class is thread safe.
  *
  * @author Chris Jackson
@@ -67,6 +80,16 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
      */
     private static final int RETRY_COUNT = 3;
 
+    /**
+     * Time to wait for the response to a request in incremental mode - in milliseconds
+     */
+    private static final int RESPONSE_TIMEOUT = 8000;
+
+    /**
+     * The minimum change in link quality that is notified as a neighbor update, and counts as an unstable link
+     */
+    private static final int LQI_CHANGE_THRESHOLD = 20;
+
     /**
      * The ZigBee command interface.
      */
@@ -96,6 +119,44 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
 
     private ScheduledFuture<?> futureTask = null;
 
+    /**
+     * True if the monitor is running in incremental mode
+     */
+    private boolean incremental = false;
+
+    /**
+     * Minimum period between refreshes of a node in incremental mode - in seconds
+     */
+    private int minimumPeriod;
+
+    /**
+     * Maximum period between refreshes of a node in incremental mode - in seconds
+     */
+    private int maximumPeriod;
+
+    /**
+     * The refresh status of each node in incremental mode, mapped to the network address. This is also used to
+     * synchronize access to the {@link NodeMeshStatus}.
+     */
+    private final Map<Integer, NodeMeshStatus> nodeStatus = new HashMap<Integer, NodeMeshStatus>();
+
+    /**
+     * The listeners of mesh changes.
+     */
+    private List<ZigBeeNetworkMeshListener> meshListeners = Collections
+            .unmodifiableList(new ArrayList<ZigBeeNetworkMeshListener>());
+
+    /**
+     * Random jitter used to spread the refreshes of nodes
+     */
+    private final Random random = new Random();
+
+    private enum MeshUpdateState {
+        IDLE,
+        NEIGHBORS,
+        ROUTES
+    }
+
     /**
      * Discovers ZigBee network state.
      *
@@ -140,6 +201,56 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
         startScheduler(10);
     }
 
+    /**
+     * Starts up the mesh update service in incremental mode. Each node is refreshed on its own schedule, starting
+     * from the coordinator and any nodes already known to the network manager.
+     *
+     * @param minimumPeriod minimum number of seconds between updates of a node
+     * @param maximumPeriod maximum number of seconds between updates of a node
+     */
+    public void startupIncremental(final int minimumPeriod, final int maximumPeriod) {
+        this.minimumPeriod = minimumPeriod;
+        this.maximumPeriod = maximumPeriod;
+        incremental = true;
+        logger.debug("Starting incremental mesh update with intervals from {} to {} seconds", minimumPeriod,
+                maximumPeriod);
+
+        networkManager.addCommandListener(this);
+
+        trackNode(0);
+        for (final ZigBeeNode node : networkManager.getNodes()) {
+            trackNode(node.getNetworkAddress());
+        }
+    }
+
+    /**
+     * Adds a {@link ZigBeeNetworkMeshListener} to be notified of changes found in incremental mode
+     *
+     * @param meshListener the {@link ZigBeeNetworkMeshListener} to add
+     */
+    public void addMeshListener(final ZigBeeNetworkMeshListener meshListener) {
+        synchronized (this) {
+            final List<ZigBeeNetworkMeshListener> modifiedListeners = new ArrayList<ZigBeeNetworkMeshListener>(
+                    meshListeners);
+            modifiedListeners.add(meshListener);
+            meshListeners = Collections.unmodifiableList(modifiedListeners);
+        }
+    }
+
+    /**
+     * Removes a {@link ZigBeeNetworkMeshListener}
+     *
+     * @param meshListener the {@link ZigBeeNetworkMeshListener} to remove
+     */
+    public void removeMeshListener(final ZigBeeNetworkMeshListener meshListener) {
+        synchronized (this) {
+            final List<ZigBeeNetworkMeshListener> modifiedListeners = new ArrayList<ZigBeeNetworkMeshListener>(
+                    meshListeners);
+            modifiedListeners.remove(meshListener);
+            meshListeners = Collections.unmodifiableList(modifiedListeners);
+        }
+    }
+
     /**
      * Sets the update period for the mesh update service. This is the number of seconds between
      * subsequent mesh updates.
@@ -158,6 +269,16 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
      * the timer is restarted from the time of calling this method.
      */
     public void refresh() {
+        if (incremental) {
+            logger.debug("Refreshing all nodes in incremental mesh update");
+            synchronized (nodeStatus) {
+                for (final NodeMeshStatus status : nodeStatus.values()) {
+                    scheduleRefresh(status, 3);
+                }
+            }
+            return;
+        }
+
         logger.debug("Refreshing mesh update task with interval of {} seconds", updatePeriod);
 
         // Delay the start slightly to allow any further processing to complete.
@@ -176,6 +297,14 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
         if (futureTask != null) {
             futureTask.cancel(true);
         }
+
+        synchronized (nodeStatus) {
+            for (final NodeMeshStatus status : nodeStatus.values()) {
+                status.cancelTasks();
+            }
+            nodeStatus.clear();
+        }
+        incremental = false;
     }
 
     /**
@@ -290,6 +419,7 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
             ieeeAddressRequest.setRequestType(1);
             ieeeAddressRequest.setStartIndex(startIndex);
             ieeeAddressRequest.setNwkAddrOfInterest(networkAddress);
+            ieeeAddressRequest.setPriority(ZigBeeCommandPriority.POLLING);
             CommandResult response = networkManager.unicast(ieeeAddressRequest, ieeeAddressRequest).get();
 
             final IeeeAddressResponse ieeeAddressResponse = response.getResponse();
@@ -336,21 +466,14 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
             final ManagementLqiRequest neighborRequest = new ManagementLqiRequest();
             neighborRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
             neighborRequest.setStartIndex(startIndex);
+            neighborRequest.setPriority(ZigBeeCommandPriority.POLLING);
             CommandResult response = networkManager.unicast(neighborRequest, neighborRequest).get();
 
             final ManagementLqiResponse neighborResponse = response.getResponse();
             if (neighborResponse != null && neighborResponse.getStatus() == ZdoStatus.SUCCESS) {
                 // Save the neighbors
                 neighbors.addAll(neighborResponse.getNeighborTableList());
-                for (NeighborTable neighbor : neighborResponse.getNeighborTableList()) {
-                    if (neighbor.getPermitJoining() != NeighborTableJoining.UNKNOWN) {
-                        // Update the nodes "join enabled" flag
-                        ZigBeeNode node = networkManager.getNode(neighbor.getExtendedAddress());
-                        if (node != null) {
-                            node.setJoining(neighbor.getPermitJoining() == NeighborTableJoining.ENABLED);
-                        }
-                    }
-                }
+                updateJoining(neighborResponse.getNeighborTableList());
 
                 // Continue with next request
                 startIndex += neighborResponse.getNeighborTableListCount();
@@ -392,6 +515,7 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
             final ManagementRoutingRequest routeRequest = new ManagementRoutingRequest();
             routeRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
             routeRequest.setStartIndex(startIndex);
+            routeRequest.setPriority(ZigBeeCommandPriority.POLLING);
             CommandResult response = networkManager.unicast(routeRequest, routeRequest).get();
             final ManagementRoutingResponse routingResponse = response.getResponse();
             if (routingResponse != null && routingResponse.getStatus() == ZdoStatus.SUCCESS) {
@@ -416,6 +540,11 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
 
     @Override
     public void commandReceived(Command command) {
+        if (incremental) {
+            incrementalCommandReceived(command);
+            return;
+        }
+
         // Listen for specific commands that may indicate that the mesh has changed
         if (command instanceof ManagementLeaveResponse || command instanceof DeviceAnnounce) {
             logger.debug("Mesh related command received. Triggering mesh update.");
@@ -423,8 +552,540 @@ public class ZigBeeNetworkMeshMonitor implements CommandListener {
         }
     }
 
+    /**
+     * Processes a received command in incremental mode. Responses continue the refresh of the node, and commands that
+     * indicate the mesh has changed refresh the node at the minimum period.
+     *
+     * @param command the received {@link Command}
+     */
+    private void incrementalCommandReceived(final Command command) {
+        if (command instanceof DeviceAnnounce) {
+            final int networkAddress = ((DeviceAnnounce) command).getNwkAddrOfInterest();
+            logger.debug("{}: Device announced. Triggering incremental mesh update.", networkAddress);
+            trackNode(networkAddress);
+            synchronized (nodeStatus) {
+                final NodeMeshStatus status = nodeStatus.get(networkAddress);
+                status.period = minimumPeriod;
+                scheduleRefresh(status, 3);
+            }
+            return;
+        }
+
+        if (!(command.getSourceAddress() instanceof ZigBeeDeviceAddress)) {
+            return;
+        }
+        final int networkAddress = ((ZigBeeDeviceAddress) command.getSourceAddress()).getAddress();
+
+        if (command instanceof ManagementLeaveResponse) {
+            synchronized (nodeStatus) {
+                final NodeMeshStatus status = nodeStatus.get(networkAddress);
+                if (status != null) {
+                    status.period = minimumPeriod;
+                    scheduleRefresh(status, 3);
+                }
+            }
+            return;
+        }
+
+        if (!(command instanceof ManagementLqiResponse) && !(command instanceof ManagementRoutingResponse)) {
+            return;
+        }
+
+        final NodeMeshStatus status;
+        final Command request;
+        boolean complete = false;
+        synchronized (nodeStatus) {
+            status = nodeStatus.get(networkAddress);
+            if (status == null || status.pendingRequest == null) {
+                return;
+            }
+
+            final ZdoStatus responseStatus;
+            final int count;
+            final int total;
+            if (command instanceof ManagementLqiResponse && status.state == MeshUpdateState.NEIGHBORS) {
+                final ManagementLqiResponse neighborResponse = (ManagementLqiResponse) command;
+                responseStatus = neighborResponse.getStatus();
+                if (responseStatus == ZdoStatus.SUCCESS) {
+                    status.neighbors.addAll(neighborResponse.getNeighborTableList());
+                }
+                count = neighborResponse.getNeighborTableListCount() == null ? 0
+                        : neighborResponse.getNeighborTableListCount();
+                total = neighborResponse.getNeighborTableEntries() == null ? 0
+                        : neighborResponse.getNeighborTableEntries();
+            } else if (command instanceof ManagementRoutingResponse && status.state == MeshUpdateState.ROUTES) {
+                final ManagementRoutingResponse routingResponse = (ManagementRoutingResponse) command;
+                responseStatus = routingResponse.getStatus();
+                if (responseStatus == ZdoStatus.SUCCESS) {
+                    status.routes.addAll(routingResponse.getRoutingTableList());
+                }
+                count = routingResponse.getRoutingTableListCount() == null ? 0
+                        : routingResponse.getRoutingTableListCount();
+                total = routingResponse.getRoutingTableEntries() == null ? 0 : routingResponse.getRoutingTableEntries();
+            } else {
+                return;
+            }
+
+            status.cancelTimeout();
+            status.pendingRequest = null;
+            if (responseStatus != ZdoStatus.SUCCESS) {
+                logger.debug("{}: Mesh request in state {} returned {}", networkAddress, status.state,
+                        responseStatus);
+                request = retryRequest(status);
+            } else {
+                status.retries = 0;
+                status.startIndex += count;
+                if (count > 0 && status.startIndex < total) {
+                    // Request the next page of the table
+                    request = createRequest(status);
+                } else if (status.state == MeshUpdateState.NEIGHBORS && isRouter(networkAddress)) {
+                    status.state = MeshUpdateState.ROUTES;
+                    status.startIndex = 0;
+                    request = createRequest(status);
+                } else {
+                    request = null;
+                    complete = true;
+                }
+            }
+        }
+
+        if (complete) {
+            completeRefresh(status);
+        } else if (request != null) {
+            sendRequest(status, request);
+        }
+    }
+
+    /**
+     * Adds a node to the incremental refresh schedule if it isn't already known
+     *
+     * @param networkAddress the network address of the node
+     */
+    private void trackNode(final int networkAddress) {
+        synchronized (nodeStatus) {
+            if (nodeStatus.containsKey(networkAddress)) {
+                return;
+            }
+
+            final NodeMeshStatus status = new NodeMeshStatus(networkAddress);
+            status.period = minimumPeriod;
+            final ZigBeeNode node = networkManager.getNode(networkAddress);
+            if (node != null) {
+                synchronized (node.getNeighbors()) {
+                    for (final NeighborTable neighbor : node.getNeighbors()) {
+                        status.reportedNeighbors.put(neighbor.getExtendedAddress(), neighbor);
+                    }
+                }
+                synchronized (node.getRoutes()) {
+                    for (final RoutingTable route : node.getRoutes()) {
+                        status.reportedRoutes.put(route.getDestinationAddress(), route);
+                    }
+                }
+            }
+            nodeStatus.put(networkAddress, status);
+
+            // Spread the first refresh of each node so a large network isn't polled at once
+            scheduleRefresh(status, 1 + random.nextInt(Math.max(1, minimumPeriod)));
+        }
+    }
+
+    /**
+     * Schedules the next refresh of a node. Must be called with the {@link #nodeStatus} lock held.
+     *
+     * @param status the {@link NodeMeshStatus} of the node
+     * @param delay the delay before the refresh - in seconds
+     */
+    private void scheduleRefresh(final NodeMeshStatus status, final int delay) {
+        if (status.refreshTask != null) {
+            status.refreshTask.cancel(false);
+        }
+        try {
+            status.refreshTask = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    startRefresh(status);
+                }
+            }, delay, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // The monitor has been shut down
+        }
+    }
+
+    /**
+     * Starts a refresh of a node by requesting the first page of its neighbor table
+     *
+     * @param status the {@link NodeMeshStatus} of the node
+     */
+    private void startRefresh(final NodeMeshStatus status) {
+        final Command request;
+        synchronized (nodeStatus) {
+            if (status.state != MeshUpdateState.IDLE || nodeStatus.get(status.networkAddress) != status) {
+                return;
+            }
+
+            if (networkManager.getNode(status.networkAddress) == null) {
+                logger.debug("{}: ZigBee node not found during incremental mesh update", status.networkAddress);
+
+                // Notify that this is a new node so we can try and discover it
+                networkManager.deviceStatusUpdate(ZigBeeDeviceStatus.UNSECURED_JOIN, status.networkAddress, null);
+                scheduleRefresh(status, status.period);
+                return;
+            }
+
+            logger.debug("{}: Starting incremental mesh update", status.networkAddress);
+            status.state = MeshUpdateState.NEIGHBORS;
+            status.startIndex = 0;
+            status.retries = 0;
+            status.neighbors.clear();
+            status.routes.clear();
+            request = createRequest(status);
+        }
+
+        sendRequest(status, request);
+    }
+
+    /**
+     * Creates the request for the current state and page of a node refresh. Must be called with the
+     * {@link #nodeStatus} lock held.
+     *
+     * @param status the {@link NodeMeshStatus} of the node
+     * @return the request {@link Command}
+     */
+    private Command createRequest(final NodeMeshStatus status) {
+        final Command request;
+        if (status.state == MeshUpdateState.NEIGHBORS) {
+            final ManagementLqiRequest neighborRequest = new ManagementLqiRequest();
+            neighborRequest.setStartIndex(status.startIndex);
+            request = neighborRequest;
+        } else {
+            final ManagementRoutingRequest routeRequest = new ManagementRoutingRequest();
+            routeRequest.setStartIndex(status.startIndex);
+            request = routeRequest;
+        }
+        request.setDestinationAddress(new ZigBeeDeviceAddress(status.networkAddress));
+        request.setPriority(ZigBeeCommandPriority.POLLING);
+        status.pendingRequest = request;
+        return request;
+    }
+
+    /**
+     * Sends a request without holding the lock, since the transport may block
+     *
+     * @param status the {@link NodeMeshStatus} of the node
+     * @param request the request {@link Command}
+     */
+    private void sendRequest(final NodeMeshStatus status, final Command request) {
+        synchronized (nodeStatus) {
+            try {
+                status.timeoutTask = scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        requestFailed(status, request);
+                    }
+                }, RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // The monitor has been shut down
+                return;
+            }
+        }
+
+        try {
+            networkManager.sendCommand(request);
+        } catch (final ZigBeeException e) {
+            logger.debug("{}: Error sending mesh request: {}", status.networkAddress, e.getMessage());
+            requestFailed(status, request);
+        }
+    }
+
+    /**
+     * Called when a request times out or can't be sent
+     *
+     * @param status the {@link NodeMeshStatus} of the node
+     * @param request the failed request {@link Command}
+     */
+    private void requestFailed(final NodeMeshStatus status, final Command request) {
+        final Command retry;
+        synchronized (nodeStatus) {
+            // Ignore the failure if the response has been received in the meantime
+            if (status.pendingRequest != request) {
+                return;
+            }
+            status.cancelTimeout();
+            status.pendingRequest = null;
+            retry = retryRequest(status);
+        }
+
+        if (retry != null) {
+            sendRequest(status, retry);
+        }
+    }
+
+    /**
+     * Creates the request to retry the current page, or ends the refresh if there are no retries left. A node that
+     * doesn't respond is refreshed less often. Must be called with the {@link #nodeStatus} lock held.
+     *
+     * @param status the {@link NodeMeshStatus} of the node
+     * @return the request {@link Command} to send, or null if the refresh has ended
+     */
+    private Command retryRequest(final NodeMeshStatus status) {
+        if (status.retries++ < RETRY_COUNT) {
+            return createRequest(status);
+        }
+
+        logger.debug("{}: Incremental mesh update failed in state {}", status.networkAddress, status.state);
+        status.state = MeshUpdateState.IDLE;
+        status.period = Math.min(maximumPeriod, status.period * 2);
+        scheduleRefresh(status, status.period);
+        return null;
+    }
+
+    /**
+     * Completes the refresh of a node. The tables are compared with the last notified tables, the listeners are
+     * notified of each change, and the next refresh is scheduled based on the stability of the tables.
+     *
+     * @param status the {@link NodeMeshStatus} of the node
+     */
+    private void completeRefresh(final NodeMeshStatus status) {
+        final ZigBeeNode node = networkManager.getNode(status.networkAddress);
+        final List<NeighborTable> neighbors;
+        final List<RoutingTable> routes;
+        final boolean routesUpdated;
+        synchronized (nodeStatus) {
+            neighbors = new ArrayList<NeighborTable>(status.neighbors);
+            routes = new ArrayList<RoutingTable>(status.routes);
+            routesUpdated = status.state == MeshUpdateState.ROUTES;
+            status.state = MeshUpdateState.IDLE;
+        }
+        if (node == null) {
+            synchronized (nodeStatus) {
+                scheduleRefresh(status, status.period);
+            }
+            return;
+        }
+
+        boolean changed = false;
+        final Map<IeeeAddress, NeighborTable> currentNeighbors = new HashMap<IeeeAddress, NeighborTable>();
+        for (final NeighborTable neighbor : neighbors) {
+            currentNeighbors.put(neighbor.getExtendedAddress(), neighbor);
+            final NeighborTable previous = status.reportedNeighbors.get(neighbor.getExtendedAddress());
+            if (previous == null) {
+                notifyNeighborAdded(node, neighbor);
+                changed = true;
+            } else if (isNeighborChanged(previous, neighbor)) {
+                notifyNeighborUpdated(node, neighbor);
+                changed = true;
+            } else {
+                // Keep the notified entry, so that small changes in link quality don't accumulate unnoticed
+                currentNeighbors.put(neighbor.getExtendedAddress(), previous);
+            }
+        }
+        for (final NeighborTable previous : status.reportedNeighbors.values()) {
+            if (!currentNeighbors.containsKey(previous.getExtendedAddress())) {
+                notifyNeighborRemoved(node, previous);
+                changed = true;
+            }
+        }
+        status.reportedNeighbors.clear();
+        status.reportedNeighbors.putAll(currentNeighbors);
+        node.setNeighbors(neighbors);
+        updateJoining(neighbors);
+
+        if (routesUpdated) {
+            final Map<Integer, RoutingTable> currentRoutes = new HashMap<Integer, RoutingTable>();
+            for (final RoutingTable route : routes) {
+                currentRoutes.put(route.getDestinationAddress(), route);
+                final RoutingTable previous = status.reportedRoutes.get(route.getDestinationAddress());
+                if (previous == null) {
+                    notifyRouteAdded(node, route);
+                    changed = true;
+                } else if (!previous.equals(route)) {
+                    notifyRouteUpdated(node, route);
+                    changed = true;
+                }
+            }
+            for (final RoutingTable previous : status.reportedRoutes.values()) {
+                if (!currentRoutes.containsKey(previous.getDestinationAddress())) {
+                    notifyRouteRemoved(node, previous);
+                    changed = true;
+                }
+            }
+            status.reportedRoutes.clear();
+            status.reportedRoutes.putAll(currentRoutes);
+            node.setRoutes(routes);
+        }
+        node.setLastUpdateTime();
+
+        // Refresh unstable nodes more often
+        synchronized (nodeStatus) {
+            if (changed) {
+                status.period = Math.max(minimumPeriod, status.period / 2);
+            } else {
+                status.period = Math.min(maximumPeriod, status.period * 2);
+            }
+            logger.debug("{}: Ending incremental mesh update. Changed={}, next update in {} seconds",
+                    status.networkAddress, changed, status.period);
+            scheduleRefresh(status, status.period);
+        }
+
+        // Add any new nodes to the schedule
+        for (final NeighborTable neighbor : neighbors) {
+            trackNode(neighbor.getNetworkAddress());
+        }
+    }
+
+    /**
+     * Updates the "join enabled" flag of the nodes in a neighbor table
+     *
+     * @param neighbors the list of {@link NeighborTable} entries
+     */
+    private void updateJoining(final List<NeighborTable> neighbors) {
+        for (final NeighborTable neighbor : neighbors) {
+            if (neighbor.getPermitJoining() != NeighborTableJoining.UNKNOWN) {
+                final ZigBeeNode node = networkManager.getNode(neighbor.getExtendedAddress());
+                if (node != null) {
+                    node.setJoining(neighbor.getPermitJoining() == NeighborTableJoining.ENABLED);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a router or coordinator, which has a routing table
+     *
+     * @param networkAddress the network address of the node
+     * @return true if the node has a routing table
+     */
+    private boolean isRouter(final int networkAddress) {
+        final ZigBeeNode node = networkManager.getNode(networkAddress);
+        return node != null && !node.isReducedFuntionDevice();
+    }
+
+    /**
+     * Checks if a neighbor has changed enough to be notified
+     *
+     * @param previous the previously notified {@link NeighborTable}
+     * @param current the current {@link NeighborTable}
+     * @return true if the neighbor has changed
+     */
+    private boolean isNeighborChanged(final NeighborTable previous, final NeighborTable current) {
+        if (!Objects.equals(previous.getNetworkAddress(), current.getNetworkAddress())
+                || previous.getRelationship() != current.getRelationship()
+                || previous.getDeviceType() != current.getDeviceType()
+                || !Objects.equals(previous.getDepth(), current.getDepth())) {
+            return true;
+        }
+        if (previous.getLqi() == null || current.getLqi() == null) {
+            return previous.getLqi() != current.getLqi();
+        }
+        return Math.abs(previous.getLqi() - current.getLqi()) >= LQI_CHANGE_THRESHOLD;
+    }
+
+    private void notifyNeighborAdded(final ZigBeeNode node, final NeighborTable neighbor) {
+        for (final ZigBeeNetworkMeshListener listener : meshListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.neighborAdded(node, neighbor);
+                }
+            });
+        }
+    }
+
+    private void notifyNeighborUpdated(final ZigBeeNode node, final NeighborTable neighbor) {
+        for (final ZigBeeNetworkMeshListener listener : meshListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.neighborUpdated(node, neighbor);
+                }
+            });
+        }
+    }
+
+    private void notifyNeighborRemoved(final ZigBeeNode node, final NeighborTable neighbor) {
+        for (final ZigBeeNetworkMeshListener listener : meshListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.neighborRemoved(node, neighbor);
+                }
+            });
+        }
+    }
+
+    private void notifyRouteAdded(final ZigBeeNode node, final RoutingTable route) {
+        for (final ZigBeeNetworkMeshListener listener : meshListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.routeAdded(node, route);
+                }
+            });
+        }
+    }
+
+    private void notifyRouteUpdated(final ZigBeeNode node, final RoutingTable route) {
+        for (final ZigBeeNetworkMeshListener listener : meshListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.routeUpdated(node, route);
+                }
+            });
+        }
+    }
+
+    private void notifyRouteRemoved(final ZigBeeNode node, final RoutingTable route) {
+        for (final ZigBeeNetworkMeshListener listener : meshListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.routeRemoved(node, route);
+                }
+            });
+        }
+    }
+
+    /**
+     * The incremental refresh status of a node
+     */
     private class NodeMeshStatus {
-        public Date lastUpdateTime;
-        public int retries;
+        private final int networkAddress;
+        private int period;
+        private MeshUpdateState state = MeshUpdateState.IDLE;
+        private int startIndex;
+        private int retries;
+        private Command pendingRequest;
+        private final List<NeighborTable> neighbors = new ArrayList<NeighborTable>();
+        private final List<RoutingTable> routes = new ArrayList<RoutingTable>();
+
+        /**
+         * The neighbors and routes last notified to the listeners. These are only used from the thread completing
+         * the refresh, and a node only has one refresh in progress.
+         */
+        private final Map<IeeeAddress, NeighborTable> reportedNeighbors = new HashMap<IeeeAddress, NeighborTable>();
+        private final Map<Integer, RoutingTable> reportedRoutes = new HashMap<Integer, RoutingTable>();
+
+        private ScheduledFuture<?> timeoutTask;
+        private ScheduledFuture<?> refreshTask;
+
+        NodeMeshStatus(final int networkAddress) {
+            this.networkAddress = networkAddress;
+        }
+
+        void cancelTimeout() {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+                timeoutTask = null;
+            }
+        }
+
+        void cancelTasks() {
+            cancelTimeout();
+            if (refreshTask != null) {
+                refreshTask.cancel(false);
+                refreshTask = null;
+            }
+        }
     }
 }
@@ -0,0 +1,611 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable.NeighborTableRelationship;
+import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor.LogicalType;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
+
+/**
+ * An indexed graph of the network topology, built from the neighbor tables of the nodes. Each node is identified by
+ * its network address, and each neighbor table entry is a {@link Link} from the reporting node to the neighbor.
+ * <p>
+ * The graph is maintained as a {@link ZigBeeNetworkNodeListener} of the {@link ZigBeeNetworkManager}, so that the whole
+ * neighbor table is used when a node is updated by the periodic mesh update, and as a {@link ZigBeeNetworkMeshListener}
+ * of the {@link ZigBeeNetworkMeshMonitor} when it runs in incremental mode. {@link #startup} registers the listeners
+ * and adds the nodes already known by the network manager.
+ * <p>
+ * Links are directional as reported, but queries treat two nodes as connected if either reports the other. The hop
+ * counts from the coordinator, the articulation points and the nodes affected by an outage are computed when first
+ * queried after a change, so repeated queries on a stable network don't traverse the graph.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Chris Jackson
+ */
+public class ZigBeeNetworkTopology implements ZigBeeNetworkMeshListener, ZigBeeNetworkNodeListener {
+    /**
+     * The network address of the coordinator
+     */
+    private static final int COORDINATOR_ADDRESS = 0;
+
+    /**
+     * The links reported by each node, mapped to the reporting node and then the neighbor network address
+     */
+    private final Map<Integer, Map<Integer, Link>> links = new HashMap<Integer, Map<Integer, Link>>();
+
+    /**
+     * The nodes connected to each node in either direction
+     */
+    private final Map<Integer, Set<Integer>> adjacency = new HashMap<Integer, Set<Integer>>();
+
+    /**
+     * The logical type of each node, where it is known
+     */
+    private final Map<Integer, LogicalType> nodeTypes = new HashMap<Integer, LogicalType>();
+
+    /**
+     * The number of hops from the coordinator to each reachable node, or null if the graph has changed
+     */
+    private Map<Integer, Integer> hopCounts;
+
+    /**
+     * The articulation points of the graph, or null if the graph has changed
+     */
+    private Set<Integer> articulationPoints;
+
+    /**
+     * The nodes affected by the outage of each node queried since the graph last changed
+     */
+    private final Map<Integer, Set<Integer>> outages = new HashMap<Integer, Set<Integer>>();
+
+    /**
+     * The {@link ZigBeeNetworkManager} the topology is registered with, or null if it is not started
+     */
+    private ZigBeeNetworkManager networkManager;
+
+    /**
+     * The {@link ZigBeeNetworkMeshMonitor} the topology is registered with, or null
+     */
+    private ZigBeeNetworkMeshMonitor meshMonitor;
+
+    /**
+     * A link from a node to a neighbor, as reported in the neighbor table of the node
+     */
+    public static class Link {
+        private final int source;
+        private final int destination;
+        private final IeeeAddress ieeeAddress;
+        private final int lqi;
+        private final Integer depth;
+        private final NeighborTableRelationship relationship;
+
+        Link(final int source, final NeighborTable neighbor) {
+            this.source = source;
+            this.destination = neighbor.getNetworkAddress();
+            this.ieeeAddress = neighbor.getExtendedAddress();
+            this.lqi = neighbor.getLqi() == null ? 0 : neighbor.getLqi();
+            this.depth = neighbor.getDepth();
+            this.relationship = neighbor.getRelationship();
+        }
+
+        /**
+         * Gets the network address of the node reporting the link
+         *
+         * @return the network address of the reporting node
+         */
+        public int getSource() {
+            return source;
+        }
+
+        /**
+         * Gets the network address of the neighbor
+         *
+         * @return the network address of the neighbor
+         */
+        public int getDestination() {
+            return destination;
+        }
+
+        /**
+         * Gets the {@link IeeeAddress} of the neighbor, if reported
+         *
+         * @return the {@link IeeeAddress} of the neighbor, or null
+         */
+        public IeeeAddress getIeeeAddress() {
+            return ieeeAddress;
+        }
+
+        /**
+         * Gets the link quality reported by the source node
+         *
+         * @return the link quality
+         */
+        public int getLqi() {
+            return lqi;
+        }
+
+        /**
+         * Gets the depth of the neighbor in the network, if reported
+         *
+         * @return the depth of the neighbor, or null
+         */
+        public Integer getDepth() {
+            return depth;
+        }
+
+        /**
+         * Gets the relationship of the neighbor to the source node
+         *
+         * @return the {@link NeighborTableRelationship}
+         */
+        public NeighborTableRelationship getRelationship() {
+            return relationship;
+        }
+
+        @Override
+        public String toString() {
+            return "Link [source=" + source + ", destination=" + destination + ", lqi=" + lqi + ", depth=" + depth
+                    + ", relationship=" + relationship + "]";
+        }
+    }
+
+    /**
+     * Starts maintaining the topology. The topology is registered as a listener, and the neighbors of the nodes already
+     * known by the network manager are added.
+     *
+     * @param networkManager the {@link ZigBeeNetworkManager}
+     * @param meshMonitor the {@link ZigBeeNetworkMeshMonitor} if it is run in incremental mode, or null
+     */
+    public void startup(final ZigBeeNetworkManager networkManager, final ZigBeeNetworkMeshMonitor meshMonitor) {
+        synchronized (this) {
+            if (this.networkManager != null) {
+                return;
+            }
+            this.networkManager = networkManager;
+            this.meshMonitor = meshMonitor;
+        }
+
+        networkManager.addNetworkNodeListener(this);
+        if (meshMonitor != null) {
+            meshMonitor.addMeshListener(this);
+        }
+        for (final ZigBeeNode node : networkManager.getNodes()) {
+            nodeUpdated(node);
+        }
+    }
+
+    /**
+     * Stops maintaining the topology. The graph is left as it was when the topology was stopped.
+     */
+    public void shutdown() {
+        final ZigBeeNetworkManager oldNetworkManager;
+        final ZigBeeNetworkMeshMonitor oldMeshMonitor;
+        synchronized (this) {
+            oldNetworkManager = networkManager;
+            oldMeshMonitor = meshMonitor;
+            networkManager = null;
+            meshMonitor = null;
+        }
+
+        if (oldNetworkManager != null) {
+            oldNetworkManager.removeNetworkNodeListener(this);
+        }
+        if (oldMeshMonitor != null) {
+            oldMeshMonitor.removeMeshListener(this);
+        }
+    }
+
+    /**
+     * Replaces all the links reported by a node
+     *
+     * @param networkAddress the network address of the reporting node
+     * @param neighbors the neighbor table of the node
+     */
+    public synchronized void setNeighbors(final int networkAddress, final List<NeighborTable> neighbors) {
+        final Map<Integer, Link> reported = links.get(networkAddress);
+        if (reported != null) {
+            for (final Integer destination : new ArrayList<Integer>(reported.keySet())) {
+                removeLink(networkAddress, destination);
+            }
+        }
+        for (final NeighborTable neighbor : neighbors) {
+            addLink(networkAddress, neighbor);
+        }
+    }
+
+    /**
+     * Removes a node, and all links to and from it
+     *
+     * @param networkAddress the network address of the node
+     */
+    public synchronized void removeNode(final int networkAddress) {
+        final Set<Integer> connected = adjacency.get(networkAddress);
+        if (connected != null) {
+            for (final Integer neighbor : new ArrayList<Integer>(connected)) {
+                removeLink(networkAddress, neighbor);
+                removeLink(neighbor, networkAddress);
+            }
+        }
+        nodeTypes.remove(networkAddress);
+        invalidate();
+    }
+
+    /**
+     * Gets the nodes in the graph
+     *
+     * @return the set of network addresses of all nodes with links
+     */
+    public synchronized Set<Integer> getNodes() {
+        return new HashSet<Integer>(adjacency.keySet());
+    }
+
+    /**
+     * Gets the nodes connected to a node in either direction
+     *
+     * @param networkAddress the network address of the node
+     * @return the set of network addresses of the connected nodes
+     */
+    public synchronized Set<Integer> getNeighbors(final int networkAddress) {
+        final Set<Integer> connected = adjacency.get(networkAddress);
+        if (connected == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<Integer>(connected);
+    }
+
+    /**
+     * Gets the link reported by a node to a neighbor
+     *
+     * @param source the network address of the reporting node
+     * @param destination the network address of the neighbor
+     * @return the {@link Link}, or null if the source doesn't report the neighbor
+     */
+    public synchronized Link getLink(final int source, final int destination) {
+        final Map<Integer, Link> reported = links.get(source);
+        if (reported == null) {
+            return null;
+        }
+        return reported.get(destination);
+    }
+
+    /**
+     * Gets the link quality between two nodes. Where both nodes report the link, the higher quality is used.
+     *
+     * @param first the network address of the first node
+     * @param second the network address of the second node
+     * @return the link quality, or 0 if the nodes are not connected
+     */
+    public synchronized int getLinkQuality(final int first, final int second) {
+        final Link forward = getLink(first, second);
+        final Link reverse = getLink(second, first);
+        return Math.max(forward == null ? 0 : forward.getLqi(), reverse == null ? 0 : reverse.getLqi());
+    }
+
+    /**
+     * Gets the number of hops from the coordinator to a node
+     *
+     * @param networkAddress the network address of the node
+     * @return the number of hops, or -1 if the node can't be reached from the coordinator
+     */
+    public synchronized int getHopCount(final int networkAddress) {
+        final Integer hops = getHopCounts().get(networkAddress);
+        return hops == null ? -1 : hops;
+    }
+
+    /**
+     * Gets the routers that a node could use as its parent, best first. Candidates are the coordinator and routers
+     * connected to the node, ordered by link quality, and then by the number of hops from the coordinator. Routers
+     * that can't reach the coordinator are not included.
+     *
+     * @param networkAddress the network address of the node
+     * @return the list of network addresses of the parent candidates
+     */
+    public synchronized List<Integer> getParentCandidates(final int networkAddress) {
+        final Map<Integer, Integer> hops = getHopCounts();
+        final List<Integer> candidates = new ArrayList<Integer>();
+        for (final Integer neighbor : getNeighbors(networkAddress)) {
+            if (isRouter(neighbor) && hops.containsKey(neighbor)) {
+                candidates.add(neighbor);
+            }
+        }
+
+        Collections.sort(candidates, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer first, final Integer second) {
+                final int quality = getLinkQuality(networkAddress, second) - getLinkQuality(networkAddress, first);
+                if (quality != 0) {
+                    return quality;
+                }
+                return hops.get(first) - hops.get(second);
+            }
+        });
+        return candidates;
+    }
+
+    /**
+     * Gets the articulation points of the network - the nodes whose failure would split the network
+     *
+     * @return the set of network addresses of the articulation points
+     */
+    public synchronized Set<Integer> getArticulationPoints() {
+        if (articulationPoints == null) {
+            articulationPoints = findArticulationPoints();
+        }
+        return new HashSet<Integer>(articulationPoints);
+    }
+
+    /**
+     * Gets the nodes that would lose their connection to the coordinator if a node failed
+     *
+     * @param networkAddress the network address of the failed node
+     * @return the set of network addresses of the nodes that would no longer reach the coordinator
+     */
+    public synchronized Set<Integer> getNodesAffectedByOutage(final int networkAddress) {
+        Set<Integer> affected = outages.get(networkAddress);
+        if (affected == null) {
+            affected = new HashSet<Integer>(getHopCounts().keySet());
+            affected.remove(networkAddress);
+            if (networkAddress != COORDINATOR_ADDRESS) {
+                affected.removeAll(findHopCounts(networkAddress).keySet());
+            }
+            outages.put(networkAddress, affected);
+        }
+        return new HashSet<Integer>(affected);
+    }
+
+    @Override
+    public synchronized void neighborAdded(final ZigBeeNode node, final NeighborTable neighbor) {
+        addLink(node.getNetworkAddress(), neighbor);
+    }
+
+    @Override
+    public synchronized void neighborUpdated(final ZigBeeNode node, final NeighborTable neighbor) {
+        addLink(node.getNetworkAddress(), neighbor);
+    }
+
+    @Override
+    public synchronized void neighborRemoved(final ZigBeeNode node, final NeighborTable neighbor) {
+        removeLink(node.getNetworkAddress(), neighbor.getNetworkAddress());
+    }
+
+    @Override
+    public void routeAdded(final ZigBeeNode node, final RoutingTable route) {
+        // Routes are not part of the topology
+    }
+
+    @Override
+    public void routeUpdated(final ZigBeeNode node, final RoutingTable route) {
+        // Routes are not part of the topology
+    }
+
+    @Override
+    public void routeRemoved(final ZigBeeNode node, final RoutingTable route) {
+        // Routes are not part of the topology
+    }
+
+    @Override
+    public void nodeAdded(final ZigBeeNode node) {
+        nodeUpdated(node);
+    }
+
+    @Override
+    public synchronized void nodeUpdated(final ZigBeeNode node) {
+        if (node.getNetworkAddress() == null) {
+            return;
+        }
+        if (node.getNodeDescriptor() != null) {
+            nodeTypes.put(node.getNetworkAddress(), node.getLogicalType());
+        }
+        synchronized (node.getNeighbors()) {
+            setNeighbors(node.getNetworkAddress(), node.getNeighbors());
+        }
+    }
+
+    @Override
+    public void nodeRemoved(final ZigBeeNode node) {
+        if (node.getNetworkAddress() != null) {
+            removeNode(node.getNetworkAddress());
+        }
+    }
+
+    /**
+     * Adds or replaces a link. If the neighbor was previously reported with a different network address - eg as it
+     * has rejoined - the link to the old address is removed. Must be called with the lock held.
+     */
+    private void addLink(final int source, final NeighborTable neighbor) {
+        if (neighbor.getNetworkAddress() == null) {
+            return;
+        }
+        final Link link = new Link(source, neighbor);
+        Map<Integer, Link> reported = links.get(source);
+        if (reported != null && link.getIeeeAddress() != null) {
+            for (final Link previous : new ArrayList<Link>(reported.values())) {
+                if (link.getIeeeAddress().equals(previous.getIeeeAddress())
+                        && previous.getDestination() != link.getDestination()) {
+                    removeLink(source, previous.getDestination());
+                }
+            }
+            reported = links.get(source);
+        }
+        if (reported == null) {
+            reported = new HashMap<Integer, Link>();
+            links.put(source, reported);
+        }
+        reported.put(link.getDestination(), link);
+        getAdjacency(source).add(link.getDestination());
+        getAdjacency(link.getDestination()).add(source);
+
+        if (neighbor.getDeviceType() != null && neighbor.getDeviceType() != LogicalType.UNKNOWN) {
+            nodeTypes.put(link.getDestination(), neighbor.getDeviceType());
+        }
+        invalidate();
+    }
+
+    /**
+     * Removes a link. The nodes remain connected if the neighbor also reports the source. Must be called with the
+     * lock held.
+     */
+    private void removeLink(final int source, final int destination) {
+        final Map<Integer, Link> reported = links.get(source);
+        if (reported == null || reported.remove(destination) == null) {
+            return;
+        }
+        if (reported.isEmpty()) {
+            links.remove(source);
+        }
+        if (getLink(destination, source) == null) {
+            disconnect(source, destination);
+            disconnect(destination, source);
+        }
+        invalidate();
+    }
+
+    private void disconnect(final int node, final int neighbor) {
+        final Set<Integer> connected = adjacency.get(node);
+        if (connected != null) {
+            connected.remove(neighbor);
+            if (connected.isEmpty()) {
+                adjacency.remove(node);
+            }
+        }
+    }
+
+    private Set<Integer> getAdjacency(final int networkAddress) {
+        Set<Integer> connected = adjacency.get(networkAddress);
+        if (connected == null) {
+            connected = new HashSet<Integer>();
+            adjacency.put(networkAddress, connected);
+        }
+        return connected;
+    }
+
+    private void invalidate() {
+        hopCounts = null;
+        articulationPoints = null;
+        outages.clear();
+    }
+
+    private boolean isRouter(final int networkAddress) {
+        if (networkAddress == COORDINATOR_ADDRESS) {
+            return true;
+        }
+        final LogicalType type = nodeTypes.get(networkAddress);
+        return type == LogicalType.ROUTER || type == LogicalType.COORDINATOR;
+    }
+
+    private Map<Integer, Integer> getHopCounts() {
+        if (hopCounts == null) {
+            hopCounts = findHopCounts(null);
+        }
+        return hopCounts;
+    }
+
+    /**
+     * Finds the number of hops from the coordinator to each reachable node with a breadth first search
+     *
+     * @param excluded the network address of a node to treat as failed, or null
+     * @return the number of hops mapped to the network address of each reachable node
+     */
+    private Map<Integer, Integer> findHopCounts(final Integer excluded) {
+        final Map<Integer, Integer> hops = new HashMap<Integer, Integer>();
+        final Deque<Integer> queue = new ArrayDeque<Integer>();
+        hops.put(COORDINATOR_ADDRESS, 0);
+        queue.add(COORDINATOR_ADDRESS);
+        while (!queue.isEmpty()) {
+            final Integer node = queue.removeFirst();
+            final Set<Integer> connected = adjacency.get(node);
+            if (connected == null) {
+                continue;
+            }
+            for (final Integer neighbor : connected) {
+                if (!hops.containsKey(neighbor) && !neighbor.equals(excluded)) {
+                    hops.put(neighbor, hops.get(node) + 1);
+                    queue.addLast(neighbor);
+                }
+            }
+        }
+        return hops;
+    }
+
+    /**
+     * Finds the articulation points with an iterative depth first search, so large networks can't overflow the stack
+     *
+     * @return the set of network addresses of the articulation points
+     */
+    private Set<Integer> findArticulationPoints() {
+        final Set<Integer> points = new HashSet<Integer>();
+        final Map<Integer, Integer> discovery = new HashMap<Integer, Integer>();
+        final Map<Integer, Integer> low = new HashMap<Integer, Integer>();
+        final Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+        int time = 0;
+
+        for (final Integer root : adjacency.keySet()) {
+            if (discovery.containsKey(root)) {
+                continue;
+            }
+
+            int rootChildren = 0;
+            final Deque<Integer> path = new ArrayDeque<Integer>();
+            final Deque<Iterator<Integer>> iterators = new ArrayDeque<Iterator<Integer>>();
+            discovery.put(root, time);
+            low.put(root, time++);
+            path.push(root);
+            iterators.push(adjacency.get(root).iterator());
+
+            while (!path.isEmpty()) {
+                final Integer node = path.peek();
+                final Iterator<Integer> iterator = iterators.peek();
+                if (iterator.hasNext()) {
+                    final Integer neighbor = iterator.next();
+                    if (!discovery.containsKey(neighbor)) {
+                        parents.put(neighbor, node);
+                        discovery.put(neighbor, time);
+                        low.put(neighbor, time++);
+                        if (node.equals(root)) {
+                            rootChildren++;
+                        }
+                        path.push(neighbor);
+                        iterators.push(adjacency.get(neighbor).iterator());
+                    } else if (!neighbor.equals(parents.get(node))) {
+                        low.put(node, Math.min(low.get(node), discovery.get(neighbor)));
+                    }
+                    continue;
+                }
+
+                path.pop();
+                iterators.pop();
+                final Integer parent = parents.get(node);
+                if (parent != null) {
+                    low.put(parent, Math.min(low.get(parent), low.get(node)));
+                    if (!parent.equals(root) && low.get(node) >= discovery.get(parent)) {
+                        points.add(parent);
+                    }
+                }
+            }
+
+            if (rootChildren > 1) {
+                points.add(root);
+            }
+        }
+        return points;
+    }
+}
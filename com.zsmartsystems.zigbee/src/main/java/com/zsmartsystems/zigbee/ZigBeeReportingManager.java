@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.zcl.ZclAttribute;
+import com.zsmartsystems.zigbee.zcl.ZclCluster;
+import com.zsmartsystems.zigbee.zcl.ZclReportingConfig;
+import com.zsmartsystems.zigbee.zcl.ZclReportingProfile;
+import com.zsmartsystems.zigbee.zcl.ZclStatus;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingResponse;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationResponse;
+import com.zsmartsystems.zigbee.zcl.field.AttributeReportingStatusRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeStatusRecord;
+import com.zsmartsystems.zigbee.zdo.command.DeviceAnnounce;
+
+/**
+ * {@link ZigBeeReportingManager} applies a {@link ZclReportingProfile} to devices as they are added to the network,
+ * so that the application doesn't need to configure reporting for each attribute after discovery.
+ * <p>
+ * When a {@link ZigBeeDevice} is added, the reporting configuration from the profile for each of its server clusters
+ * is sent with as few {@link ConfigureReportingCommand}s as possible. The configuration is then read back with
+ * {@link ReadReportingConfigurationCommand}s and any attribute that doesn't match is configured again. Attributes
+ * that weren't configured because the command wasn't delivered or answered are also configured again, while attributes
+ * that the device rejects as unsupported are not retried.
+ * <p>
+ * When a node announces itself after rejoining, its devices are queued to be configured again since the device may
+ * have lost its configuration. If a device is being configured when the announcement is received, it is configured
+ * again once the current configuration completes.
+ * <p>
+ * Devices are configured one at a time so that a large number of devices joining doesn't flood the network.
+ *
+ * @author Chris Jackson
+ */
+public class ZigBeeReportingManager implements ZigBeeNetworkDeviceListener, CommandListener {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(ZigBeeReportingManager.class);
+
+    /**
+     * The number of times the configuration of a cluster is sent before the device is considered to have failed
+     */
+    private static final int RETRY_COUNT = 3;
+
+    /**
+     * The {@link ZigBeeNetworkManager}
+     */
+    private final ZigBeeNetworkManager networkManager;
+
+    /**
+     * The {@link ZclReportingProfile} to apply to devices
+     */
+    private final ZclReportingProfile profile;
+
+    /**
+     * The devices that have been configured, so that they can be configured again when their node rejoins
+     */
+    private final Map<ZigBeeDeviceAddress, ZigBeeDevice> configuredDevices = new HashMap<ZigBeeDeviceAddress, ZigBeeDevice>();
+
+    /**
+     * The devices waiting to be configured, or being configured
+     */
+    private final Map<ZigBeeDeviceAddress, ZigBeeDevice> pendingDevices = new HashMap<ZigBeeDeviceAddress, ZigBeeDevice>();
+
+    /**
+     * The pending devices that were announced after their configuration was queued, and must be configured again
+     */
+    private final Set<ZigBeeDeviceAddress> dirtyDevices = new HashSet<ZigBeeDeviceAddress>();
+
+    /**
+     * Executor used to configure the devices
+     */
+    private ExecutorService executorService;
+
+    /**
+     * Constructor
+     *
+     * @param networkManager the {@link ZigBeeNetworkManager}
+     * @param profile the {@link ZclReportingProfile} to apply to devices
+     */
+    public ZigBeeReportingManager(final ZigBeeNetworkManager networkManager, final ZclReportingProfile profile) {
+        this.networkManager = networkManager;
+        this.profile = profile;
+    }
+
+    /**
+     * Starts the manager. The profile is applied to all devices already known by the network manager, and to any
+     * devices added later.
+     */
+    public void startup() {
+        logger.debug("Starting reporting manager");
+        executorService = Executors.newSingleThreadExecutor();
+        networkManager.addNetworkDeviceListener(this);
+        networkManager.addCommandListener(this);
+
+        for (ZigBeeDevice device : networkManager.getDevices()) {
+            configureDevice(device);
+        }
+    }
+
+    /**
+     * Stops the manager
+     */
+    public void shutdown() {
+        logger.debug("Stopping reporting manager");
+        networkManager.removeNetworkDeviceListener(this);
+        networkManager.removeCommandListener(this);
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+        synchronized (configuredDevices) {
+            pendingDevices.clear();
+            dirtyDevices.clear();
+        }
+    }
+
+    /**
+     * Checks if the reporting profile has been successfully applied to a device
+     *
+     * @param deviceAddress the {@link ZigBeeDeviceAddress} of the device
+     * @return true if the device has been configured
+     */
+    public boolean isDeviceConfigured(final ZigBeeDeviceAddress deviceAddress) {
+        synchronized (configuredDevices) {
+            return configuredDevices.containsKey(deviceAddress);
+        }
+    }
+
+    @Override
+    public void deviceAdded(final ZigBeeDevice device) {
+        configureDevice(device);
+    }
+
+    @Override
+    public void deviceUpdated(final ZigBeeDevice device) {
+        // Only configure the device again if it's not configured - eg after it has rejoined
+        if (!isDeviceConfigured(device.getDeviceAddress())) {
+            configureDevice(device);
+        }
+    }
+
+    @Override
+    public void deviceRemoved(final ZigBeeDevice device) {
+        synchronized (configuredDevices) {
+            configuredDevices.remove(device.getDeviceAddress());
+        }
+    }
+
+    @Override
+    public void commandReceived(final Command command) {
+        if (!(command instanceof DeviceAnnounce)) {
+            return;
+        }
+
+        // The node may have lost its reporting configuration if it has rejoined
+        final IeeeAddress ieeeAddress = ((DeviceAnnounce) command).getIeeeAddr();
+        final List<ZigBeeDevice> devices = new ArrayList<ZigBeeDevice>();
+        synchronized (configuredDevices) {
+            for (ZigBeeDevice device : new ArrayList<ZigBeeDevice>(configuredDevices.values())) {
+                if (ieeeAddress.equals(device.getIeeeAddress())) {
+                    logger.debug("{}: Device announced - reporting will be configured again",
+                            device.getDeviceAddress());
+                    configuredDevices.remove(device.getDeviceAddress());
+                    devices.add(device);
+                }
+            }
+
+            // Devices already being configured may have been configured before the node rejoined
+            for (ZigBeeDevice device : pendingDevices.values()) {
+                if (ieeeAddress.equals(device.getIeeeAddress())) {
+                    logger.debug("{}: Device announced while configuring - reporting will be configured again",
+                            device.getDeviceAddress());
+                    dirtyDevices.add(device.getDeviceAddress());
+                }
+            }
+        }
+
+        for (ZigBeeDevice device : devices) {
+            configureDevice(device);
+        }
+    }
+
+    /**
+     * Queues a device to be configured
+     *
+     * @param device the {@link ZigBeeDevice} to configure
+     */
+    private void configureDevice(final ZigBeeDevice device) {
+        synchronized (configuredDevices) {
+            if (executorService == null || pendingDevices.containsKey(device.getDeviceAddress())) {
+                return;
+            }
+            pendingDevices.put(device.getDeviceAddress(), device);
+        }
+
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = false;
+                try {
+                    success = applyProfile(device);
+                } catch (InterruptedException e) {
+                    logger.debug("{}: Reporting configuration interrupted", device.getDeviceAddress());
+                } catch (ExecutionException e) {
+                    logger.debug("{}: Reporting configuration exception", device.getDeviceAddress(), e);
+                }
+
+                boolean repeat;
+                synchronized (configuredDevices) {
+                    pendingDevices.remove(device.getDeviceAddress());
+                    repeat = dirtyDevices.remove(device.getDeviceAddress());
+                    if (success && !repeat) {
+                        configuredDevices.put(device.getDeviceAddress(), device);
+                    }
+                }
+                if (repeat && !Thread.currentThread().isInterrupted()) {
+                    configureDevice(device);
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies the profile to all server clusters of a device
+     *
+     * @param device the {@link ZigBeeDevice} to configure
+     * @return true if all clusters were configured
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private boolean applyProfile(final ZigBeeDevice device) throws InterruptedException, ExecutionException {
+        boolean success = true;
+        for (int clusterId : new ArrayList<Integer>(device.getInputClusterIds())) {
+            final ZclCluster cluster = device.getCluster(clusterId);
+            if (cluster == null) {
+                continue;
+            }
+            final List<ZclReportingConfig> configs = profile.getReportingConfigs(device.getDeviceId(), cluster);
+            if (configs.isEmpty()) {
+                continue;
+            }
+
+            logger.debug("{}: Configuring reporting for {} attributes in cluster {}", device.getDeviceAddress(),
+                    configs.size(), cluster.getClusterName());
+            if (!configureCluster(device, cluster, configs)) {
+                logger.debug("{}: Failed to configure reporting for cluster {}", device.getDeviceAddress(),
+                        cluster.getClusterName());
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Configures and verifies the reporting for a single cluster
+     *
+     * @param device the {@link ZigBeeDevice}
+     * @param cluster the {@link ZclCluster} to configure
+     * @param configs the {@link ZclReportingConfig}s for the cluster
+     * @return true if the reporting for all supported attributes is configured
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private boolean configureCluster(final ZigBeeDevice device, final ZclCluster cluster,
+            final List<ZclReportingConfig> configs) throws InterruptedException, ExecutionException {
+        List<ZclReportingConfig> remaining = configs;
+        for (int retry = 0; retry < RETRY_COUNT && !remaining.isEmpty(); retry++) {
+            CommandResult result = cluster.setReporting(remaining).get();
+            if (result == null || !result.isSuccess()) {
+                continue;
+            }
+
+            // Don't try again for attributes the device rejects - eg as they are not supported.
+            // Attributes that failed for any other reason - eg as the frame was lost - are sent again.
+            final List<ZclReportingConfig> accepted = new ArrayList<ZclReportingConfig>();
+            final List<ZclReportingConfig> failed = new ArrayList<ZclReportingConfig>();
+            final ConfigureReportingResponse response = result.getResponse();
+            for (ZclReportingConfig config : remaining) {
+                AttributeStatusRecord configRecord = null;
+                for (AttributeStatusRecord record : response.getRecords()) {
+                    if (config.getAttribute().getId() == record.getAttributeIdentifier()) {
+                        configRecord = record;
+                        break;
+                    }
+                }
+                if (configRecord != null && configRecord.getStatus() == 0) {
+                    accepted.add(config);
+                } else if (configRecord != null && isRejected(configRecord.getStatus())) {
+                    logger.debug("{}: Reporting for {} rejected with status {}", device.getDeviceAddress(),
+                            config.getAttribute(), ZclStatus.getStatus(configRecord.getStatus()));
+                } else {
+                    logger.debug("{}: Reporting for {} failed with status {}", device.getDeviceAddress(),
+                            config.getAttribute(),
+                            configRecord == null ? null : ZclStatus.getStatus(configRecord.getStatus()));
+                    failed.add(config);
+                }
+            }
+
+            remaining = new ArrayList<ZclReportingConfig>(failed);
+            remaining.addAll(getUnverifiedConfigs(cluster, accepted));
+        }
+
+        return remaining.isEmpty();
+    }
+
+    /**
+     * Checks if a status returned for an attribute in a {@link ConfigureReportingResponse} means the device will never
+     * accept the configuration, so there's no point sending it again
+     *
+     * @param status the status of the attribute
+     * @return true if the configuration was rejected by the device
+     */
+    private boolean isRejected(final int status) {
+        final ZclStatus zclStatus = ZclStatus.getStatus(status);
+        if (zclStatus == null) {
+            return false;
+        }
+        switch (zclStatus) {
+            case UNSUPPORTED_ATTRIBUTE:
+            case UNREPORTABLE_ATTRIBUTE:
+            case INVALID_DATA_TYPE:
+            case INVALID_VALUE:
+            case UNSUP_GENERAL_COMMAND:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads back the reporting configuration of the attributes and returns any that don't match what was configured
+     *
+     * @param cluster the {@link ZclCluster}
+     * @param configs the {@link ZclReportingConfig}s that were configured
+     * @return the {@link ZclReportingConfig}s that couldn't be verified
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private List<ZclReportingConfig> getUnverifiedConfigs(final ZclCluster cluster,
+            final List<ZclReportingConfig> configs) throws InterruptedException, ExecutionException {
+        if (configs.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<ZclAttribute> attributes = new ArrayList<ZclAttribute>();
+        for (ZclReportingConfig config : configs) {
+            attributes.add(config.getAttribute());
+        }
+        CommandResult result = cluster.getReporting(attributes).get();
+        if (result == null || !result.isSuccess()) {
+            return configs;
+        }
+
+        final ReadReportingConfigurationResponse response = result.getResponse();
+        final List<ZclReportingConfig> unverified = new ArrayList<ZclReportingConfig>();
+        for (ZclReportingConfig config : configs) {
+            boolean verified = false;
+            for (AttributeReportingStatusRecord record : response.getRecords()) {
+                if (record.getStatus() == 0
+                        && record.getAttributeIdentifier() == config.getAttribute().getId()
+                        && record.getMinimumReportingInterval() == config.getMinInterval()
+                        && record.getMaximumReportingInterval() == config.getMaxInterval()) {
+                    verified = true;
+                    break;
+                }
+            }
+            if (!verified) {
+                logger.debug("{}: Reporting for {} not verified", cluster.getZigBeeAddress(), config.getAttribute());
+                unverified.add(config);
+            }
+        }
+        return unverified;
+    }
+}
@@ -0,0 +1,559 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.internal.NotificationService;
+import com.zsmartsystems.zigbee.zcl.ZclAttribute;
+import com.zsmartsystems.zigbee.zcl.ZclAttributeListener;
+import com.zsmartsystems.zigbee.zcl.ZclCluster;
+
+/**
+ * {@link ZigBeeReportingWatchdog} detects devices that have stopped reporting, so that the application doesn't need to
+ * poll every node to find out if it is still alive.
+ * <p>
+ * Every attribute with a configured maximum reporting interval is given a deadline by which the next report must be
+ * received. The deadline is moved each time the attribute is updated by a report or read. The deadlines are held in a
+ * hashed timer wheel, so the cost of each tick and each update doesn't depend on the number of attributes being
+ * watched.
+ * <p>
+ * When the deadline for an attribute passes, the {@link ZigBeeReportingWatchdogListener}s are notified that the
+ * attribute is overdue. If {@link #setReadOnMiss(boolean)} is enabled, a single read of the attribute is sent to the
+ * device, bypassing the attribute cache so that the device must respond. If the attribute isn't updated within the lesser of the read timeout and the reporting interval, or reads
+ * are disabled, the node is considered silent. When any watched attribute of a silent node is updated, the node is
+ * considered alive again.
+ * <p>
+ * Attributes of the devices in the network are watched once reporting has been configured for them with
+ * {@link ZclCluster#setReporting}, and they have been updated. Attributes can also be added directly with
+ * {@link #watch(ZclCluster, ZclAttribute)}.
+ *
+ * @author Chris Jackson
+ */
+public class ZigBeeReportingWatchdog implements ZigBeeNetworkDeviceListener {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(ZigBeeReportingWatchdog.class);
+
+    /**
+     * The default period between ticks of the timer wheel in milliseconds
+     */
+    private static final long DEFAULT_TICK_PERIOD = 1000;
+
+    /**
+     * The number of slots in the timer wheel. Deadlines further in the future than one turn of the wheel wait for
+     * the required number of turns.
+     */
+    private static final int WHEEL_SIZE = 512;
+
+    /**
+     * The time allowed for a report to arrive after the maximum reporting interval, as a fraction of the interval
+     */
+    private static final double GRACE_FRACTION = 0.25;
+
+    /**
+     * The maximum time to wait for the response to a read of an overdue attribute in milliseconds
+     */
+    private static final long READ_TIMEOUT = 10000;
+
+    /**
+     * The value of the maximum reporting interval when reporting is disabled
+     */
+    private static final int REPORTING_DISABLED = 0xffff;
+
+    /**
+     * The {@link ZigBeeNetworkManager}
+     */
+    private final ZigBeeNetworkManager networkManager;
+
+    /**
+     * The period between ticks of the timer wheel in milliseconds
+     */
+    private final long tickPeriod;
+
+    /**
+     * The timer wheel. Each slot holds the entries that expire when the wheel reaches the slot. This is also used to
+     * synchronize access to the entries.
+     */
+    private final List<Set<WatchEntry>> wheel = new ArrayList<Set<WatchEntry>>(WHEEL_SIZE);
+
+    /**
+     * The current position of the timer wheel
+     */
+    private int currentSlot = 0;
+
+    /**
+     * The entries for each watched attribute, keyed by cluster and attribute ID
+     */
+    private final Map<ZclCluster, Map<Integer, WatchEntry>> entries = new HashMap<ZclCluster, Map<Integer, WatchEntry>>();
+
+    /**
+     * The attribute listener registered with each cluster
+     */
+    private final Map<ZclCluster, ZclAttributeListener> clusterListeners = new HashMap<ZclCluster, ZclAttributeListener>();
+
+    /**
+     * The network addresses of the nodes that are silent
+     */
+    private final Set<Integer> silentNodes = new HashSet<Integer>();
+
+    /**
+     * True if a read of an overdue attribute is sent before the node is considered silent
+     */
+    private boolean readOnMiss = true;
+
+    /**
+     * The {@link ZigBeeReportingWatchdogListener}s
+     */
+    private List<ZigBeeReportingWatchdogListener> watchdogListeners = Collections
+            .unmodifiableList(new ArrayList<ZigBeeReportingWatchdogListener>());
+
+    /**
+     * Scheduler to run the timer wheel
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The state of a watched attribute
+     */
+    private enum WatchState {
+        /**
+         * The attribute is being reported
+         */
+        REPORTING,
+        /**
+         * The attribute was overdue and a read has been sent
+         */
+        READ_SENT,
+        /**
+         * The attribute is overdue
+         */
+        OVERDUE
+    }
+
+    /**
+     * Constructor
+     *
+     * @param networkManager the {@link ZigBeeNetworkManager}
+     */
+    public ZigBeeReportingWatchdog(final ZigBeeNetworkManager networkManager) {
+        this(networkManager, DEFAULT_TICK_PERIOD);
+    }
+
+    /**
+     * Constructor allowing the tick period to be set
+     *
+     * @param networkManager the {@link ZigBeeNetworkManager}
+     * @param tickPeriod the period between ticks of the timer wheel in milliseconds
+     */
+    ZigBeeReportingWatchdog(final ZigBeeNetworkManager networkManager, final long tickPeriod) {
+        this(networkManager, tickPeriod, null);
+    }
+
+    /**
+     * Constructor allowing the scheduler that runs the timer wheel to be set, so that the wheel can be driven by
+     * calling {@link #tick()} directly
+     *
+     * @param networkManager the {@link ZigBeeNetworkManager}
+     * @param tickPeriod the period between ticks of the timer wheel in milliseconds
+     * @param scheduler the {@link ScheduledExecutorService} to run the timer wheel, or null to create one on startup
+     */
+    ZigBeeReportingWatchdog(final ZigBeeNetworkManager networkManager, final long tickPeriod,
+            final ScheduledExecutorService scheduler) {
+        this.networkManager = networkManager;
+        this.tickPeriod = tickPeriod;
+        this.scheduler = scheduler;
+        for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+            wheel.add(new HashSet<WatchEntry>());
+        }
+    }
+
+    /**
+     * Starts the watchdog. The attributes of all devices already known by the network manager, and any devices added
+     * later, are watched.
+     */
+    public void startup() {
+        logger.debug("Starting reporting watchdog");
+        networkManager.addNetworkDeviceListener(this);
+        for (ZigBeeDevice device : networkManager.getDevices()) {
+            addDevice(device);
+        }
+
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor();
+        }
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, tickPeriod, tickPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the watchdog
+     */
+    public void shutdown() {
+        logger.debug("Stopping reporting watchdog");
+        networkManager.removeNetworkDeviceListener(this);
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+
+        synchronized (wheel) {
+            for (Map.Entry<ZclCluster, ZclAttributeListener> listener : clusterListeners.entrySet()) {
+                listener.getKey().removeAttributeListener(listener.getValue());
+            }
+            clusterListeners.clear();
+            entries.clear();
+            for (Set<WatchEntry> slot : wheel) {
+                slot.clear();
+            }
+        }
+    }
+
+    /**
+     * Sets whether a single read of an overdue attribute is sent before the node is considered silent. This is
+     * enabled by default.
+     *
+     * @param readOnMiss true to read overdue attributes
+     */
+    public void setReadOnMiss(final boolean readOnMiss) {
+        this.readOnMiss = readOnMiss;
+    }
+
+    /**
+     * Adds a {@link ZigBeeReportingWatchdogListener} to be notified of overdue attributes and silent nodes
+     *
+     * @param watchdogListener the {@link ZigBeeReportingWatchdogListener} to add
+     */
+    public void addWatchdogListener(final ZigBeeReportingWatchdogListener watchdogListener) {
+        synchronized (this) {
+            final List<ZigBeeReportingWatchdogListener> modifiedListeners = new ArrayList<ZigBeeReportingWatchdogListener>(
+                    watchdogListeners);
+            modifiedListeners.add(watchdogListener);
+            watchdogListeners = Collections.unmodifiableList(modifiedListeners);
+        }
+    }
+
+    /**
+     * Removes a {@link ZigBeeReportingWatchdogListener}
+     *
+     * @param watchdogListener the {@link ZigBeeReportingWatchdogListener} to remove
+     */
+    public void removeWatchdogListener(final ZigBeeReportingWatchdogListener watchdogListener) {
+        synchronized (this) {
+            final List<ZigBeeReportingWatchdogListener> modifiedListeners = new ArrayList<ZigBeeReportingWatchdogListener>(
+                    watchdogListeners);
+            modifiedListeners.remove(watchdogListener);
+            watchdogListeners = Collections.unmodifiableList(modifiedListeners);
+        }
+    }
+
+    /**
+     * Watches an attribute. The attribute must have a maximum reporting interval configured. If the attribute has not
+     * yet been updated, the deadline for the first report starts now.
+     *
+     * @param cluster the {@link ZclCluster} the attribute belongs to
+     * @param attribute the {@link ZclAttribute} to watch
+     */
+    public void watch(final ZclCluster cluster, final ZclAttribute attribute) {
+        addClusterListener(cluster);
+        updateAttribute(cluster, attribute, true);
+    }
+
+    /**
+     * Checks if a node is silent
+     *
+     * @param networkAddress the network address of the node
+     * @return true if the node has stopped reporting
+     */
+    public boolean isNodeSilent(final int networkAddress) {
+        synchronized (wheel) {
+            return silentNodes.contains(networkAddress);
+        }
+    }
+
+    /**
+     * Gets the network addresses of all silent nodes
+     *
+     * @return {@link Set} of the network addresses of the nodes that have stopped reporting
+     */
+    public Set<Integer> getSilentNodes() {
+        synchronized (wheel) {
+            return new HashSet<Integer>(silentNodes);
+        }
+    }
+
+    @Override
+    public void deviceAdded(final ZigBeeDevice device) {
+        addDevice(device);
+    }
+
+    @Override
+    public void deviceUpdated(final ZigBeeDevice device) {
+        addDevice(device);
+    }
+
+    @Override
+    public void deviceRemoved(final ZigBeeDevice device) {
+        synchronized (wheel) {
+            Iterator<Map.Entry<ZclCluster, ZclAttributeListener>> iterator = clusterListeners.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<ZclCluster, ZclAttributeListener> listener = iterator.next();
+                ZclCluster cluster = listener.getKey();
+                if (!cluster.getZigBeeAddress().equals(device.getDeviceAddress())) {
+                    continue;
+                }
+                cluster.removeAttributeListener(listener.getValue());
+                iterator.remove();
+
+                Map<Integer, WatchEntry> clusterEntries = entries.remove(cluster);
+                if (clusterEntries != null) {
+                    for (WatchEntry entry : clusterEntries.values()) {
+                        wheel.get(entry.slot).remove(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Listens to the server clusters of a device, and watches any attributes with reporting configured that have
+     * been updated
+     *
+     * @param device the {@link ZigBeeDevice}
+     */
+    private void addDevice(final ZigBeeDevice device) {
+        for (int clusterId : new ArrayList<Integer>(device.getInputClusterIds())) {
+            final ZclCluster cluster = device.getCluster(clusterId);
+            if (cluster == null) {
+                continue;
+            }
+            addClusterListener(cluster);
+            for (ZclAttribute attribute : cluster.getAttributes()) {
+                if (attribute.getLastReportTime() != null) {
+                    updateAttribute(cluster, attribute, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the attribute listener to a cluster if it isn't already registered
+     *
+     * @param cluster the {@link ZclCluster}
+     */
+    private void addClusterListener(final ZclCluster cluster) {
+        synchronized (wheel) {
+            if (clusterListeners.containsKey(cluster)) {
+                return;
+            }
+            ZclAttributeListener listener = new ZclAttributeListener() {
+                @Override
+                public void attributeUpdated(ZclAttribute attribute) {
+                    updateAttribute(cluster, attribute, false);
+                }
+            };
+            clusterListeners.put(cluster, listener);
+            cluster.addAttributeListener(listener);
+        }
+    }
+
+    /**
+     * Sets the deadline of an attribute following an update, and marks the node as alive if it was silent
+     *
+     * @param cluster the {@link ZclCluster} the attribute belongs to
+     * @param attribute the updated {@link ZclAttribute}
+     * @param watch true if the attribute should be watched even if it hasn't been updated
+     */
+    private void updateAttribute(final ZclCluster cluster, final ZclAttribute attribute, final boolean watch) {
+        final int maxInterval = attribute.getMaximumReportingPeriod();
+        final int networkAddress = cluster.getZigBeeAddress().getAddress();
+        boolean alive = false;
+        synchronized (wheel) {
+            Map<Integer, WatchEntry> clusterEntries = entries.get(cluster);
+            WatchEntry entry = clusterEntries == null ? null : clusterEntries.get(attribute.getId());
+
+            // Any update shows the node is alive, even if the attribute isn't watched
+            if (attribute.getLastReportTime() != null || entry != null) {
+                alive = silentNodes.remove(networkAddress);
+            }
+
+            if (maxInterval <= 0 || maxInterval >= REPORTING_DISABLED) {
+                if (entry != null) {
+                    wheel.get(entry.slot).remove(entry);
+                    clusterEntries.remove(attribute.getId());
+                }
+            } else if (entry != null || watch || attribute.getLastReportTime() != null) {
+                if (clusterEntries == null) {
+                    clusterEntries = new HashMap<Integer, WatchEntry>();
+                    entries.put(cluster, clusterEntries);
+                }
+                if (entry == null) {
+                    entry = new WatchEntry(cluster, attribute);
+                    clusterEntries.put(attribute.getId(), entry);
+                }
+                entry.state = WatchState.REPORTING;
+                long interval = maxInterval * 1000L;
+                schedule(entry, interval + (long) (interval * GRACE_FRACTION));
+            }
+        }
+
+        if (alive) {
+            logger.debug("{}: Node is alive", networkAddress);
+            notifyNodeAlive(networkAddress);
+        }
+    }
+
+    /**
+     * Places an entry in the wheel. This must be called while synchronized on the {@link #wheel}.
+     *
+     * @param entry the {@link WatchEntry} to schedule
+     * @param delay the time until the entry expires in milliseconds
+     */
+    private void schedule(final WatchEntry entry, final long delay) {
+        if (entry.slot >= 0) {
+            wheel.get(entry.slot).remove(entry);
+        }
+        long ticks = Math.max(1, (delay + tickPeriod - 1) / tickPeriod);
+        entry.rounds = (ticks - 1) / WHEEL_SIZE;
+        entry.slot = (int) ((currentSlot + ticks) % WHEEL_SIZE);
+        wheel.get(entry.slot).add(entry);
+    }
+
+    /**
+     * Advances the timer wheel one slot and processes any expired entries
+     */
+    void tick() {
+        final List<WatchEntry> overdue = new ArrayList<WatchEntry>();
+        final List<WatchEntry> reads = new ArrayList<WatchEntry>();
+        final Set<Integer> newSilentNodes = new HashSet<Integer>();
+        synchronized (wheel) {
+            currentSlot = (currentSlot + 1) % WHEEL_SIZE;
+            Iterator<WatchEntry> iterator = wheel.get(currentSlot).iterator();
+            while (iterator.hasNext()) {
+                WatchEntry entry = iterator.next();
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                    continue;
+                }
+                iterator.remove();
+                entry.slot = -1;
+
+                final int networkAddress = entry.cluster.getZigBeeAddress().getAddress();
+                if (entry.state == WatchState.REPORTING) {
+                    logger.debug("{}: Attribute {} is overdue", networkAddress, entry.attribute);
+                    overdue.add(entry);
+                    if (readOnMiss) {
+                        entry.state = WatchState.READ_SENT;
+                        reads.add(entry);
+                        schedule(entry, Math.min(READ_TIMEOUT, entry.attribute.getMaximumReportingPeriod() * 1000L));
+                        continue;
+                    }
+                }
+
+                entry.state = WatchState.OVERDUE;
+                if (silentNodes.add(networkAddress)) {
+                    logger.debug("{}: Node is silent", networkAddress);
+                    newSilentNodes.add(networkAddress);
+                }
+            }
+        }
+
+        for (WatchEntry entry : overdue) {
+            notifyAttributeOverdue(entry.cluster, entry.attribute);
+        }
+        for (WatchEntry entry : reads) {
+            sendRead(entry.cluster, entry.attribute);
+        }
+        for (Integer networkAddress : newSilentNodes) {
+            notifyNodeSilent(networkAddress);
+        }
+    }
+
+    /**
+     * Reads an overdue attribute from the device. The read is sent directly through the network manager so that it
+     * can't be answered from the attribute cache, and is sent from another thread so the timer wheel isn't delayed.
+     *
+     * @param cluster the {@link ZclCluster} the attribute belongs to
+     * @param attribute the overdue {@link ZclAttribute}
+     */
+    private void sendRead(final ZclCluster cluster, final ZclAttribute attribute) {
+        NotificationService.execute(new Runnable() {
+            @Override
+            public void run() {
+                networkManager.read(cluster, Collections.singletonList(attribute));
+            }
+        });
+    }
+
+    private void notifyAttributeOverdue(final ZclCluster cluster, final ZclAttribute attribute) {
+        for (final ZigBeeReportingWatchdogListener listener : watchdogListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.attributeOverdue(cluster, attribute);
+                }
+            });
+        }
+    }
+
+    private void notifyNodeSilent(final int networkAddress) {
+        for (final ZigBeeReportingWatchdogListener listener : watchdogListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.nodeSilent(networkAddress);
+                }
+            });
+        }
+    }
+
+    private void notifyNodeAlive(final int networkAddress) {
+        for (final ZigBeeReportingWatchdogListener listener : watchdogListeners) {
+            NotificationService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.nodeAlive(networkAddress);
+                }
+            });
+        }
+    }
+
+    /**
+     * A watched attribute and its position in the timer wheel
+     */
+    private static class WatchEntry {
+        private final ZclCluster cluster;
+        private final ZclAttribute attribute;
+        private WatchState state = WatchState.REPORTING;
+        private int slot = -1;
+        private long rounds;
+
+        WatchEntry(ZclCluster cluster, ZclAttribute attribute) {
+            this.cluster = cluster;
+            this.attribute = attribute;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import com.zsmartsystems.zigbee.zcl.ZclAttribute;
+import com.zsmartsystems.zigbee.zcl.ZclCluster;
+
+/**
+ * Reporting watchdog listener. Provides notifications from the {@link ZigBeeReportingWatchdog} when attributes are
+ * not reported within their maximum reporting interval, and when nodes stop or start responding.
+ *
+ * @author Chris Jackson
+ */
+public interface ZigBeeReportingWatchdogListener {
+
+    /**
+     * Attribute was not reported within its maximum reporting interval
+     *
+     * @param cluster the {@link ZclCluster} the attribute belongs to
+     * @param attribute the overdue {@link ZclAttribute}
+     */
+    void attributeOverdue(final ZclCluster cluster, final ZclAttribute attribute);
+
+    /**
+     * Node has stopped reporting, and didn't respond to a read of the overdue attribute if this is enabled
+     *
+     * @param networkAddress the network address of the node
+     */
+    void nodeSilent(final int networkAddress);
+
+    /**
+     * Node that was silent has been heard from again
+     *
+     * @param networkAddress the network address of the node
+     */
+    void nodeAlive(final int networkAddress);
+}
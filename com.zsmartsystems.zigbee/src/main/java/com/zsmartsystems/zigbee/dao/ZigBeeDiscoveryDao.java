@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.zsmartsystems.zigbee.IeeeAddress;
+import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor;
+import com.zsmartsystems.zigbee.zdo.descriptors.PowerDescriptor;
+import com.zsmartsystems.zigbee.zdo.descriptors.SimpleDescriptor;
+
+/**
+ * The results of the discovery of a node, keyed by the node's {@link IeeeAddress}. These are persisted with the
+ * network state so that a node that announces itself after a restart doesn't need to be interrogated again.
+ * <p>
+ * The {@link #getVersion()} records the format of the entry. Entries with a different version than
+ * {@link #CURRENT_VERSION} are discarded when they are loaded, and the node is discovered again.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZigBeeDiscoveryDao {
+    /**
+     * The version of the entries created by this release. This must be incremented when the information needed to
+     * restore a node changes.
+     */
+    public static final int CURRENT_VERSION = 1;
+
+    /**
+     * The version of this entry
+     */
+    private int version = CURRENT_VERSION;
+
+    /**
+     * The extended {@link IeeeAddress} for the node
+     */
+    private String ieeeAddress;
+
+    /**
+     * The 16 bit network address for the node when it was discovered
+     */
+    private Integer networkAddress;
+
+    /**
+     * The {@link NodeDescriptor} for the node
+     */
+    private NodeDescriptor nodeDescriptor;
+
+    /**
+     * The {@link PowerDescriptor} for the node. This is optional, so may be null.
+     */
+    private PowerDescriptor powerDescriptor;
+
+    /**
+     * The {@link SimpleDescriptor} for each active endpoint
+     */
+    private final List<SimpleDescriptor> simpleDescriptors = new ArrayList<SimpleDescriptor>();
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public String getIeeeAddress() {
+        return ieeeAddress;
+    }
+
+    public void setIeeeAddress(String ieeeAddress) {
+        this.ieeeAddress = ieeeAddress;
+    }
+
+    public Integer getNetworkAddress() {
+        return networkAddress;
+    }
+
+    public void setNetworkAddress(Integer networkAddress) {
+        this.networkAddress = networkAddress;
+    }
+
+    public NodeDescriptor getNodeDescriptor() {
+        return nodeDescriptor;
+    }
+
+    public void setNodeDescriptor(NodeDescriptor nodeDescriptor) {
+        this.nodeDescriptor = nodeDescriptor;
+    }
+
+    public PowerDescriptor getPowerDescriptor() {
+        return powerDescriptor;
+    }
+
+    public void setPowerDescriptor(PowerDescriptor powerDescriptor) {
+        this.powerDescriptor = powerDescriptor;
+    }
+
+    public List<SimpleDescriptor> getSimpleDescriptors() {
+        return simpleDescriptors;
+    }
+
+    public void setSimpleDescriptors(List<SimpleDescriptor> simpleDescriptors) {
+        this.simpleDescriptors.clear();
+        this.simpleDescriptors.addAll(simpleDescriptors);
+    }
+}
@@ -0,0 +1,466 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.zigbee.Command;
+import com.zsmartsystems.zigbee.ZigBeeApsFrame;
+import com.zsmartsystems.zigbee.ZigBeeBroadcastDestination;
+import com.zsmartsystems.zigbee.ZigBeeCommandPriority;
+import com.zsmartsystems.zigbee.ZigBeeDeviceAddress;
+import com.zsmartsystems.zigbee.ZigBeeException;
+import com.zsmartsystems.zigbee.ZigBeeNwkAddressMode;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportDeliveryListener;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportTransmit;
+import com.zsmartsystems.zigbee.zdo.ZdoCommand;
+import com.zsmartsystems.zigbee.zdo.ZdoResponse;
+
+/**
+ * Admission control for all commands sent to the network, so that independent users of the network manager can't
+ * overrun the coordinator or the mesh.
+ * <p>
+ * A command is in flight from the time it is passed to the transport until the transport reports its delivery
+ * status, a response is received from the destination, or {@link #IN_FLIGHT_TIMEOUT} passes. The number of commands
+ * in flight is limited for each destination and for the whole network. Commands that can't be sent are queued and
+ * sent as earlier commands complete.
+ * <p>
+ * Queued commands are sent in order of their {@link ZigBeeCommandPriority}. Destinations within a priority are served
+ * round robin, so a bulk task addressing one node can't delay commands to other nodes. Part of the network limit is
+ * reserved for {@link ZigBeeCommandPriority#INTERACTIVE} commands, so background traffic can never fill the network on
+ * its own.
+ * <p>
+ * Broadcasts and commands to the coordinator are sent immediately, and don't count towards the limits.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Chris Jackson
+ */
+public class ZigBeeCommandGovernor {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(ZigBeeCommandGovernor.class);
+
+    /**
+     * Default maximum number of commands in flight in the network
+     */
+    private static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    /**
+     * Default maximum number of commands in flight to a single destination
+     */
+    private static final int DEFAULT_MAX_PER_DESTINATION = 2;
+
+    /**
+     * Number of the network slots that can only be used by interactive commands
+     */
+    private static final int INTERACTIVE_RESERVE = 2;
+
+    /**
+     * Time after which a command without a delivery status or response no longer counts as in flight - milliseconds
+     */
+    private static final int IN_FLIGHT_TIMEOUT = 3000;
+
+    /**
+     * Offset added to group IDs so they don't share a destination key with a network address
+     */
+    private static final int GROUP_KEY_OFFSET = 0x10000;
+
+    private final ZigBeeTransportTransmit transport;
+    private final ZigBeeTransportDeliveryListener receiver;
+
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int maxPerDestination = DEFAULT_MAX_PER_DESTINATION;
+
+    /**
+     * The commands in flight for each destination key. This is also used to synchronize all the governor state.
+     */
+    private final Map<Integer, List<GovernedCommand>> inFlightCommands = new HashMap<Integer, List<GovernedCommand>>();
+    private int inFlightCount = 0;
+
+    /**
+     * The queued commands for each priority and destination key
+     */
+    private final Map<ZigBeeCommandPriority, Map<Integer, Deque<GovernedCommand>>> queuedCommands = new EnumMap<ZigBeeCommandPriority, Map<Integer, Deque<GovernedCommand>>>(
+            ZigBeeCommandPriority.class);
+
+    /**
+     * The destination keys with queued commands for each priority, in the order they will be served
+     */
+    private final Map<ZigBeeCommandPriority, LinkedList<Integer>> destinationRotation = new EnumMap<ZigBeeCommandPriority, LinkedList<Integer>>(
+            ZigBeeCommandPriority.class);
+
+    /**
+     * Scheduler used for the in flight timeouts
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Executor used to send queued commands. The transport may block, so this is kept separate from the scheduler.
+     */
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+
+    /**
+     * Creates the governor
+     *
+     * @param transport the {@link ZigBeeTransportTransmit} used to send commands
+     * @param receiver the {@link ZigBeeTransportDeliveryListener} notified if a queued command can't be sent
+     */
+    public ZigBeeCommandGovernor(final ZigBeeTransportTransmit transport,
+            final ZigBeeTransportDeliveryListener receiver) {
+        this.transport = transport;
+        this.receiver = receiver;
+
+        for (final ZigBeeCommandPriority priority : ZigBeeCommandPriority.values()) {
+            queuedCommands.put(priority, new HashMap<Integer, Deque<GovernedCommand>>());
+            destinationRotation.put(priority, new LinkedList<Integer>());
+        }
+    }
+
+    /**
+     * Sets the limits on the number of commands in flight
+     *
+     * @param maxInFlight the maximum number of commands in flight in the network
+     * @param maxPerDestination the maximum number of commands in flight to a single destination
+     */
+    public void setLimits(final int maxInFlight, final int maxPerDestination) {
+        synchronized (inFlightCommands) {
+            this.maxInFlight = maxInFlight;
+            this.maxPerDestination = maxPerDestination;
+        }
+        dispatch();
+    }
+
+    /**
+     * Gets the number of commands in flight
+     *
+     * @return the number of commands in flight
+     */
+    public int getInFlightCount() {
+        synchronized (inFlightCommands) {
+            return inFlightCount;
+        }
+    }
+
+    /**
+     * Gets the number of commands waiting to be sent
+     *
+     * @return the number of queued commands
+     */
+    public int getQueuedCount() {
+        int count = 0;
+        synchronized (inFlightCommands) {
+            for (final Map<Integer, Deque<GovernedCommand>> queues : queuedCommands.values()) {
+                for (final Deque<GovernedCommand> queue : queues.values()) {
+                    count += queue.size();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sends a command, or queues it if the limits don't allow it to be sent now. Commands that can be sent
+     * immediately are passed to the transport in the calling thread, and a transport error is thrown to the caller. If
+     * the transport fails to send a command that was queued, the failure is reported through
+     * {@link ZigBeeTransportDeliveryListener#commandDeliveryStatus}.
+     *
+     * @param command the {@link Command} being sent
+     * @param apsFrame the {@link ZigBeeApsFrame} to send to the transport
+     * @throws ZigBeeException if the command is sent immediately and the transport fails to send it
+     */
+    public void sendCommand(final Command command, final ZigBeeApsFrame apsFrame) throws ZigBeeException {
+        final GovernedCommand governedCommand = new GovernedCommand(command, apsFrame);
+
+        // Broadcasts never complete, and commands to the coordinator don't use the mesh, so neither is governed
+        if (apsFrame.getAddressMode() == ZigBeeNwkAddressMode.DEVICE
+                && (apsFrame.getDestinationAddress() == 0 || ZigBeeBroadcastDestination
+                        .getBroadcastDestination(apsFrame.getDestinationAddress()) != null)) {
+            transport.sendCommand(apsFrame);
+            return;
+        }
+
+        synchronized (inFlightCommands) {
+            final Map<Integer, Deque<GovernedCommand>> queues = queuedCommands.get(governedCommand.priority);
+            Deque<GovernedCommand> queue = queues.get(governedCommand.destination);
+            if (queue == null) {
+                queue = new ArrayDeque<GovernedCommand>();
+                queues.put(governedCommand.destination, queue);
+                destinationRotation.get(governedCommand.priority).addLast(governedCommand.destination);
+            }
+            queue.addLast(governedCommand);
+        }
+
+        ZigBeeException error = null;
+        for (final GovernedCommand selected : selectCommands()) {
+            if (selected != governedCommand) {
+                transmit(selected);
+                continue;
+            }
+            try {
+                transport.sendCommand(apsFrame);
+            } catch (final ZigBeeException e) {
+                complete(governedCommand);
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Notifies the governor that a command has been received. A response from a destination ends the command in
+     * flight to that destination with the same transaction ID, or for ZDO responses the oldest ZDO request.
+     *
+     * @param command the received {@link Command}
+     */
+    public void commandReceived(final Command command) {
+        if (!(command.getSourceAddress() instanceof ZigBeeDeviceAddress)) {
+            return;
+        }
+
+        final int destination = ((ZigBeeDeviceAddress) command.getSourceAddress()).getAddress();
+        GovernedCommand completed = null;
+        synchronized (inFlightCommands) {
+            final List<GovernedCommand> commands = inFlightCommands.get(destination);
+            if (commands == null) {
+                return;
+            }
+            for (final GovernedCommand governedCommand : commands) {
+                if (command.getTransactionId() != null
+                        && governedCommand.transactionId == command.getTransactionId().intValue()) {
+                    completed = governedCommand;
+                    break;
+                }
+            }
+            if (completed == null && command instanceof ZdoResponse) {
+                for (final GovernedCommand governedCommand : commands) {
+                    if (governedCommand.command instanceof ZdoCommand) {
+                        completed = governedCommand;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (completed != null) {
+            complete(completed);
+        }
+    }
+
+    /**
+     * Notifies the governor that the transport has reported the delivery status of a command
+     *
+     * @param transactionId the transaction ID of the command
+     */
+    public void commandDeliveryStatus(final int transactionId) {
+        GovernedCommand completed = null;
+        synchronized (inFlightCommands) {
+            for (final List<GovernedCommand> commands : inFlightCommands.values()) {
+                for (final GovernedCommand governedCommand : commands) {
+                    if (governedCommand.transactionId == transactionId) {
+                        completed = governedCommand;
+                        break;
+                    }
+                }
+                if (completed != null) {
+                    break;
+                }
+            }
+        }
+
+        if (completed != null) {
+            complete(completed);
+        }
+    }
+
+    /**
+     * Stops the governor. Queued commands are discarded.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Ends a command in flight, and sends queued commands in the dispatcher thread
+     *
+     * @param governedCommand the {@link GovernedCommand} that is no longer in flight
+     */
+    private void complete(final GovernedCommand governedCommand) {
+        synchronized (inFlightCommands) {
+            final List<GovernedCommand> commands = inFlightCommands.get(governedCommand.destination);
+            if (commands == null || !commands.remove(governedCommand)) {
+                return;
+            }
+            if (commands.isEmpty()) {
+                inFlightCommands.remove(governedCommand.destination);
+            }
+            inFlightCount--;
+            if (governedCommand.timeoutTask != null) {
+                governedCommand.timeoutTask.cancel(false);
+            }
+        }
+
+        try {
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The governor has been shut down
+        }
+    }
+
+    /**
+     * Sends all queued commands that the limits allow
+     */
+    private void dispatch() {
+        for (final GovernedCommand governedCommand : selectCommands()) {
+            transmit(governedCommand);
+        }
+    }
+
+    /**
+     * Selects the queued commands that the limits allow to be sent, in order of priority, and marks them as in flight
+     *
+     * @return the {@link GovernedCommand}s to pass to the transport
+     */
+    private List<GovernedCommand> selectCommands() {
+        final List<GovernedCommand> commands = new ArrayList<GovernedCommand>();
+        synchronized (inFlightCommands) {
+            for (final ZigBeeCommandPriority priority : ZigBeeCommandPriority.values()) {
+                selectCommands(priority, commands);
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Passes a command to the transport. If the transport fails to send the command, its slot is released and the
+     * failure is reported to the receiver.
+     *
+     * @param governedCommand the {@link GovernedCommand} to send
+     */
+    private void transmit(final GovernedCommand governedCommand) {
+        try {
+            transport.sendCommand(governedCommand.apsFrame);
+        } catch (final ZigBeeException e) {
+            logger.debug("Error sending command {}: {}", governedCommand.command, e.getMessage());
+            complete(governedCommand);
+            receiver.commandDeliveryStatus(governedCommand.transactionId, false);
+        }
+    }
+
+    /**
+     * Selects the queued commands of a priority that can be sent, serving the destinations round robin. Must be called
+     * with the {@link #inFlightCommands} lock held.
+     *
+     * @param priority the {@link ZigBeeCommandPriority} to serve
+     * @param commands the list to add the selected commands to
+     */
+    private void selectCommands(final ZigBeeCommandPriority priority, final List<GovernedCommand> commands) {
+        final int limit = priority == ZigBeeCommandPriority.INTERACTIVE ? maxInFlight
+                : Math.max(1, maxInFlight - INTERACTIVE_RESERVE);
+        final Map<Integer, Deque<GovernedCommand>> queues = queuedCommands.get(priority);
+        final LinkedList<Integer> rotation = destinationRotation.get(priority);
+
+        // Stop once every destination has been checked without being able to send
+        int blocked = 0;
+        while (blocked < rotation.size() && inFlightCount < limit) {
+            final Integer destination = rotation.removeFirst();
+            final Deque<GovernedCommand> queue = queues.get(destination);
+            final List<GovernedCommand> inFlight = inFlightCommands.get(destination);
+            if (inFlight == null || inFlight.size() < maxPerDestination) {
+                final GovernedCommand governedCommand = queue.removeFirst();
+                admit(governedCommand);
+                commands.add(governedCommand);
+                blocked = 0;
+            } else {
+                blocked++;
+            }
+
+            if (queue.isEmpty()) {
+                queues.remove(destination);
+            } else {
+                rotation.addLast(destination);
+            }
+        }
+    }
+
+    /**
+     * Adds a command to the in flight commands and starts its timeout. Must be called with the
+     * {@link #inFlightCommands} lock held.
+     *
+     * @param governedCommand the {@link GovernedCommand} being sent
+     */
+    private void admit(final GovernedCommand governedCommand) {
+        List<GovernedCommand> inFlight = inFlightCommands.get(governedCommand.destination);
+        if (inFlight == null) {
+            inFlight = new ArrayList<GovernedCommand>();
+            inFlightCommands.put(governedCommand.destination, inFlight);
+        }
+        inFlight.add(governedCommand);
+        inFlightCount++;
+
+        try {
+            governedCommand.timeoutTask = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    complete(governedCommand);
+                }
+            }, IN_FLIGHT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The governor has been shut down
+        }
+    }
+
+    /**
+     * A command passing through the governor
+     */
+    private static class GovernedCommand {
+        private final Command command;
+        private final ZigBeeApsFrame apsFrame;
+        private final ZigBeeCommandPriority priority;
+        private final int destination;
+        private final int transactionId;
+        private ScheduledFuture<?> timeoutTask;
+
+        GovernedCommand(final Command command, final ZigBeeApsFrame apsFrame) {
+            this.command = command;
+            this.apsFrame = apsFrame;
+            this.priority = command.getPriority() == null ? ZigBeeCommandPriority.INTERACTIVE : command.getPriority();
+            this.transactionId = apsFrame.getSequence();
+            if (apsFrame.getAddressMode() == ZigBeeNwkAddressMode.GROUP) {
+                destination = GROUP_KEY_OFFSET + apsFrame.getGroupAddress();
+            } else {
+                destination = apsFrame.getDestinationAddress();
+            }
+        }
+    }
+}
@@ -7,29 +7,39 @@
  */
 package com.zsmartsystems.zigbee.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.zsmartsystems.zigbee.Command;
 import com.zsmartsystems.zigbee.CommandListener;
-import com.zsmartsystems.zigbee.CommandResult;
 import com.zsmartsystems.zigbee.DeviceStatusListener;
 import com.zsmartsystems.zigbee.IeeeAddress;
+import com.zsmartsystems.zigbee.ZigBeeCommandPriority;
 import com.zsmartsystems.zigbee.ZigBeeDevice;
 import com.zsmartsystems.zigbee.ZigBeeDeviceAddress;
 import com.zsmartsystems.zigbee.ZigBeeDeviceStatus;
+import com.zsmartsystems.zigbee.ZigBeeException;
 import com.zsmartsystems.zigbee.ZigBeeNetworkManager;
 import com.zsmartsystems.zigbee.ZigBeeNode;
+import com.zsmartsystems.zigbee.dao.ZigBeeDiscoveryDao;
 import com.zsmartsystems.zigbee.zcl.ZclCommand;
+import com.zsmartsystems.zigbee.zdo.ZdoResponse;
 import com.zsmartsystems.zigbee.zdo.ZdoStatus;
 import com.zsmartsystems.zigbee.zdo.command.ActiveEndpointsRequest;
 import com.zsmartsystems.zigbee.zdo.command.ActiveEndpointsResponse;
@@ -42,6 +52,7 @@ import com.zsmartsystems.zigbee.zdo.command.PowerDescriptorRequest;
 import com.zsmartsystems.zigbee.zdo.command.PowerDescriptorResponse;
 import com.zsmartsystems.zigbee.zdo.command.SimpleDescriptorRequest;
 import com.zsmartsystems.zigbee.zdo.command.SimpleDescriptorResponse;
+import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor;
 import com.zsmartsystems.zigbee.zdo.descriptors.SimpleDescriptor;
 
 /**
@@ -52,6 +63,20 @@ import com.zsmartsystems.zigbee.zdo.descriptors.SimpleDescriptor;
  * Once a node is fully discovered and all its devices are included into the network,
  * we can notify the node listeners.
  * <p>
+ * Discovery of each node is a state machine - IEEE address, node descriptor, power descriptor, active endpoints and
+ * then the simple descriptor of each endpoint. Each step is a {@link DiscoveryRequest} that is sent without blocking,
+ * and is advanced when the discoverer receives the matching response as a {@link CommandListener}. Requests that fail
+ * or time out are retried from a scheduler. No thread waits for a response, so the number of nodes being discovered
+ * is not limited by a thread pool - instead the number of ZDO requests outstanding at any time is limited with
+ * {@link #setMaxInFlightRequests(int)}. Follow-up requests for a node are queued ahead of new nodes so that nodes
+ * already being discovered complete first.
+ * <p>
+ * The results of each completed node discovery are kept in a discovery cache, keyed by IEEE address, which can be
+ * persisted with {@link #getDiscoveryCache()} and restored with {@link #setDiscoveryCache(Collection)}. When a node
+ * announces itself with unchanged capabilities, it is restored from the cache without sending any requests. When a
+ * node is discovered and its node descriptor is unchanged, its endpoints are restored from the cache rather than
+ * queried again.
+ * <p>
  * This class is thread safe.
  *
  * @author Chris Jackson
@@ -73,6 +98,16 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
      */
     private static final int RETRY_PERIOD = 1500;
 
+    /**
+     * Time to wait for the response to a request before it is retried
+     */
+    private static final int RESPONSE_TIMEOUT = 8000;
+
+    /**
+     * Default maximum number of requests outstanding at the same time
+     */
+    private static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 6;
+
     /**
      * Minimum time before information can be queried again for same network address or endpoint.
      */
@@ -101,6 +136,18 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
     private Map<Integer, PowerDescriptorResponse> powerDescriptors = Collections
             .synchronizedMap(new HashMap<Integer, PowerDescriptorResponse>());
 
+    /**
+     * The simple descriptors received for each network address during the current discovery of the node
+     */
+    private final Map<Integer, List<SimpleDescriptor>> simpleDescriptors = Collections
+            .synchronizedMap(new HashMap<Integer, List<SimpleDescriptor>>());
+
+    /**
+     * The results of completed node discoveries, mapped to the IEEE address
+     */
+    private final Map<IeeeAddress, ZigBeeDiscoveryDao> discoveryCache = Collections
+            .synchronizedMap(new HashMap<IeeeAddress, ZigBeeDiscoveryDao>());
+
     /**
      * Map of IEEE address request times.
      */
@@ -113,18 +160,48 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
     private final Set<ZigBeeDeviceAddress> discoveryProgress = new HashSet<ZigBeeDeviceAddress>();
 
     /**
-     * Executor service to execute discovery threads
+     * The requests waiting to be sent. This is also used to synchronize access to {@link #inFlightRequests}.
      */
-    private static ExecutorService executorService = Executors.newFixedThreadPool(6);
+    private final Deque<DiscoveryRequest> pendingRequests = new LinkedList<DiscoveryRequest>();
 
-    private enum NodeDiscoveryState {
+    /**
+     * The requests that have been sent and are waiting for a response
+     */
+    private final List<DiscoveryRequest> inFlightRequests = new ArrayList<DiscoveryRequest>();
+
+    /**
+     * The maximum number of requests outstanding at the same time
+     */
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+
+    /**
+     * Scheduler used for response timeouts and retries
+     */
+    private ScheduledExecutorService scheduler;
+
+    private enum DiscoveryState {
         IEEE_ADDRESS,
         NODE_DESCRIPTOR,
         POWER_DESCRIPTOR,
-        ACTIVE_ENDPOINTS;
-
-        public NodeDiscoveryState next() {
-            return values()[(this.ordinal() + 1) % values().length];
+        ACTIVE_ENDPOINTS,
+        SIMPLE_DESCRIPTOR;
+
+        /**
+         * Gets the next node level state, or null once the endpoints are known and discovery continues per device
+         *
+         * @return the next {@link DiscoveryState} or null
+         */
+        public DiscoveryState next() {
+            switch (this) {
+                case IEEE_ADDRESS:
+                    return NODE_DESCRIPTOR;
+                case NODE_DESCRIPTOR:
+                    return POWER_DESCRIPTOR;
+                case POWER_DESCRIPTOR:
+                    return ACTIVE_ENDPOINTS;
+                default:
+                    return null;
+            }
         }
     }
 
@@ -141,6 +218,8 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
      * Starts up ZigBee network discoverer.
      */
     public void startup() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+
         networkManager.addCommandListener(this);
         networkManager.addDeviceStatusListener(this);
 
@@ -154,6 +233,56 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
     public void shutdown() {
         networkManager.removeCommandListener(this);
         networkManager.removeDeviceStatusListener(this);
+
+        synchronized (pendingRequests) {
+            pendingRequests.clear();
+            inFlightRequests.clear();
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets the maximum number of discovery requests that may be outstanding at the same time. Further requests are
+     * queued until a response is received or a request times out.
+     *
+     * @param maxInFlightRequests the maximum number of outstanding requests
+     */
+    public void setMaxInFlightRequests(final int maxInFlightRequests) {
+        synchronized (pendingRequests) {
+            this.maxInFlightRequests = maxInFlightRequests;
+        }
+        sendPendingRequests();
+    }
+
+    /**
+     * Gets the discovery cache so that it can be persisted
+     *
+     * @return a {@link Collection} of {@link ZigBeeDiscoveryDao} for each discovered node
+     */
+    public Collection<ZigBeeDiscoveryDao> getDiscoveryCache() {
+        synchronized (discoveryCache) {
+            return new ArrayList<ZigBeeDiscoveryDao>(discoveryCache.values());
+        }
+    }
+
+    /**
+     * Restores a persisted discovery cache. Entries from a different version are ignored, and these nodes will be
+     * discovered again.
+     *
+     * @param entries a {@link Collection} of {@link ZigBeeDiscoveryDao}
+     */
+    public void setDiscoveryCache(final Collection<ZigBeeDiscoveryDao> entries) {
+        for (final ZigBeeDiscoveryDao entry : entries) {
+            if (entry.getVersion() != ZigBeeDiscoveryDao.CURRENT_VERSION || entry.getIeeeAddress() == null
+                    || entry.getNodeDescriptor() == null) {
+                logger.debug("Ignoring discovery cache entry for {} with version {}", entry.getIeeeAddress(),
+                        entry.getVersion());
+                continue;
+            }
+            discoveryCache.put(new IeeeAddress(entry.getIeeeAddress()), entry);
+        }
     }
 
     @Override
@@ -185,10 +314,31 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
 
         // Node has been announced.
         if (command instanceof DeviceAnnounce) {
-            final DeviceAnnounce address = (DeviceAnnounce) command;
-            startNodeDiscovery(address.getNwkAddrOfInterest());
+            final DeviceAnnounce announce = (DeviceAnnounce) command;
+            if (!restoreAnnouncedNode(announce)) {
+                startNodeDiscovery(announce.getNwkAddrOfInterest());
+            }
+            return;
         }
 
+        if (command instanceof ZdoResponse) {
+            DiscoveryRequest request = null;
+            synchronized (pendingRequests) {
+                for (final DiscoveryRequest inFlightRequest : inFlightRequests) {
+                    if (inFlightRequest.isMatch(command)) {
+                        request = inFlightRequest;
+                        break;
+                    }
+                }
+                if (request == null) {
+                    return;
+                }
+                inFlightRequests.remove(request);
+                request.cancelTimeout();
+            }
+
+            handleResponse(request, (ZdoResponse) command);
+        }
     }
 
     /**
@@ -209,57 +359,7 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
         }
 
         logger.debug("{}: Scheduling node discovery", nodeNetworkAddress);
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                logger.debug("{}: Starting node discovery", nodeNetworkAddress);
-                int retries = 0;
-                boolean success;
-                NodeDiscoveryState discoveryState = NodeDiscoveryState.IEEE_ADDRESS;
-                do {
-                    success = false;
-                    switch (discoveryState) {
-                        case IEEE_ADDRESS:
-                            success = getIeeeAddress(nodeNetworkAddress);
-                            break;
-                        case NODE_DESCRIPTOR:
-                            success = getNodeDescriptor(nodeNetworkAddress);
-                            break;  
-                        case POWER_DESCRIPTOR:
-                           success = getPowerDescriptor(nodeNetworkAddress);
-                           break;
-                        case ACTIVE_ENDPOINTS:
-                            success = getActiveEndpoints(nodeNetworkAddress);
-                            break;
-                        default:
-                            logger.debug("{}: Unknown discovery state: {}", nodeNetworkAddress, discoveryState);
-                            break;
-                    }
-
-                    if (success) {
-                        logger.debug("{}: Discovery request {} successfull. Advanced to {}.", nodeNetworkAddress,
-                                discoveryState, discoveryState.next());
-                        discoveryState = discoveryState.next();
-                        continue;
-                    }
-
-                    // We failed with the last request. Wait a bit then retry
-                    try {
-                        logger.debug("{}: Discovery request {} failed. Wait before retry.", nodeNetworkAddress,
-                                discoveryState);
-                        logger.info("{} retries left for {} discovery state.", RETRY_COUNT-retries, discoveryState.name());
-                        Thread.sleep(RETRY_PERIOD);
-                    } catch (InterruptedException e) {
-                        return;
-                    }
-
-                } while (retries++ < RETRY_COUNT);
-
-                logger.debug("{}: Ending node discovery", nodeNetworkAddress);
-            }
-        };
-
-        executorService.execute(new Thread(runnable, "Discovery-Node-" + nodeNetworkAddress));
+        queueRequest(new DiscoveryRequest(DiscoveryState.IEEE_ADDRESS, nodeNetworkAddress, 0), false);
     }
 
     /**
@@ -269,7 +369,7 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
      */
     private void startDeviceDiscovery(final ZigBeeDeviceAddress deviceNetworkAddress) {
         synchronized (discoveryProgress) {
-            // Don't start a new discovery thread if one already exists for this device
+            // Don't start a new discovery if one already exists for this device
             if (discoveryProgress.contains(deviceNetworkAddress)) {
                 return;
             }
@@ -279,222 +379,500 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
         }
 
         logger.debug("{}: Scheduling device discovery", deviceNetworkAddress);
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                logger.debug("{}: Starting device discovery", deviceNetworkAddress);
-                int retries = 0;
-                while (!getSimpleDescriptor(deviceNetworkAddress)) {
-                    if (retries++ > RETRY_COUNT) {
-                        break;
-                    }
-                    try {
-                        Thread.sleep(RETRY_PERIOD);
-                    } catch (InterruptedException e) {
-                        return;
-                    }
-                }
-            }
-        };
-
-        executorService.execute(new Thread(runnable, "Discovery-Device-" + deviceNetworkAddress));
+        queueRequest(new DiscoveryRequest(DiscoveryState.SIMPLE_DESCRIPTOR, deviceNetworkAddress.getAddress(),
+                deviceNetworkAddress.getEndpoint()), true);
     }
 
     /**
-     * Get Node IEEE address
+     * Queues a request and sends it if the number of outstanding requests allows
      *
-     * @param networkAddress the network address of the node
-     * @return true if the message was processed ok
+     * @param request the {@link DiscoveryRequest}
+     * @param followUp true if the request continues the discovery of a node, and should be sent before requests for
+     *            new nodes
      */
-    private boolean getIeeeAddress(final int networkAddress) {
-        try {
-            // Request extended response, start index for associated list is 0
-            final IeeeAddressRequest ieeeAddressRequest = new IeeeAddressRequest();
-            ieeeAddressRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
-            ieeeAddressRequest.setRequestType(1);
-            ieeeAddressRequest.setStartIndex(0);
-            ieeeAddressRequest.setNwkAddrOfInterest(networkAddress);
-            CommandResult response = networkManager.unicast(ieeeAddressRequest, ieeeAddressRequest).get();
-
-            final IeeeAddressResponse ieeeAddressResponse = response.getResponse();
-            if (ieeeAddressResponse != null && ieeeAddressResponse.getStatus() == ZdoStatus.SUCCESS) {
-                synchronized (ieeeAddresses) {
-                    ieeeAddresses.put(ieeeAddressResponse.getNwkAddrRemoteDev(), ieeeAddressResponse);
-                }
-                logger.info("Node {} found in {} network.", ieeeAddressResponse.getIeeeAddrRemoteDev().toString(), networkAddress);
-                
-                // Start discovery for any associated nodes
-                for (final int deviceNetworkAddress : ieeeAddressResponse.getNwkAddrAssocDevList()) {
-                    startNodeDiscovery(deviceNetworkAddress);
-                }
-                return true;
+    private void queueRequest(final DiscoveryRequest request, final boolean followUp) {
+        synchronized (pendingRequests) {
+            if (followUp) {
+                pendingRequests.addFirst(request);
             } else {
-                logger.debug("Ieee Address for {} returned {}", networkAddress, ieeeAddressResponse);
+                pendingRequests.addLast(request);
             }
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error in checkIeeeAddressResponse", e);
         }
+        sendPendingRequests();
+    }
 
-        return false;
+    /**
+     * Sends queued requests until the maximum number of requests are outstanding. The requests are sent without
+     * holding the lock, since the transport may block.
+     */
+    private void sendPendingRequests() {
+        final List<DiscoveryRequest> requests = new ArrayList<DiscoveryRequest>();
+        synchronized (pendingRequests) {
+            while (inFlightRequests.size() < maxInFlightRequests && !pendingRequests.isEmpty()) {
+                final DiscoveryRequest request = pendingRequests.removeFirst();
+                inFlightRequests.add(request);
+
+                // Start the timer before sending so it can be cancelled by a fast response
+                request.timeoutTask = schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        logger.debug("{}: Discovery request {} timed out", request.networkAddress, request.state);
+                        requestFailed(request);
+                    }
+                }, RESPONSE_TIMEOUT);
+                requests.add(request);
+            }
+        }
+
+        for (final DiscoveryRequest request : requests) {
+            logger.debug("{}: Sending discovery request {}", request.networkAddress, request.state);
+            try {
+                final Command command = request.createCommand();
+                command.setPriority(ZigBeeCommandPriority.DISCOVERY);
+                networkManager.sendCommand(command);
+            } catch (final ZigBeeException e) {
+                logger.debug("{}: Error sending discovery request {}: {}", request.networkAddress, request.state,
+                        e.getMessage());
+                requestFailed(request);
+            }
+        }
     }
 
     /**
-     * Get node descriptor
+     * Called when an outstanding request times out, or can't be sent
      *
-     * @param networkAddress the network address of the node
-     * @return true if the message was processed ok
+     * @param request the failed {@link DiscoveryRequest}
      */
-    private boolean getNodeDescriptor(final int networkAddress) {
-        try {
-            final NodeDescriptorRequest nodeDescriptorRequest = new NodeDescriptorRequest();
-            nodeDescriptorRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
-            nodeDescriptorRequest.setNwkAddrOfInterest(networkAddress);
-            CommandResult response = networkManager.unicast(nodeDescriptorRequest, nodeDescriptorRequest).get();
-
-            final NodeDescriptorResponse nodeDescriptorResponse = (NodeDescriptorResponse) response.getResponse();
-            if (nodeDescriptorResponse == null) {
-                return false;
+    private void requestFailed(final DiscoveryRequest request) {
+        synchronized (pendingRequests) {
+            // Ignore the failure if the response has been received in the meantime
+            if (!inFlightRequests.remove(request)) {
+                return;
             }
-            
-            logger.info("Found a {} type node in {} network.", nodeDescriptorResponse.getNodeDescriptor().getLogicalType().name(), networkAddress);
+            request.cancelTimeout();
+        }
+
+        retryRequest(request);
+        sendPendingRequests();
+    }
 
-            if (nodeDescriptorResponse.getStatus() == ZdoStatus.SUCCESS) {
-                // Create the node
-                synchronized (nodeDescriptors) {
-                    nodeDescriptors.put(nodeDescriptorResponse.getNwkAddrOfInterest(), nodeDescriptorResponse);
+    /**
+     * Schedules a request to be sent again after the retry period, or ends the discovery when there are no retries
+     * left.
+     *
+     * @param request the failed {@link DiscoveryRequest}
+     */
+    private void retryRequest(final DiscoveryRequest request) {
+        if (request.retries++ >= RETRY_COUNT) {
+            logger.debug("{}: Discovery request {} failed. Ending discovery.", request.networkAddress,
+                    request.state);
+            if (request.state == DiscoveryState.SIMPLE_DESCRIPTOR) {
+                synchronized (discoveryProgress) {
+                    discoveryProgress.remove(new ZigBeeDeviceAddress(request.networkAddress, request.endpoint));
                 }
-                return true;
-            } else {
-                logger.debug("Node Descriptor for {} returned {}", networkAddress, nodeDescriptorResponse);
             }
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error in checkNodeDescriptorResponse", e);
+            return;
         }
 
-        return false;
+        logger.debug("{}: Discovery request {} failed. {} retries left.", request.networkAddress, request.state,
+                RETRY_COUNT - request.retries);
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                queueRequest(request, true);
+            }
+        }, RETRY_PERIOD);
     }
 
     /**
-     * Get node power descriptor
+     * Processes the response to a request, and advances the discovery state of the node
      *
-     * @param networkAddress the network address of the node
-     * @return true if the message was processed ok, or if the end device does not support the power descriptor
+     * @param request the {@link DiscoveryRequest}
+     * @param response the {@link ZdoResponse} matching the request
      */
-    private boolean getPowerDescriptor(final int networkAddress) {
+    private void handleResponse(final DiscoveryRequest request, final ZdoResponse response) {
+        boolean success;
+        switch (request.state) {
+            case IEEE_ADDRESS:
+                success = handleIeeeAddress((IeeeAddressResponse) response);
+                break;
+            case NODE_DESCRIPTOR:
+                success = handleNodeDescriptor((NodeDescriptorResponse) response);
+                break;
+            case POWER_DESCRIPTOR:
+                success = handlePowerDescriptor((PowerDescriptorResponse) response);
+                break;
+            case ACTIVE_ENDPOINTS:
+                success = handleActiveEndpoints((ActiveEndpointsResponse) response);
+                break;
+            case SIMPLE_DESCRIPTOR:
+                success = handleSimpleDescriptor((SimpleDescriptorResponse) response);
+                break;
+            default:
+                logger.debug("{}: Unknown discovery state: {}", request.networkAddress, request.state);
+                success = false;
+                break;
+        }
+
+        if (!success) {
+            retryRequest(request);
+        } else if (request.state == DiscoveryState.NODE_DESCRIPTOR && restoreDiscoveredNode(request.networkAddress)) {
+            logger.debug("{}: Node descriptor unchanged. Endpoints restored from discovery cache.",
+                    request.networkAddress);
+        } else if (request.state.next() != null) {
+            logger.debug("{}: Discovery request {} successful. Advanced to {}.", request.networkAddress,
+                    request.state, request.state.next());
+            queueRequest(new DiscoveryRequest(request.state.next(), request.networkAddress, 0), true);
+            return;
+        }
+
+        sendPendingRequests();
+    }
+
+    private ScheduledFuture<?> schedule(final Runnable runnable, final long delay) {
+        final ScheduledExecutorService currentScheduler = scheduler;
+        if (currentScheduler == null) {
+            return null;
+        }
         try {
-            final PowerDescriptorRequest powerDescriptorRequest = new PowerDescriptorRequest();
-            powerDescriptorRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
-            powerDescriptorRequest.setNwkAddrOfInterest(networkAddress);
-            CommandResult response = networkManager.unicast(powerDescriptorRequest, powerDescriptorRequest).get();
-
-            final PowerDescriptorResponse powerDescriptorResponse = (PowerDescriptorResponse) response.getResponse();
-            if (powerDescriptorResponse == null) {
-                return false;
-            }
+            return currentScheduler.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The discoverer has been shut down
+            return null;
+        }
+    }
 
-            if (powerDescriptorResponse.getStatus() == ZdoStatus.SUCCESS) {
-                synchronized (powerDescriptors) {
-                    powerDescriptors.put(powerDescriptorResponse.getNwkAddrOfInterest(), powerDescriptorResponse);
-                }
+    /**
+     * Process the IEEE address response
+     *
+     * @param ieeeAddressResponse the {@link IeeeAddressResponse}
+     * @return true if the message was processed ok
+     */
+    private boolean handleIeeeAddress(final IeeeAddressResponse ieeeAddressResponse) {
+        if (ieeeAddressResponse.getStatus() != ZdoStatus.SUCCESS) {
+            logger.debug("Ieee Address for {} returned {}", ieeeAddressResponse.getNwkAddrRemoteDev(),
+                    ieeeAddressResponse);
+            return false;
+        }
 
-                return true;
-            } else if (powerDescriptorResponse.getStatus() == ZdoStatus.NOT_SUPPORTED) {
-                return true;
-            } else {
-                logger.debug("Power Descriptor for {} returned {}", networkAddress, powerDescriptorResponse);
+        ieeeAddresses.put(ieeeAddressResponse.getNwkAddrRemoteDev(), ieeeAddressResponse);
+        logger.info("Node {} found in {} network.", ieeeAddressResponse.getIeeeAddrRemoteDev(),
+                ieeeAddressResponse.getNwkAddrRemoteDev());
+
+        // Start discovery for any associated nodes
+        if (ieeeAddressResponse.getNwkAddrAssocDevList() != null) {
+            for (final int deviceNetworkAddress : ieeeAddressResponse.getNwkAddrAssocDevList()) {
+                startNodeDiscovery(deviceNetworkAddress);
             }
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error in checkPowerDescriptorResponse", e);
         }
-
-        return false;
+        return true;
     }
 
     /**
-     * Get the active endpoints for a node
+     * Process the node descriptor response
      *
-     * @param networkAddress the network address of the node
+     * @param nodeDescriptorResponse the {@link NodeDescriptorResponse}
      * @return true if the message was processed ok
      */
-    private boolean getActiveEndpoints(final int networkAddress) {
-        try {
-            final ActiveEndpointsRequest activeEndpointsRequest = new ActiveEndpointsRequest();
-            activeEndpointsRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
-            activeEndpointsRequest.setNwkAddrOfInterest(networkAddress);
-            CommandResult response = networkManager.unicast(activeEndpointsRequest, activeEndpointsRequest).get();
-
-            final ActiveEndpointsResponse activeEndpointsResponse = (ActiveEndpointsResponse) response.getResponse();
-            if (activeEndpointsResponse == null) {
-                return false;
-            }
+    private boolean handleNodeDescriptor(final NodeDescriptorResponse nodeDescriptorResponse) {
+        if (nodeDescriptorResponse.getStatus() != ZdoStatus.SUCCESS) {
+            logger.debug("Node Descriptor for {} returned {}", nodeDescriptorResponse.getNwkAddrOfInterest(),
+                    nodeDescriptorResponse);
+            return false;
+        }
 
-            if (activeEndpointsResponse.getStatus() == ZdoStatus.SUCCESS) {
-                for (final int endpoint : activeEndpointsResponse.getActiveEpList()) {
-                    startDeviceDiscovery(
-                            new ZigBeeDeviceAddress(activeEndpointsResponse.getNwkAddrOfInterest(), endpoint));
-                }
+        if (nodeDescriptorResponse.getNodeDescriptor() != null) {
+            logger.info("Found a {} type node in {} network.",
+                    nodeDescriptorResponse.getNodeDescriptor().getLogicalType(),
+                    nodeDescriptorResponse.getNwkAddrOfInterest());
+        }
+        nodeDescriptors.put(nodeDescriptorResponse.getNwkAddrOfInterest(), nodeDescriptorResponse);
+        return true;
+    }
 
-                return true;
-            } else {
-                logger.debug("Active Endpoints for {} returned {}", networkAddress, activeEndpointsResponse);
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error in checkActiveEndpointsResponse", e);
+    /**
+     * Process the node power descriptor response
+     *
+     * @param powerDescriptorResponse the {@link PowerDescriptorResponse}
+     * @return true if the message was processed ok, or if the end device does not support the power descriptor
+     */
+    private boolean handlePowerDescriptor(final PowerDescriptorResponse powerDescriptorResponse) {
+        if (powerDescriptorResponse.getStatus() == ZdoStatus.SUCCESS) {
+            powerDescriptors.put(powerDescriptorResponse.getNwkAddrOfInterest(), powerDescriptorResponse);
+            return true;
+        } else if (powerDescriptorResponse.getStatus() == ZdoStatus.NOT_SUPPORTED) {
+            return true;
         }
 
+        logger.debug("Power Descriptor for {} returned {}", powerDescriptorResponse.getNwkAddrOfInterest(),
+                powerDescriptorResponse);
         return false;
     }
 
     /**
-     * Get the description of a device endpoint
+     * Process the active endpoints response, and starts discovery of each endpoint
      *
-     * @param deviceAddress the network address of the device
+     * @param activeEndpointsResponse the {@link ActiveEndpointsResponse}
      * @return true if the message was processed ok
      */
-    private boolean getSimpleDescriptor(final ZigBeeDeviceAddress deviceAddress) {
-        try {
-            final SimpleDescriptorRequest simpleDescriptorRequest = new SimpleDescriptorRequest();
-            simpleDescriptorRequest.setDestinationAddress(new ZigBeeDeviceAddress(deviceAddress.getAddress()));
-            simpleDescriptorRequest.setNwkAddrOfInterest(deviceAddress.getAddress());
-            simpleDescriptorRequest.setEndpoint(deviceAddress.getEndpoint());
-            CommandResult response = networkManager.unicast(simpleDescriptorRequest, simpleDescriptorRequest).get();
+    private boolean handleActiveEndpoints(final ActiveEndpointsResponse activeEndpointsResponse) {
+        if (activeEndpointsResponse.getStatus() != ZdoStatus.SUCCESS) {
+            logger.debug("Active Endpoints for {} returned {}", activeEndpointsResponse.getNwkAddrOfInterest(),
+                    activeEndpointsResponse);
+            return false;
+        }
+
+        simpleDescriptors.put(activeEndpointsResponse.getNwkAddrOfInterest(), new ArrayList<SimpleDescriptor>());
+        for (final int endpoint : activeEndpointsResponse.getActiveEpList()) {
+            startDeviceDiscovery(new ZigBeeDeviceAddress(activeEndpointsResponse.getNwkAddrOfInterest(), endpoint));
+        }
+        return true;
+    }
+
+    /**
+     * Process the description of a device endpoint
+     *
+     * @param simpleDescriptorResponse the {@link SimpleDescriptorResponse}
+     * @return true if the message was processed ok
+     */
+    private boolean handleSimpleDescriptor(final SimpleDescriptorResponse simpleDescriptorResponse) {
+        if (simpleDescriptorResponse.getStatus() != ZdoStatus.SUCCESS) {
+            logger.debug("Simple Descriptor for {} returned {}", simpleDescriptorResponse.getNwkAddrOfInterest(),
+                    simpleDescriptorResponse);
+            return false;
+        }
+
+        final int networkAddress = simpleDescriptorResponse.getNwkAddrOfInterest();
+        final IeeeAddressResponse ieeeAddressResponse = ieeeAddresses.get(networkAddress);
+        final NodeDescriptorResponse nodeDescriptorResponse = nodeDescriptors.get(networkAddress);
 
-            final SimpleDescriptorResponse simpleDescriptorResponse = (SimpleDescriptorResponse) response.getResponse();
+        // TODO: nodeDescriptorResponse is not used - does this matter?!
+        if (ieeeAddressResponse == null || nodeDescriptorResponse == null) {
+            return false;
+        }
 
-            if (simpleDescriptorResponse == null) {
-                return false;
+        final List<SimpleDescriptor> endpoints = simpleDescriptors.get(networkAddress);
+        if (endpoints != null) {
+            synchronized (simpleDescriptors) {
+                endpoints.add(simpleDescriptorResponse.getSimpleDescriptor());
             }
+        }
 
-            if (simpleDescriptorResponse.getStatus() == ZdoStatus.SUCCESS) {
-                final IeeeAddressResponse ieeeAddressResponse;
-                final NodeDescriptorResponse nodeDescriptorResponse;
+        logger.debug("Adding device {} with simple descriptor.", ieeeAddressResponse.getIeeeAddrRemoteDev());
+        addOrUpdateDevice(ieeeAddressResponse, simpleDescriptorResponse.getSimpleDescriptor());
+        return true;
+    }
 
-                final int networkAddress = simpleDescriptorResponse.getNwkAddrOfInterest();
+    /**
+     * Restores a node that has announced itself from the discovery cache. The node is only restored if its
+     * capabilities are unchanged.
+     *
+     * @param announce the {@link DeviceAnnounce}
+     * @return true if the node was restored, false if it needs to be discovered
+     */
+    private boolean restoreAnnouncedNode(final DeviceAnnounce announce) {
+        if (announce.getIeeeAddr() == null) {
+            return false;
+        }
+        final ZigBeeDiscoveryDao entry = discoveryCache.get(announce.getIeeeAddr());
+        if (entry == null) {
+            return false;
+        }
+        if (announce.getCapability() != null && !NodeDescriptor.getMacCapabilities(announce.getCapability())
+                .equals(entry.getNodeDescriptor().getMacCapabilities())) {
+            logger.debug("{}: Capabilities of {} have changed. Discovering node.", announce.getNwkAddrOfInterest(),
+                    announce.getIeeeAddr());
+            discoveryCache.remove(announce.getIeeeAddr());
+            return false;
+        }
 
-                synchronized (powerDescriptors) {
-                    ieeeAddressResponse = ieeeAddresses.get(networkAddress);
-                }
+        final int networkAddress = announce.getNwkAddrOfInterest();
+        logger.debug("{}: Restoring node {} from discovery cache", networkAddress, announce.getIeeeAddr());
+        ieeeAddressRequestTimes.put(networkAddress, System.currentTimeMillis());
 
-                synchronized (powerDescriptors) {
-                    nodeDescriptorResponse = nodeDescriptors.get(networkAddress);
-                }
+        final IeeeAddressResponse ieeeAddressResponse = new IeeeAddressResponse();
+        ieeeAddressResponse.setStatus(ZdoStatus.SUCCESS);
+        ieeeAddressResponse.setNwkAddrRemoteDev(networkAddress);
+        ieeeAddressResponse.setIeeeAddrRemoteDev(announce.getIeeeAddr());
+        ieeeAddressResponse.setNwkAddrAssocDevList(new ArrayList<Integer>());
+        ieeeAddresses.put(networkAddress, ieeeAddressResponse);
 
-                // TODO: nodeDescriptorResponse is not used - does this matter?!
-                if (ieeeAddressResponse != null && nodeDescriptorResponse != null) {
-                    logger.debug("Adding device {} with simple descriptor.", ieeeAddressResponse.getIeeeAddrRemoteDev().toString());
-                    //logger.debug("Calling addOrUpdateDevice for {} device", ieeeAddressResponse.getIeeeAddrRemoteDev().getValue());
-                    addOrUpdateDevice(ieeeAddressResponse, simpleDescriptorResponse);
+        final NodeDescriptorResponse nodeDescriptorResponse = new NodeDescriptorResponse();
+        nodeDescriptorResponse.setStatus(ZdoStatus.SUCCESS);
+        nodeDescriptorResponse.setNwkAddrOfInterest(networkAddress);
+        nodeDescriptorResponse.setNodeDescriptor(entry.getNodeDescriptor());
+        nodeDescriptors.put(networkAddress, nodeDescriptorResponse);
 
-                    return true;
-                }
-            } else {
-                logger.debug("Simple Descriptor for {} returned {}", deviceAddress, simpleDescriptorResponse);
+        return restoreDiscoveredNode(networkAddress);
+    }
+
+    /**
+     * Restores the power descriptor and endpoints of a node from the discovery cache, if the node descriptor is
+     * unchanged. The IEEE address and node descriptor of the node must already be known.
+     *
+     * @param networkAddress the network address of the node
+     * @return true if the node was restored, false if discovery needs to continue
+     */
+    private boolean restoreDiscoveredNode(final int networkAddress) {
+        final IeeeAddressResponse ieeeAddressResponse = ieeeAddresses.get(networkAddress);
+        final NodeDescriptorResponse nodeDescriptorResponse = nodeDescriptors.get(networkAddress);
+        if (ieeeAddressResponse == null || nodeDescriptorResponse == null) {
+            return false;
+        }
+        final ZigBeeDiscoveryDao entry = discoveryCache.get(ieeeAddressResponse.getIeeeAddrRemoteDev());
+        if (entry == null || entry.getSimpleDescriptors().isEmpty()
+                || !entry.getNodeDescriptor().equals(nodeDescriptorResponse.getNodeDescriptor())) {
+            return false;
+        }
+
+        if (entry.getPowerDescriptor() != null) {
+            final PowerDescriptorResponse powerDescriptorResponse = new PowerDescriptorResponse();
+            powerDescriptorResponse.setStatus(ZdoStatus.SUCCESS);
+            powerDescriptorResponse.setNwkAddrOfInterest(networkAddress);
+            powerDescriptorResponse.setPowerDescriptor(entry.getPowerDescriptor());
+            powerDescriptors.put(networkAddress, powerDescriptorResponse);
+        }
+
+        // Mark all endpoints in progress first, so the node is only updated once the last device is added
+        simpleDescriptors.put(networkAddress, new ArrayList<SimpleDescriptor>(entry.getSimpleDescriptors()));
+        synchronized (discoveryProgress) {
+            for (final SimpleDescriptor simpleDescriptor : entry.getSimpleDescriptors()) {
+                discoveryProgress.add(new ZigBeeDeviceAddress(networkAddress, simpleDescriptor.getEndpoint()));
+            }
+        }
+        for (final SimpleDescriptor simpleDescriptor : entry.getSimpleDescriptors()) {
+            addOrUpdateDevice(ieeeAddressResponse, simpleDescriptor);
+        }
+        return true;
+    }
+
+    /**
+     * Saves the results of a completed node discovery in the discovery cache
+     *
+     * @param ieeeAddressResponse the {@link IeeeAddressResponse}
+     * @param nodeDescriptorResponse the {@link NodeDescriptorResponse}
+     * @param powerDescriptorResponse the {@link PowerDescriptorResponse}. This is optional, so may be null.
+     */
+    private void updateDiscoveryCache(final IeeeAddressResponse ieeeAddressResponse,
+            final NodeDescriptorResponse nodeDescriptorResponse,
+            final PowerDescriptorResponse powerDescriptorResponse) {
+        final List<SimpleDescriptor> endpoints = simpleDescriptors.get(ieeeAddressResponse.getNwkAddrRemoteDev());
+        if (nodeDescriptorResponse == null || nodeDescriptorResponse.getNodeDescriptor() == null
+                || endpoints == null) {
+            return;
+        }
+
+        final ZigBeeDiscoveryDao entry = new ZigBeeDiscoveryDao();
+        entry.setIeeeAddress(ieeeAddressResponse.getIeeeAddrRemoteDev().toString());
+        entry.setNetworkAddress(ieeeAddressResponse.getNwkAddrRemoteDev());
+        entry.setNodeDescriptor(nodeDescriptorResponse.getNodeDescriptor());
+        if (powerDescriptorResponse != null) {
+            entry.setPowerDescriptor(powerDescriptorResponse.getPowerDescriptor());
+        }
+        synchronized (simpleDescriptors) {
+            entry.setSimpleDescriptors(endpoints);
+        }
+        discoveryCache.put(ieeeAddressResponse.getIeeeAddrRemoteDev(), entry);
+    }
+
+    /**
+     * A single discovery request for a node or device
+     */
+    private class DiscoveryRequest {
+        private final DiscoveryState state;
+        private final int networkAddress;
+        private final int endpoint;
+        private int retries = 0;
+        private ScheduledFuture<?> timeoutTask;
+
+        DiscoveryRequest(final DiscoveryState state, final int networkAddress, final int endpoint) {
+            this.state = state;
+            this.networkAddress = networkAddress;
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Creates the ZDO request. A new command is created for each attempt since the transaction ID is set when it
+         * is sent.
+         *
+         * @return the request {@link Command}
+         */
+        Command createCommand() {
+            switch (state) {
+                case IEEE_ADDRESS:
+                    // Request extended response, start index for associated list is 0
+                    final IeeeAddressRequest ieeeAddressRequest = new IeeeAddressRequest();
+                    ieeeAddressRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
+                    ieeeAddressRequest.setRequestType(1);
+                    ieeeAddressRequest.setStartIndex(0);
+                    ieeeAddressRequest.setNwkAddrOfInterest(networkAddress);
+                    return ieeeAddressRequest;
+                case NODE_DESCRIPTOR:
+                    final NodeDescriptorRequest nodeDescriptorRequest = new NodeDescriptorRequest();
+                    nodeDescriptorRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
+                    nodeDescriptorRequest.setNwkAddrOfInterest(networkAddress);
+                    return nodeDescriptorRequest;
+                case POWER_DESCRIPTOR:
+                    final PowerDescriptorRequest powerDescriptorRequest = new PowerDescriptorRequest();
+                    powerDescriptorRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
+                    powerDescriptorRequest.setNwkAddrOfInterest(networkAddress);
+                    return powerDescriptorRequest;
+                case ACTIVE_ENDPOINTS:
+                    final ActiveEndpointsRequest activeEndpointsRequest = new ActiveEndpointsRequest();
+                    activeEndpointsRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
+                    activeEndpointsRequest.setNwkAddrOfInterest(networkAddress);
+                    return activeEndpointsRequest;
+                case SIMPLE_DESCRIPTOR:
+                default:
+                    final SimpleDescriptorRequest simpleDescriptorRequest = new SimpleDescriptorRequest();
+                    simpleDescriptorRequest.setDestinationAddress(new ZigBeeDeviceAddress(networkAddress));
+                    simpleDescriptorRequest.setNwkAddrOfInterest(networkAddress);
+                    simpleDescriptorRequest.setEndpoint(endpoint);
+                    return simpleDescriptorRequest;
             }
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error in checkActiveEndpointsResponse", e);
         }
 
-        return false;
+        /**
+         * Checks if a received command is the response to this request
+         *
+         * @param response the received {@link Command}
+         * @return true if the command is the response to this request
+         */
+        boolean isMatch(final Command response) {
+            switch (state) {
+                case IEEE_ADDRESS:
+                    return response instanceof IeeeAddressResponse
+                            && Integer.valueOf(networkAddress)
+                                    .equals(((IeeeAddressResponse) response).getNwkAddrRemoteDev());
+                case NODE_DESCRIPTOR:
+                    return response instanceof NodeDescriptorResponse && Integer.valueOf(networkAddress)
+                            .equals(((NodeDescriptorResponse) response).getNwkAddrOfInterest());
+                case POWER_DESCRIPTOR:
+                    return response instanceof PowerDescriptorResponse && Integer.valueOf(networkAddress)
+                            .equals(((PowerDescriptorResponse) response).getNwkAddrOfInterest());
+                case ACTIVE_ENDPOINTS:
+                    return response instanceof ActiveEndpointsResponse && Integer.valueOf(networkAddress)
+                            .equals(((ActiveEndpointsResponse) response).getNwkAddrOfInterest());
+                case SIMPLE_DESCRIPTOR:
+                    if (!(response instanceof SimpleDescriptorResponse)) {
+                        return false;
+                    }
+                    final SimpleDescriptorResponse simpleDescriptorResponse = (SimpleDescriptorResponse) response;
+                    // Error responses don't include the descriptor, so can only be matched on the node
+                    return Integer.valueOf(networkAddress).equals(simpleDescriptorResponse.getNwkAddrOfInterest())
+                            && (simpleDescriptorResponse.getSimpleDescriptor() == null
+                                    || simpleDescriptorResponse.getSimpleDescriptor().getEndpoint() == endpoint);
+                default:
+                    return false;
+            }
+        }
+
+        void cancelTimeout() {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+                timeoutTask = null;
+            }
+        }
     }
 
     // TODO: Get supported Attributes
@@ -537,13 +915,12 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
      *            the IEEE address response
      * @param nodeDescriptorResponse
      *            the node descriptor response
-     * @param simpleDescriptorResponse
-     *            the simple descriptor response
+     * @param simpleDescriptor
+     *            the simple descriptor
      */
     private void addOrUpdateDevice(final IeeeAddressResponse ieeeAddressResponse,
-            final SimpleDescriptorResponse simpleDescriptorResponse) {
+            final SimpleDescriptor simpleDescriptor) {
         final ZigBeeDevice device;
-        final SimpleDescriptor simpleDescriptor = simpleDescriptorResponse.getSimpleDescriptor();
         final boolean newDevice = networkManager.getDevice(new ZigBeeDeviceAddress(
                 ieeeAddressResponse.getNwkAddrRemoteDev(), simpleDescriptor.getEndpoint())) == null;
 
@@ -601,6 +978,7 @@ public class ZigBeeNetworkDiscoverer implements CommandListener, DeviceStatusLis
             powerDescriptorResponse = powerDescriptors.get(networkAddress.getAddress());
         }
 
+        updateDiscoveryCache(ieeeAddressResponse, nodeDescriptorResponse, powerDescriptorResponse);
         addOrUpdateNode(ieeeAddressResponse, nodeDescriptorResponse, powerDescriptorResponse);
     }
 }
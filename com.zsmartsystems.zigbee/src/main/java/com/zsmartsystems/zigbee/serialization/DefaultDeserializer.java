@@ -103,6 +103,8 @@ public class DefaultDeserializer implements ZigBeeDeserializer {
                 break;
             case N_X_ATTRIBUTE_REPORTING_CONFIGURATION_RECORD:
                 break;
+            case N_X_ATTRIBUTE_REPORTING_STATUS_RECORD:
+                break;
             case N_X_ATTRIBUTE_SELECTOR:
                 break;
             case N_X_ATTRIBUTE_STATUS_RECORD:
@@ -189,8 +191,9 @@ public class DefaultDeserializer implements ZigBeeDeserializer {
             case ZDO_STATUS:
                 value[0] = ZdoStatus.getStatus(payload[index++]);
                 break;
-            case ZCL_STATUS: 
+            case ZCL_STATUS:
                 value[0] = ZclStatus.getStatus(payload[index++]);
+                break;
             default:
                 throw new IllegalArgumentException("No reader defined in " + ZigBeeDeserializer.class.getSimpleName()
                         + " for " + type.toString() + " (" + type.getId() + ")");
@@ -92,6 +92,8 @@ public class DefaultSerializer implements ZigBeeSerializer {
                 break;
             case N_X_ATTRIBUTE_REPORTING_CONFIGURATION_RECORD:
                 break;
+            case N_X_ATTRIBUTE_REPORTING_STATUS_RECORD:
+                break;
             case N_X_ATTRIBUTE_SELECTOR:
                 break;
             case N_X_ATTRIBUTE_STATUS_RECORD:
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.transport;
+
+import java.io.InputStream;
+
+/**
+ * A {@link ZigBeePort} that buffers the data it receives, and allows it to be read without blocking.
+ * <p>
+ * This is optional - a framer that wants to read all received data at once should check if the port implements this
+ * interface, and otherwise read from {@link ZigBeePort#getInputStream()}.
+ *
+ * @author Chris Jackson
+ */
+public interface ZigBeeBufferedPort extends ZigBeePort {
+    /**
+     * Reads the data that has already been received from the port, without blocking. Data that is read here is not
+     * returned by the {@link InputStream}.
+     *
+     * @param buffer the buffer to fill
+     * @param offset the offset in the buffer to start saving data
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read, which may be 0, or -1 if the port is closed
+     */
+    int read(byte[] buffer, int offset, int length);
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.transport;
+
+import com.zsmartsystems.zigbee.IeeeAddress;
+
+/**
+ * Optional interface implemented by a {@link ZigBeeTransportTransmit} that maintains a local mapping between
+ * {@link IeeeAddress}es and 16 bit network addresses.
+ * <p>
+ * The transport layer sees all joins, rejoins and address conflicts reported by the coordinator, so it is able to keep
+ * an authoritative view of the addresses in the network. Implementations must resolve addresses from local memory and
+ * must not communicate with the dongle, allowing the framework to use this interface on any thread without blocking.
+ *
+ * @author Chris Jackson
+ */
+public interface ZigBeeTransportAddressResolver {
+    /**
+     * Gets the {@link IeeeAddress} of a node given its network address
+     *
+     * @param networkAddress the 16 bit network address of the node
+     * @return the {@link IeeeAddress} of the node, or null if the address is not known
+     */
+    IeeeAddress getIeeeAddress(int networkAddress);
+
+    /**
+     * Gets the network address of a node given its {@link IeeeAddress}
+     *
+     * @param ieeeAddress the {@link IeeeAddress} of the node
+     * @return the 16 bit network address of the node, or null if the address is not known
+     */
+    Integer getNetworkAddress(IeeeAddress ieeeAddress);
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.transport;
+
+import com.zsmartsystems.zigbee.ZigBeeApsFrame;
+
+/**
+ * Optional interface implemented by a {@link ZigBeeTransportReceive} that wants to be notified of the delivery status
+ * of the commands sent through the transport.
+ * <p>
+ * Transports that receive a delivery confirmation from the coordinator should check if the receiver implements this
+ * interface, and if so call it so that the framework can fail any transaction waiting for a response from a command
+ * that could not be delivered, rather than waiting for the transaction to time out.
+ *
+ * @author Chris Jackson
+ */
+public interface ZigBeeTransportDeliveryListener {
+    /**
+     * Notification of the delivery status of a command previously sent with
+     * {@link ZigBeeTransportTransmit#sendCommand(ZigBeeApsFrame)}.
+     *
+     * @param transactionId the transaction ID, as set in {@link ZigBeeApsFrame#getSequence()}
+     * @param delivered true if the command was delivered, false if the delivery failed
+     */
+    void commandDeliveryStatus(final int transactionId, final boolean delivered);
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.transport;
+
+import java.util.Map;
+
+/**
+ * Optional interface implemented by a {@link ZigBeeTransportTransmit} that is able to provide statistics from the
+ * dongle - eg MAC retries, APS failures, route discoveries or buffer allocation failures. A {@link ZigBeePort} may also
+ * implement this interface to provide statistics on the data it transfers.
+ * <p>
+ * The counter names are defined by the transport implementation. Counters are sampled periodically by the transport, so
+ * calling these methods must not communicate with the dongle.
+ *
+ * @author Chris Jackson
+ */
+public interface ZigBeeTransportMetrics {
+    /**
+     * Gets the total count of each counter since the transport was started
+     *
+     * @return {@link Map} of counter name to total count. The map will be empty if no samples have been taken.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Gets the rate of each counter, in counts per second, measured over the most recent sample interval
+     *
+     * @return {@link Map} of counter name to rate. The map will be empty if no sample interval has completed.
+     */
+    Map<String, Double> getCounterRates();
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.transport;
+
+import java.util.List;
+
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
+
+/**
+ * Optional interface implemented by a {@link ZigBeeTransportReceive} that wants to be notified of changes to the
+ * neighbor and routing tables of the local node.
+ * <p>
+ * Transports that are able to read the tables directly from the coordinator may poll them, and pass only the entries
+ * that differ from the previous poll, so the framework doesn't need to process unchanged data. The entries only hold
+ * the fields that the coordinator provides, so they should not be used to replace tables read with ZDO requests.
+ *
+ * @author Chris Jackson
+ */
+public interface ZigBeeTransportTableListener {
+    /**
+     * Notification that the neighbor table of the local node has changed
+     *
+     * @param added the {@link NeighborTable} entries that were added since the last notification
+     * @param updated the {@link NeighborTable} entries that have changed since the last notification
+     * @param removed the {@link NeighborTable} entries that were removed since the last notification
+     */
+    void localNeighborsUpdated(final List<NeighborTable> added, final List<NeighborTable> updated,
+            final List<NeighborTable> removed);
+
+    /**
+     * Notification that the routing table of the local node has changed
+     *
+     * @param added the {@link RoutingTable} entries that were added since the last notification
+     * @param updated the {@link RoutingTable} entries that have changed since the last notification
+     * @param removed the {@link RoutingTable} entries that were removed since the last notification
+     */
+    void localRoutesUpdated(final List<RoutingTable> added, final List<RoutingTable> updated,
+            final List<RoutingTable> removed);
+}
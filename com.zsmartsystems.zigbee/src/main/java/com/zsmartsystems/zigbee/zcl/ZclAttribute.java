@@ -266,6 +266,17 @@ public class ZclAttribute {
         return reportingTimeout;
     }
 
+    /**
+     * Sets the reporting intervals configured in the device for this attribute
+     *
+     * @param minimumReportingPeriod the minimum reporting interval in seconds
+     * @param maximumReportingPeriod the maximum reporting interval in seconds
+     */
+    public void setReportingPeriods(int minimumReportingPeriod, int maximumReportingPeriod) {
+        this.minimumReportingPeriod = minimumReportingPeriod;
+        this.maximumReportingPeriod = maximumReportingPeriod;
+    }
+
     /**
      * Gets the last reported value of this attribute
      *
@@ -7,29 +7,47 @@
  */
 package com.zsmartsystems.zigbee.zcl;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.zsmartsystems.zigbee.CommandResult;
+import com.zsmartsystems.zigbee.CommandResultFuture;
+import com.zsmartsystems.zigbee.ZigBeeCommandPriority;
 import com.zsmartsystems.zigbee.ZigBeeDeviceAddress;
 import com.zsmartsystems.zigbee.ZigBeeNetworkManager;
 import com.zsmartsystems.zigbee.internal.NotificationService;
 import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingResponse;
 import com.zsmartsystems.zigbee.zcl.clusters.general.ReadAttributesResponse;
 import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationResponse;
+import com.zsmartsystems.zigbee.zcl.clusters.general.WriteAttributesResponse;
 import com.zsmartsystems.zigbee.zcl.field.AttributeRecord;
 import com.zsmartsystems.zigbee.zcl.field.AttributeReport;
 import com.zsmartsystems.zigbee.zcl.field.AttributeReportingConfigurationRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeReportingStatusRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeStatusRecord;
 import com.zsmartsystems.zigbee.zcl.field.ReadAttributeStatusRecord;
+import com.zsmartsystems.zigbee.zcl.field.WriteAttributeStatusRecord;
+import com.zsmartsystems.zigbee.zcl.protocol.ZclDataType;
 import com.zsmartsystems.zigbee.CommandListener;
 import com.zsmartsystems.zigbee.zcl.ZclCommand;
 
@@ -56,6 +74,98 @@ public abstract class ZclCluster {
     
     protected Map<Integer, ZclAttribute> attributes = initializeAttributes();
 
+    /**
+     * The maximum age, in milliseconds, of a cached attribute value before it must be read again from the device.
+     * Attributes that are not in the map use {@link #defaultMaxAge}.
+     */
+    private final Map<Integer, Long> attributeMaxAge = new HashMap<Integer, Long>();
+
+    /**
+     * The maximum age, in milliseconds, of a cached attribute value for attributes without their own policy. The
+     * default of 0 disables the cache so that every read is sent to the device.
+     */
+    private long defaultMaxAge = 0;
+
+    /**
+     * Attributes whose cached value is known to be out of date as they have been written since the last update
+     */
+    private final Set<Integer> staleAttributes = new HashSet<Integer>();
+
+    /**
+     * Reads that have been sent to the device and not yet completed, keyed by attribute ID. Concurrent reads of the
+     * same attribute return the same future rather than sending another request.
+     */
+    private final Map<Integer, PendingRead> pendingReads = new HashMap<Integer, PendingRead>();
+
+    /**
+     * The time, in milliseconds, after which a pending read is no longer shared. This matches the time after which
+     * the network manager expires a command execution.
+     */
+    private static final long PENDING_READ_TIMEOUT = 8000;
+
+    /**
+     * The default time, in milliseconds, that a read is held so that other reads of the same cluster can be sent in
+     * the same frame
+     */
+    private static final long DEFAULT_READ_BATCH_WINDOW = 5;
+
+    /**
+     * The maximum length of the ZCL payload of a read attributes response. Attributes are split across frames so
+     * that the response from the device fits in a single unfragmented APS frame.
+     */
+    private static final int MAX_READ_RESPONSE_LENGTH = 70;
+
+    /**
+     * The length assumed for string attributes when packing reads into frames
+     */
+    private static final int STRING_LENGTH_ESTIMATE = 17;
+
+    /**
+     * The maximum length of the ZCL payload of a write attributes or configure reporting command. Records are split
+     * across frames so that each command fits in a single unfragmented APS frame.
+     */
+    private static final int MAX_COMMAND_LENGTH = 70;
+
+    /**
+     * The time, in milliseconds, to wait for the result of a read
+     */
+    private static final long READ_TIMEOUT = 10000;
+
+    /**
+     * The period, in milliseconds, at which a batched read that is waited on with a timeout shorter than
+     * {@link #READ_TIMEOUT} checks if the frame has completed
+     */
+    private static final long READ_POLL_PERIOD = 50;
+
+    /**
+     * Scheduler used to send batched reads at the end of the batching window. This is shared by all clusters, and
+     * uses a daemon thread since it is never shut down.
+     */
+    private static final ScheduledExecutorService batchScheduler = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ZclReadBatcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * The time, in milliseconds, that a read is held for batching. 0 sends each read immediately.
+     */
+    private long readBatchWindow = DEFAULT_READ_BATCH_WINDOW;
+
+    /**
+     * Reads waiting to be sent at the end of the batching window. This is guarded by {@link #pendingReads}.
+     */
+    private final List<AttributeReadFuture> batchedReads = new ArrayList<AttributeReadFuture>();
+
+    /**
+     * Reporting configurations that have been sent to the device and not yet accepted, keyed by transaction ID
+     */
+    private final Map<Integer, List<ZclReportingConfig>> pendingReportingConfigs = new HashMap<Integer, List<ZclReportingConfig>>();
+
     protected abstract Map<Integer, ZclAttribute> initializeAttributes();
 
     public ZclCluster(ZigBeeNetworkManager zigbeeManager, ZigBeeDeviceAddress zigbeeAddress, int clusterId,
@@ -74,13 +184,229 @@ public abstract class ZclCluster {
     }
 
     /**
-     * Read an attribute
+     * Read an attribute.
+     * <p>
+     * If the cached value of the attribute is still fresh according to the cache policy for the attribute, the
+     * returned future is already complete and holds the cached value. If a read of the attribute is already in
+     * progress, the future for that read is returned and no further request is sent.
+     * <p>
+     * Otherwise the read is held for the batching window set with {@link #setReadBatchWindow(long)}, and sent in the
+     * same frame as any other reads of this cluster made during the window.
      *
      * @param attribute the {@link ZclAttribute} to read
      * @return command future
      */
     protected Future<CommandResult> read(final ZclAttribute attribute) {
-        return zigbeeManager.read(this, attribute);
+        if (isAttributeFresh(attribute)) {
+            logger.debug("{}: Using cached value for {}", zigbeeAddress, attribute);
+            return getCachedResult(attribute);
+        }
+
+        synchronized (pendingReads) {
+            Future<CommandResult> future = getPendingRead(attribute);
+            if (future != null) {
+                return future;
+            }
+
+            if (readBatchWindow == 0) {
+                Future<CommandResult> frameFuture = zigbeeManager.read(this, attribute);
+                if (frameFuture == null) {
+                    return null;
+                }
+
+                // Readers joining this read wait on their own future, so one reader's timeout can't expire the read
+                AttributeReadFuture readFuture = new AttributeReadFuture(attribute);
+                readFuture.setFrameFuture(frameFuture);
+                pendingReads.put(attribute.getId(), new PendingRead(readFuture));
+                return readFuture;
+            }
+
+            AttributeReadFuture readFuture = new AttributeReadFuture(attribute);
+            pendingReads.put(attribute.getId(), new PendingRead(readFuture));
+            batchedReads.add(readFuture);
+            if (batchedReads.size() == 1) {
+                batchScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        sendBatchedReads();
+                    }
+                }, readBatchWindow, TimeUnit.MILLISECONDS);
+            }
+            return readFuture;
+        }
+    }
+
+    /**
+     * Read a number of attributes from this cluster. The attributes are packed into as few frames as possible, taking
+     * account of the size of the response from the device.
+     * <p>
+     * The cache policy is applied to each attribute as for {@link #read(ZclAttribute)}. The result holds a
+     * {@link ReadAttributesResponse} with a record for each attribute once all attributes have been read, or the
+     * first failure.
+     *
+     * @param attributes the {@link ZclAttribute}s to read
+     * @return command future
+     */
+    public Future<CommandResult> read(final Collection<ZclAttribute> attributes) {
+        final List<Future<CommandResult>> futures = new ArrayList<Future<CommandResult>>();
+        synchronized (pendingReads) {
+            for (ZclAttribute attribute : attributes) {
+                if (isAttributeFresh(attribute)) {
+                    futures.add(getCachedResult(attribute));
+                    continue;
+                }
+
+                Future<CommandResult> future = getPendingRead(attribute);
+                if (future == null) {
+                    AttributeReadFuture readFuture = new AttributeReadFuture(attribute);
+                    pendingReads.put(attribute.getId(), new PendingRead(readFuture));
+                    batchedReads.add(readFuture);
+                    future = readFuture;
+                }
+                futures.add(future);
+            }
+        }
+
+        // Don't wait for the batching window as all the attributes the caller needs are known
+        sendBatchedReads();
+
+        return new MergedReadFuture(futures, false);
+    }
+
+    /**
+     * Sets the time that reads are held so that they can be sent in the same frame as other reads of this cluster.
+     *
+     * @param readBatchWindow the batching window in milliseconds, or 0 to send each read immediately
+     */
+    public void setReadBatchWindow(final long readBatchWindow) {
+        this.readBatchWindow = readBatchWindow;
+    }
+
+    /**
+     * Gets the read of an attribute that is already in progress and can be shared. This must be called while
+     * synchronized on {@link #pendingReads}.
+     *
+     * @param attribute the {@link ZclAttribute}
+     * @return the future for the pending read, or null if there is no read of the attribute in progress
+     */
+    private Future<CommandResult> getPendingRead(final ZclAttribute attribute) {
+        PendingRead pendingRead = pendingReads.get(attribute.getId());
+        if (pendingRead != null && !pendingRead.future.isDone()
+                && System.currentTimeMillis() - pendingRead.startTime < PENDING_READ_TIMEOUT) {
+            logger.debug("{}: Joining pending read of {}", zigbeeAddress, attribute);
+            return pendingRead.future;
+        }
+        return null;
+    }
+
+    /**
+     * Sends all reads waiting in the batch, split into as many frames as needed for the responses to fit in a single
+     * APS frame
+     */
+    private void sendBatchedReads() {
+        final List<AttributeReadFuture> reads;
+        synchronized (pendingReads) {
+            if (batchedReads.isEmpty()) {
+                return;
+            }
+            reads = new ArrayList<AttributeReadFuture>(batchedReads);
+            batchedReads.clear();
+        }
+
+        List<AttributeReadFuture> frame = new ArrayList<AttributeReadFuture>();
+        int frameLength = 0;
+        for (AttributeReadFuture read : reads) {
+            int length = getReadResponseLength(read.attribute);
+            if (!frame.isEmpty() && frameLength + length > MAX_READ_RESPONSE_LENGTH) {
+                sendReadFrame(frame);
+                frame = new ArrayList<AttributeReadFuture>();
+                frameLength = 0;
+            }
+            frame.add(read);
+            frameLength += length;
+        }
+        sendReadFrame(frame);
+    }
+
+    /**
+     * Sends a single read attributes command, and links the futures for each attribute to the command
+     *
+     * @param reads the {@link AttributeReadFuture}s for the attributes in the frame
+     */
+    private void sendReadFrame(final List<AttributeReadFuture> reads) {
+        final List<ZclAttribute> frameAttributes = new ArrayList<ZclAttribute>();
+        for (AttributeReadFuture read : reads) {
+            frameAttributes.add(read.attribute);
+        }
+        logger.debug("{}: Reading {} attributes in one frame", zigbeeAddress, frameAttributes.size());
+
+        final Future<CommandResult> frameFuture = zigbeeManager.read(this, frameAttributes);
+        for (AttributeReadFuture read : reads) {
+            read.setFrameFuture(frameFuture);
+        }
+    }
+
+    /**
+     * Gets the expected length of the record for an attribute in a read attributes response
+     *
+     * @param attribute the {@link ZclAttribute}
+     * @return the length of the record in bytes
+     */
+    private int getReadResponseLength(final ZclAttribute attribute) {
+        // Attribute identifier, status and data type
+        return 4 + getValueLength(attribute.getDataType(), null);
+    }
+
+    /**
+     * Gets the length of an attribute value when it is serialized in a frame
+     *
+     * @param dataType the {@link ZclDataType} of the value
+     * @param value the value if it is known, or null to use an estimate for variable length types
+     * @return the length of the value in bytes
+     */
+    private int getValueLength(final ZclDataType dataType, final Object value) {
+        if (dataType == null) {
+            return STRING_LENGTH_ESTIMATE;
+        }
+        switch (dataType) {
+            case BOOLEAN:
+            case BITMAP_8_BIT:
+            case DATA_8_BIT:
+            case ENUMERATION_8_BIT:
+            case SIGNED_8_BIT_INTEGER:
+            case UNSIGNED_8_BIT_INTEGER:
+                return 1;
+            case BITMAP_16_BIT:
+            case ENUMERATION_16_BIT:
+            case SIGNED_16_BIT_INTEGER:
+            case UNSIGNED_16_BIT_INTEGER:
+                return 2;
+            case BITMAP_32_BIT:
+            case SIGNED_32_BIT_INTEGER:
+            case UNSIGNED_32_BIT_INTEGER:
+            case UTCTIME:
+                return 4;
+            case IEEE_ADDRESS:
+                return 8;
+            case CHARACTER_STRING:
+                if (value instanceof String) {
+                    return 1 + ((String) value).getBytes(StandardCharsets.UTF_8).length;
+                }
+                return STRING_LENGTH_ESTIMATE;
+            case OCTET_STRING:
+                if (value instanceof byte[]) {
+                    return 1 + ((byte[]) value).length;
+                }
+                if (value instanceof int[]) {
+                    return 1 + ((int[]) value).length;
+                }
+                if (value instanceof String) {
+                    return 1 + ((String) value).getBytes(StandardCharsets.UTF_8).length;
+                }
+                return STRING_LENGTH_ESTIMATE;
+            default:
+                return STRING_LENGTH_ESTIMATE;
+        }
     }
 
     /**
@@ -93,7 +419,7 @@ public abstract class ZclCluster {
         logger.debug("readSync request: {}", attribute);
         CommandResult result;
         try {
-            result = zigbeeManager.read(this, attribute).get();
+            result = read(attribute).get();
         } catch (InterruptedException e) {
             e.printStackTrace();
             logger.debug("readSync interrupted", e);
@@ -104,7 +430,7 @@ public abstract class ZclCluster {
             return null;
         }
 
-        if (!result.isSuccess()) {
+        if (result == null || !result.isSuccess()) {
             return null;
         }
 
@@ -116,6 +442,96 @@ public abstract class ZclCluster {
         return null;
     }
 
+    /**
+     * Sets the cache policy for an attribute. Reads of the attribute will return the last value received from the
+     * device, either from a read or a report, if it was received within the maximum age.
+     * <p>
+     * If reporting has been configured for the attribute, the value is also considered fresh for the maximum
+     * reporting interval, since the device will report any change within this period.
+     *
+     * @param attribute the {@link ZclAttribute} to set the policy for
+     * @param maxAge the maximum age of the cached value in milliseconds, or 0 to always read from the device
+     */
+    public void setAttributeMaxAge(final ZclAttribute attribute, final long maxAge) {
+        synchronized (attributeMaxAge) {
+            attributeMaxAge.put(attribute.getId(), maxAge);
+        }
+    }
+
+    /**
+     * Sets the cache policy for all attributes in the cluster that don't have their own policy set with
+     * {@link #setAttributeMaxAge(ZclAttribute, long)}.
+     *
+     * @param maxAge the maximum age of cached values in milliseconds, or 0 to always read from the device
+     */
+    public void setDefaultMaxAge(final long maxAge) {
+        defaultMaxAge = maxAge;
+    }
+
+    /**
+     * Gets the maximum age of the cached value of an attribute before it must be read again from the device. This
+     * takes account of the configured reporting interval of the attribute.
+     *
+     * @param attribute the {@link ZclAttribute}
+     * @return the maximum age in milliseconds. 0 if the attribute is not cached.
+     */
+    public long getAttributeMaxAge(final ZclAttribute attribute) {
+        long maxAge;
+        synchronized (attributeMaxAge) {
+            Long attributePolicy = attributeMaxAge.get(attribute.getId());
+            maxAge = attributePolicy == null ? defaultMaxAge : attributePolicy;
+        }
+
+        int maxInterval = attribute.getMaximumReportingPeriod();
+        if (maxInterval > 0 && maxInterval < 0xffff) {
+            maxAge = Math.max(maxAge, maxInterval * 1000L);
+        }
+        return maxAge;
+    }
+
+    /**
+     * Checks if the cached value of an attribute can be used instead of reading it from the device
+     *
+     * @param attribute the {@link ZclAttribute}
+     * @return true if the cached value is fresh
+     */
+    private boolean isAttributeFresh(final ZclAttribute attribute) {
+        if (attribute.getLastReportTime() == null) {
+            return false;
+        }
+        synchronized (staleAttributes) {
+            if (staleAttributes.contains(attribute.getId())) {
+                return false;
+            }
+        }
+        long maxAge = getAttributeMaxAge(attribute);
+        return maxAge > 0 && System.currentTimeMillis() - attribute.getLastReportTime().getTimeInMillis() <= maxAge;
+    }
+
+    /**
+     * Creates a completed future holding the cached value of the attribute in the same form as a response from the
+     * device
+     *
+     * @param attribute the {@link ZclAttribute}
+     * @return the completed command future
+     */
+    private Future<CommandResult> getCachedResult(final ZclAttribute attribute) {
+        final ReadAttributeStatusRecord record = new ReadAttributeStatusRecord();
+        record.setStatus(0);
+        record.setAttributeIdentifier(attribute.getId());
+        record.setAttributeDataType(attribute.getDataType());
+        record.setAttributeValue(attribute.getLastValue());
+
+        final ReadAttributesResponse response = new ReadAttributesResponse();
+        response.setClusterId(clusterId);
+        response.setSourceAddress(zigbeeAddress);
+        response.setRecords(Collections.singletonList(record));
+
+        final CommandResultFuture future = new CommandResultFuture(zigbeeManager);
+        future.set(new CommandResult(response));
+        return future;
+    }
+
     /**
      * Write an attribute
      *
@@ -124,9 +540,55 @@ public abstract class ZclCluster {
      * @return command future {@link CommandResult}
      */
     protected Future<CommandResult> write(final ZclAttribute attribute, final Object value) {
+        synchronized (staleAttributes) {
+            staleAttributes.add(attribute.getId());
+        }
+        synchronized (pendingReads) {
+            pendingReads.remove(attribute.getId());
+        }
         return zigbeeManager.write(this, attribute, value);
     }
 
+    /**
+     * Write a number of attributes. The attributes are packed into as few frames as possible.
+     * <p>
+     * The result holds a {@link WriteAttributesResponse} with a {@link WriteAttributeStatusRecord} for each attribute,
+     * in the iteration order of the map, once all frames have completed, or the first frame that failed.
+     *
+     * @param values map of the {@link ZclAttribute}s to write and the value to set for each
+     * @return command future {@link CommandResult}
+     */
+    public Future<CommandResult> write(final Map<ZclAttribute, Object> values) {
+        final List<FrameStatus> frames = new ArrayList<FrameStatus>();
+        Map<ZclAttribute, Object> frame = new LinkedHashMap<ZclAttribute, Object>();
+        int frameLength = 0;
+        for (Map.Entry<ZclAttribute, Object> value : values.entrySet()) {
+            ZclAttribute attribute = value.getKey();
+            synchronized (staleAttributes) {
+                staleAttributes.add(attribute.getId());
+            }
+            synchronized (pendingReads) {
+                pendingReads.remove(attribute.getId());
+            }
+
+            // Attribute identifier and data type
+            int length = 3 + getValueLength(attribute.getDataType(), value.getValue());
+            if (!frame.isEmpty() && frameLength + length > MAX_COMMAND_LENGTH) {
+                frames.add(new FrameStatus(zigbeeManager.write(this, frame), frame.keySet()));
+                frame = new LinkedHashMap<ZclAttribute, Object>();
+                frameLength = 0;
+            }
+            frame.put(attribute, value.getValue());
+            frameLength += length;
+        }
+        if (!frame.isEmpty()) {
+            frames.add(new FrameStatus(zigbeeManager.write(this, frame), frame.keySet()));
+        }
+        logger.debug("{}: Writing {} attributes in {} frames", zigbeeAddress, values.size(), frames.size());
+
+        return new MergedStatusFuture(frames, false);
+    }
+
     /**
      * Configures the reporting for the specified attribute ID for analog attributes.
      * <p>
@@ -172,8 +634,10 @@ public abstract class ZclCluster {
         record.setTimeoutPeriod(0);
         command.setRecords(Collections.singletonList(record));
         command.setDestinationAddress(zigbeeAddress);
+        command.setPriority(ZigBeeCommandPriority.REPORTING);
 
-        return zigbeeManager.unicast(command, new ZclResponseMatcher());
+        return sendReportingCommand(command, Collections
+                .singletonList(new ZclReportingConfig(attribute, minInterval, maxInterval, reportableChange)));
     }
 
     /**
@@ -203,6 +667,94 @@ public abstract class ZclCluster {
         return setReporting(attribute, minInterval, maxInterval, null);
     }
 
+    /**
+     * Configures the reporting for a number of attributes. The configuration records are packed into as few frames as
+     * possible.
+     * <p>
+     * The result holds a {@link ConfigureReportingResponse} with an {@link AttributeStatusRecord} for each attribute,
+     * in the order of the collection, once all frames have completed, or the first frame that failed.
+     *
+     * @param configs {@link Collection} of {@link ZclReportingConfig} defining the reporting for each attribute
+     * @return command future {@link CommandResult}
+     */
+    public Future<CommandResult> setReporting(final Collection<ZclReportingConfig> configs) {
+        final List<FrameStatus> frames = new ArrayList<FrameStatus>();
+        List<ZclReportingConfig> frame = new ArrayList<ZclReportingConfig>();
+        int frameLength = 0;
+        for (ZclReportingConfig config : configs) {
+            // Direction, attribute identifier, data type and the reporting intervals
+            int length = 8;
+            if (config.getReportableChange() != null) {
+                length += getValueLength(config.getAttribute().getDataType(), config.getReportableChange());
+            }
+            if (!frame.isEmpty() && frameLength + length > MAX_COMMAND_LENGTH) {
+                frames.add(sendReportingFrame(frame));
+                frame = new ArrayList<ZclReportingConfig>();
+                frameLength = 0;
+            }
+            frame.add(config);
+            frameLength += length;
+        }
+        if (!frame.isEmpty()) {
+            frames.add(sendReportingFrame(frame));
+        }
+        logger.debug("{}: Configuring reporting for {} attributes in {} frames", zigbeeAddress, configs.size(),
+                frames.size());
+
+        return new MergedStatusFuture(frames, true);
+    }
+
+    /**
+     * Sends a single configure reporting command
+     *
+     * @param configs the {@link ZclReportingConfig}s to include in the command
+     * @return the {@link FrameStatus} for the command
+     */
+    private FrameStatus sendReportingFrame(final List<ZclReportingConfig> configs) {
+        final ConfigureReportingCommand command = new ConfigureReportingCommand();
+        command.setClusterId(clusterId);
+
+        final List<AttributeReportingConfigurationRecord> records = new ArrayList<AttributeReportingConfigurationRecord>();
+        final List<ZclAttribute> frameAttributes = new ArrayList<ZclAttribute>();
+        for (ZclReportingConfig config : configs) {
+            final AttributeReportingConfigurationRecord record = new AttributeReportingConfigurationRecord();
+            record.setDirection(0);
+            record.setAttributeIdentifier(config.getAttribute().getId());
+            record.setAttributeDataType(config.getAttribute().getDataType());
+            record.setMinimumReportingInterval(config.getMinInterval());
+            record.setMaximumReportingInterval(config.getMaxInterval());
+            record.setReportableChange(config.getReportableChange());
+            record.setTimeoutPeriod(0);
+            records.add(record);
+            frameAttributes.add(config.getAttribute());
+        }
+        command.setRecords(records);
+        command.setDestinationAddress(zigbeeAddress);
+        command.setPriority(ZigBeeCommandPriority.REPORTING);
+
+        return new FrameStatus(sendReportingCommand(command, configs), frameAttributes);
+    }
+
+    /**
+     * Sends a configure reporting command, and remembers the configuration until the device responds. The reporting
+     * periods of the attributes are only updated once the device has accepted the configuration.
+     *
+     * @param command the {@link ConfigureReportingCommand} to send
+     * @param configs the {@link ZclReportingConfig}s in the command
+     * @return command future {@link CommandResult}
+     */
+    private Future<CommandResult> sendReportingCommand(final ConfigureReportingCommand command,
+            final List<ZclReportingConfig> configs) {
+        // Hold the lock while sending so that the response can't be processed before the configuration is saved
+        synchronized (pendingReportingConfigs) {
+            final Future<CommandResult> future = zigbeeManager.unicast(command, new ZclResponseMatcher());
+            if (command.getTransactionId() != null) {
+                pendingReportingConfigs.put(command.getTransactionId(), configs);
+            }
+            return future;
+        }
+    }
+
     /**
      * Gets the reporting configuration for an attribute
      *
@@ -217,6 +769,61 @@ public abstract class ZclCluster {
         record.setDirection(0);
         command.setRecords(Collections.singletonList(record));
         command.setDestinationAddress(zigbeeAddress);
+        command.setPriority(ZigBeeCommandPriority.REPORTING);
+
+        return zigbeeManager.unicast(command, new ZclResponseMatcher());
+    }
+
+    /**
+     * Gets the reporting configuration for a number of attributes. The attributes are packed into as few frames as
+     * possible, taking account of the size of the response from the device.
+     * <p>
+     * The result holds a {@link ReadReportingConfigurationResponse} with the records from all frames once they have
+     * completed, or the first frame that failed.
+     *
+     * @param attributes the {@link ZclAttribute}s to get the reporting configuration for
+     * @return command future {@link CommandResult}
+     */
+    public Future<CommandResult> getReporting(final Collection<ZclAttribute> attributes) {
+        final List<Future<CommandResult>> futures = new ArrayList<Future<CommandResult>>();
+        List<AttributeRecord> frame = new ArrayList<AttributeRecord>();
+        int frameLength = 0;
+        for (ZclAttribute attribute : attributes) {
+            // Status, direction, attribute identifier, data type and the reporting intervals
+            int length = 9;
+            if (attribute.getDataType() != null && attribute.getDataType().isAnalog()) {
+                length += getValueLength(attribute.getDataType(), null);
+            }
+            if (!frame.isEmpty() && frameLength + length > MAX_READ_RESPONSE_LENGTH) {
+                futures.add(sendReadReportingFrame(frame));
+                frame = new ArrayList<AttributeRecord>();
+                frameLength = 0;
+            }
+            AttributeRecord record = new AttributeRecord();
+            record.setAttributeIdentifier(attribute.getId());
+            record.setDirection(0);
+            frame.add(record);
+            frameLength += length;
+        }
+        if (!frame.isEmpty()) {
+            futures.add(sendReadReportingFrame(frame));
+        }
+
+        return new MergedReadFuture(futures, true);
+    }
+
+    /**
+     * Sends a single read reporting configuration command
+     *
+     * @param records the {@link AttributeRecord}s to include in the command
+     * @return command future {@link CommandResult}
+     */
+    private Future<CommandResult> sendReadReportingFrame(final List<AttributeRecord> records) {
+        final ReadReportingConfigurationCommand command = new ReadReportingConfigurationCommand();
+        command.setClusterId(clusterId);
+        command.setRecords(records);
+        command.setDestinationAddress(zigbeeAddress);
+        command.setPriority(ZigBeeCommandPriority.REPORTING);
 
         return zigbeeManager.unicast(command, new ZclResponseMatcher());
     }
@@ -373,6 +980,9 @@ public abstract class ZclCluster {
                 return;
             }
             attribute.updateValue(report.getAttributeValue());
+            synchronized (staleAttributes) {
+                staleAttributes.remove(attribute.getId());
+            }
             notifyAttributeListener(attribute);
         }
     }
@@ -385,8 +995,17 @@ public abstract class ZclCluster {
      */
     public void handleAttributeStatus(List<ReadAttributeStatusRecord> records) {
         for (ReadAttributeStatusRecord record : records) {
+            if (record.getStatus() != 0) {
+                // There's no value, so the attribute isn't updated and nothing is cached
+                logger.debug("{}: Error reading attribute {}: {}", zigbeeAddress, record.getAttributeIdentifier(),
+                        ZclStatus.getStatus(record.getStatus()));
+                continue;
+            }
             ZclAttribute attribute = attributes.get(record.getAttributeIdentifier());
             attribute.updateValue(record.getAttributeValue());
+            synchronized (staleAttributes) {
+                staleAttributes.remove(attribute.getId());
+            }
             notifyAttributeListener(attribute);
         }
     }  
@@ -420,6 +1039,402 @@ public abstract class ZclCluster {
      * @return - none
      */
     public void handleCommand(ZclCommand command) {
+        if (command instanceof ConfigureReportingResponse) {
+            handleConfigureReportingResponse((ConfigureReportingResponse) command);
+        } else if (command instanceof ReadReportingConfigurationResponse) {
+            handleReportingConfiguration(((ReadReportingConfigurationResponse) command).getRecords());
+        }
         notifyCommandListener(command);
     }
+
+    /**
+     * Updates the reporting periods of the attributes accepted by the device in response to a configure reporting
+     * command. A device responds with a single successful record if all attributes were accepted, otherwise it
+     * includes a record for each attribute that was rejected.
+     *
+     * @param response the {@link ConfigureReportingResponse}
+     */
+    private void handleConfigureReportingResponse(final ConfigureReportingResponse response) {
+        final List<ZclReportingConfig> configs;
+        synchronized (pendingReportingConfigs) {
+            configs = pendingReportingConfigs.remove(response.getTransactionId());
+        }
+        if (configs == null) {
+            return;
+        }
+
+        final Set<Integer> rejected = new HashSet<Integer>();
+        if (response.getRecords() != null) {
+            for (AttributeStatusRecord record : response.getRecords()) {
+                if (record.getStatus() != 0) {
+                    rejected.add(record.getAttributeIdentifier());
+                }
+            }
+        }
+        for (ZclReportingConfig config : configs) {
+            if (!rejected.contains(config.getAttribute().getId())) {
+                config.getAttribute().setReportingPeriods(config.getMinInterval(), config.getMaxInterval());
+            }
+        }
+    }
+
+    /**
+     * Updates the reporting periods of the attributes from the reporting configuration read from the device
+     *
+     * @param records the {@link AttributeReportingStatusRecord}s from the device
+     */
+    private void handleReportingConfiguration(final List<AttributeReportingStatusRecord> records) {
+        if (records == null) {
+            return;
+        }
+        for (AttributeReportingStatusRecord record : records) {
+            final ZclAttribute attribute = attributes.get(record.getAttributeIdentifier());
+            if (attribute != null && record.getStatus() == 0 && record.getDirection() == 0) {
+                attribute.setReportingPeriods(record.getMinimumReportingInterval(),
+                        record.getMaximumReportingInterval());
+            }
+        }
+    }
+
+    /**
+     * A read request that has been sent to the device, and may be shared with other readers of the same attribute
+     */
+    private static class PendingRead {
+        private final Future<CommandResult> future;
+        private final long startTime;
+
+        PendingRead(Future<CommandResult> future) {
+            this.future = future;
+            this.startTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The future for the read of a single attribute, which may be sent in a frame with other attributes. The result
+     * holds a {@link ReadAttributesResponse} containing only the record for this attribute.
+     */
+    private static class AttributeReadFuture implements Future<CommandResult> {
+        private final ZclAttribute attribute;
+        private Future<CommandResult> frameFuture;
+        private boolean frameSent = false;
+        private long frameSentTime;
+
+        AttributeReadFuture(ZclAttribute attribute) {
+            this.attribute = attribute;
+        }
+
+        synchronized void setFrameFuture(Future<CommandResult> frameFuture) {
+            this.frameFuture = frameFuture;
+            frameSentTime = System.currentTimeMillis();
+            frameSent = true;
+            notifyAll();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return frameSent && (frameFuture == null || frameFuture.isDone());
+        }
+
+        @Override
+        public CommandResult get() throws InterruptedException, ExecutionException {
+            try {
+                return get(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public CommandResult get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+            final Future<CommandResult> sentFuture;
+            final long frameDeadline;
+            synchronized (this) {
+                while (!frameSent) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return new CommandResult();
+                    }
+                    wait(remaining);
+                }
+                sentFuture = frameFuture;
+                frameDeadline = frameSentTime + READ_TIMEOUT;
+            }
+            if (sentFuture == null) {
+                return new CommandResult("Read command not sent.");
+            }
+
+            final CommandResult result;
+            if (deadline >= frameDeadline) {
+                result = sentFuture.get(Math.max(frameDeadline - System.currentTimeMillis(), 1),
+                        TimeUnit.MILLISECONDS);
+            } else {
+                // The frame is shared with other readers, so a shorter timeout must not expire it
+                while (!sentFuture.isDone()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return new CommandResult();
+                    }
+                    Thread.sleep(Math.min(remaining, READ_POLL_PERIOD));
+                }
+                result = sentFuture.get();
+            }
+            if (result == null || !result.isSuccess() || !(result.getResponse() instanceof ReadAttributesResponse)) {
+                return result;
+            }
+
+            ReadAttributesResponse frameResponse = result.getResponse();
+            for (ReadAttributeStatusRecord record : frameResponse.getRecords()) {
+                if (record.getAttributeIdentifier() == attribute.getId()) {
+                    ReadAttributesResponse response = new ReadAttributesResponse();
+                    response.setClusterId(frameResponse.getClusterId());
+                    response.setSourceAddress(frameResponse.getSourceAddress());
+                    response.setDestinationAddress(frameResponse.getDestinationAddress());
+                    response.setRecords(Collections.singletonList(record));
+                    return new CommandResult(response);
+                }
+            }
+            return new CommandResult("Attribute " + attribute.getId() + " not included in response.");
+        }
+    }
+
+    /**
+     * A future that combines the results of reads of several attributes into a single
+     * {@link ReadAttributesResponse}, or the results of reads of the reporting configuration of several attributes
+     * into a single {@link ReadReportingConfigurationResponse}
+     */
+    private static class MergedReadFuture implements Future<CommandResult> {
+        private final List<Future<CommandResult>> futures;
+        private final boolean reporting;
+
+        MergedReadFuture(List<Future<CommandResult>> futures, boolean reporting) {
+            this.futures = futures;
+            this.reporting = reporting;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            for (Future<CommandResult> future : futures) {
+                if (future != null && !future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public CommandResult get() throws InterruptedException, ExecutionException {
+            try {
+                return get(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public CommandResult get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+            ZclCommand firstResponse = null;
+            final List<ReadAttributeStatusRecord> records = new ArrayList<ReadAttributeStatusRecord>();
+            final List<AttributeReportingStatusRecord> reportingRecords = new ArrayList<AttributeReportingStatusRecord>();
+            for (Future<CommandResult> future : futures) {
+                if (future == null) {
+                    return new CommandResult("Command not sent.");
+                }
+                CommandResult result = future.get(Math.max(deadline - System.currentTimeMillis(), 1),
+                        TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    return new CommandResult();
+                }
+                if (!result.isSuccess()) {
+                    return result;
+                }
+                if (result.getResponse() instanceof ReadAttributesResponse) {
+                    ReadAttributesResponse response = result.getResponse();
+                    records.addAll(response.getRecords());
+                    firstResponse = firstResponse == null ? response : firstResponse;
+                } else if (result.getResponse() instanceof ReadReportingConfigurationResponse) {
+                    ReadReportingConfigurationResponse response = result.getResponse();
+                    reportingRecords.addAll(response.getRecords());
+                    firstResponse = firstResponse == null ? response : firstResponse;
+                }
+            }
+
+            final ZclCommand mergedResponse;
+            if (reporting) {
+                ReadReportingConfigurationResponse response = new ReadReportingConfigurationResponse();
+                response.setRecords(reportingRecords);
+                mergedResponse = response;
+            } else {
+                ReadAttributesResponse response = new ReadAttributesResponse();
+                response.setRecords(records);
+                mergedResponse = response;
+            }
+            if (firstResponse != null) {
+                mergedResponse.setClusterId(firstResponse.getClusterId());
+                mergedResponse.setSourceAddress(firstResponse.getSourceAddress());
+                mergedResponse.setDestinationAddress(firstResponse.getDestinationAddress());
+            }
+            return new CommandResult(mergedResponse);
+        }
+    }
+
+    /**
+     * A write attributes or configure reporting command that has been sent, and the attributes it includes
+     */
+    private static class FrameStatus {
+        private final Future<CommandResult> future;
+        private final List<Integer> attributeIds = new ArrayList<Integer>();
+
+        FrameStatus(Future<CommandResult> future, Collection<ZclAttribute> attributes) {
+            this.future = future;
+            for (ZclAttribute attribute : attributes) {
+                attributeIds.add(attribute.getId());
+            }
+        }
+    }
+
+    /**
+     * A future that combines the responses to a number of write attributes or configure reporting commands into a
+     * single response with a status record for every attribute.
+     * <p>
+     * A device responds with a single record with a successful status when all records in the command succeeded,
+     * otherwise it only includes the records that failed. The status of each attribute is expanded so the caller can check the
+     * status of each attribute directly.
+     */
+    private static class MergedStatusFuture implements Future<CommandResult> {
+        private final List<FrameStatus> frames;
+        private final boolean reporting;
+
+        MergedStatusFuture(List<FrameStatus> frames, boolean reporting) {
+            this.frames = frames;
+            this.reporting = reporting;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            for (FrameStatus frame : frames) {
+                if (frame.future != null && !frame.future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public CommandResult get() throws InterruptedException, ExecutionException {
+            try {
+                return get(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public CommandResult get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+            final Map<Integer, Integer> statuses = new LinkedHashMap<Integer, Integer>();
+            ZclCommand firstResponse = null;
+            for (FrameStatus frame : frames) {
+                CommandResult result = null;
+                if (frame.future != null) {
+                    result = frame.future.get(Math.max(deadline - System.currentTimeMillis(), 1),
+                            TimeUnit.MILLISECONDS);
+                }
+
+                // Attributes in frames that weren't sent or weren't answered are reported as failed
+                final int frameStatus = result != null && result.isSuccess() ? ZclStatus.SUCCESS.getId()
+                        : ZclStatus.FAILURE.getId();
+                for (Integer attributeId : frame.attributeIds) {
+                    statuses.put(attributeId, frameStatus);
+                }
+                if (frameStatus != ZclStatus.SUCCESS.getId()) {
+                    continue;
+                }
+                if (result.getResponse() instanceof WriteAttributesResponse) {
+                    WriteAttributesResponse response = result.getResponse();
+                    firstResponse = firstResponse == null ? response : firstResponse;
+                    List<WriteAttributeStatusRecord> records = response.getRecords();
+                    if (records != null && !(records.size() == 1 && records.get(0).getStatus() == 0)) {
+                        for (WriteAttributeStatusRecord record : records) {
+                            statuses.put(record.getAttributeIdentifier(), record.getStatus());
+                        }
+                    }
+                } else if (result.getResponse() instanceof ConfigureReportingResponse) {
+                    ConfigureReportingResponse response = result.getResponse();
+                    firstResponse = firstResponse == null ? response : firstResponse;
+                    List<AttributeStatusRecord> records = response.getRecords();
+                    if (records != null && !(records.size() == 1 && records.get(0).getStatus() == 0)) {
+                        for (AttributeStatusRecord record : records) {
+                            statuses.put(record.getAttributeIdentifier(), record.getStatus());
+                        }
+                    }
+                }
+            }
+
+            final ZclCommand mergedResponse;
+            if (reporting) {
+                final List<AttributeStatusRecord> records = new ArrayList<AttributeStatusRecord>();
+                for (Map.Entry<Integer, Integer> status : statuses.entrySet()) {
+                    AttributeStatusRecord record = new AttributeStatusRecord();
+                    record.setAttributeIdentifier(status.getKey());
+                    record.setStatus(status.getValue());
+                    records.add(record);
+                }
+                ConfigureReportingResponse response = new ConfigureReportingResponse();
+                response.setRecords(records);
+                mergedResponse = response;
+            } else {
+                final List<WriteAttributeStatusRecord> records = new ArrayList<WriteAttributeStatusRecord>();
+                for (Map.Entry<Integer, Integer> status : statuses.entrySet()) {
+                    WriteAttributeStatusRecord record = new WriteAttributeStatusRecord();
+                    record.setAttributeIdentifier(status.getKey());
+                    record.setStatus(status.getValue());
+                    records.add(record);
+                }
+                WriteAttributesResponse response = new WriteAttributesResponse();
+                response.setRecords(records);
+                mergedResponse = response;
+            }
+            if (firstResponse != null) {
+                mergedResponse.setClusterId(firstResponse.getClusterId());
+                mergedResponse.setSourceAddress(firstResponse.getSourceAddress());
+                mergedResponse.setDestinationAddress(firstResponse.getDestinationAddress());
+            }
+            return new CommandResult(mergedResponse);
+        }
+    }
 }
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.zcl;
+
+/**
+ * Defines the reporting configuration for a single attribute. This is used to configure reporting of a number of
+ * attributes of a cluster in as few frames as possible with {@link ZclCluster#setReporting(java.util.Collection)}.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZclReportingConfig {
+    /**
+     * The {@link ZclAttribute} to configure
+     */
+    private final ZclAttribute attribute;
+
+    /**
+     * The minimum interval, in seconds, between reports
+     */
+    private final int minInterval;
+
+    /**
+     * The maximum interval, in seconds, between reports
+     */
+    private final int maxInterval;
+
+    /**
+     * The minimum change to the attribute that will result in a report being issued. This is only used for analog
+     * attributes, and is null for discrete attributes.
+     */
+    private final Object reportableChange;
+
+    /**
+     * Constructor for discrete attributes
+     *
+     * @param attribute the {@link ZclAttribute} to configure reporting
+     * @param minInterval the minimum reporting interval
+     * @param maxInterval the maximum reporting interval
+     */
+    public ZclReportingConfig(final ZclAttribute attribute, final int minInterval, final int maxInterval) {
+        this(attribute, minInterval, maxInterval, null);
+    }
+
+    /**
+     * Constructor for analog attributes
+     *
+     * @param attribute the {@link ZclAttribute} to configure reporting
+     * @param minInterval the minimum reporting interval
+     * @param maxInterval the maximum reporting interval
+     * @param reportableChange the minimum change required to report an update
+     */
+    public ZclReportingConfig(final ZclAttribute attribute, final int minInterval, final int maxInterval,
+            final Object reportableChange) {
+        this.attribute = attribute;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.reportableChange = reportableChange;
+    }
+
+    /**
+     * Gets the attribute to configure
+     *
+     * @return the {@link ZclAttribute}
+     */
+    public ZclAttribute getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Gets the minimum reporting interval
+     *
+     * @return the minimum reporting interval in seconds
+     */
+    public int getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Gets the maximum reporting interval
+     *
+     * @return the maximum reporting interval in seconds
+     */
+    public int getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * Gets the reportable change
+     *
+     * @return the minimum change required to report an update, or null for discrete attributes
+     */
+    public Object getReportableChange() {
+        return reportableChange;
+    }
+
+    @Override
+    public String toString() {
+        return "ZclReportingConfig [attribute=" + attribute.getId() + ", minInterval=" + minInterval
+                + ", maxInterval=" + maxInterval + ", reportableChange=" + reportableChange + "]";
+    }
+}
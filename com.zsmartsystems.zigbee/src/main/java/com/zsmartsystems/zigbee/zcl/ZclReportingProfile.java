@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.zcl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declares the reporting configuration that should be applied to devices when they join the network. Entries are
+ * defined for a cluster and attribute, and either apply to all devices, or to devices with a specific device ID.
+ * Where an attribute has an entry for the device ID of the device, this takes priority over the entry for all
+ * devices.
+ * <p>
+ * The profile is applied by the {@link com.zsmartsystems.zigbee.ZigBeeReportingManager}.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZclReportingProfile {
+    /**
+     * The entries that apply to all devices, keyed by cluster ID and then attribute ID
+     */
+    private final Map<Integer, Map<Integer, ReportingEntry>> defaultEntries = new LinkedHashMap<Integer, Map<Integer, ReportingEntry>>();
+
+    /**
+     * The entries that apply to a single device ID, keyed by device ID, cluster ID and then attribute ID
+     */
+    private final Map<Integer, Map<Integer, Map<Integer, ReportingEntry>>> deviceEntries = new LinkedHashMap<Integer, Map<Integer, Map<Integer, ReportingEntry>>>();
+
+    /**
+     * Sets the reporting for an attribute on all devices
+     *
+     * @param clusterId the cluster ID
+     * @param attributeId the attribute ID
+     * @param minInterval the minimum reporting interval in seconds
+     * @param maxInterval the maximum reporting interval in seconds
+     * @param reportableChange the minimum change required to report an update for analog attributes, or null for
+     *            discrete attributes
+     */
+    public void setReporting(final int clusterId, final int attributeId, final int minInterval, final int maxInterval,
+            final Object reportableChange) {
+        synchronized (this) {
+            addEntry(defaultEntries, clusterId, attributeId,
+                    new ReportingEntry(minInterval, maxInterval, reportableChange));
+        }
+    }
+
+    /**
+     * Sets the reporting for an attribute on devices with the specified device ID. This takes priority over any
+     * reporting set for all devices.
+     *
+     * @param deviceId the device ID as reported in the simple descriptor of the endpoint
+     * @param clusterId the cluster ID
+     * @param attributeId the attribute ID
+     * @param minInterval the minimum reporting interval in seconds
+     * @param maxInterval the maximum reporting interval in seconds
+     * @param reportableChange the minimum change required to report an update for analog attributes, or null for
+     *            discrete attributes
+     */
+    public void setReporting(final int deviceId, final int clusterId, final int attributeId, final int minInterval,
+            final int maxInterval, final Object reportableChange) {
+        synchronized (this) {
+            Map<Integer, Map<Integer, ReportingEntry>> entries = deviceEntries.get(deviceId);
+            if (entries == null) {
+                entries = new LinkedHashMap<Integer, Map<Integer, ReportingEntry>>();
+                deviceEntries.put(deviceId, entries);
+            }
+            addEntry(entries, clusterId, attributeId, new ReportingEntry(minInterval, maxInterval, reportableChange));
+        }
+    }
+
+    /**
+     * Gets the reporting configuration required for a cluster of a device
+     *
+     * @param deviceId the device ID of the device
+     * @param cluster the {@link ZclCluster}
+     * @return the list of {@link ZclReportingConfig}s for attributes of the cluster. An empty list if no reporting is
+     *         required.
+     */
+    public List<ZclReportingConfig> getReportingConfigs(final int deviceId, final ZclCluster cluster) {
+        final Map<Integer, ReportingEntry> entries = new LinkedHashMap<Integer, ReportingEntry>();
+        synchronized (this) {
+            if (defaultEntries.containsKey(cluster.getClusterId())) {
+                entries.putAll(defaultEntries.get(cluster.getClusterId()));
+            }
+            if (deviceEntries.containsKey(deviceId)
+                    && deviceEntries.get(deviceId).containsKey(cluster.getClusterId())) {
+                entries.putAll(deviceEntries.get(deviceId).get(cluster.getClusterId()));
+            }
+        }
+
+        final List<ZclReportingConfig> configs = new ArrayList<ZclReportingConfig>();
+        for (Map.Entry<Integer, ReportingEntry> entry : entries.entrySet()) {
+            ZclAttribute attribute = cluster.getAttribute(entry.getKey());
+            if (attribute == null) {
+                continue;
+            }
+            configs.add(new ZclReportingConfig(attribute, entry.getValue().minInterval, entry.getValue().maxInterval,
+                    entry.getValue().reportableChange));
+        }
+        return configs;
+    }
+
+    private void addEntry(final Map<Integer, Map<Integer, ReportingEntry>> entries, final int clusterId,
+            final int attributeId, final ReportingEntry entry) {
+        Map<Integer, ReportingEntry> clusterEntries = entries.get(clusterId);
+        if (clusterEntries == null) {
+            clusterEntries = new LinkedHashMap<Integer, ReportingEntry>();
+            entries.put(clusterId, clusterEntries);
+        }
+        clusterEntries.put(attributeId, entry);
+    }
+
+    /**
+     * The reporting required for a single attribute
+     */
+    private static class ReportingEntry {
+        private final int minInterval;
+        private final int maxInterval;
+        private final Object reportableChange;
+
+        ReportingEntry(int minInterval, int maxInterval, Object reportableChange) {
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+            this.reportableChange = reportableChange;
+        }
+    }
+}
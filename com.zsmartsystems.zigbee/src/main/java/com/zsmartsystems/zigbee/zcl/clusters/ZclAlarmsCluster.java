@@ -119,7 +119,7 @@ public class ZclAlarmsCluster extends ZclCluster {
     public Integer getAlarmCount(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ALARMCOUNT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ALARMCOUNT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ALARMCOUNT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ALARMCOUNT).getLastValue();
             }
         }
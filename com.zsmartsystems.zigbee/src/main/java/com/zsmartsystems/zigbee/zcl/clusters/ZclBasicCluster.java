@@ -117,7 +117,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getZclVersion(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ZCLVERSION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ZCLVERSION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ZCLVERSION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ZCLVERSION).getLastValue();
             }
         }
@@ -169,7 +169,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getApplicationVersion(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_APPLICATIONVERSION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_APPLICATIONVERSION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_APPLICATIONVERSION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_APPLICATIONVERSION).getLastValue();
             }
         }
@@ -221,7 +221,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getStackVersion(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_STACKVERSION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_STACKVERSION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_STACKVERSION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_STACKVERSION).getLastValue();
             }
         }
@@ -271,7 +271,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getHwVersion(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_HWVERSION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_HWVERSION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_HWVERSION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_HWVERSION).getLastValue();
             }
         }
@@ -321,7 +321,7 @@ public class ZclBasicCluster extends ZclCluster {
     public String getManufacturerName(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MANUFACTURERNAME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MANUFACTURERNAME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MANUFACTURERNAME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (String) attributes.get(ATTR_MANUFACTURERNAME).getLastValue();
             }
         }
@@ -371,7 +371,7 @@ public class ZclBasicCluster extends ZclCluster {
     public String getModelIdentifier(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MODELIDENTIFIER).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MODELIDENTIFIER).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MODELIDENTIFIER).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (String) attributes.get(ATTR_MODELIDENTIFIER).getLastValue();
             }
         }
@@ -423,7 +423,7 @@ public class ZclBasicCluster extends ZclCluster {
     public String getDateCode(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_DATECODE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_DATECODE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_DATECODE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (String) attributes.get(ATTR_DATECODE).getLastValue();
             }
         }
@@ -477,7 +477,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getPowerSource(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_POWERSOURCE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_POWERSOURCE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_POWERSOURCE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_POWERSOURCE).getLastValue();
             }
         }
@@ -546,7 +546,7 @@ public class ZclBasicCluster extends ZclCluster {
     public String getLocationDescription(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LOCATIONDESCRIPTION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LOCATIONDESCRIPTION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LOCATIONDESCRIPTION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (String) attributes.get(ATTR_LOCATIONDESCRIPTION).getLastValue();
             }
         }
@@ -615,7 +615,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getPhysicalEnvironment(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_PHYSICALENVIRONMENT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_PHYSICALENVIRONMENT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_PHYSICALENVIRONMENT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_PHYSICALENVIRONMENT).getLastValue();
             }
         }
@@ -684,7 +684,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Boolean getDeviceEnabled(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_DEVICEENABLED).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_DEVICEENABLED).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_DEVICEENABLED).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Boolean) attributes.get(ATTR_DEVICEENABLED).getLastValue();
             }
         }
@@ -753,7 +753,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getAlarmMask(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ALARMMASK).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ALARMMASK).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ALARMMASK).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ALARMMASK).getLastValue();
             }
         }
@@ -834,7 +834,7 @@ public class ZclBasicCluster extends ZclCluster {
     public Integer getDisableLocalConfig(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_DISABLELOCALCONFIG).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_DISABLELOCALCONFIG).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_DISABLELOCALCONFIG).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_DISABLELOCALCONFIG).getLastValue();
             }
         }
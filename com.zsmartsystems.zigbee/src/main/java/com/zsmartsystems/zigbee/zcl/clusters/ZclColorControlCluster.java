@@ -136,7 +136,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getCurrentHue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CURRENTHUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CURRENTHUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CURRENTHUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CURRENTHUE).getLastValue();
             }
         }
@@ -222,7 +222,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getCurrentSaturation(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CURRENTSATURATION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CURRENTSATURATION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CURRENTSATURATION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CURRENTSATURATION).getLastValue();
             }
         }
@@ -298,7 +298,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getRemainingTime(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_REMAININGTIME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_REMAININGTIME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_REMAININGTIME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_REMAININGTIME).getLastValue();
             }
         }
@@ -358,7 +358,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getCurrentX(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CURRENTX).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CURRENTX).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CURRENTX).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CURRENTX).getLastValue();
             }
         }
@@ -444,7 +444,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getCurrentY(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CURRENTY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CURRENTY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CURRENTY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CURRENTY).getLastValue();
             }
         }
@@ -520,7 +520,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getDriftCompensation(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_DRIFTCOMPENSATION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_DRIFTCOMPENSATION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_DRIFTCOMPENSATION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_DRIFTCOMPENSATION).getLastValue();
             }
         }
@@ -570,7 +570,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public String getCompensationText(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_COMPENSATIONTEXT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_COMPENSATIONTEXT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_COMPENSATIONTEXT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (String) attributes.get(ATTR_COMPENSATIONTEXT).getLastValue();
             }
         }
@@ -642,7 +642,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getColorTemperature(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_COLORTEMPERATURE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_COLORTEMPERATURE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_COLORTEMPERATURE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_COLORTEMPERATURE).getLastValue();
             }
         }
@@ -724,7 +724,7 @@ public class ZclColorControlCluster extends ZclCluster {
     public Integer getColorMode(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_COLORMODE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_COLORMODE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_COLORMODE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_COLORMODE).getLastValue();
             }
         }
@@ -124,7 +124,7 @@ public class ZclFlowMeasurementCluster extends ZclCluster {
     public Integer getMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MEASUREDVALUE).getLastValue();
             }
         }
@@ -206,7 +206,7 @@ public class ZclFlowMeasurementCluster extends ZclCluster {
     public Integer getMinMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MINMEASUREDVALUE).getLastValue();
             }
         }
@@ -264,7 +264,7 @@ public class ZclFlowMeasurementCluster extends ZclCluster {
     public Integer getMaxMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAXMEASUREDVALUE).getLastValue();
             }
         }
@@ -316,7 +316,7 @@ public class ZclFlowMeasurementCluster extends ZclCluster {
     public Integer getTolerance(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TOLERANCE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_TOLERANCE).getLastValue();
             }
         }
@@ -43,6 +43,7 @@ import com.zsmartsystems.zigbee.zcl.field.AttributeInformation;
 import com.zsmartsystems.zigbee.zcl.field.AttributeRecord;
 import com.zsmartsystems.zigbee.zcl.field.AttributeReport;
 import com.zsmartsystems.zigbee.zcl.field.AttributeReportingConfigurationRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeReportingStatusRecord;
 import com.zsmartsystems.zigbee.zcl.field.AttributeStatusRecord;
 import com.zsmartsystems.zigbee.zcl.field.ExtendedAttributeInformation;
 import com.zsmartsystems.zigbee.zcl.field.ReadAttributeStatusRecord;
@@ -270,10 +271,10 @@ public class ZclGeneralCluster extends ZclCluster {
      * The Read Reporting Configuration Response command is used to respond to a
      * Read Reporting Configuration command.
      *
-     * @param records {@link List<AttributeReportingConfigurationRecord>} Records
+     * @param records {@link List<AttributeReportingStatusRecord>} Records
      * @return the {@link Future<CommandResult>} command result future
      */
-    public Future<CommandResult> readReportingConfigurationResponse(List<AttributeReportingConfigurationRecord> records) {
+    public Future<CommandResult> readReportingConfigurationResponse(List<AttributeReportingStatusRecord> records) {
         ReadReportingConfigurationResponse command = new ReadReportingConfigurationResponse();
 
         // Set the fields
@@ -124,7 +124,7 @@ public class ZclIasWdCluster extends ZclCluster {
     public Integer getMaxDuration(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAXDURATION).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAXDURATION).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAXDURATION).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAXDURATION).getLastValue();
             }
         }
@@ -166,7 +166,7 @@ public class ZclIasWdCluster extends ZclCluster {
     public Integer getZoneType(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ZONETYPE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ZONETYPE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ZONETYPE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ZONETYPE).getLastValue();
             }
         }
@@ -208,7 +208,7 @@ public class ZclIasWdCluster extends ZclCluster {
     public Integer getZoneStatus(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ZONESTATUS).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ZONESTATUS).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ZONESTATUS).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ZONESTATUS).getLastValue();
             }
         }
@@ -265,7 +265,7 @@ public class ZclIasWdCluster extends ZclCluster {
     public IeeeAddress getIasCieAddress(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_IAS_CIE_ADDRESS).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_IAS_CIE_ADDRESS).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_IAS_CIE_ADDRESS).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (IeeeAddress) attributes.get(ATTR_IAS_CIE_ADDRESS).getLastValue();
             }
         }
@@ -100,7 +100,7 @@ public class ZclIasZoneCluster extends ZclCluster {
     public Integer getZoneState(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ZONESTATE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ZONESTATE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ZONESTATE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ZONESTATE).getLastValue();
             }
         }
@@ -146,7 +146,7 @@ public class ZclIasZoneCluster extends ZclCluster {
     public Integer getZoneType(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ZONETYPE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ZONETYPE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ZONETYPE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ZONETYPE).getLastValue();
             }
         }
@@ -192,7 +192,7 @@ public class ZclIasZoneCluster extends ZclCluster {
     public Integer getZoneStatus(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ZONESTATUS).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ZONESTATUS).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ZONESTATUS).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ZONESTATUS).getLastValue();
             }
         }
@@ -282,7 +282,7 @@ public class ZclIasZoneCluster extends ZclCluster {
     public IeeeAddress getIasCieAddress(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_IAS_CIE_ADDRESS).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_IAS_CIE_ADDRESS).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_IAS_CIE_ADDRESS).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (IeeeAddress) attributes.get(ATTR_IAS_CIE_ADDRESS).getLastValue();
             }
         }
@@ -147,7 +147,7 @@ public class ZclIdentifyCluster extends ZclCluster {
     public Integer getIdentifyTime(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_IDENTIFYTIME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_IDENTIFYTIME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_IDENTIFYTIME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_IDENTIFYTIME).getLastValue();
             }
         }
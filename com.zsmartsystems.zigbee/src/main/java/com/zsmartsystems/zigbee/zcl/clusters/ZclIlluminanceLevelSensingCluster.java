@@ -97,7 +97,7 @@ public class ZclIlluminanceLevelSensingCluster extends ZclCluster {
     public Integer getLevelStatus(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LEVELSTATUS).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LEVELSTATUS).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LEVELSTATUS).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_LEVELSTATUS).getLastValue();
             }
         }
@@ -162,7 +162,7 @@ public class ZclIlluminanceLevelSensingCluster extends ZclCluster {
     public Integer getLightSensorType(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LIGHTSENSORTYPE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LIGHTSENSORTYPE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LIGHTSENSORTYPE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_LIGHTSENSORTYPE).getLastValue();
             }
         }
@@ -119,7 +119,7 @@ public class ZclIlluminanceMeasurementCluster extends ZclCluster {
     public Integer getMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MEASUREDVALUE).getLastValue();
             }
         }
@@ -197,7 +197,7 @@ public class ZclIlluminanceMeasurementCluster extends ZclCluster {
     public Integer getMinMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MINMEASUREDVALUE).getLastValue();
             }
         }
@@ -255,7 +255,7 @@ public class ZclIlluminanceMeasurementCluster extends ZclCluster {
     public Integer getMaxMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAXMEASUREDVALUE).getLastValue();
             }
         }
@@ -307,7 +307,7 @@ public class ZclIlluminanceMeasurementCluster extends ZclCluster {
     public Integer getTolerance(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TOLERANCE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_TOLERANCE).getLastValue();
             }
         }
@@ -375,7 +375,7 @@ public class ZclIlluminanceMeasurementCluster extends ZclCluster {
     public Integer getLightSensorType(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LIGHTSENSORTYPE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LIGHTSENSORTYPE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LIGHTSENSORTYPE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_LIGHTSENSORTYPE).getLastValue();
             }
         }
@@ -110,7 +110,7 @@ public class ZclLevelControlCluster extends ZclCluster {
     public Integer getCurrentLevel(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CURRENTLEVEL).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CURRENTLEVEL).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CURRENTLEVEL).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CURRENTLEVEL).getLastValue();
             }
         }
@@ -180,7 +180,7 @@ public class ZclLevelControlCluster extends ZclCluster {
     public Integer getRemainingTime(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_REMAININGTIME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_REMAININGTIME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_REMAININGTIME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_REMAININGTIME).getLastValue();
             }
         }
@@ -264,7 +264,7 @@ public class ZclLevelControlCluster extends ZclCluster {
     public Integer getOnOffTransitionTime(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ONOFFTRANSITIONTIME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ONOFFTRANSITIONTIME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ONOFFTRANSITIONTIME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ONOFFTRANSITIONTIME).getLastValue();
             }
         }
@@ -336,7 +336,7 @@ public class ZclLevelControlCluster extends ZclCluster {
     public Integer getOnLevel(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ONLEVEL).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ONLEVEL).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ONLEVEL).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ONLEVEL).getLastValue();
             }
         }
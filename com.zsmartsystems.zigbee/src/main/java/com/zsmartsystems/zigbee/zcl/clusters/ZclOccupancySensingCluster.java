@@ -110,7 +110,7 @@ public class ZclOccupancySensingCluster extends ZclCluster {
     public Integer getOccupancy(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_OCCUPANCY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_OCCUPANCY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_OCCUPANCY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_OCCUPANCY).getLastValue();
             }
         }
@@ -177,7 +177,7 @@ public class ZclOccupancySensingCluster extends ZclCluster {
     public Integer getOccupancySensorType(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_OCCUPANCYSENSORTYPE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_OCCUPANCYSENSORTYPE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_OCCUPANCYSENSORTYPE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_OCCUPANCYSENSORTYPE).getLastValue();
             }
         }
@@ -234,7 +234,7 @@ public class ZclOccupancySensingCluster extends ZclCluster {
     public Integer getPirOccupiedToUnoccupiedDelay(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_PIROCCUPIEDTOUNOCCUPIEDDELAY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_PIROCCUPIEDTOUNOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_PIROCCUPIEDTOUNOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_PIROCCUPIEDTOUNOCCUPIEDDELAY).getLastValue();
             }
         }
@@ -291,7 +291,7 @@ public class ZclOccupancySensingCluster extends ZclCluster {
     public Integer getPirUnoccupiedToOccupiedDelay(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_PIRUNOCCUPIEDTOOCCUPIEDDELAY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_PIRUNOCCUPIEDTOOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_PIRUNOCCUPIEDTOOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_PIRUNOCCUPIEDTOOCCUPIEDDELAY).getLastValue();
             }
         }
@@ -369,7 +369,7 @@ public class ZclOccupancySensingCluster extends ZclCluster {
     public Integer getUltraSonicOccupiedToUnoccupiedDelay(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ULTRASONICOCCUPIEDTOUNOCCUPIEDDELAY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ULTRASONICOCCUPIEDTOUNOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ULTRASONICOCCUPIEDTOUNOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ULTRASONICOCCUPIEDTOUNOCCUPIEDDELAY).getLastValue();
             }
         }
@@ -441,7 +441,7 @@ public class ZclOccupancySensingCluster extends ZclCluster {
     public Integer getUltraSonicUnoccupiedToOccupiedDelay(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDDELAY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDDELAY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDDELAY).getLastValue();
             }
         }
@@ -498,7 +498,7 @@ public class ZclOccupancySensingCluster extends ZclCluster {
     public Integer getUltrasonicUnoccupiedToOccupiedThreshold(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDTHRESHOLD).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDTHRESHOLD).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDTHRESHOLD).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_ULTRASONICUNOCCUPIEDTOOCCUPIEDTHRESHOLD).getLastValue();
             }
         }
@@ -95,7 +95,7 @@ public class ZclOnOffCluster extends ZclCluster {
     public Boolean getOnOff(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_ONOFF).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_ONOFF).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_ONOFF).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Boolean) attributes.get(ATTR_ONOFF).getLastValue();
             }
         }
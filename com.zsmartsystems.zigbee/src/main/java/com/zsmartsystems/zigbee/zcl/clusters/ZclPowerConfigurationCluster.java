@@ -122,7 +122,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getMainsVoltage(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAINSVOLTAGE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAINSVOLTAGE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAINSVOLTAGE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAINSVOLTAGE).getLastValue();
             }
         }
@@ -196,7 +196,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getMainsFrequency(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAINSFREQUENCY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAINSFREQUENCY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAINSFREQUENCY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAINSFREQUENCY).getLastValue();
             }
         }
@@ -265,7 +265,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getMainsAlarmMask(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAINSALARMMASK).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAINSALARMMASK).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAINSALARMMASK).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAINSALARMMASK).getLastValue();
             }
         }
@@ -373,7 +373,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getMainsVoltageMinThreshold(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAINSVOLTAGEMINTHRESHOLD).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAINSVOLTAGEMINTHRESHOLD).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAINSVOLTAGEMINTHRESHOLD).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAINSVOLTAGEMINTHRESHOLD).getLastValue();
             }
         }
@@ -481,7 +481,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getMainsVoltageMaxThreshold(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAINSVOLTAGEMAXTHRESHOLD).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAINSVOLTAGEMAXTHRESHOLD).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAINSVOLTAGEMAXTHRESHOLD).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAINSVOLTAGEMAXTHRESHOLD).getLastValue();
             }
         }
@@ -562,7 +562,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getMainsVoltageDwellTripPoint(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAINSVOLTAGEDWELLTRIPPOINT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAINSVOLTAGEDWELLTRIPPOINT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAINSVOLTAGEDWELLTRIPPOINT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAINSVOLTAGEDWELLTRIPPOINT).getLastValue();
             }
         }
@@ -614,7 +614,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getBatteryVoltage(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYVOLTAGE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYVOLTAGE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYVOLTAGE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_BATTERYVOLTAGE).getLastValue();
             }
         }
@@ -683,7 +683,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public String getBatteryManufacturer(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYMANUFACTURER).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYMANUFACTURER).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYMANUFACTURER).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (String) attributes.get(ATTR_BATTERYMANUFACTURER).getLastValue();
             }
         }
@@ -752,7 +752,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getBatterySize(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYSIZE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYSIZE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYSIZE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_BATTERYSIZE).getLastValue();
             }
         }
@@ -821,7 +821,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getBatteryAHrRating(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYAHRRATING).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYAHRRATING).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYAHRRATING).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_BATTERYAHRRATING).getLastValue();
             }
         }
@@ -890,7 +890,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getBatteryQuantity(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYQUANTITY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYQUANTITY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYQUANTITY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_BATTERYQUANTITY).getLastValue();
             }
         }
@@ -959,7 +959,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getBatteryRatedVoltage(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYRATEDVOLTAGE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYRATEDVOLTAGE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYRATEDVOLTAGE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_BATTERYRATEDVOLTAGE).getLastValue();
             }
         }
@@ -1028,7 +1028,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getBatteryAlarmMask(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYALARMMASK).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYALARMMASK).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYALARMMASK).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_BATTERYALARMMASK).getLastValue();
             }
         }
@@ -1121,7 +1121,7 @@ public class ZclPowerConfigurationCluster extends ZclCluster {
     public Integer getBatteryVoltageMinThreshold(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_BATTERYVOLTAGEMINTHRESHOLD).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_BATTERYVOLTAGEMINTHRESHOLD).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_BATTERYVOLTAGEMINTHRESHOLD).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_BATTERYVOLTAGEMINTHRESHOLD).getLastValue();
             }
         }
@@ -128,7 +128,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MEASUREDVALUE).getLastValue();
             }
         }
@@ -207,7 +207,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getMinMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MINMEASUREDVALUE).getLastValue();
             }
         }
@@ -265,7 +265,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getMaxMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAXMEASUREDVALUE).getLastValue();
             }
         }
@@ -342,7 +342,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getTolerance(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TOLERANCE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_TOLERANCE).getLastValue();
             }
         }
@@ -384,7 +384,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getScaledValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_SCALEDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_SCALEDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_SCALEDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_SCALEDVALUE).getLastValue();
             }
         }
@@ -443,7 +443,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getMinScaledValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MINSCALEDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MINSCALEDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MINSCALEDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MINSCALEDVALUE).getLastValue();
             }
         }
@@ -485,7 +485,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getMaxScaledValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAXSCALEDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAXSCALEDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAXSCALEDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAXSCALEDVALUE).getLastValue();
             }
         }
@@ -527,7 +527,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getScaledTolerance(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_SCALEDTOLERANCE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_SCALEDTOLERANCE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_SCALEDTOLERANCE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_SCALEDTOLERANCE).getLastValue();
             }
         }
@@ -586,7 +586,7 @@ public class ZclPressureMeasurementCluster extends ZclCluster {
     public Integer getScale(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_SCALE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_SCALE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_SCALE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_SCALE).getLastValue();
             }
         }
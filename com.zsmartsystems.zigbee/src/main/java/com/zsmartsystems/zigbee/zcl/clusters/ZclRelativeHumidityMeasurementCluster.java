@@ -121,7 +121,7 @@ public class ZclRelativeHumidityMeasurementCluster extends ZclCluster {
     public Integer getMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MEASUREDVALUE).getLastValue();
             }
         }
@@ -201,7 +201,7 @@ public class ZclRelativeHumidityMeasurementCluster extends ZclCluster {
     public Integer getMinMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MINMEASUREDVALUE).getLastValue();
             }
         }
@@ -259,7 +259,7 @@ public class ZclRelativeHumidityMeasurementCluster extends ZclCluster {
     public Integer getMaxMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAXMEASUREDVALUE).getLastValue();
             }
         }
@@ -311,7 +311,7 @@ public class ZclRelativeHumidityMeasurementCluster extends ZclCluster {
     public Integer getTolerance(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TOLERANCE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_TOLERANCE).getLastValue();
             }
         }
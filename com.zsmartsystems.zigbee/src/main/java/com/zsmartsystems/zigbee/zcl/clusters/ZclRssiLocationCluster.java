@@ -133,7 +133,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getLocationType(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LOCATIONTYPE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LOCATIONTYPE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LOCATIONTYPE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_LOCATIONTYPE).getLastValue();
             }
         }
@@ -175,7 +175,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getLocationMethod(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LOCATIONMETHOD).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LOCATIONMETHOD).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LOCATIONMETHOD).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_LOCATIONMETHOD).getLastValue();
             }
         }
@@ -227,7 +227,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getLocationAge(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LOCATIONAGE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LOCATIONAGE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LOCATIONAGE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_LOCATIONAGE).getLastValue();
             }
         }
@@ -289,7 +289,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getQualityMeasure(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_QUALITYMEASURE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_QUALITYMEASURE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_QUALITYMEASURE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_QUALITYMEASURE).getLastValue();
             }
         }
@@ -341,7 +341,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getNumberOfDevices(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_NUMBEROFDEVICES).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_NUMBEROFDEVICES).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_NUMBEROFDEVICES).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_NUMBEROFDEVICES).getLastValue();
             }
         }
@@ -428,7 +428,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getCoordinate1(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_COORDINATE1).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_COORDINATE1).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_COORDINATE1).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_COORDINATE1).getLastValue();
             }
         }
@@ -515,7 +515,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getCoordinate2(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_COORDINATE2).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_COORDINATE2).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_COORDINATE2).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_COORDINATE2).getLastValue();
             }
         }
@@ -602,7 +602,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getCoordinate3(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_COORDINATE3).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_COORDINATE3).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_COORDINATE3).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_COORDINATE3).getLastValue();
             }
         }
@@ -683,7 +683,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getPower(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_POWER).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_POWER).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_POWER).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_POWER).getLastValue();
             }
         }
@@ -767,7 +767,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getPathLossExponent(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_PATHLOSSEXPONENT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_PATHLOSSEXPONENT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_PATHLOSSEXPONENT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_PATHLOSSEXPONENT).getLastValue();
             }
         }
@@ -845,7 +845,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getReportingPeriod(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_REPORTINGPERIOD).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_REPORTINGPERIOD).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_REPORTINGPERIOD).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_REPORTINGPERIOD).getLastValue();
             }
         }
@@ -920,7 +920,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getCalculationPeriod(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CALCULATIONPERIOD).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CALCULATIONPERIOD).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CALCULATIONPERIOD).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CALCULATIONPERIOD).getLastValue();
             }
         }
@@ -995,7 +995,7 @@ public class ZclRssiLocationCluster extends ZclCluster {
     public Integer getNumberRssiMeasurements(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_NUMBERRSSIMEASUREMENTS).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_NUMBERRSSIMEASUREMENTS).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_NUMBERRSSIMEASUREMENTS).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_NUMBERRSSIMEASUREMENTS).getLastValue();
             }
         }
@@ -129,7 +129,7 @@ public class ZclScenesCluster extends ZclCluster {
     public Integer getSceneCount(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_SCENECOUNT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_SCENECOUNT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_SCENECOUNT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_SCENECOUNT).getLastValue();
             }
         }
@@ -175,7 +175,7 @@ public class ZclScenesCluster extends ZclCluster {
     public Integer getCurrentScene(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CURRENTSCENE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CURRENTSCENE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CURRENTSCENE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CURRENTSCENE).getLastValue();
             }
         }
@@ -225,7 +225,7 @@ public class ZclScenesCluster extends ZclCluster {
     public Integer getCurrentGroup(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_CURRENTGROUP).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_CURRENTGROUP).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_CURRENTGROUP).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_CURRENTGROUP).getLastValue();
             }
         }
@@ -287,7 +287,7 @@ public class ZclScenesCluster extends ZclCluster {
     public Boolean getSceneValid(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_SCENEVALID).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_SCENEVALID).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_SCENEVALID).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Boolean) attributes.get(ATTR_SCENEVALID).getLastValue();
             }
         }
@@ -339,7 +339,7 @@ public class ZclScenesCluster extends ZclCluster {
     public Integer getNameSupport(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_NAMESUPPORT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_NAMESUPPORT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_NAMESUPPORT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_NAMESUPPORT).getLastValue();
             }
         }
@@ -395,7 +395,7 @@ public class ZclScenesCluster extends ZclCluster {
     public IeeeAddress getLastConfiguredBy(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LASTCONFIGUREDBY).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LASTCONFIGUREDBY).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LASTCONFIGUREDBY).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (IeeeAddress) attributes.get(ATTR_LASTCONFIGUREDBY).getLastValue();
             }
         }
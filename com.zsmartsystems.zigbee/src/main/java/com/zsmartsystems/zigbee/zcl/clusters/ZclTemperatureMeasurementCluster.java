@@ -117,7 +117,7 @@ public class ZclTemperatureMeasurementCluster extends ZclCluster {
     public Integer getMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MEASUREDVALUE).getLastValue();
             }
         }
@@ -199,7 +199,7 @@ public class ZclTemperatureMeasurementCluster extends ZclCluster {
     public Integer getMinMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MINMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MINMEASUREDVALUE).getLastValue();
             }
         }
@@ -261,7 +261,7 @@ public class ZclTemperatureMeasurementCluster extends ZclCluster {
     public Integer getMaxMeasuredValue(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_MAXMEASUREDVALUE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_MAXMEASUREDVALUE).getLastValue();
             }
         }
@@ -313,7 +313,7 @@ public class ZclTemperatureMeasurementCluster extends ZclCluster {
     public Integer getTolerance(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TOLERANCE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TOLERANCE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_TOLERANCE).getLastValue();
             }
         }
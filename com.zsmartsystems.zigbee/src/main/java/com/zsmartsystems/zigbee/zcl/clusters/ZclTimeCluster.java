@@ -138,7 +138,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Calendar getTime(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TIME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TIME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TIME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Calendar) attributes.get(ATTR_TIME).getLastValue();
             }
         }
@@ -201,7 +201,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Integer getTimeStatus(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TIMESTATUS).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TIMESTATUS).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TIMESTATUS).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_TIMESTATUS).getLastValue();
             }
         }
@@ -270,7 +270,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Integer getTimeZone(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_TIMEZONE).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_TIMEZONE).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_TIMEZONE).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_TIMEZONE).getLastValue();
             }
         }
@@ -339,7 +339,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Integer getDstStart(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_DSTSTART).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_DSTSTART).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_DSTSTART).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_DSTSTART).getLastValue();
             }
         }
@@ -447,7 +447,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Integer getDstEnd(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_DSTEND).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_DSTEND).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_DSTEND).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_DSTEND).getLastValue();
             }
         }
@@ -531,7 +531,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Integer getDstShift(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_DSTSHIFT).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_DSTSHIFT).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_DSTSHIFT).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_DSTSHIFT).getLastValue();
             }
         }
@@ -585,7 +585,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Integer getStandardTime(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_STANDARDTIME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_STANDARDTIME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_STANDARDTIME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_STANDARDTIME).getLastValue();
             }
         }
@@ -639,7 +639,7 @@ public class ZclTimeCluster extends ZclCluster {
     public Integer getLocalTime(final long refreshPeriod) {
         if(refreshPeriod > 0 && attributes.get(ATTR_LOCALTIME).getLastReportTime() != null) {
             long refreshTime = Calendar.getInstance().getTimeInMillis() - refreshPeriod;
-            if(attributes.get(ATTR_LOCALTIME).getLastReportTime().getTimeInMillis() < refreshTime) {
+            if(attributes.get(ATTR_LOCALTIME).getLastReportTime().getTimeInMillis() > refreshTime) {
                 return (Integer) attributes.get(ATTR_LOCALTIME).getLastValue();
             }
         }
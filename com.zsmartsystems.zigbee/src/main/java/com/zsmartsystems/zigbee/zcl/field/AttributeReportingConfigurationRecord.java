@@ -336,7 +336,22 @@ public class AttributeReportingConfigurationRecord implements ZclListItemField {
     public void serialize(final ZigBeeSerializer serializer) {
         serializer.appendZigBeeType(direction, ZclDataType.UNSIGNED_8_BIT_INTEGER);
         serializer.appendZigBeeType(attributeIdentifier, ZclDataType.UNSIGNED_16_BIT_INTEGER);
+        serializeConfiguration(serializer);
+    }
 
+    @Override
+    public void deserialize(final ZigBeeDeserializer deserializer) {
+        direction = (int) deserializer.readZigBeeType(ZclDataType.UNSIGNED_8_BIT_INTEGER);
+        attributeIdentifier = (int) deserializer.readZigBeeType(ZclDataType.UNSIGNED_16_BIT_INTEGER);
+        deserializeConfiguration(deserializer);
+    }
+
+    /**
+     * Serializes the fields that follow the attribute identifier, which depend on the direction.
+     *
+     * @param serializer the {@link ZigBeeSerializer}
+     */
+    protected void serializeConfiguration(final ZigBeeSerializer serializer) {
         if (direction == 1) {
             // If direction is set to 0x01, then the timeout period field is included in the payload,
             // and the attribute data type field, the minimum reporting interval field, the
@@ -364,10 +379,12 @@ public class AttributeReportingConfigurationRecord implements ZclListItemField {
         }
     }
 
-    @Override
-    public void deserialize(final ZigBeeDeserializer deserializer) {
-        direction = (int) deserializer.readZigBeeType(ZclDataType.UNSIGNED_8_BIT_INTEGER);
-        attributeIdentifier = (int) deserializer.readZigBeeType(ZclDataType.UNSIGNED_16_BIT_INTEGER);
+    /**
+     * Deserializes the fields that follow the attribute identifier, which depend on the direction.
+     *
+     * @param deserializer the {@link ZigBeeDeserializer}
+     */
+    protected void deserializeConfiguration(final ZigBeeDeserializer deserializer) {
         if (direction == 1) {
             // If direction is set to 0x01, then the timeout period field is included in the payload,
             // and the attribute data type field, the minimum reporting interval field, the
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.zcl.field;
+
+import com.zsmartsystems.zigbee.serialization.ZigBeeDeserializer;
+import com.zsmartsystems.zigbee.serialization.ZigBeeSerializer;
+import com.zsmartsystems.zigbee.zcl.ZclStatus;
+import com.zsmartsystems.zigbee.zcl.protocol.ZclDataType;
+
+/**
+ * Attribute Reporting Status Record field.
+ * <p>
+ * This is the attribute reporting configuration record returned in the Read Reporting Configuration Response. The
+ * record starts with a status field. If the status is not SUCCESS, then only the direction and attribute identifier
+ * follow, and the remaining configuration fields are omitted.
+ *
+ * @author Chris Jackson
+ */
+public class AttributeReportingStatusRecord extends AttributeReportingConfigurationRecord {
+    /**
+     * The status.
+     */
+    private int status;
+
+    /**
+     * Gets status.
+     *
+     * @return the status
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets status.
+     *
+     * @param status the status
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    @Override
+    public void serialize(final ZigBeeSerializer serializer) {
+        serializer.appendZigBeeType(status, ZclDataType.UNSIGNED_8_BIT_INTEGER);
+        serializer.appendZigBeeType(getDirection(), ZclDataType.UNSIGNED_8_BIT_INTEGER);
+        serializer.appendZigBeeType(getAttributeIdentifier(), ZclDataType.UNSIGNED_16_BIT_INTEGER);
+        if (status == ZclStatus.SUCCESS.getId()) {
+            serializeConfiguration(serializer);
+        }
+    }
+
+    @Override
+    public void deserialize(final ZigBeeDeserializer deserializer) {
+        status = (int) deserializer.readZigBeeType(ZclDataType.UNSIGNED_8_BIT_INTEGER);
+        setDirection((int) deserializer.readZigBeeType(ZclDataType.UNSIGNED_8_BIT_INTEGER));
+        setAttributeIdentifier((int) deserializer.readZigBeeType(ZclDataType.UNSIGNED_16_BIT_INTEGER));
+        if (status == ZclStatus.SUCCESS.getId()) {
+            deserializeConfiguration(deserializer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Attribute Reporting Status Record: status=" + status + ", attributeDataType=" + getAttributeDataType()
+                + ", attributeIdentifier=" + getAttributeIdentifier() + ", minimumReportingInterval="
+                + getMinimumReportingInterval() + ", maximumReportingInterval=" + getMaximumReportingInterval()
+                + ", reportableChange=" + getReportableChange() + ", timeoutPeriod=" + getTimeoutPeriod();
+    }
+}
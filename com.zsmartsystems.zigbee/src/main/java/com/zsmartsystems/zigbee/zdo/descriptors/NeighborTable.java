@@ -91,10 +91,18 @@ public class NeighborTable {
         return extendedAddress;
     }
 
+    public void setExtendedAddress(IeeeAddress extendedAddress) {
+        this.extendedAddress = extendedAddress;
+    }
+
     public Integer getNetworkAddress() {
         return networkAddress;
     }
 
+    public void setNetworkAddress(Integer networkAddress) {
+        this.networkAddress = networkAddress;
+    }
+
     public LogicalType getDeviceType() {
         return deviceType;
     }
@@ -189,6 +197,10 @@ public class NeighborTable {
         return lqi;
     }
 
+    public void setLqi(Integer lqi) {
+        this.lqi = lqi;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(extendedAddress, networkAddress, lqi);
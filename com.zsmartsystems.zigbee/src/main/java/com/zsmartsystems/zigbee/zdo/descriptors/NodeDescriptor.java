@@ -8,6 +8,7 @@
 package com.zsmartsystems.zigbee.zdo.descriptors;
 
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 
 import com.zsmartsystems.zigbee.serialization.ZigBeeDeserializer;
@@ -104,23 +105,36 @@ public class NodeDescriptor {
 
     private void setMacCapabilities(int macCapabilities) {
         this.macCapabilities.clear();
+        this.macCapabilities.addAll(getMacCapabilities(macCapabilities));
+    }
+
+    /**
+     * Converts the MAC capability flags, as used in the node descriptor and the device announcement, to the set of
+     * {@link MacCapabilitiesType}
+     *
+     * @param macCapabilities the MAC capability flags
+     * @return the set of {@link MacCapabilitiesType}
+     */
+    public static Set<MacCapabilitiesType> getMacCapabilities(int macCapabilities) {
+        final Set<MacCapabilitiesType> capabilities = new HashSet<MacCapabilitiesType>();
         if ((macCapabilities & 0x01) != 0) {
-            this.macCapabilities.add(MacCapabilitiesType.ALTERNATIVE_PAN);
+            capabilities.add(MacCapabilitiesType.ALTERNATIVE_PAN);
         }
         if ((macCapabilities & 0x02) != 0) {
-            this.macCapabilities.add(MacCapabilitiesType.FULL_FUNCTION_DEVICE);
+            capabilities.add(MacCapabilitiesType.FULL_FUNCTION_DEVICE);
         } else {
-            this.macCapabilities.add(MacCapabilitiesType.REDUCED_FUNCTION_DEVICE);
+            capabilities.add(MacCapabilitiesType.REDUCED_FUNCTION_DEVICE);
         }
         if ((macCapabilities & 0x04) != 0) {
-            this.macCapabilities.add(MacCapabilitiesType.MAINS_POWER);
+            capabilities.add(MacCapabilitiesType.MAINS_POWER);
         }
         if ((macCapabilities & 0x08) != 0) {
-            this.macCapabilities.add(MacCapabilitiesType.RECEIVER_ON_WHEN_IDLE);
+            capabilities.add(MacCapabilitiesType.RECEIVER_ON_WHEN_IDLE);
         }
         if ((macCapabilities & 0x40) != 0) {
-            this.macCapabilities.add(MacCapabilitiesType.SECURITY_CAPABLE);
+            capabilities.add(MacCapabilitiesType.SECURITY_CAPABLE);
         }
+        return capabilities;
     }
 
     public Set<MacCapabilitiesType> getMacCapabilities() {
@@ -275,6 +289,34 @@ public class NodeDescriptor {
         extendedSimpleDescriptorListAvailable = (descriptorCapabilities & 0x02) != 0;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(apsFlags, bufferSize, complexDescriptorAvailable, manufacturerCode, logicalType,
+                serverCapabilities, incomingTransferSize, outgoingTransferSize, userDescriptorAvailable,
+                frequencyBands, macCapabilities, extendedEndpointListAvailable, extendedSimpleDescriptorListAvailable);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (!NodeDescriptor.class.isAssignableFrom(obj.getClass())) {
+            return false;
+        }
+        final NodeDescriptor other = (NodeDescriptor) obj;
+        return apsFlags == other.apsFlags && bufferSize == other.bufferSize
+                && complexDescriptorAvailable == other.complexDescriptorAvailable
+                && manufacturerCode == other.manufacturerCode && logicalType == other.logicalType
+                && serverCapabilities.equals(other.serverCapabilities)
+                && incomingTransferSize == other.incomingTransferSize
+                && outgoingTransferSize == other.outgoingTransferSize
+                && userDescriptorAvailable == other.userDescriptorAvailable
+                && frequencyBands.equals(other.frequencyBands) && macCapabilities.equals(other.macCapabilities)
+                && extendedEndpointListAvailable == other.extendedEndpointListAvailable
+                && extendedSimpleDescriptorListAvailable == other.extendedSimpleDescriptorListAvailable;
+    }
+
     @Override
     public String toString() {
         return "NodeDescriptor [apsFlags=" + apsFlags + ", bufferSize=" + bufferSize + ", complexDescriptorAvailable="
@@ -14,8 +14,11 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -26,11 +29,14 @@ import com.zsmartsystems.zigbee.serialization.DefaultDeserializer;
 import com.zsmartsystems.zigbee.serialization.DefaultSerializer;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportState;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportTransmit;
+import com.zsmartsystems.zigbee.zcl.ZclCustomResponseMatcher;
 import com.zsmartsystems.zigbee.zcl.ZclFieldSerializer;
 import com.zsmartsystems.zigbee.zcl.ZclFrameType;
 import com.zsmartsystems.zigbee.zcl.ZclHeader;
 import com.zsmartsystems.zigbee.zcl.clusters.general.ReadAttributesCommand;
 import com.zsmartsystems.zigbee.zcl.clusters.onoff.OnCommand;
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
 
 public class ZigBeeNetworkManagerTest
         implements ZigBeeNetworkNodeListener, ZigBeeNetworkStateListener, ZigBeeNetworkDeviceListener, CommandListener {
@@ -227,6 +233,31 @@ public class ZigBeeNetworkManagerTest
         assertEquals(56, apsFrame.getDestinationEndpoint());
     }
 
+    @Test
+    public void testSendCommandZclGroup() {
+        ZigBeeNetworkManager networkManager = mockZigBeeNetworkManager();
+        networkManager.setSerializer(DefaultSerializer.class, DefaultDeserializer.class);
+
+        OnCommand cmd = new OnCommand();
+        cmd.setClusterId(6);
+        cmd.setDestinationAddress(new ZigBeeGroupAddress(1234));
+
+        boolean error = false;
+        try {
+            networkManager.sendCommand(cmd);
+        } catch (ZigBeeException e) {
+            error = true;
+        }
+
+        assertFalse(error);
+        assertEquals(1, mockedApsFrameListener.getAllValues().size());
+
+        ZigBeeApsFrame apsFrame = mockedApsFrameListener.getValue();
+        assertEquals(ZigBeeNwkAddressMode.GROUP, apsFrame.getAddressMode());
+        assertEquals(1234, apsFrame.getGroupAddress());
+        assertEquals(6, apsFrame.getCluster());
+    }
+
     @Test
     public void testReceiveZclCommand() {
         ZigBeeNetworkManager networkManager = mockZigBeeNetworkManager();
@@ -304,6 +335,86 @@ public class ZigBeeNetworkManagerTest
         assertEquals(new ExtendedPanId("1"), networkManager.getZigBeeExtendedPanId());
     }
 
+    @Test
+    public void testPermitJoinFailure() throws Exception {
+        ZigBeeNetworkManager networkManager = mockZigBeeNetworkManager();
+        networkManager.setSerializer(DefaultSerializer.class, DefaultDeserializer.class);
+        assertTrue(networkManager.permitJoin(60));
+
+        Mockito.doThrow(new ZigBeeException("Failed")).when(mockedTransport)
+                .sendCommand(Mockito.any(ZigBeeApsFrame.class));
+        assertFalse(networkManager.permitJoin(60));
+    }
+
+    @Test
+    public void testLocalTablesUpdated() {
+        ZigBeeNetworkManager networkManager = mockZigBeeNetworkManager();
+        assertNull(networkManager.getLocalNeighbors());
+        assertNull(networkManager.getLocalRoutes());
+
+        ZigBeeNode node = new ZigBeeNode(null);
+        node.setNetworkAddress(0);
+        networkManager.addNode(node);
+
+        NeighborTable neighbor1 = new NeighborTable();
+        neighbor1.setNetworkAddress(1234);
+        neighbor1.setExtendedAddress(new IeeeAddress("1234567890ABCDEF"));
+        NeighborTable neighbor2 = new NeighborTable();
+        neighbor2.setNetworkAddress(5678);
+        neighbor2.setExtendedAddress(new IeeeAddress("1234567890ABCDEE"));
+        List<NeighborTable> empty = Collections.emptyList();
+
+        networkManager.localNeighborsUpdated(Arrays.asList(neighbor1, neighbor2), empty, empty);
+        assertEquals(2, networkManager.getLocalNeighbors().size());
+        assertNull(networkManager.getLocalRoutes());
+
+        // The ZDO neighbors of the local node are not replaced by the transport table
+        assertEquals(0, networkManager.getNode(0).getNeighbors().size());
+
+        NeighborTable updated = new NeighborTable();
+        updated.setNetworkAddress(1234);
+        updated.setExtendedAddress(new IeeeAddress("1234567890ABCDEF"));
+        updated.setLqi(100);
+        networkManager.localNeighborsUpdated(empty, Collections.singletonList(updated),
+                Collections.singletonList(neighbor2));
+        assertEquals(1, networkManager.getLocalNeighbors().size());
+        assertEquals(Integer.valueOf(100), networkManager.getLocalNeighbors().get(0).getLqi());
+
+        RoutingTable route = new RoutingTable();
+        route.setDestinationAddress(1234);
+        route.setNextHopAddress(5678);
+        List<RoutingTable> noRoutes = Collections.emptyList();
+
+        networkManager.localRoutesUpdated(Collections.singletonList(route), noRoutes, noRoutes);
+        assertEquals(1, networkManager.getLocalNeighbors().size());
+        assertEquals(1, networkManager.getLocalRoutes().size());
+        assertEquals(0, networkManager.getNode(0).getRoutes().size());
+
+        networkManager.localRoutesUpdated(noRoutes, noRoutes, Collections.singletonList(route));
+        assertEquals(0, networkManager.getLocalRoutes().size());
+    }
+
+    @Test
+    public void testCommandDeliveryStatus() throws Exception {
+        ZigBeeNetworkManager networkManager = mockZigBeeNetworkManager();
+        networkManager.setSerializer(DefaultSerializer.class, DefaultDeserializer.class);
+
+        OnCommand command = new OnCommand();
+        command.setDestinationAddress(new ZigBeeDeviceAddress(1234, 5));
+        Future<CommandResult> future = networkManager.unicast(command, new ZclCustomResponseMatcher());
+        int transactionId = mockedApsFrameListener.getValue().getSequence();
+
+        networkManager.commandDeliveryStatus(transactionId, true);
+        assertFalse(future.isDone());
+
+        networkManager.commandDeliveryStatus(transactionId + 1, false);
+        assertFalse(future.isDone());
+
+        networkManager.commandDeliveryStatus(transactionId, false);
+        assertTrue(future.isDone());
+        assertTrue(future.get().isError());
+    }
+
     @Test
     public void testPermitJoin() {
         ZigBeeNetworkManager networkManager = mockZigBeeNetworkManager();
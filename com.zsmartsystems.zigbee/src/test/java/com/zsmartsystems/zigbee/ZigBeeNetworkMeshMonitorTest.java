@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.zsmartsystems.zigbee.zdo.ZdoStatus;
+import com.zsmartsystems.zigbee.zdo.command.ManagementLqiRequest;
+import com.zsmartsystems.zigbee.zdo.command.ManagementLqiResponse;
+import com.zsmartsystems.zigbee.zdo.command.ManagementRoutingRequest;
+import com.zsmartsystems.zigbee.zdo.command.ManagementRoutingResponse;
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable.NeighborTableJoining;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.RoutingTable.DiscoveryState;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZigBeeNetworkMeshMonitorTest {
+    private Command getLastSentCommand(ZigBeeNetworkManager networkManager, int count) throws Exception {
+        ArgumentCaptor<Command> commandCapture = ArgumentCaptor.forClass(Command.class);
+        Mockito.verify(networkManager, Mockito.timeout(5000).atLeast(count)).sendCommand(commandCapture.capture());
+        List<Command> commands = commandCapture.getAllValues();
+        return commands.get(count - 1);
+    }
+
+    private NeighborTable getNeighbor(String ieeeAddress, int networkAddress, int lqi) {
+        NeighborTable neighbor = new NeighborTable();
+        neighbor.setExtendedAddress(new IeeeAddress(ieeeAddress));
+        neighbor.setNetworkAddress(networkAddress);
+        neighbor.setLqi(lqi);
+        return neighbor;
+    }
+
+    private RoutingTable getRoute(int destination, int nextHop) {
+        RoutingTable route = new RoutingTable();
+        route.setDestinationAddress(destination);
+        route.setNextHopAddress(nextHop);
+        route.setStatus(DiscoveryState.ACTIVE);
+        return route;
+    }
+
+    private ManagementLqiResponse getLqiResponse(int total, int startIndex, NeighborTable... neighbors) {
+        ManagementLqiResponse response = new ManagementLqiResponse();
+        response.setSourceAddress(new ZigBeeDeviceAddress(0));
+        response.setStatus(ZdoStatus.SUCCESS);
+        response.setNeighborTableEntries(total);
+        response.setStartIndex(startIndex);
+        response.setNeighborTableListCount(neighbors.length);
+        response.setNeighborTableList(Arrays.asList(neighbors));
+        return response;
+    }
+
+    private ManagementRoutingResponse getRoutingResponse(RoutingTable... routes) {
+        ManagementRoutingResponse response = new ManagementRoutingResponse();
+        response.setSourceAddress(new ZigBeeDeviceAddress(0));
+        response.setStatus(ZdoStatus.SUCCESS);
+        response.setRoutingTableEntries(routes.length);
+        response.setStartIndex(0);
+        response.setRoutingTableListCount(routes.length);
+        response.setRoutingTableList(Arrays.asList(routes));
+        return response;
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        ZigBeeNode node = new ZigBeeNode(networkManager);
+        node.setNetworkAddress(0);
+        Mockito.when(networkManager.getNode(0)).thenReturn(node);
+        Mockito.when(networkManager.getNodes()).thenReturn(new HashSet<ZigBeeNode>());
+        ZigBeeNode neighborNode = new ZigBeeNode(networkManager);
+        Mockito.when(networkManager.getNode(new IeeeAddress("1111111111111111"))).thenReturn(neighborNode);
+
+        ZigBeeNetworkMeshListener listener = Mockito.mock(ZigBeeNetworkMeshListener.class);
+        ZigBeeNetworkMeshMonitor monitor = new ZigBeeNetworkMeshMonitor(networkManager);
+        monitor.addMeshListener(listener);
+        monitor.startupIncremental(1, 60);
+
+        // The neighbor table is requested a page at a time
+        Command command = getLastSentCommand(networkManager, 1);
+        assertTrue(command instanceof ManagementLqiRequest);
+        assertEquals(Integer.valueOf(0), ((ManagementLqiRequest) command).getStartIndex());
+        NeighborTable joiningNeighbor = Mockito.spy(getNeighbor("1111111111111111", 0x1111, 200));
+        Mockito.when(joiningNeighbor.getPermitJoining()).thenReturn(NeighborTableJoining.ENABLED);
+        monitor.commandReceived(getLqiResponse(2, 0, joiningNeighbor));
+
+        command = getLastSentCommand(networkManager, 2);
+        assertTrue(command instanceof ManagementLqiRequest);
+        assertEquals(Integer.valueOf(1), ((ManagementLqiRequest) command).getStartIndex());
+        monitor.commandReceived(getLqiResponse(2, 1, getNeighbor("2222222222222222", 0x2222, 100)));
+
+        // The coordinator is a router, so the routing table follows
+        command = getLastSentCommand(networkManager, 3);
+        assertTrue(command instanceof ManagementRoutingRequest);
+        monitor.commandReceived(getRoutingResponse(getRoute(0x2222, 0x1111)));
+
+        Mockito.verify(listener, Mockito.timeout(1000).times(2)).neighborAdded(Mockito.eq(node),
+                Mockito.any(NeighborTable.class));
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).routeAdded(Mockito.eq(node),
+                Mockito.any(RoutingTable.class));
+        assertEquals(2, node.getNeighbors().size());
+        assertEquals(1, node.getRoutes().size());
+
+        // The tables changed, so the node is refreshed again at the minimum period
+        command = getLastSentCommand(networkManager, 4);
+        assertTrue(command instanceof ManagementLqiRequest);
+        assertTrue(neighborNode.isJoiningEnabled());
+
+        // A small change in link quality is not notified, but a lost neighbor and changed route are
+        monitor.commandReceived(getLqiResponse(1, 0, getNeighbor("1111111111111111", 0x1111, 190)));
+        command = getLastSentCommand(networkManager, 5);
+        assertTrue(command instanceof ManagementRoutingRequest);
+        monitor.commandReceived(getRoutingResponse(getRoute(0x2222, 0x3333)));
+
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).neighborRemoved(Mockito.eq(node),
+                Mockito.any(NeighborTable.class));
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).routeUpdated(Mockito.eq(node),
+                Mockito.any(RoutingTable.class));
+        Mockito.verify(listener, Mockito.never()).neighborUpdated(Mockito.any(ZigBeeNode.class),
+                Mockito.any(NeighborTable.class));
+        assertEquals(Collections.singletonList(getNeighbor("1111111111111111", 0x1111, 190)), node.getNeighbors());
+
+        monitor.shutdown();
+    }
+}
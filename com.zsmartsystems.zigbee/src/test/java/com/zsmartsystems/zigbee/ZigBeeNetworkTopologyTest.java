@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.zsmartsystems.zigbee.zdo.descriptors.NeighborTable;
+import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZigBeeNetworkTopologyTest {
+    private NeighborTable getNeighbor(int networkAddress, int lqi) {
+        NeighborTable neighbor = new NeighborTable();
+        neighbor.setExtendedAddress(new IeeeAddress(String.format("%016X", networkAddress)));
+        neighbor.setNetworkAddress(networkAddress);
+        neighbor.setLqi(lqi);
+        return neighbor;
+    }
+
+    private ZigBeeNode getNode(int networkAddress, int logicalType, NeighborTable... neighbors) {
+        ZigBeeNode node = new ZigBeeNode(Mockito.mock(ZigBeeNetworkManager.class));
+        node.setNetworkAddress(networkAddress);
+        node.setNodeDescriptor(new NodeDescriptor(0, 80, 0, false, 0, logicalType, 0, 80, false, 8));
+        node.setNeighbors(new ArrayList<NeighborTable>(Arrays.asList(neighbors)));
+        return node;
+    }
+
+    /**
+     * Creates the network
+     *
+     * <pre>
+     * 0 --- 1 --- 2 --- 3
+     *  \         / \
+     *   \--- 4 -/   \
+     *         \      \
+     *          --- 5 -
+     * </pre>
+     *
+     * where 0 is the coordinator, 1, 2 and 4 are routers, and 3 and 5 are end devices.
+     */
+    private ZigBeeNetworkTopology getTopology() {
+        ZigBeeNetworkTopology topology = new ZigBeeNetworkTopology();
+        topology.nodeAdded(getNode(0, 0, getNeighbor(1, 200), getNeighbor(4, 180)));
+        topology.nodeAdded(getNode(1, 1, getNeighbor(0, 200), getNeighbor(2, 150)));
+        topology.nodeAdded(getNode(2, 1, getNeighbor(1, 150), getNeighbor(3, 220), getNeighbor(4, 100)));
+        topology.nodeAdded(getNode(3, 2, getNeighbor(2, 220)));
+        topology.nodeAdded(getNode(4, 1, getNeighbor(0, 180), getNeighbor(2, 100), getNeighbor(5, 120)));
+        topology.nodeAdded(getNode(5, 2, getNeighbor(4, 120), getNeighbor(2, 120)));
+        return topology;
+    }
+
+    @Test
+    public void testHopCount() {
+        ZigBeeNetworkTopology topology = getTopology();
+
+        assertEquals(new HashSet<Integer>(Arrays.asList(0, 1, 2, 3, 4, 5)), topology.getNodes());
+        assertEquals(0, topology.getHopCount(0));
+        assertEquals(1, topology.getHopCount(1));
+        assertEquals(1, topology.getHopCount(4));
+        assertEquals(2, topology.getHopCount(2));
+        assertEquals(3, topology.getHopCount(3));
+        assertEquals(2, topology.getHopCount(5));
+        assertEquals(-1, topology.getHopCount(6));
+    }
+
+    @Test
+    public void testLinks() {
+        ZigBeeNetworkTopology topology = getTopology();
+
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 3, 4, 5)), topology.getNeighbors(2));
+        assertEquals(220, topology.getLink(3, 2).getLqi());
+        assertNull(topology.getLink(2, 5));
+        assertEquals(120, topology.getLinkQuality(2, 5));
+        assertEquals(0, topology.getLinkQuality(0, 3));
+    }
+
+    @Test
+    public void testParentCandidates() {
+        ZigBeeNetworkTopology topology = getTopology();
+
+        // Both candidates have the same link quality, so the router closer to the coordinator is best
+        List<Integer> candidates = topology.getParentCandidates(5);
+        assertEquals(Arrays.asList(4, 2), candidates);
+
+        // End devices are never candidates
+        assertEquals(Arrays.asList(1, 4), topology.getParentCandidates(2).subList(0, 2));
+        assertEquals(2, topology.getParentCandidates(2).size());
+    }
+
+    @Test
+    public void testArticulationPoints() {
+        ZigBeeNetworkTopology topology = getTopology();
+
+        assertEquals(Collections.singleton(2), topology.getArticulationPoints());
+        assertEquals(Collections.singleton(3), topology.getNodesAffectedByOutage(2));
+        assertTrue(topology.getNodesAffectedByOutage(1).isEmpty());
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5)), topology.getNodesAffectedByOutage(0));
+
+        // Losing the link between 2 and 4 from both sides, and the link from 5 to 2, leaves a tree
+        ZigBeeNode node2 = getNode(2, 1);
+        ZigBeeNode node4 = getNode(4, 1);
+        ZigBeeNode node5 = getNode(5, 2);
+        topology.neighborRemoved(node2, getNeighbor(4, 100));
+        assertEquals(Collections.singleton(2), topology.getArticulationPoints());
+        topology.neighborRemoved(node4, getNeighbor(2, 100));
+        topology.neighborRemoved(node5, getNeighbor(2, 120));
+        assertEquals(new HashSet<Integer>(Arrays.asList(0, 1, 2, 4)), topology.getArticulationPoints());
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 3)), topology.getNodesAffectedByOutage(1));
+        assertEquals(3, topology.getHopCount(3));
+
+        topology.neighborAdded(node4, getNeighbor(2, 100));
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 4)), topology.getArticulationPoints());
+
+        topology.nodeRemoved(node4);
+        assertEquals(-1, topology.getHopCount(5));
+        assertEquals(-1, topology.getHopCount(4));
+    }
+
+    @Test
+    public void testOutageCached() {
+        ZigBeeNetworkTopology topology = getTopology();
+
+        Set<Integer> affected = topology.getNodesAffectedByOutage(2);
+        assertEquals(Collections.singleton(3), affected);
+
+        // The result can't be changed by the caller, and is recalculated once the graph changes
+        affected.add(5);
+        assertEquals(Collections.singleton(3), topology.getNodesAffectedByOutage(2));
+        topology.neighborRemoved(getNode(4, 1), getNeighbor(5, 120));
+        topology.nodeUpdated(getNode(5, 2, getNeighbor(2, 120)));
+        assertEquals(new HashSet<Integer>(Arrays.asList(3, 5)), topology.getNodesAffectedByOutage(2));
+    }
+
+    @Test
+    public void testNeighborAddressChanged() {
+        ZigBeeNetworkTopology topology = getTopology();
+
+        // Node 3 rejoins with network address 6 - the update for the same IEEE address replaces the old link
+        NeighborTable rejoined = getNeighbor(3, 220);
+        rejoined.setNetworkAddress(6);
+        topology.neighborUpdated(getNode(2, 1), rejoined);
+        assertNull(topology.getLink(2, 3));
+        assertEquals(220, topology.getLink(2, 6).getLqi());
+
+        // Node 3 still reports its link to 2 until it is removed
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 3, 4, 5, 6)), topology.getNeighbors(2));
+        topology.nodeRemoved(getNode(3, 2));
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 4, 5, 6)), topology.getNeighbors(2));
+        assertEquals(3, topology.getHopCount(6));
+    }
+
+    @Test
+    public void testStartup() {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        ZigBeeNetworkMeshMonitor meshMonitor = Mockito.mock(ZigBeeNetworkMeshMonitor.class);
+        Mockito.when(networkManager.getNodes()).thenReturn(new HashSet<ZigBeeNode>(
+                Arrays.asList(getNode(0, 0, getNeighbor(1, 200)), getNode(1, 1, getNeighbor(0, 200)))));
+
+        ZigBeeNetworkTopology topology = new ZigBeeNetworkTopology();
+        topology.startup(networkManager, meshMonitor);
+        Mockito.verify(networkManager).addNetworkNodeListener(topology);
+        Mockito.verify(meshMonitor).addMeshListener(topology);
+        assertEquals(1, topology.getHopCount(1));
+
+        topology.shutdown();
+        Mockito.verify(networkManager).removeNetworkNodeListener(topology);
+        Mockito.verify(meshMonitor).removeMeshListener(topology);
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.zsmartsystems.zigbee.zcl.ZclCluster;
+import com.zsmartsystems.zigbee.zcl.ZclCommand;
+import com.zsmartsystems.zigbee.zcl.ZclReportingConfig;
+import com.zsmartsystems.zigbee.zcl.ZclReportingProfile;
+import com.zsmartsystems.zigbee.zcl.clusters.ZclLevelControlCluster;
+import com.zsmartsystems.zigbee.zcl.clusters.ZclOnOffCluster;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingResponse;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationResponse;
+import com.zsmartsystems.zigbee.zcl.field.AttributeRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeReportingConfigurationRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeReportingStatusRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeStatusRecord;
+import com.zsmartsystems.zigbee.zdo.command.DeviceAnnounce;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZigBeeReportingManagerTest {
+    private final List<Command> commands = new ArrayList<Command>();
+    private ZigBeeDevice device;
+    private ZigBeeReportingManager manager;
+    private int failedAttribute = -1;
+    private Command announceDuringConfiguration;
+
+    /**
+     * Creates a network manager that accepts the configuration of all attributes other than attribute 1, and
+     * reports the configured intervals when the configuration is read back. Responses are also passed to the device,
+     * as the network manager does for received commands.
+     * <p>
+     * The first configuration of {@link #failedAttribute} fails as if the frame was lost, and
+     * {@link #announceDuringConfiguration} is passed to the manager while the first configuration is being sent.
+     */
+    private ZigBeeNetworkManager getNetworkManager() {
+        final ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        Mockito.when(networkManager.unicast(Mockito.any(Command.class), Mockito.any(CommandResponseMatcher.class)))
+                .thenAnswer(new Answer<Future<CommandResult>>() {
+                    @Override
+                    public Future<CommandResult> answer(InvocationOnMock invocation) {
+                        Command command = (Command) invocation.getArguments()[0];
+                        synchronized (commands) {
+                            command.setTransactionId(commands.size());
+                            commands.add(command);
+                        }
+                        CommandResultFuture future = new CommandResultFuture(networkManager);
+                        ZclCommand response = null;
+                        if (command instanceof ConfigureReportingCommand) {
+                            if (announceDuringConfiguration != null) {
+                                manager.commandReceived(announceDuringConfiguration);
+                                announceDuringConfiguration = null;
+                            }
+                            List<AttributeStatusRecord> records = new ArrayList<AttributeStatusRecord>();
+                            for (AttributeReportingConfigurationRecord configRecord : ((ConfigureReportingCommand) command)
+                                    .getRecords()) {
+                                if (configRecord.getAttributeIdentifier() == 0x0001) {
+                                    AttributeStatusRecord record = new AttributeStatusRecord();
+                                    record.setAttributeIdentifier(0x0001);
+                                    record.setStatus(0x86);
+                                    records.add(record);
+                                }
+                                if (configRecord.getAttributeIdentifier() == failedAttribute) {
+                                    AttributeStatusRecord record = new AttributeStatusRecord();
+                                    record.setAttributeIdentifier(failedAttribute);
+                                    record.setStatus(0x01);
+                                    records.add(record);
+                                    failedAttribute = -1;
+                                }
+                            }
+                            if (records.isEmpty()) {
+                                records.add(new AttributeStatusRecord());
+                            }
+                            ConfigureReportingResponse configureResponse = new ConfigureReportingResponse();
+                            configureResponse.setRecords(records);
+                            response = configureResponse;
+                        } else if (command instanceof ReadReportingConfigurationCommand) {
+                            List<AttributeReportingStatusRecord> records = new ArrayList<AttributeReportingStatusRecord>();
+                            for (AttributeRecord attributeRecord : ((ReadReportingConfigurationCommand) command)
+                                    .getRecords()) {
+                                AttributeReportingStatusRecord record = new AttributeReportingStatusRecord();
+                                record.setAttributeIdentifier(attributeRecord.getAttributeIdentifier());
+                                record.setMinimumReportingInterval(1);
+                                record.setMaximumReportingInterval(300);
+                                records.add(record);
+                            }
+                            ReadReportingConfigurationResponse readResponse = new ReadReportingConfigurationResponse();
+                            readResponse.setRecords(records);
+                            response = readResponse;
+                        }
+                        if (response != null) {
+                            response.setSourceAddress(command.getDestinationAddress());
+                            response.setClusterId(command.getClusterId());
+                            response.setTransactionId(command.getTransactionId());
+                            if (device != null) {
+                                device.commandReceived(response);
+                            }
+                            future.set(new CommandResult(response));
+                        }
+                        return future;
+                    }
+                });
+        return networkManager;
+    }
+
+    private int getCommandCount(Class<?> commandClass) {
+        int count = 0;
+        synchronized (commands) {
+            for (Command command : commands) {
+                if (commandClass.isInstance(command)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void waitForConfiguration(ZigBeeReportingManager manager, ZigBeeDevice device) throws Exception {
+        for (int cnt = 0; cnt < 100; cnt++) {
+            if (manager.isDeviceConfigured(device.getDeviceAddress())) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void testProfile() {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        ZclCluster cluster = new ZclLevelControlCluster(networkManager, new ZigBeeDeviceAddress(1, 1));
+
+        ZclReportingProfile profile = new ZclReportingProfile();
+        profile.setReporting(8, 0, 1, 300, 5);
+        profile.setReporting(0x0101, 8, 0, 1, 60, 1);
+        profile.setReporting(6, 0, 1, 300, null);
+
+        List<ZclReportingConfig> configs = profile.getReportingConfigs(0x0100, cluster);
+        assertEquals(1, configs.size());
+        assertEquals(300, configs.get(0).getMaxInterval());
+        assertEquals(5, configs.get(0).getReportableChange());
+
+        // The device specific entry overrides the default
+        configs = profile.getReportingConfigs(0x0101, cluster);
+        assertEquals(1, configs.size());
+        assertEquals(60, configs.get(0).getMaxInterval());
+
+        assertEquals(1, profile
+                .getReportingConfigs(0x0100, new ZclOnOffCluster(networkManager, new ZigBeeDeviceAddress(1, 1)))
+                .size());
+    }
+
+    @Test
+    public void testConfigureDevice() throws Exception {
+        ZigBeeNetworkManager networkManager = getNetworkManager();
+        Mockito.when(networkManager.getDevices()).thenReturn(new ArrayList<ZigBeeDevice>());
+
+        device = new ZigBeeDevice(networkManager);
+        device.setIeeeAddress(new IeeeAddress("1234567890ABCDEF"));
+        device.setDeviceAddress(new ZigBeeDeviceAddress(1234, 1));
+        device.setInputClusterIds(Collections.singletonList(8));
+
+        // Attribute 1 is rejected by the device, so isn't retried
+        ZclReportingProfile profile = new ZclReportingProfile();
+        profile.setReporting(8, 0, 1, 300, 1);
+        profile.setReporting(8, 0x0001, 1, 300, 1);
+
+        manager = new ZigBeeReportingManager(networkManager, profile);
+        manager.startup();
+        manager.deviceAdded(device);
+        waitForConfiguration(manager, device);
+        assertTrue(manager.isDeviceConfigured(device.getDeviceAddress()));
+        assertEquals(1, getCommandCount(ConfigureReportingCommand.class));
+        assertEquals(1, getCommandCount(ReadReportingConfigurationCommand.class));
+        assertEquals(2, ((ConfigureReportingCommand) commands.get(0)).getRecords().size());
+        assertEquals(300, device.getCluster(8).getAttribute(0).getMaximumReportingPeriod());
+
+        // An update doesn't configure the device again, unless the node has been announced
+        manager.deviceUpdated(device);
+        Thread.sleep(100);
+        assertEquals(1, getCommandCount(ConfigureReportingCommand.class));
+
+        DeviceAnnounce announce = new DeviceAnnounce();
+        announce.setIeeeAddr(new IeeeAddress("1234567890ABCDEF"));
+        announce.setNwkAddrOfInterest(1234);
+        // The device is configured again without waiting for the discoverer to update it
+        manager.commandReceived(announce);
+        waitForConfiguration(manager, device);
+        assertTrue(manager.isDeviceConfigured(device.getDeviceAddress()));
+        assertEquals(2, getCommandCount(ConfigureReportingCommand.class));
+
+        manager.shutdown();
+    }
+
+    @Test
+    public void testConfigureRetry() throws Exception {
+        ZigBeeNetworkManager networkManager = getNetworkManager();
+        Mockito.when(networkManager.getDevices()).thenReturn(new ArrayList<ZigBeeDevice>());
+
+        device = new ZigBeeDevice(networkManager);
+        device.setIeeeAddress(new IeeeAddress("1234567890ABCDEF"));
+        device.setDeviceAddress(new ZigBeeDeviceAddress(1234, 1));
+        device.setInputClusterIds(Collections.singletonList(8));
+
+        // Attribute 0x10 fails as the frame was lost, so is sent again. Attribute 1 is rejected so isn't retried.
+        failedAttribute = 0x0010;
+        ZclReportingProfile profile = new ZclReportingProfile();
+        profile.setReporting(8, 0, 1, 300, 1);
+        profile.setReporting(8, 0x0001, 1, 300, 1);
+        profile.setReporting(8, 0x0010, 1, 300, 1);
+
+        manager = new ZigBeeReportingManager(networkManager, profile);
+        manager.startup();
+        manager.deviceAdded(device);
+        waitForConfiguration(manager, device);
+        assertTrue(manager.isDeviceConfigured(device.getDeviceAddress()));
+        assertEquals(2, getCommandCount(ConfigureReportingCommand.class));
+        assertEquals(3, ((ConfigureReportingCommand) commands.get(0)).getRecords().size());
+        ConfigureReportingCommand retry = null;
+        for (Command command : commands) {
+            if (command instanceof ConfigureReportingCommand) {
+                retry = (ConfigureReportingCommand) command;
+            }
+        }
+        assertEquals(1, retry.getRecords().size());
+        assertEquals(0x0010, retry.getRecords().get(0).getAttributeIdentifier());
+
+        manager.shutdown();
+    }
+
+    @Test
+    public void testAnnounceWhileConfiguring() throws Exception {
+        ZigBeeNetworkManager networkManager = getNetworkManager();
+        Mockito.when(networkManager.getDevices()).thenReturn(new ArrayList<ZigBeeDevice>());
+
+        device = new ZigBeeDevice(networkManager);
+        device.setIeeeAddress(new IeeeAddress("1234567890ABCDEF"));
+        device.setDeviceAddress(new ZigBeeDeviceAddress(1234, 1));
+        device.setInputClusterIds(Collections.singletonList(8));
+
+        ZclReportingProfile profile = new ZclReportingProfile();
+        profile.setReporting(8, 0, 1, 300, 1);
+
+        // The node rejoins while the first configuration is in progress, so the device is configured again
+        DeviceAnnounce announce = new DeviceAnnounce();
+        announce.setIeeeAddr(new IeeeAddress("1234567890ABCDEF"));
+        announce.setNwkAddrOfInterest(1234);
+        announceDuringConfiguration = announce;
+
+        manager = new ZigBeeReportingManager(networkManager, profile);
+        manager.startup();
+        manager.deviceAdded(device);
+        waitForConfiguration(manager, device);
+        assertTrue(manager.isDeviceConfigured(device.getDeviceAddress()));
+        assertEquals(2, getCommandCount(ConfigureReportingCommand.class));
+
+        manager.shutdown();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.zsmartsystems.zigbee.zcl.ZclAttribute;
+import com.zsmartsystems.zigbee.zcl.ZclAttributeListener;
+import com.zsmartsystems.zigbee.zcl.ZclCluster;
+import com.zsmartsystems.zigbee.zcl.clusters.ZclLevelControlCluster;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZigBeeReportingWatchdogTest {
+    /**
+     * Creates a mocked cluster, so that updates can be passed to the watchdog in the test thread
+     */
+    private ZclCluster getCluster() {
+        ZclCluster cluster = Mockito.mock(ZclCluster.class);
+        Mockito.when(cluster.getZigBeeAddress()).thenReturn(new ZigBeeDeviceAddress(1234, 1));
+        return cluster;
+    }
+
+    private ZclAttributeListener getAttributeListener(ZclCluster cluster) {
+        ArgumentCaptor<ZclAttributeListener> captor = ArgumentCaptor.forClass(ZclAttributeListener.class);
+        Mockito.verify(cluster).addAttributeListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private void report(ZclAttributeListener listener, ZclAttribute attribute, Object value) {
+        attribute.updateValue(value);
+        listener.attributeUpdated(attribute);
+    }
+
+    /**
+     * Advances the timer wheel. The watchdog is created with a mocked scheduler, so the wheel only moves when the
+     * test ticks it.
+     */
+    private void tick(ZigBeeReportingWatchdog watchdog, int ticks) {
+        for (int cnt = 0; cnt < ticks; cnt++) {
+            watchdog.tick();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOverdueRead() throws Exception {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        Mockito.when(networkManager.getDevices()).thenReturn(new ArrayList<ZigBeeDevice>());
+        Mockito.when(networkManager.read(Mockito.any(ZclCluster.class), Mockito.anyListOf(ZclAttribute.class)))
+                .thenReturn(new CommandResultFuture(networkManager));
+        ZigBeeReportingWatchdogListener listener = Mockito.mock(ZigBeeReportingWatchdogListener.class);
+
+        ZclCluster cluster = getCluster();
+        ZclAttribute attribute = new ZclLevelControlCluster(networkManager, new ZigBeeDeviceAddress(1234, 1))
+                .getAttribute(0);
+        attribute.setReportingPeriods(1, 1);
+
+        // With a tick of 100ms, the deadline is 13 ticks after the last report and the read times out after 10 ticks
+        ZigBeeReportingWatchdog watchdog = new ZigBeeReportingWatchdog(networkManager, 100,
+                Mockito.mock(ScheduledExecutorService.class));
+        watchdog.addWatchdogListener(listener);
+        watchdog.startup();
+        watchdog.watch(cluster, attribute);
+        ZclAttributeListener attributeListener = getAttributeListener(cluster);
+
+        tick(watchdog, 12);
+        assertFalse(watchdog.isNodeSilent(1234));
+
+        // The attribute isn't reported, so is read from the device once before the node is considered silent. The
+        // read is sent through the network manager so it can't be answered from the cache.
+        tick(watchdog, 1);
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).attributeOverdue(cluster, attribute);
+        Mockito.verify(networkManager, Mockito.timeout(1000).times(1)).read(cluster,
+                Collections.singletonList(attribute));
+        Mockito.verify(cluster, Mockito.never()).read(Mockito.anyCollectionOf(ZclAttribute.class));
+        tick(watchdog, 9);
+        assertFalse(watchdog.isNodeSilent(1234));
+
+        tick(watchdog, 1);
+        assertTrue(watchdog.isNodeSilent(1234));
+        assertTrue(watchdog.getSilentNodes().contains(1234));
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).nodeSilent(1234);
+
+        report(attributeListener, attribute, 10);
+        assertFalse(watchdog.isNodeSilent(1234));
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).nodeAlive(1234);
+        Mockito.verify(networkManager, Mockito.times(1)).read(Mockito.any(ZclCluster.class),
+                Mockito.anyListOf(ZclAttribute.class));
+
+        watchdog.shutdown();
+    }
+
+    @Test
+    public void testOverdueNoRead() throws Exception {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        Mockito.when(networkManager.getDevices()).thenReturn(new ArrayList<ZigBeeDevice>());
+        ZigBeeReportingWatchdogListener listener = Mockito.mock(ZigBeeReportingWatchdogListener.class);
+
+        ZclCluster cluster = getCluster();
+        ZclAttribute attribute = new ZclLevelControlCluster(networkManager, new ZigBeeDeviceAddress(1234, 1))
+                .getAttribute(0);
+        attribute.setReportingPeriods(1, 1);
+
+        ZigBeeReportingWatchdog watchdog = new ZigBeeReportingWatchdog(networkManager, 100,
+                Mockito.mock(ScheduledExecutorService.class));
+        watchdog.addWatchdogListener(listener);
+        watchdog.setReadOnMiss(false);
+        watchdog.startup();
+        watchdog.watch(cluster, attribute);
+        ZclAttributeListener attributeListener = getAttributeListener(cluster);
+
+        // Reports within the interval keep the node alive
+        tick(watchdog, 10);
+        report(attributeListener, attribute, 10);
+        tick(watchdog, 10);
+        report(attributeListener, attribute, 11);
+        tick(watchdog, 12);
+        assertFalse(watchdog.isNodeSilent(1234));
+
+        // Without a read the node is silent as soon as the attribute is overdue
+        tick(watchdog, 1);
+        assertTrue(watchdog.isNodeSilent(1234));
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).nodeSilent(1234);
+        Mockito.verify(listener, Mockito.timeout(1000).times(1)).attributeOverdue(cluster, attribute);
+        Mockito.verify(networkManager, Mockito.never()).read(Mockito.any(ZclCluster.class),
+                Mockito.anyListOf(ZclAttribute.class));
+        Mockito.verify(listener, Mockito.never()).nodeAlive(1234);
+
+        watchdog.shutdown();
+    }
+}
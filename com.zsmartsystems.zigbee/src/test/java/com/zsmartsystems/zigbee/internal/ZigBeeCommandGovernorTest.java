@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.zsmartsystems.zigbee.Command;
+import com.zsmartsystems.zigbee.ZigBeeApsFrame;
+import com.zsmartsystems.zigbee.ZigBeeCommandPriority;
+import com.zsmartsystems.zigbee.ZigBeeDeviceAddress;
+import com.zsmartsystems.zigbee.ZigBeeException;
+import com.zsmartsystems.zigbee.ZigBeeNwkAddressMode;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportDeliveryListener;
+import com.zsmartsystems.zigbee.transport.ZigBeeTransportTransmit;
+import com.zsmartsystems.zigbee.zcl.clusters.general.DefaultResponse;
+import com.zsmartsystems.zigbee.zcl.clusters.onoff.OnCommand;
+import com.zsmartsystems.zigbee.zdo.command.ManagementLqiRequest;
+import com.zsmartsystems.zigbee.zdo.command.ManagementLqiResponse;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZigBeeCommandGovernorTest {
+    private int sequence = 0;
+
+    private void sendCommand(ZigBeeCommandGovernor governor, Command command, int destination)
+            throws ZigBeeException {
+        ZigBeeApsFrame apsFrame = new ZigBeeApsFrame();
+        apsFrame.setAddressMode(ZigBeeNwkAddressMode.DEVICE);
+        apsFrame.setDestinationAddress(destination);
+        apsFrame.setSequence(sequence);
+        command.setTransactionId(sequence);
+        sequence++;
+        governor.sendCommand(command, apsFrame);
+    }
+
+    private List<ZigBeeApsFrame> getSentFrames(ZigBeeTransportTransmit transport, int count) throws Exception {
+        ArgumentCaptor<ZigBeeApsFrame> frameCapture = ArgumentCaptor.forClass(ZigBeeApsFrame.class);
+        Mockito.verify(transport, Mockito.timeout(1000).times(count)).sendCommand(frameCapture.capture());
+        return frameCapture.getAllValues();
+    }
+
+    @Test
+    public void testDestinationLimit() throws Exception {
+        ZigBeeTransportTransmit transport = Mockito.mock(ZigBeeTransportTransmit.class);
+        ZigBeeTransportDeliveryListener receiver = Mockito.mock(ZigBeeTransportDeliveryListener.class);
+        ZigBeeCommandGovernor governor = new ZigBeeCommandGovernor(transport, receiver);
+        governor.setLimits(8, 2);
+
+        for (int cnt = 0; cnt < 3; cnt++) {
+            sendCommand(governor, new OnCommand(), 1);
+        }
+        sendCommand(governor, new OnCommand(), 2);
+
+        // The third command to node 1 waits, but node 2 isn't held up
+        List<ZigBeeApsFrame> frames = getSentFrames(transport, 3);
+        assertEquals(1, frames.get(0).getDestinationAddress());
+        assertEquals(1, frames.get(1).getDestinationAddress());
+        assertEquals(2, frames.get(2).getDestinationAddress());
+        assertEquals(3, governor.getInFlightCount());
+        assertEquals(1, governor.getQueuedCount());
+
+        // The response from node 1 releases the queued command
+        DefaultResponse response = new DefaultResponse();
+        response.setSourceAddress(new ZigBeeDeviceAddress(1, 1));
+        response.setTransactionId(0);
+        governor.commandReceived(response);
+
+        frames = getSentFrames(transport, 4);
+        assertEquals(1, frames.get(3).getDestinationAddress());
+        assertEquals(2, frames.get(3).getSequence());
+        assertEquals(0, governor.getQueuedCount());
+
+        governor.shutdown();
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        ZigBeeTransportTransmit transport = Mockito.mock(ZigBeeTransportTransmit.class);
+        ZigBeeTransportDeliveryListener receiver = Mockito.mock(ZigBeeTransportDeliveryListener.class);
+        ZigBeeCommandGovernor governor = new ZigBeeCommandGovernor(transport, receiver);
+        governor.setLimits(4, 2);
+
+        // Background commands can't use the slots reserved for interactive commands
+        for (int destination = 1; destination <= 3; destination++) {
+            Command command = new ManagementLqiRequest();
+            command.setPriority(ZigBeeCommandPriority.POLLING);
+            sendCommand(governor, command, destination);
+        }
+        getSentFrames(transport, 2);
+        assertEquals(1, governor.getQueuedCount());
+
+        for (int destination = 4; destination <= 6; destination++) {
+            sendCommand(governor, new OnCommand(), destination);
+        }
+
+        // Interactive commands fill the network
+        List<ZigBeeApsFrame> frames = getSentFrames(transport, 4);
+        assertEquals(4, frames.get(2).getDestinationAddress());
+        assertEquals(5, frames.get(3).getDestinationAddress());
+
+        // The delivery status releases a slot, which goes to the waiting interactive command before the background
+        // command that has been waiting longer
+        governor.commandDeliveryStatus(0);
+        frames = getSentFrames(transport, 5);
+        assertEquals(6, frames.get(4).getDestinationAddress());
+
+        // A ZDO response releases the ZDO request to the node, and the background command can then be sent
+        governor.commandDeliveryStatus(3);
+        governor.commandDeliveryStatus(4);
+        getSentFrames(transport, 5);
+        ManagementLqiResponse response = new ManagementLqiResponse();
+        response.setSourceAddress(new ZigBeeDeviceAddress(2, 0));
+        governor.commandReceived(response);
+        frames = getSentFrames(transport, 6);
+        assertEquals(3, frames.get(5).getDestinationAddress());
+
+        governor.shutdown();
+    }
+
+    @Test
+    public void testSendFailure() throws Exception {
+        ZigBeeTransportTransmit transport = Mockito.mock(ZigBeeTransportTransmit.class);
+        ZigBeeTransportDeliveryListener receiver = Mockito.mock(ZigBeeTransportDeliveryListener.class);
+        ZigBeeCommandGovernor governor = new ZigBeeCommandGovernor(transport, receiver);
+        governor.setLimits(8, 1);
+
+        sendCommand(governor, new OnCommand(), 1);
+        sendCommand(governor, new OnCommand(), 1);
+        assertEquals(1, governor.getQueuedCount());
+
+        // A command sent in the calling thread throws the transport error, and doesn't hold a slot
+        Mockito.doThrow(new ZigBeeException("Failed")).when(transport)
+                .sendCommand(Mockito.any(ZigBeeApsFrame.class));
+        try {
+            sendCommand(governor, new OnCommand(), 2);
+            fail();
+        } catch (ZigBeeException e) {
+        }
+        assertEquals(1, governor.getInFlightCount());
+        Mockito.verifyZeroInteractions(receiver);
+
+        // A queued command that fails is reported through the delivery status
+        governor.commandDeliveryStatus(0);
+        Mockito.verify(receiver, Mockito.timeout(1000).times(1)).commandDeliveryStatus(1, false);
+        assertEquals(0, governor.getInFlightCount());
+
+        governor.shutdown();
+    }
+}
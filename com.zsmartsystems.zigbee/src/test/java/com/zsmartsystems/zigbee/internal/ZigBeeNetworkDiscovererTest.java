@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.zsmartsystems.zigbee.Command;
+import com.zsmartsystems.zigbee.IeeeAddress;
+import com.zsmartsystems.zigbee.ZigBeeDevice;
+import com.zsmartsystems.zigbee.ZigBeeDeviceStatus;
+import com.zsmartsystems.zigbee.ZigBeeNetworkManager;
+import com.zsmartsystems.zigbee.ZigBeeNode;
+import com.zsmartsystems.zigbee.dao.ZigBeeDiscoveryDao;
+import com.zsmartsystems.zigbee.zdo.ZdoStatus;
+import com.zsmartsystems.zigbee.zdo.command.ActiveEndpointsRequest;
+import com.zsmartsystems.zigbee.zdo.command.ActiveEndpointsResponse;
+import com.zsmartsystems.zigbee.zdo.command.DeviceAnnounce;
+import com.zsmartsystems.zigbee.zdo.command.IeeeAddressRequest;
+import com.zsmartsystems.zigbee.zdo.command.IeeeAddressResponse;
+import com.zsmartsystems.zigbee.zdo.command.NodeDescriptorRequest;
+import com.zsmartsystems.zigbee.zdo.command.NodeDescriptorResponse;
+import com.zsmartsystems.zigbee.zdo.command.PowerDescriptorRequest;
+import com.zsmartsystems.zigbee.zdo.command.PowerDescriptorResponse;
+import com.zsmartsystems.zigbee.zdo.command.SimpleDescriptorRequest;
+import com.zsmartsystems.zigbee.zdo.command.SimpleDescriptorResponse;
+import com.zsmartsystems.zigbee.zdo.descriptors.NodeDescriptor;
+import com.zsmartsystems.zigbee.zdo.descriptors.SimpleDescriptor;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ZigBeeNetworkDiscovererTest {
+    private List<Command> getSentCommands(ZigBeeNetworkManager networkManager, int count) throws Exception {
+        ArgumentCaptor<Command> commandCapture = ArgumentCaptor.forClass(Command.class);
+        Mockito.verify(networkManager, Mockito.times(count)).sendCommand(commandCapture.capture());
+        return commandCapture.getAllValues();
+    }
+
+    private IeeeAddressResponse getIeeeAddressResponse(int networkAddress) {
+        IeeeAddressResponse response = new IeeeAddressResponse();
+        response.setStatus(ZdoStatus.SUCCESS);
+        response.setNwkAddrRemoteDev(networkAddress);
+        response.setIeeeAddrRemoteDev(new IeeeAddress("123456789ABCDEF0"));
+        response.setNwkAddrAssocDevList(new ArrayList<Integer>());
+        return response;
+    }
+
+    @Test
+    public void testNodeDiscovery() throws Exception {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        ZigBeeNetworkDiscoverer discoverer = new ZigBeeNetworkDiscoverer(networkManager);
+        discoverer.startup();
+
+        List<Command> commands = getSentCommands(networkManager, 1);
+        assertTrue(commands.get(0) instanceof IeeeAddressRequest);
+        assertEquals(Integer.valueOf(0), ((IeeeAddressRequest) commands.get(0)).getNwkAddrOfInterest());
+
+        discoverer.commandReceived(getIeeeAddressResponse(0));
+        commands = getSentCommands(networkManager, 2);
+        assertTrue(commands.get(1) instanceof NodeDescriptorRequest);
+
+        NodeDescriptorResponse nodeDescriptorResponse = new NodeDescriptorResponse();
+        nodeDescriptorResponse.setStatus(ZdoStatus.SUCCESS);
+        nodeDescriptorResponse.setNwkAddrOfInterest(0);
+        nodeDescriptorResponse.setNodeDescriptor(new NodeDescriptor());
+        discoverer.commandReceived(nodeDescriptorResponse);
+        commands = getSentCommands(networkManager, 3);
+        assertTrue(commands.get(2) instanceof PowerDescriptorRequest);
+
+        // Power descriptor is optional
+        PowerDescriptorResponse powerDescriptorResponse = new PowerDescriptorResponse();
+        powerDescriptorResponse.setStatus(ZdoStatus.NOT_SUPPORTED);
+        powerDescriptorResponse.setNwkAddrOfInterest(0);
+        discoverer.commandReceived(powerDescriptorResponse);
+        commands = getSentCommands(networkManager, 4);
+        assertTrue(commands.get(3) instanceof ActiveEndpointsRequest);
+
+        ActiveEndpointsResponse activeEndpointsResponse = new ActiveEndpointsResponse();
+        activeEndpointsResponse.setStatus(ZdoStatus.SUCCESS);
+        activeEndpointsResponse.setNwkAddrOfInterest(0);
+        activeEndpointsResponse.setActiveEpList(Collections.singletonList(1));
+        discoverer.commandReceived(activeEndpointsResponse);
+        commands = getSentCommands(networkManager, 5);
+        assertTrue(commands.get(4) instanceof SimpleDescriptorRequest);
+        assertEquals(Integer.valueOf(1), ((SimpleDescriptorRequest) commands.get(4)).getEndpoint());
+
+        SimpleDescriptor simpleDescriptor = new SimpleDescriptor();
+        simpleDescriptor.setEndpoint(1);
+        simpleDescriptor.setProfileId(0x104);
+        simpleDescriptor.setInputClusterList(new ArrayList<Integer>());
+        simpleDescriptor.setOutputClusterList(new ArrayList<Integer>());
+        SimpleDescriptorResponse simpleDescriptorResponse = new SimpleDescriptorResponse();
+        simpleDescriptorResponse.setStatus(ZdoStatus.SUCCESS);
+        simpleDescriptorResponse.setNwkAddrOfInterest(0);
+        simpleDescriptorResponse.setSimpleDescriptor(simpleDescriptor);
+        discoverer.commandReceived(simpleDescriptorResponse);
+
+        Mockito.verify(networkManager, Mockito.times(1)).addDevice(Mockito.any(ZigBeeDevice.class));
+        Mockito.verify(networkManager, Mockito.times(1)).addNode(Mockito.any(ZigBeeNode.class));
+
+        // Nothing more to discover, and a repeated response is ignored
+        discoverer.commandReceived(simpleDescriptorResponse);
+        getSentCommands(networkManager, 5);
+        Mockito.verify(networkManager, Mockito.times(1)).addDevice(Mockito.any(ZigBeeDevice.class));
+
+        discoverer.shutdown();
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        ZigBeeNetworkDiscoverer discoverer = new ZigBeeNetworkDiscoverer(networkManager);
+        discoverer.setMaxInFlightRequests(2);
+        discoverer.startup();
+
+        for (int address = 1; address <= 5; address++) {
+            discoverer.deviceStatusUpdate(ZigBeeDeviceStatus.UNSECURED_JOIN, address, null);
+        }
+
+        // Only two requests are outstanding
+        List<Command> commands = getSentCommands(networkManager, 2);
+        assertEquals(Integer.valueOf(0), ((IeeeAddressRequest) commands.get(0)).getNwkAddrOfInterest());
+        assertEquals(Integer.valueOf(1), ((IeeeAddressRequest) commands.get(1)).getNwkAddrOfInterest());
+
+        // The response frees a slot, which is used to continue discovery of the node before starting new nodes
+        discoverer.commandReceived(getIeeeAddressResponse(0));
+        commands = getSentCommands(networkManager, 3);
+        assertTrue(commands.get(2) instanceof NodeDescriptorRequest);
+        assertEquals(Integer.valueOf(0), ((NodeDescriptorRequest) commands.get(2)).getNwkAddrOfInterest());
+
+        // Raising the limit sends the queued requests
+        discoverer.setMaxInFlightRequests(10);
+        commands = getSentCommands(networkManager, 7);
+        for (int cnt = 3; cnt < 7; cnt++) {
+            assertEquals(Integer.valueOf(cnt - 1), ((IeeeAddressRequest) commands.get(cnt)).getNwkAddrOfInterest());
+        }
+
+        discoverer.shutdown();
+    }
+
+    private SimpleDescriptorResponse getSimpleDescriptorResponse(int networkAddress, int endpoint) {
+        SimpleDescriptor simpleDescriptor = new SimpleDescriptor();
+        simpleDescriptor.setEndpoint(endpoint);
+        simpleDescriptor.setProfileId(0x104);
+        simpleDescriptor.setInputClusterList(new ArrayList<Integer>());
+        simpleDescriptor.setOutputClusterList(new ArrayList<Integer>());
+        SimpleDescriptorResponse simpleDescriptorResponse = new SimpleDescriptorResponse();
+        simpleDescriptorResponse.setStatus(ZdoStatus.SUCCESS);
+        simpleDescriptorResponse.setNwkAddrOfInterest(networkAddress);
+        simpleDescriptorResponse.setSimpleDescriptor(simpleDescriptor);
+        return simpleDescriptorResponse;
+    }
+
+    private NodeDescriptorResponse getNodeDescriptorResponse(int networkAddress) {
+        NodeDescriptorResponse nodeDescriptorResponse = new NodeDescriptorResponse();
+        nodeDescriptorResponse.setStatus(ZdoStatus.SUCCESS);
+        nodeDescriptorResponse.setNwkAddrOfInterest(networkAddress);
+        nodeDescriptorResponse.setNodeDescriptor(new NodeDescriptor(0, 80, 0x8E, false, 0x1234, 1, 0, 80, false, 8));
+        return nodeDescriptorResponse;
+    }
+
+    @Test
+    public void testDiscoveryCache() throws Exception {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        ZigBeeNetworkDiscoverer discoverer = new ZigBeeNetworkDiscoverer(networkManager);
+        discoverer.startup();
+
+        discoverer.commandReceived(getIeeeAddressResponse(0));
+        discoverer.commandReceived(getNodeDescriptorResponse(0));
+        PowerDescriptorResponse powerDescriptorResponse = new PowerDescriptorResponse();
+        powerDescriptorResponse.setStatus(ZdoStatus.NOT_SUPPORTED);
+        powerDescriptorResponse.setNwkAddrOfInterest(0);
+        discoverer.commandReceived(powerDescriptorResponse);
+        ActiveEndpointsResponse activeEndpointsResponse = new ActiveEndpointsResponse();
+        activeEndpointsResponse.setStatus(ZdoStatus.SUCCESS);
+        activeEndpointsResponse.setNwkAddrOfInterest(0);
+        activeEndpointsResponse.setActiveEpList(Arrays.asList(new Integer[] { 1, 2 }));
+        discoverer.commandReceived(activeEndpointsResponse);
+        discoverer.commandReceived(getSimpleDescriptorResponse(0, 1));
+        discoverer.commandReceived(getSimpleDescriptorResponse(0, 2));
+        getSentCommands(networkManager, 6);
+        discoverer.shutdown();
+
+        Collection<ZigBeeDiscoveryDao> discoveryCache = discoverer.getDiscoveryCache();
+        assertEquals(1, discoveryCache.size());
+        ZigBeeDiscoveryDao entry = discoveryCache.iterator().next();
+        assertEquals("123456789ABCDEF0", entry.getIeeeAddress());
+        assertEquals(2, entry.getSimpleDescriptors().size());
+
+        // After a restart, an unchanged node descriptor means the endpoints don't need to be queried
+        networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        discoverer = new ZigBeeNetworkDiscoverer(networkManager);
+        discoverer.setDiscoveryCache(discoveryCache);
+        discoverer.startup();
+        discoverer.commandReceived(getIeeeAddressResponse(0));
+        discoverer.commandReceived(getNodeDescriptorResponse(0));
+        getSentCommands(networkManager, 2);
+        Mockito.verify(networkManager, Mockito.times(2)).addDevice(Mockito.any(ZigBeeDevice.class));
+        Mockito.verify(networkManager, Mockito.times(1)).addNode(Mockito.any(ZigBeeNode.class));
+
+        // An announcement with unchanged capabilities restores the node with its new address without any requests
+        DeviceAnnounce announce = new DeviceAnnounce();
+        announce.setNwkAddrOfInterest(0x5678);
+        announce.setIeeeAddr(new IeeeAddress("123456789ABCDEF0"));
+        announce.setCapability(0x8E);
+        discoverer.commandReceived(announce);
+        getSentCommands(networkManager, 2);
+        Mockito.verify(networkManager, Mockito.times(4)).addDevice(Mockito.any(ZigBeeDevice.class));
+        Mockito.verify(networkManager, Mockito.times(2)).addNode(Mockito.any(ZigBeeNode.class));
+
+        // Changed capabilities mean the node is discovered again
+        announce = new DeviceAnnounce();
+        announce.setNwkAddrOfInterest(0x9ABC);
+        announce.setIeeeAddr(new IeeeAddress("123456789ABCDEF0"));
+        announce.setCapability(0x80);
+        discoverer.commandReceived(announce);
+        List<Command> commands = getSentCommands(networkManager, 3);
+        assertEquals(Integer.valueOf(0x9ABC), ((IeeeAddressRequest) commands.get(2)).getNwkAddrOfInterest());
+        assertTrue(discoverer.getDiscoveryCache().isEmpty());
+
+        discoverer.shutdown();
+    }
+
+    @Test
+    public void testDiscoveryCacheVersion() {
+        ZigBeeNetworkManager networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        ZigBeeNetworkDiscoverer discoverer = new ZigBeeNetworkDiscoverer(networkManager);
+
+        ZigBeeDiscoveryDao entry = new ZigBeeDiscoveryDao();
+        entry.setIeeeAddress("123456789ABCDEF0");
+        entry.setNodeDescriptor(new NodeDescriptor());
+        entry.setVersion(ZigBeeDiscoveryDao.CURRENT_VERSION + 1);
+        discoverer.setDiscoveryCache(Collections.singletonList(entry));
+        assertTrue(discoverer.getDiscoveryCache().isEmpty());
+
+        entry.setVersion(ZigBeeDiscoveryDao.CURRENT_VERSION);
+        discoverer.setDiscoveryCache(Collections.singletonList(entry));
+        assertEquals(1, discoverer.getDiscoveryCache().size());
+    }
+}
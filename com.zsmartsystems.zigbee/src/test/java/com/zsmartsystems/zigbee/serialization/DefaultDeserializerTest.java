@@ -13,6 +13,7 @@ import org.junit.Test;
 
 import com.zsmartsystems.zigbee.ExtendedPanId;
 import com.zsmartsystems.zigbee.IeeeAddress;
+import com.zsmartsystems.zigbee.zcl.ZclStatus;
 import com.zsmartsystems.zigbee.zcl.protocol.ZclDataType;
 
 /**
@@ -49,6 +50,12 @@ public class DefaultDeserializerTest {
         testDeserialize(valIn, valOut, ZclDataType.EXTENDED_PANID);
     }
 
+    @Test
+    public void testDeserialize_ZCL_STATUS() {
+        int[] valIn = { 0x86 };
+        testDeserialize(valIn, ZclStatus.UNSUPPORTED_ATTRIBUTE, ZclDataType.ZCL_STATUS);
+    }
+
     private void testDeserialize(int[] input, Object objectIn, ZclDataType type) {
         DefaultDeserializer deserializer = new DefaultDeserializer(input);
         Object objectOut = deserializer.readZigBeeType(type);
@@ -8,24 +8,48 @@
 package com.zsmartsystems.zigbee.zcl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.zsmartsystems.zigbee.Command;
 import com.zsmartsystems.zigbee.CommandResponseMatcher;
+import com.zsmartsystems.zigbee.CommandResult;
+import com.zsmartsystems.zigbee.CommandResultFuture;
 import com.zsmartsystems.zigbee.ZigBeeDeviceAddress;
 import com.zsmartsystems.zigbee.ZigBeeNetworkManager;
 import com.zsmartsystems.zigbee.transport.ZigBeeTransportTransmit;
+import com.zsmartsystems.zigbee.zcl.clusters.ZclBasicCluster;
 import com.zsmartsystems.zigbee.zcl.clusters.ZclLevelControlCluster;
 import com.zsmartsystems.zigbee.zcl.clusters.ZclOnOffCluster;
 import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ConfigureReportingResponse;
 import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationCommand;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ReadReportingConfigurationResponse;
+import com.zsmartsystems.zigbee.zcl.clusters.general.WriteAttributesResponse;
+import com.zsmartsystems.zigbee.zcl.clusters.general.ReadAttributesResponse;
 import com.zsmartsystems.zigbee.zcl.field.AttributeRecord;
 import com.zsmartsystems.zigbee.zcl.field.AttributeReportingConfigurationRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeReportingStatusRecord;
+import com.zsmartsystems.zigbee.zcl.field.AttributeStatusRecord;
+import com.zsmartsystems.zigbee.zcl.field.ReadAttributeStatusRecord;
+import com.zsmartsystems.zigbee.zcl.field.WriteAttributeStatusRecord;
 
 /**
  *
@@ -97,4 +121,402 @@ public class ZclClusterTest {
         ZclCluster cluster = new ZclLevelControlCluster(networkManager, new ZigBeeDeviceAddress(1));
         assertEquals("Level Control", cluster.getClusterName());
     }
+
+    @Test
+    public void readCached() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclOnOffCluster(networkManager, new ZigBeeDeviceAddress(1));
+        ZclAttribute attribute = cluster.getAttribute(0);
+        cluster.setReadBatchWindow(0);
+        Mockito.when(networkManager.read(cluster, attribute))
+                .thenReturn(new CommandResultFuture(networkManager));
+
+        // Without a cache policy, every read is sent even if a value has been received
+        attribute.updateValue(Boolean.TRUE);
+        cluster.read(attribute);
+        Mockito.verify(networkManager, Mockito.times(1)).read(cluster, attribute);
+
+        cluster.setAttributeMaxAge(attribute, 60000);
+        Future<CommandResult> future = cluster.read(attribute);
+        assertTrue(future.isDone());
+        ReadAttributesResponse response = future.get().getResponse();
+        assertEquals(Boolean.TRUE, response.getRecords().get(0).getAttributeValue());
+        assertEquals(Boolean.TRUE, cluster.readSync(attribute));
+        Mockito.verify(networkManager, Mockito.times(1)).read(cluster, attribute);
+
+        // Writing the attribute invalidates the cached value until it is updated again
+        cluster.write(attribute, Boolean.FALSE);
+        assertFalse(cluster.read(attribute).isDone());
+        Mockito.verify(networkManager, Mockito.times(2)).read(cluster, attribute);
+
+        ReadAttributeStatusRecord record = new ReadAttributeStatusRecord();
+        record.setAttributeIdentifier(0);
+        record.setStatus(0);
+        record.setAttributeValue(Boolean.FALSE);
+        cluster.handleAttributeStatus(Collections.singletonList(record));
+        assertTrue(cluster.read(attribute).isDone());
+        Mockito.verify(networkManager, Mockito.times(2)).read(cluster, attribute);
+
+        // A failed read doesn't update the value, so the attribute is still read from the device
+        cluster.write(attribute, Boolean.TRUE);
+        ReadAttributeStatusRecord failure = new ReadAttributeStatusRecord();
+        failure.setAttributeIdentifier(0);
+        failure.setStatus(ZclStatus.UNSUPPORTED_ATTRIBUTE.getId());
+        cluster.handleAttributeStatus(Collections.singletonList(failure));
+        assertEquals(Boolean.FALSE, attribute.getLastValue());
+        assertFalse(cluster.read(attribute).isDone());
+        Mockito.verify(networkManager, Mockito.times(3)).read(cluster, attribute);
+    }
+
+    @Test
+    public void readMaxAgeFromReporting() {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclOnOffCluster(networkManager, new ZigBeeDeviceAddress(1));
+        ZclAttribute attribute = cluster.getAttribute(0);
+        assertEquals(0, cluster.getAttributeMaxAge(attribute));
+
+        cluster.setDefaultMaxAge(5000);
+        assertEquals(5000, cluster.getAttributeMaxAge(attribute));
+
+        // The reporting period is only used once it is confirmed by the device
+        cluster.setReporting(attribute, 1, 300);
+        assertEquals(5000, cluster.getAttributeMaxAge(attribute));
+        cluster.handleCommand(getReportingConfiguration(0, 1, 300));
+        assertEquals(300000, cluster.getAttributeMaxAge(attribute));
+
+        cluster.handleCommand(getReportingConfiguration(0, 1, 0xffff));
+        assertEquals(5000, cluster.getAttributeMaxAge(attribute));
+    }
+
+    private ReadReportingConfigurationResponse getReportingConfiguration(int attributeId, int minInterval,
+            int maxInterval) {
+        AttributeReportingStatusRecord record = new AttributeReportingStatusRecord();
+        record.setAttributeIdentifier(attributeId);
+        record.setMinimumReportingInterval(minInterval);
+        record.setMaximumReportingInterval(maxInterval);
+        ReadReportingConfigurationResponse response = new ReadReportingConfigurationResponse();
+        response.setRecords(Collections.singletonList(record));
+        return response;
+    }
+
+    @Test
+    public void readCoalesced() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclOnOffCluster(networkManager, new ZigBeeDeviceAddress(1));
+        ZclAttribute attribute = cluster.getAttribute(0);
+        cluster.setReadBatchWindow(0);
+        CommandResultFuture pending = new CommandResultFuture(networkManager);
+        Mockito.when(networkManager.read(cluster, attribute)).thenReturn(pending)
+                .thenReturn(new CommandResultFuture(networkManager));
+
+        Future<CommandResult> future = cluster.read(attribute);
+        assertSame(future, cluster.read(attribute));
+        Mockito.verify(networkManager, Mockito.times(1)).read(cluster, attribute);
+
+        // A short timeout on one reader doesn't expire the shared read
+        assertTrue(future.get(50, TimeUnit.MILLISECONDS).isTimeout());
+        assertFalse(pending.isDone());
+
+        ReadAttributesResponse response = new ReadAttributesResponse();
+        response.setRecords(Collections.singletonList(getReadRecord(0, Boolean.TRUE)));
+        pending.set(new CommandResult(response));
+        assertEquals(Boolean.TRUE, ((ReadAttributesResponse) future.get().getResponse()).getRecords().get(0)
+                .getAttributeValue());
+
+        // Once the read completes, the next read is sent to the device
+        cluster.read(attribute);
+        Mockito.verify(networkManager, Mockito.times(2)).read(cluster, attribute);
+    }
+
+    private ReadAttributeStatusRecord getReadRecord(int attributeId, Object value) {
+        ReadAttributeStatusRecord record = new ReadAttributeStatusRecord();
+        record.setAttributeIdentifier(attributeId);
+        record.setStatus(0);
+        record.setAttributeValue(value);
+        return record;
+    }
+
+    private List<Integer> getAttributeIds(List<ZclAttribute> attributes) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (ZclAttribute attribute : attributes) {
+            ids.add(attribute.getId());
+        }
+        return ids;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void readBatched() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclLevelControlCluster(networkManager, new ZigBeeDeviceAddress(1));
+        CommandResultFuture frameFuture = new CommandResultFuture(networkManager);
+        ArgumentCaptor<List> attributeCapture = ArgumentCaptor.forClass(List.class);
+        Mockito.when(networkManager.read(Mockito.eq(cluster), attributeCapture.capture())).thenReturn(frameFuture);
+
+        // Reads made within the batching window are sent in a single frame
+        Future<CommandResult> future0 = cluster.read(cluster.getAttribute(0));
+        Future<CommandResult> future1 = cluster.read(cluster.getAttribute(1));
+        Mockito.verify(networkManager, Mockito.timeout(1000).times(1)).read(Mockito.eq(cluster),
+                Mockito.anyListOf(ZclAttribute.class));
+        assertEquals(Arrays.asList(0, 1), getAttributeIds(attributeCapture.getValue()));
+        assertFalse(future0.isDone());
+
+        ReadAttributesResponse response = new ReadAttributesResponse();
+        response.setRecords(Arrays.asList(getReadRecord(0, 100), getReadRecord(1, 200)));
+        frameFuture.set(new CommandResult(response));
+
+        // Each reader only sees its own attribute
+        assertTrue(future1.isDone());
+        ReadAttributesResponse response1 = future1.get().getResponse();
+        assertEquals(1, response1.getRecords().size());
+        assertEquals(200, response1.getRecords().get(0).getAttributeValue());
+        ReadAttributesResponse response0 = future0.get().getResponse();
+        assertEquals(100, response0.getRecords().get(0).getAttributeValue());
+    }
+
+    @Test
+    public void readBatchedDaemon() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclLevelControlCluster(networkManager, new ZigBeeDeviceAddress(1));
+        Mockito.when(networkManager.read(Mockito.eq(cluster), Mockito.anyListOf(ZclAttribute.class)))
+                .thenReturn(new CommandResultFuture(networkManager));
+        cluster.read(cluster.getAttribute(0));
+        Mockito.verify(networkManager, Mockito.timeout(1000).times(1)).read(Mockito.eq(cluster),
+                Mockito.anyListOf(ZclAttribute.class));
+
+        // The batching thread must not stop the JVM from exiting
+        boolean found = false;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("ZclReadBatcher".equals(thread.getName())) {
+                assertTrue(thread.isDaemon());
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void readBatchedTimeout() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclLevelControlCluster(networkManager, new ZigBeeDeviceAddress(1));
+        CommandResultFuture frameFuture = new CommandResultFuture(networkManager);
+        ArgumentCaptor<List> attributeCapture = ArgumentCaptor.forClass(List.class);
+        Mockito.when(networkManager.read(Mockito.eq(cluster), attributeCapture.capture())).thenReturn(frameFuture);
+
+        Future<CommandResult> future0 = cluster.read(cluster.getAttribute(0));
+        Future<CommandResult> future1 = cluster.read(cluster.getAttribute(1));
+        Mockito.verify(networkManager, Mockito.timeout(1000).times(1)).read(Mockito.eq(cluster),
+                Mockito.anyListOf(ZclAttribute.class));
+
+        // A short timeout on one reader doesn't expire the frame shared with the other reader
+        assertTrue(future0.get(100, TimeUnit.MILLISECONDS).isTimeout());
+        assertFalse(frameFuture.isDone());
+        assertFalse(future1.isDone());
+
+        ReadAttributesResponse response = new ReadAttributesResponse();
+        response.setRecords(Arrays.asList(getReadRecord(0, 100), getReadRecord(1, 200)));
+        frameFuture.set(new CommandResult(response));
+
+        ReadAttributesResponse response1 = future1.get().getResponse();
+        assertEquals(200, response1.getRecords().get(0).getAttributeValue());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void readCollection() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclBasicCluster(networkManager, new ZigBeeDeviceAddress(1));
+        CommandResultFuture frameFuture1 = new CommandResultFuture(networkManager);
+        CommandResultFuture frameFuture2 = new CommandResultFuture(networkManager);
+        ArgumentCaptor<List> attributeCapture = ArgumentCaptor.forClass(List.class);
+        Mockito.when(networkManager.read(Mockito.eq(cluster), attributeCapture.capture())).thenReturn(frameFuture1)
+                .thenReturn(frameFuture2);
+
+        // The strings in the basic cluster don't all fit in the response to a single frame
+        List<ZclAttribute> attributes = new ArrayList<ZclAttribute>();
+        for (int id = 0; id < 8; id++) {
+            attributes.add(cluster.getAttribute(id));
+        }
+        Future<CommandResult> future = cluster.read(attributes);
+        assertEquals(2, attributeCapture.getAllValues().size());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), getAttributeIds(attributeCapture.getAllValues().get(0)));
+        assertEquals(Arrays.asList(6, 7), getAttributeIds(attributeCapture.getAllValues().get(1)));
+
+        ReadAttributesResponse response1 = new ReadAttributesResponse();
+        response1.setRecords(Arrays.asList(getReadRecord(0, 1), getReadRecord(1, 2), getReadRecord(2, 3),
+                getReadRecord(3, 4), getReadRecord(4, "Manufacturer"), getReadRecord(5, "Model")));
+        frameFuture1.set(new CommandResult(response1));
+        assertFalse(future.isDone());
+
+        ReadAttributesResponse response2 = new ReadAttributesResponse();
+        response2.setRecords(Arrays.asList(getReadRecord(6, "20170101"), getReadRecord(7, 1)));
+        frameFuture2.set(new CommandResult(response2));
+        assertTrue(future.isDone());
+
+        ReadAttributesResponse response = future.get().getResponse();
+        assertEquals(8, response.getRecords().size());
+        assertEquals("Model", response.getRecords().get(5).getAttributeValue());
+        assertEquals(1, response.getRecords().get(7).getAttributeValue());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void writeBatched() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclBasicCluster(networkManager, new ZigBeeDeviceAddress(1));
+        CommandResultFuture frameFuture1 = new CommandResultFuture(networkManager);
+        CommandResultFuture frameFuture2 = new CommandResultFuture(networkManager);
+        ArgumentCaptor<Map> valueCapture = ArgumentCaptor.forClass(Map.class);
+        Mockito.when(networkManager.write(Mockito.eq(cluster), valueCapture.capture())).thenReturn(frameFuture1)
+                .thenReturn(frameFuture2);
+
+        Map<ZclAttribute, Object> values = new LinkedHashMap<ZclAttribute, Object>();
+        values.put(cluster.getAttribute(0x10), "0123456789012345678901234567890123456789");
+        values.put(cluster.getAttribute(0x11), 1);
+        values.put(cluster.getAttribute(0x12), Boolean.TRUE);
+        values.put(cluster.getAttribute(0x05), "012345678901234567890123456789");
+        Future<CommandResult> future = cluster.write(values);
+
+        // The second string doesn't fit in the first frame
+        assertEquals(2, valueCapture.getAllValues().size());
+        assertEquals(3, valueCapture.getAllValues().get(0).size());
+        assertEquals(Collections.singleton(cluster.getAttribute(0x05)), valueCapture.getAllValues().get(1).keySet());
+
+        // The first frame succeeded completely, and the second failed
+        WriteAttributeStatusRecord success = new WriteAttributeStatusRecord();
+        success.setStatus(0);
+        WriteAttributesResponse response1 = new WriteAttributesResponse();
+        response1.setRecords(Collections.singletonList(success));
+        frameFuture1.set(new CommandResult(response1));
+
+        WriteAttributeStatusRecord failure = new WriteAttributeStatusRecord();
+        failure.setStatus(0x86);
+        failure.setAttributeIdentifier(0x05);
+        WriteAttributesResponse response2 = new WriteAttributesResponse();
+        response2.setRecords(Collections.singletonList(failure));
+        frameFuture2.set(new CommandResult(response2));
+
+        assertTrue(future.isDone());
+        WriteAttributesResponse response = future.get().getResponse();
+        assertEquals(4, response.getRecords().size());
+        assertEquals(0x10, response.getRecords().get(0).getAttributeIdentifier());
+        assertEquals(0, response.getRecords().get(0).getStatus());
+        assertEquals(0x12, response.getRecords().get(2).getAttributeIdentifier());
+        assertEquals(0, response.getRecords().get(2).getStatus());
+        assertEquals(0x05, response.getRecords().get(3).getAttributeIdentifier());
+        assertEquals(0x86, response.getRecords().get(3).getStatus());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void writeBatchedTimeout() throws Exception {
+        createNetworkManager();
+
+        ZclCluster cluster = new ZclBasicCluster(networkManager, new ZigBeeDeviceAddress(1));
+        CommandResultFuture frameFuture1 = new CommandResultFuture(networkManager);
+        CommandResultFuture frameFuture2 = new CommandResultFuture(networkManager);
+        ArgumentCaptor<Map> valueCapture = ArgumentCaptor.forClass(Map.class);
+        Mockito.when(networkManager.write(Mockito.eq(cluster), valueCapture.capture())).thenReturn(frameFuture1)
+                .thenReturn(frameFuture2);
+
+        // The frame length uses the encoded length of the string, which is twice the number of characters here
+        StringBuilder location = new StringBuilder();
+        for (int cnt = 0; cnt < 30; cnt++) {
+            location.append('\u00e9');
+        }
+        Map<ZclAttribute, Object> values = new LinkedHashMap<ZclAttribute, Object>();
+        values.put(cluster.getAttribute(0x10), location.toString());
+        values.put(cluster.getAttribute(0x05), "0123456789");
+        Future<CommandResult> future = cluster.write(values);
+        assertEquals(2, valueCapture.getAllValues().size());
+
+        // The second frame times out, but the merged response still holds a record for every attribute
+        WriteAttributeStatusRecord success = new WriteAttributeStatusRecord();
+        success.setStatus(0);
+        WriteAttributesResponse response1 = new WriteAttributesResponse();
+        response1.setRecords(Collections.singletonList(success));
+        frameFuture1.set(new CommandResult(response1));
+        frameFuture2.set(new CommandResult());
+
+        CommandResult result = future.get();
+        assertTrue(result.isSuccess());
+        WriteAttributesResponse response = result.getResponse();
+        assertEquals(2, response.getRecords().size());
+        assertEquals(0x10, response.getRecords().get(0).getAttributeIdentifier());
+        assertEquals(ZclStatus.SUCCESS.getId(), response.getRecords().get(0).getStatus());
+        assertEquals(0x05, response.getRecords().get(1).getAttributeIdentifier());
+        assertEquals(ZclStatus.FAILURE.getId(), response.getRecords().get(1).getStatus());
+    }
+
+    @Test
+    public void setReportingBatched() throws Exception {
+        networkManager = Mockito.mock(ZigBeeNetworkManager.class);
+        commandCapture = ArgumentCaptor.forClass(Command.class);
+        CommandResultFuture frameFuture1 = new CommandResultFuture(networkManager);
+        CommandResultFuture frameFuture2 = new CommandResultFuture(networkManager);
+        final List<CommandResultFuture> frameFutures = Arrays.asList(frameFuture1, frameFuture2);
+        Mockito.when(networkManager.unicast(commandCapture.capture(), Mockito.any(CommandResponseMatcher.class)))
+                .thenAnswer(new Answer<Future<CommandResult>>() {
+                    private int transactionId;
+
+                    @Override
+                    public Future<CommandResult> answer(InvocationOnMock invocation) {
+                        ((Command) invocation.getArguments()[0]).setTransactionId(transactionId);
+                        return frameFutures.get(transactionId++);
+                    }
+                });
+
+        ZclCluster cluster = new ZclBasicCluster(networkManager, new ZigBeeDeviceAddress(1));
+        List<ZclReportingConfig> configs = new ArrayList<ZclReportingConfig>();
+        for (int id = 0; id < 8; id++) {
+            configs.add(new ZclReportingConfig(cluster.getAttribute(id), 1, 600));
+        }
+        configs.add(new ZclReportingConfig(cluster.getAttribute(0x10), 1, 900));
+        Future<CommandResult> future = cluster.setReporting(configs);
+
+        assertEquals(2, commandCapture.getAllValues().size());
+        assertEquals(8, ((ConfigureReportingCommand) commandCapture.getAllValues().get(0)).getRecords().size());
+        AttributeReportingConfigurationRecord record = ((ConfigureReportingCommand) commandCapture.getAllValues()
+                .get(1)).getRecords().get(0);
+        assertEquals(0x10, record.getAttributeIdentifier());
+        assertEquals(900, record.getMaximumReportingInterval());
+
+        // The reporting periods aren't set until the device accepts the configuration
+        assertEquals(0, cluster.getAttribute(0).getMaximumReportingPeriod());
+
+        AttributeStatusRecord success = new AttributeStatusRecord();
+        success.setStatus(0);
+        ConfigureReportingResponse response1 = new ConfigureReportingResponse();
+        response1.setTransactionId(0);
+        response1.setRecords(Collections.singletonList(success));
+        cluster.handleCommand(response1);
+        frameFuture1.set(new CommandResult(response1));
+        assertFalse(future.isDone());
+        assertEquals(600, cluster.getAttribute(0).getMaximumReportingPeriod());
+
+        AttributeStatusRecord failure = new AttributeStatusRecord();
+        failure.setStatus(0x8C);
+        failure.setAttributeIdentifier(0x10);
+        ConfigureReportingResponse response2 = new ConfigureReportingResponse();
+        response2.setTransactionId(1);
+        response2.setRecords(Collections.singletonList(failure));
+        cluster.handleCommand(response2);
+        frameFuture2.set(new CommandResult(response2));
+        assertEquals(0, cluster.getAttribute(0x10).getMaximumReportingPeriod());
+
+        ConfigureReportingResponse response = future.get().getResponse();
+        assertEquals(9, response.getRecords().size());
+        assertEquals(0, response.getRecords().get(7).getStatus());
+        assertEquals(0x10, response.getRecords().get(8).getAttributeIdentifier());
+        assertEquals(0x8C, response.getRecords().get(8).getStatus());
+    }
 }
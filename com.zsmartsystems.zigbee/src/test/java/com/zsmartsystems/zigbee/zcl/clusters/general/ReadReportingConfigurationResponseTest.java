@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2016-2017 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.zigbee.zcl.clusters.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.zsmartsystems.zigbee.CommandTest;
+import com.zsmartsystems.zigbee.serialization.DefaultDeserializer;
+import com.zsmartsystems.zigbee.zcl.ZclFieldDeserializer;
+import com.zsmartsystems.zigbee.zcl.ZclStatus;
+import com.zsmartsystems.zigbee.zcl.field.AttributeReportingStatusRecord;
+import com.zsmartsystems.zigbee.zcl.protocol.ZclDataType;
+
+/**
+ *
+ * @author Chris Jackson
+ *
+ */
+public class ReadReportingConfigurationResponseTest extends CommandTest {
+
+    @Test
+    public void testReceive() {
+        int[] packet = getPacketData("00 00 00 00 20 01 00 2C 01 05 86 00 01 00 00 01 02 00 0A 00");
+
+        ReadReportingConfigurationResponse response = new ReadReportingConfigurationResponse();
+
+        DefaultDeserializer deserializer = new DefaultDeserializer(packet);
+        ZclFieldDeserializer fieldDeserializer = new ZclFieldDeserializer(deserializer);
+
+        response.deserialize(fieldDeserializer);
+
+        System.out.println(response);
+
+        List<AttributeReportingStatusRecord> records = response.getRecords();
+        assertEquals(3, records.size());
+
+        AttributeReportingStatusRecord record = records.get(0);
+        assertEquals(ZclStatus.SUCCESS.getId(), record.getStatus());
+        assertEquals(0, record.getDirection());
+        assertEquals(0, record.getAttributeIdentifier());
+        assertEquals(ZclDataType.UNSIGNED_8_BIT_INTEGER, record.getAttributeDataType());
+        assertEquals(1, record.getMinimumReportingInterval());
+        assertEquals(300, record.getMaximumReportingInterval());
+        assertEquals(5, record.getReportableChange());
+
+        // The configuration is omitted from a failed record
+        record = records.get(1);
+        assertEquals(ZclStatus.UNSUPPORTED_ATTRIBUTE.getId(), record.getStatus());
+        assertEquals(1, record.getAttributeIdentifier());
+        assertNull(record.getAttributeDataType());
+
+        record = records.get(2);
+        assertEquals(ZclStatus.SUCCESS.getId(), record.getStatus());
+        assertEquals(1, record.getDirection());
+        assertEquals(2, record.getAttributeIdentifier());
+        assertEquals(10, record.getTimeoutPeriod());
+    }
+}